@@ -0,0 +1,232 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.bull.javamelody.internal.common.Parameters;
+
+/**
+ * Exécute les benchmarks et produit un rapport avec le surcoût du monitoring par requête
+ * (différence entre les benchmarks withMonitoring* et withoutMonitoring* d'une même classe)
+ * et la comparaison avec les résultats d'une version précédente.
+ * <br/>Usage : java -jar javamelody-benchmarks.jar [baseline.properties [regexp des benchmarks]]
+ * (baseline.properties peut être "" pour un regexp sans comparaison)
+ * <br/>Les résultats sont enregistrés dans target/benchmarks/&lt;version&gt;.properties,
+ * pour servir de référence à la version suivante, et le rapport dans
+ * target/benchmarks/&lt;version&gt;-report.txt.
+ * @author Emeric Vernat
+ */
+public final class BenchmarkReport {
+	private static final String WITH_MONITORING = "withMonitoring";
+	private static final String WITHOUT_MONITORING = "withoutMonitoring";
+
+	private final Map<String, Score> scores;
+	private final Map<String, Score> baselineScores;
+
+	/**
+	 * Résultat d'un benchmark.
+	 */
+	static final class Score {
+		private final double value;
+		private final String unit;
+
+		Score(double value, String unit) {
+			super();
+			this.value = value;
+			this.unit = unit;
+		}
+
+		static Score parse(String text) {
+			final int index = text.indexOf(' ');
+			return new Score(Double.parseDouble(text.substring(0, index)),
+					text.substring(index + 1));
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%.3f %s", value, unit);
+		}
+	}
+
+	BenchmarkReport(Map<String, Score> scores, Map<String, Score> baselineScores) {
+		super();
+		this.scores = scores;
+		this.baselineScores = baselineScores;
+	}
+
+	/**
+	 * Méthode main.
+	 * @param args Fichier des résultats de référence et expression régulière des benchmarks, optionnels
+	 * @throws RunnerException e
+	 * @throws IOException e
+	 */
+	public static void main(String[] args) throws RunnerException, IOException {
+		final Map<String, Score> baselineScores;
+		if (args.length > 0 && !args[0].isEmpty()) {
+			baselineScores = readScores(new File(args[0]));
+		} else {
+			baselineScores = new TreeMap<String, Score>();
+		}
+		final String include;
+		if (args.length > 1) {
+			include = args[1];
+		} else {
+			include = ".*Benchmark.*";
+		}
+		final Options options = new OptionsBuilder().include(include).build();
+		final Collection<RunResult> runResults = new Runner(options).run();
+		final Map<String, Score> scores = new TreeMap<String, Score>();
+		for (final RunResult runResult : runResults) {
+			final Result<?> result = runResult.getPrimaryResult();
+			scores.put(getName(runResult.getParams()),
+					new Score(result.getScore(), result.getScoreUnit()));
+		}
+
+		final File directory = new File("target/benchmarks");
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Can't create directory " + directory.getPath());
+		}
+		final String version = Parameters.JAVAMELODY_VERSION;
+		writeScores(scores, new File(directory, version + ".properties"));
+		final BenchmarkReport benchmarkReport = new BenchmarkReport(scores, baselineScores);
+		final OutputStream output = new FileOutputStream(
+				new File(directory, version + "-report.txt"));
+		try {
+			final PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, "UTF-8"));
+			benchmarkReport.write(writer, version);
+			writer.flush();
+		} finally {
+			output.close();
+		}
+		final PrintWriter writer = new PrintWriter(System.out);
+		benchmarkReport.write(writer, version);
+		writer.flush();
+	}
+
+	private static String getName(BenchmarkParams params) {
+		final String benchmark = params.getBenchmark();
+		// nom simple de la classe et de la méthode, suivis des paramètres éventuels
+		final String className = benchmark.substring(0, benchmark.lastIndexOf('.'));
+		final StringBuilder sb = new StringBuilder(
+				benchmark.substring(className.lastIndexOf('.') + 1));
+		for (final String key : params.getParamsKeys()) {
+			sb.append(" [").append(key).append('=').append(params.getParam(key)).append(']');
+		}
+		return sb.toString();
+	}
+
+	private static Map<String, Score> readScores(File file) throws IOException {
+		final Properties properties = new Properties();
+		final InputStream input = new FileInputStream(file);
+		try {
+			properties.load(input);
+		} finally {
+			input.close();
+		}
+		final Map<String, Score> result = new TreeMap<String, Score>();
+		for (final String name : properties.stringPropertyNames()) {
+			result.put(name, Score.parse(properties.getProperty(name)));
+		}
+		return result;
+	}
+
+	private static void writeScores(Map<String, Score> scores, File file) throws IOException {
+		final Properties properties = new Properties();
+		for (final Map.Entry<String, Score> entry : scores.entrySet()) {
+			properties.setProperty(entry.getKey(), entry.getValue().toString());
+		}
+		final OutputStream output = new FileOutputStream(file);
+		try {
+			properties.store(output, "JavaMelody " + Parameters.JAVAMELODY_VERSION + " benchmarks");
+		} finally {
+			output.close();
+		}
+	}
+
+	void write(PrintWriter writer, String version) {
+		writer.println("JavaMelody " + version + " benchmarks");
+		writer.println();
+		writer.println("Overhead of the monitoring:");
+		for (final Map.Entry<String, Score> entry : scores.entrySet()) {
+			final String name = entry.getKey();
+			final String withoutMonitoringName = getWithoutMonitoringName(name);
+			if (withoutMonitoringName != null) {
+				final Score score = entry.getValue();
+				final Score withoutMonitoringScore = scores.get(withoutMonitoringName);
+				writer.println(String.format(Locale.US, "  %-60s %12.3f %s", name,
+						score.value - withoutMonitoringScore.value, score.unit));
+			}
+		}
+		writer.println();
+		writer.println("Results:");
+		for (final Map.Entry<String, Score> entry : scores.entrySet()) {
+			final String name = entry.getKey();
+			final Score score = entry.getValue();
+			final Score baselineScore = baselineScores.get(name);
+			if (baselineScore == null) {
+				writer.println(String.format(Locale.US, "  %-60s %12.3f %s", name, score.value,
+						score.unit));
+			} else {
+				writer.println(String.format(Locale.US, "  %-60s %12.3f %s (baseline %.3f, %+.1f%%)",
+						name, score.value, score.unit, baselineScore.value,
+						100 * (score.value - baselineScore.value) / baselineScore.value));
+			}
+		}
+	}
+
+	// withMonitoringSpring est comparé à withoutMonitoringSpring s'il existe,
+	// et sinon à withoutMonitoring comme pour withMonitoringProxy
+	private String getWithoutMonitoringName(String name) {
+		final int index = name.indexOf('.' + WITH_MONITORING);
+		if (index == -1) {
+			return null;
+		}
+		final String className = name.substring(0, index + 1);
+		final String suffix = name.substring(index + 1 + WITH_MONITORING.length());
+		final String withoutMonitoringName = className + WITHOUT_MONITORING + suffix;
+		if (scores.containsKey(withoutMonitoringName)) {
+			return withoutMonitoringName;
+		}
+		final String defaultWithoutMonitoringName = className + WITHOUT_MONITORING;
+		if (scores.containsKey(defaultWithoutMonitoringName)) {
+			return defaultWithoutMonitoringName;
+		}
+		return null;
+	}
+}
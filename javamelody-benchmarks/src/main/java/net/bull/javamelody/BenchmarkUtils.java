@@ -0,0 +1,96 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+
+import net.bull.javamelody.internal.common.Parameters;
+
+/**
+ * Classe utilitaire pour les benchmarks.
+ * @author Emeric Vernat
+ */
+public final class BenchmarkUtils {
+	private BenchmarkUtils() {
+		super();
+	}
+
+	/**
+	 * Initialise les paramètres de javamelody pour un benchmark,
+	 * avec un répertoire de stockage temporaire.
+	 */
+	public static void initialize() {
+		final File storageDirectory = new File(System.getProperty("java.io.tmpdir"),
+				"javamelody-benchmarks");
+		System.setProperty(Parameters.PARAMETER_SYSTEM_PREFIX + Parameter.STORAGE_DIRECTORY.getCode(),
+				storageDirectory.getPath());
+		storageDirectory.mkdirs();
+	}
+
+	/**
+	 * Crée une implémentation minimale d'une interface telle que ServletContext
+	 * ou HttpServletRequest, sans dépendre d'une librairie de mock.
+	 * Les méthodes retournent la valeur indiquée pour leur nom ou sinon une valeur par défaut
+	 * (null, 0, false ou une énumération vide).
+	 * @param type Interface
+	 * @param returnValuesByMethodName Valeurs retournées par nom de méthode
+	 * @param <T> Type de l'interface
+	 * @return Instance
+	 */
+	public static <T> T stub(final Class<T> type, final Map<String, ?> returnValuesByMethodName) {
+		final InvocationHandler invocationHandler = new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				final String methodName = method.getName();
+				if (returnValuesByMethodName.containsKey(methodName)) {
+					return returnValuesByMethodName.get(methodName);
+				} else if ("equals".equals(methodName)) {
+					return proxy == args[0];
+				} else if ("hashCode".equals(methodName)) {
+					return System.identityHashCode(proxy);
+				} else if ("toString".equals(methodName)) {
+					return type.getSimpleName();
+				}
+				return getDefaultValue(method.getReturnType());
+			}
+		};
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				invocationHandler));
+	}
+
+	private static Object getDefaultValue(Class<?> returnType) {
+		if (returnType == Boolean.TYPE) {
+			return Boolean.FALSE;
+		} else if (returnType == Integer.TYPE) {
+			return 0;
+		} else if (returnType == Long.TYPE) {
+			return 0L;
+		} else if (returnType == Enumeration.class) {
+			return Collections.emptyEnumeration();
+		} else if (returnType.isPrimitive() && returnType != Void.TYPE) {
+			throw new UnsupportedOperationException(returnType.getName());
+		}
+		return null;
+	}
+}
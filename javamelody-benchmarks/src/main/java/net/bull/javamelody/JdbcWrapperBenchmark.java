@@ -0,0 +1,127 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark des proxys JDBC de JdbcWrapper sur une base H2 en mémoire :
+ * la différence entre withMonitoring et withoutMonitoring est le surcoût par requête sql
+ * (prepareStatement, executeQuery, lecture du ResultSet et fermetures).
+ * @author Emeric Vernat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcWrapperBenchmark {
+	private static final String SELECT = "select name from benchmark where id = ?";
+
+	private Connection connection;
+	private Connection connectionProxy;
+
+	/**
+	 * Création de la base en mémoire.
+	 * @throws SQLException e
+	 */
+	@Setup
+	public void setUp() throws SQLException {
+		BenchmarkUtils.initialize();
+		connection = DriverManager.getConnection("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+		final Statement statement = connection.createStatement();
+		try {
+			statement.execute("create table benchmark (id int primary key, name varchar(100))");
+			statement.execute("insert into benchmark values (1, 'benchmark')");
+		} finally {
+			statement.close();
+		}
+		JdbcWrapper.SINGLETON.getSqlCounter().setDisplayed(true);
+		connectionProxy = JdbcWrapper.SINGLETON.createConnectionProxy(connection);
+	}
+
+	/**
+	 * Fermeture de la base en mémoire.
+	 * @throws SQLException e
+	 */
+	@TearDown
+	public void tearDown() throws SQLException {
+		final Statement statement = connection.createStatement();
+		try {
+			statement.execute("drop table benchmark");
+		} finally {
+			statement.close();
+		}
+		connectionProxy.close();
+	}
+
+	/**
+	 * Référence : requête sql sans le monitoring.
+	 * @return Résultat
+	 * @throws SQLException e
+	 */
+	@Benchmark
+	public String withoutMonitoring() throws SQLException {
+		return select(connection);
+	}
+
+	/**
+	 * Requête sql avec le monitoring.
+	 * @return Résultat
+	 * @throws SQLException e
+	 */
+	@Benchmark
+	public String withMonitoring() throws SQLException {
+		return select(connectionProxy);
+	}
+
+	private static String select(Connection connection) throws SQLException {
+		final PreparedStatement statement = connection.prepareStatement(SELECT);
+		try {
+			statement.setInt(1, 1);
+			final ResultSet resultSet = statement.executeQuery();
+			try {
+				resultSet.next();
+				return resultSet.getString(1);
+			} finally {
+				resultSet.close();
+			}
+		} finally {
+			statement.close();
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark de MonitoringFilter.doFilter avec une chaîne de filtres qui ne fait rien :
+ * la différence entre withMonitoring et withoutMonitoring est le surcoût par requête http.
+ * @author Emeric Vernat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonitoringFilterBenchmark {
+	private static final String CONTEXT_PATH = "/test";
+
+	private MonitoringFilter monitoringFilter;
+	private HttpServletRequest request;
+	private HttpServletResponse response;
+	private FilterChain chain;
+
+	/**
+	 * Initialisation du filtre.
+	 * @throws ServletException e
+	 */
+	@Setup
+	public void setUp() throws ServletException {
+		BenchmarkUtils.initialize();
+		final Map<String, Object> contextValues = new HashMap<String, Object>();
+		contextValues.put("getMajorVersion", 3);
+		contextValues.put("getMinorVersion", 0);
+		contextValues.put("getServletContextName", "benchmark");
+		contextValues.put("getServerInfo", "benchmark");
+		contextValues.put("getContextPath", CONTEXT_PATH);
+		final ServletContext context = BenchmarkUtils.stub(ServletContext.class, contextValues);
+		final Map<String, Object> configValues = new HashMap<String, Object>();
+		configValues.put("getServletContext", context);
+		configValues.put("getFilterName", "javamelody");
+		final FilterConfig config = BenchmarkUtils.stub(FilterConfig.class, configValues);
+		monitoringFilter = new MonitoringFilter();
+		monitoringFilter.init(config);
+
+		final Map<String, Object> requestValues = new HashMap<String, Object>();
+		requestValues.put("getRequestURI", CONTEXT_PATH + "/request");
+		requestValues.put("getContextPath", CONTEXT_PATH);
+		requestValues.put("getMethod", "GET");
+		requestValues.put("getRemoteAddr", "127.0.0.1");
+		request = BenchmarkUtils.stub(HttpServletRequest.class, requestValues);
+		response = BenchmarkUtils.stub(HttpServletResponse.class,
+				new HashMap<String, Object>());
+		chain = new FilterChain() {
+			@Override
+			public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse) {
+				// rien, pour ne mesurer que le filtre
+			}
+		};
+	}
+
+	/**
+	 * Arrêt du filtre.
+	 */
+	@TearDown
+	public void tearDown() {
+		monitoringFilter.destroy();
+	}
+
+	/**
+	 * Référence : la chaîne de filtres sans le monitoring.
+	 * @throws IOException e
+	 * @throws ServletException e
+	 */
+	@Benchmark
+	public void withoutMonitoring() throws IOException, ServletException {
+		chain.doFilter(request, response);
+	}
+
+	/**
+	 * La chaîne de filtres avec le monitoring.
+	 * @throws IOException e
+	 * @throws ServletException e
+	 */
+	@Benchmark
+	public void withMonitoring() throws IOException, ServletException {
+		monitoringFilter.doFilter(request, response, chain);
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.framework.ProxyFactory;
+
+/**
+ * Benchmark de MonitoringProxy et de MonitoringSpringInterceptor :
+ * la différence entre les appels avec et sans monitoring est le surcoût par appel de méthode.
+ * @author Emeric Vernat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonitoringProxyBenchmark {
+	private int value;
+	private BenchmarkService service;
+	private BenchmarkService monitoringProxy;
+	private BenchmarkService springProxy;
+	private BenchmarkService springMonitoringProxy;
+
+	/**
+	 * Interface d'un service monitoré.
+	 */
+	public interface BenchmarkService {
+		/**
+		 * @param i int
+		 * @return int
+		 */
+		int compute(int i);
+	}
+
+	/**
+	 * Implémentation du service monitoré.
+	 */
+	public static class BenchmarkServiceImpl implements BenchmarkService {
+		/** {@inheritDoc} */
+		@Override
+		public int compute(int i) {
+			return i * 31;
+		}
+	}
+
+	/**
+	 * Création des proxys.
+	 */
+	@Setup
+	public void setUp() {
+		BenchmarkUtils.initialize();
+		MonitoringProxy.getServicesCounter().setDisplayed(true);
+		MonitoringProxy.getSpringCounter().setDisplayed(true);
+		service = new BenchmarkServiceImpl();
+		monitoringProxy = MonitoringProxy.createProxy(service);
+		springProxy = createSpringProxy(false);
+		springMonitoringProxy = createSpringProxy(true);
+	}
+
+	private BenchmarkService createSpringProxy(boolean monitored) {
+		final ProxyFactory proxyFactory = new ProxyFactory(service);
+		proxyFactory.addInterface(BenchmarkService.class);
+		if (monitored) {
+			proxyFactory.addAdvice(new MonitoringSpringInterceptor());
+		}
+		return (BenchmarkService) proxyFactory.getProxy();
+	}
+
+	/**
+	 * Référence : appel direct.
+	 * @return int
+	 */
+	@Benchmark
+	public int withoutMonitoring() {
+		return service.compute(value++);
+	}
+
+	/**
+	 * Appel par MonitoringProxy.
+	 * @return int
+	 */
+	@Benchmark
+	public int withMonitoringProxy() {
+		return monitoringProxy.compute(value++);
+	}
+
+	/**
+	 * Référence : appel par un proxy Spring sans intercepteur.
+	 * @return int
+	 */
+	@Benchmark
+	public int withoutMonitoringSpring() {
+		return springProxy.compute(value++);
+	}
+
+	/**
+	 * Appel par un proxy Spring avec MonitoringSpringInterceptor.
+	 * @return int
+	 */
+	@Benchmark
+	public int withMonitoringSpring() {
+		return springMonitoringProxy.compute(value++);
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Timer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.bull.javamelody.BenchmarkUtils;
+
+/**
+ * Benchmark de Collector.collectWithoutErrors avec un compteur de 10000 requêtes,
+ * soit le nombre maximum de requêtes par compteur par défaut.
+ * @author Emeric Vernat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CollectorBenchmark {
+	private static final int REQUESTS_COUNT = 10000;
+
+	private Timer timer;
+	private Counter counter;
+	private Collector collector;
+	private List<JavaInformations> javaInformationsList;
+
+	/**
+	 * Création du collector.
+	 * @throws IOException e
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		BenchmarkUtils.initialize();
+		timer = new Timer("javamelody benchmark", true);
+		JRobin.initBackendFactory(timer);
+		counter = new Counter(Counter.HTTP_COUNTER_NAME, "dbweb.png");
+		collector = new Collector("benchmark", Collections.singletonList(counter));
+		javaInformationsList = Collections.singletonList(new JavaInformations(null, false));
+	}
+
+	/**
+	 * Nouvelles requêtes entre deux collectes, hors de la mesure.
+	 */
+	@Setup(Level.Invocation)
+	public void addRequests() {
+		// Level.Invocation convient ici car une collecte dure bien plus d'une milliseconde
+		for (int i = 0; i < REQUESTS_COUNT; i++) {
+			counter.addRequest("request " + i, i % 100, 1, 10, false, 1000);
+		}
+	}
+
+	/**
+	 * Arrêt du collector.
+	 */
+	@TearDown
+	public void tearDown() {
+		collector.stop();
+		JRobin.stop();
+		timer.cancel();
+	}
+
+	/**
+	 * Collecte.
+	 */
+	@Benchmark
+	public void collectWithoutErrors() {
+		collector.collectWithoutErrors(javaInformationsList);
+	}
+}
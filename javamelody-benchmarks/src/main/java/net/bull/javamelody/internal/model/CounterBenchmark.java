@@ -0,0 +1,104 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.bull.javamelody.BenchmarkUtils;
+
+/**
+ * Benchmark de Counter.addRequest dans un seul thread et avec de la contention entre threads
+ * sur un même compteur, comme pour les requêtes http ou sql simultanées.
+ * @author Emeric Vernat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CounterBenchmark {
+	private static final int REQUESTS_COUNT = 100;
+
+	private Counter counter;
+
+	/**
+	 * Noms des requêtes parcourus par chaque thread.
+	 */
+	@State(Scope.Thread)
+	public static class RequestNames {
+		private final String[] names = new String[REQUESTS_COUNT];
+		private int index;
+
+		/**
+		 * Initialisation des noms.
+		 */
+		@Setup
+		public void setUp() {
+			for (int i = 0; i < names.length; i++) {
+				names[i] = "request " + i;
+			}
+		}
+
+		String next() {
+			index = (index + 1) % names.length;
+			return names[index];
+		}
+	}
+
+	/**
+	 * Création du compteur.
+	 */
+	@Setup
+	public void setUp() {
+		BenchmarkUtils.initialize();
+		counter = new Counter(Counter.HTTP_COUNTER_NAME, "dbweb.png");
+	}
+
+	/**
+	 * Ajout d'une requête dans un seul thread.
+	 * @param requestNames RequestNames
+	 */
+	@Benchmark
+	@Threads(1)
+	public void addRequest(RequestNames requestNames) {
+		counter.addRequest(requestNames.next(), 10, 5, 100, false, 1000);
+	}
+
+	/**
+	 * Ajout d'une requête dans 4 threads en même temps.
+	 * @param requestNames RequestNames
+	 */
+	@Benchmark
+	@Threads(4)
+	public void addRequestContended(RequestNames requestNames) {
+		counter.addRequest(requestNames.next(), 10, 5, 100, false, 1000);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.bull.javamelody.BenchmarkUtils;
+
+/**
+ * Benchmark de l'écriture et de la lecture d'un compteur dans son fichier par CounterStorage.
+ * @author Emeric Vernat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CounterStorageBenchmark {
+	@Param({ "100", "10000" })
+	private int requestsCount;
+
+	private Counter counter;
+	private File file;
+
+	/**
+	 * Création du compteur et de son fichier.
+	 * @throws IOException e
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		BenchmarkUtils.initialize();
+		counter = createCounter(requestsCount);
+		file = File.createTempFile("javamelody-benchmark", ".ser.gz");
+		CounterStorage.writeToFile(counter, file);
+	}
+
+	static Counter createCounter(int requestsCount) {
+		final Counter counter = new Counter(Counter.HTTP_COUNTER_NAME, "dbweb.png");
+		counter.setApplication("benchmark");
+		for (int i = 0; i < requestsCount; i++) {
+			counter.addRequest("request " + i, i % 100, 1, 10, false, 1000);
+		}
+		return counter;
+	}
+
+	/**
+	 * Suppression du fichier.
+	 */
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	/**
+	 * Écriture.
+	 * @return Taille sérialisée
+	 * @throws IOException e
+	 */
+	@Benchmark
+	public int writeToFile() throws IOException {
+		return CounterStorage.writeToFile(counter, file);
+	}
+
+	/**
+	 * Lecture.
+	 * @return Counter
+	 * @throws IOException e
+	 */
+	@Benchmark
+	public Counter readFromFile() throws IOException {
+		return CounterStorage.readFromFile(file);
+	}
+}
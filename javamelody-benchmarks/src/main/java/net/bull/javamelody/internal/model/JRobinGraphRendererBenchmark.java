@@ -0,0 +1,117 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.bull.javamelody.BenchmarkUtils;
+
+/**
+ * Benchmark de JRobinGraphRenderer avec les courbes d'un rapport pdf mensuel
+ * (32 petites et 32 grandes courbes), selon le nombre de threads.
+ * @author Emeric Vernat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JRobinGraphRendererBenchmark {
+	// nombre de courbes d'un rapport pdf sur un serveur de collecte, à peu près
+	private static final int GRAPHS_COUNT = 32;
+	private static final long TIMEOUT_MILLIS = 60 * 1000;
+
+	@Param({ "1", "4", "8" })
+	private int threadsCount;
+
+	private Timer timer;
+	private List<JRobin> jrobins;
+	private ExecutorService executorService;
+	private Range range;
+
+	/**
+	 * Création des courbes.
+	 * @throws IOException e
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		BenchmarkUtils.initialize();
+		timer = new Timer("javamelody benchmark", true);
+		JRobin.initBackendFactory(timer);
+		jrobins = new ArrayList<JRobin>();
+		for (int i = 0; i < GRAPHS_COUNT; i++) {
+			final JRobin jrobin = JRobin.createInstance("benchmark", "graph" + i, "request " + i);
+			jrobin.addValue(i);
+			jrobins.add(jrobin);
+		}
+		if (threadsCount > 1) {
+			executorService = Executors.newFixedThreadPool(threadsCount);
+		}
+		range = Period.MOIS.getRange();
+	}
+
+	/**
+	 * Suppression des courbes.
+	 */
+	@TearDown
+	public void tearDown() {
+		if (executorService != null) {
+			executorService.shutdown();
+		}
+		for (final JRobin jrobin : jrobins) {
+			jrobin.deleteFile();
+		}
+		JRobin.stop();
+		timer.cancel();
+	}
+
+	/**
+	 * Petites et grandes courbes d'un rapport pdf.
+	 * @return Nombre de courbes
+	 * @throws IOException e
+	 */
+	@Benchmark
+	public int graphs() throws IOException {
+		final JRobinGraphRenderer graphRenderer = new JRobinGraphRenderer(executorService,
+				TIMEOUT_MILLIS);
+		final Map<String, byte[]> smallImages = graphRenderer.graphs(jrobins, range, 200, 50);
+		final Map<String, byte[]> largeImages = graphRenderer.graphs(jrobins, range, 960, 370);
+		return smallImages.size() + largeImages.size();
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark de la normalisation des requêtes sql par SqlNormalizer,
+ * comparée à un sql-transform-pattern appliqué par Matcher.replaceAll comme dans Counter,
+ * sur un corpus de requêtes réelles (sql-corpus.txt).<br/>
+ * Rq : l'expression régulière remplace seulement les littéraux, sans réduire les listes de in
+ * ou de values, ce que fait en plus SqlNormalizer.
+ * @author Emeric Vernat
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlNormalizerBenchmark {
+	private static final Pattern TRANSFORM_PATTERN = Pattern.compile(
+			"'[^']*'|(?<![\\w.])-?\\d+(\\.\\d+)?", Pattern.MULTILINE | Pattern.DOTALL);
+
+	private String[] queries;
+	private int index;
+
+	/**
+	 * Lecture du corpus.
+	 * @throws IOException e
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		final List<String> lines = new ArrayList<String>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				SqlNormalizerBenchmark.class.getResourceAsStream("sql-corpus.txt"), "UTF-8"));
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				if (!line.isEmpty()) {
+					lines.add(line);
+				}
+				line = reader.readLine();
+			}
+		} finally {
+			reader.close();
+		}
+		queries = lines.toArray(new String[lines.size()]);
+	}
+
+	private String nextQuery() {
+		index = (index + 1) % queries.length;
+		return queries[index];
+	}
+
+	/**
+	 * Référence : sql-transform-pattern par expression régulière.
+	 * @return String
+	 */
+	@Benchmark
+	public String regex() {
+		return TRANSFORM_PATTERN.matcher(nextQuery()).replaceAll("\\$");
+	}
+
+	/**
+	 * Normalisation sans le cache, comme pour des requêtes construites par concaténation.
+	 * @return String
+	 */
+	@Benchmark
+	public String normalizer() {
+		return SqlNormalizer.normalizeWithoutCache(nextQuery());
+	}
+
+	/**
+	 * Normalisation avec le cache, comme pour la même instance de String à chaque prepareStatement.
+	 * @return String
+	 */
+	@Benchmark
+	public String normalizerCached() {
+		return SqlNormalizer.normalize(nextQuery());
+	}
+}
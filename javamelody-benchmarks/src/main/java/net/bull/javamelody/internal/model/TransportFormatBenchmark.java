@@ -0,0 +1,91 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.bull.javamelody.BenchmarkUtils;
+
+/**
+ * Benchmark de la sérialisation d'un compteur par TransportFormat,
+ * comme entre un serveur de collecte et une application monitorée.
+ * @author Emeric Vernat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportFormatBenchmark {
+	@Param({ "SERIALIZED", "XML" })
+	private TransportFormat transportFormat;
+
+	private Counter counter;
+	private byte[] serializedCounter;
+
+	/**
+	 * Création du compteur sérialisé.
+	 * @throws IOException e
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		BenchmarkUtils.initialize();
+		counter = CounterStorageBenchmark.createCounter(1000);
+		serializedCounter = write();
+	}
+
+	/**
+	 * Sérialisation.
+	 * @return Données
+	 * @throws IOException e
+	 */
+	@Benchmark
+	public byte[] write() throws IOException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		transportFormat.writeSerializableTo(counter, output);
+		return output.toByteArray();
+	}
+
+	/**
+	 * Désérialisation.
+	 * @return Counter
+	 * @throws IOException e
+	 * @throws ClassNotFoundException e
+	 */
+	@Benchmark
+	public Serializable read() throws IOException, ClassNotFoundException {
+		return transportFormat.readSerializableFrom(new ByteArrayInputStream(serializedCounter));
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.web;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.bull.javamelody.BenchmarkUtils;
+import net.bull.javamelody.internal.web.HtmlInjectorResponseStream.HtmlToInject;
+
+/**
+ * Benchmark de HtmlInjectorResponseStream, qui recherche &lt;/body&gt; dans les réponses
+ * pour y injecter le script de RUM : réponses de 1 Mo écrites par blocs de 8 Ko
+ * avec &lt;/body&gt; à la fin, ou 8 Ko écrits octet par octet.
+ * @author Emeric Vernat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlInjectorBenchmark {
+	private static final int SIZE = 1024 * 1024;
+	private static final int CHUNK_SIZE = 8 * 1024;
+	private static final byte[] END = "</body></html>".getBytes();
+
+	@Param({ "text/html", "application/json" })
+	private String contentType;
+
+	private byte[] chunk;
+	private HttpServletResponse response;
+	private CountingServletOutputStream output;
+
+	private static class CountingServletOutputStream extends ServletOutputStream {
+		private long count;
+
+		CountingServletOutputStream() {
+			super();
+		}
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] bytes, int off, int len) {
+			count += len;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			// nothing
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		long getCount() {
+			return count;
+		}
+	}
+
+	/**
+	 * Création de la réponse.
+	 */
+	@Setup
+	public void setUp() {
+		BenchmarkUtils.initialize();
+		chunk = new byte[CHUNK_SIZE];
+		// que des débuts possibles de beforeTag, le pire cas pour la recherche
+		Arrays.fill(chunk, (byte) '<');
+		output = new CountingServletOutputStream();
+		final Map<String, Object> responseValues = new HashMap<String, Object>();
+		responseValues.put("getOutputStream", output);
+		responseValues.put("getCharacterEncoding", "UTF-8");
+		responseValues.put("getContentType", contentType);
+		response = BenchmarkUtils.stub(HttpServletResponse.class, responseValues);
+	}
+
+	private HtmlInjectorResponseStream createStream() throws IOException {
+		return new HtmlInjectorResponseStream(response, new HtmlToInject() {
+			@Override
+			public String getContent() {
+				return "<script>rum</script>";
+			}
+
+			@Override
+			public String getBeforeTag() {
+				return "</body>";
+			}
+		});
+	}
+
+	/**
+	 * Réponse écrite par blocs, à travers CounterResponseStream comme dans MonitoringFilter.
+	 * @return Nombre d'octets écrits
+	 * @throws IOException e
+	 */
+	@Benchmark
+	public long writeChunks() throws IOException {
+		final CounterResponseStream counterStream = new CounterResponseStream(createStream());
+		for (int i = 0; i < SIZE / CHUNK_SIZE; i++) {
+			counterStream.write(chunk);
+		}
+		counterStream.write(END);
+		counterStream.close();
+		return output.getCount();
+	}
+
+	/**
+	 * Réponse écrite octet par octet.
+	 * @return Nombre d'octets écrits
+	 * @throws IOException e
+	 */
+	@Benchmark
+	public long writeBytes() throws IOException {
+		final HtmlInjectorResponseStream stream = createStream();
+		for (int i = 0; i < CHUNK_SIZE; i++) {
+			stream.write('<');
+		}
+		stream.write(END);
+		stream.close();
+		return output.getCount();
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.web;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Timer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.bull.javamelody.BenchmarkUtils;
+import net.bull.javamelody.internal.model.Collector;
+import net.bull.javamelody.internal.model.Counter;
+import net.bull.javamelody.internal.model.JRobin;
+import net.bull.javamelody.internal.model.JavaInformations;
+
+/**
+ * Benchmark de la sortie de PrometheusController, appelée à chaque scrape de Prometheus.
+ * @author Emeric Vernat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrometheusControllerBenchmark {
+	private Timer timer;
+	private Collector collector;
+	private List<JavaInformations> javaInformationsList;
+
+	/**
+	 * Création du collector avec des requêtes http et sql.
+	 * @throws IOException e
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		BenchmarkUtils.initialize();
+		timer = new Timer("javamelody benchmark", true);
+		JRobin.initBackendFactory(timer);
+		final Counter httpCounter = new Counter(Counter.HTTP_COUNTER_NAME, "dbweb.png");
+		final Counter sqlCounter = new Counter(Counter.SQL_COUNTER_NAME, "db.png");
+		for (int i = 0; i < 100; i++) {
+			httpCounter.addRequest("request " + i, i, 1, 10, false, 1000);
+			sqlCounter.addRequest("select " + i, i, -1, -1, false, -1);
+		}
+		collector = new Collector("benchmark", Arrays.asList(httpCounter, sqlCounter));
+		javaInformationsList = Collections.singletonList(new JavaInformations(null, true));
+		collector.collectWithoutErrors(javaInformationsList);
+	}
+
+	/**
+	 * Arrêt du collector.
+	 */
+	@TearDown
+	public void tearDown() {
+		collector.stop();
+		JRobin.stop();
+		timer.cancel();
+	}
+
+	/**
+	 * Rapport Prometheus.
+	 * @return Texte
+	 * @throws IOException e
+	 */
+	@Benchmark
+	public String report() throws IOException {
+		final StringWriter writer = new StringWriter();
+		final PrintWriter out = new PrintWriter(writer);
+		new PrometheusController(javaInformationsList, collector, out).report(false);
+		out.flush();
+		return writer.toString();
+	}
+}
@@ -20,6 +20,7 @@ package net.bull.javamelody;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StreamCorruptedException;
+import java.net.URL;
 import java.util.Arrays;
 
 import javax.servlet.ServletConfig;
@@ -94,6 +95,13 @@ public class CollectorServlet extends HttpServlet {
 				CollectorController.writeOnlyAddApplication(resp);
 				return;
 			}
+			final URL shardUrl = collectorServer.getShardUrl(application);
+			if (shardUrl != null
+					&& req.getHeader(CollectorController.SHARD_PROXY_HEADER) == null) {
+				// l'application est collectée par un autre serveur de collecte
+				collectorController.doProxyToShard(req, resp, application, shardUrl);
+				return;
+			}
 			if (!collectorServer.isApplicationDataAvailable(application)
 					&& HttpParameter.ACTION.getParameterFrom(req) == null) {
 				CollectorController.writeDataUnavailableForApplication(application, resp);
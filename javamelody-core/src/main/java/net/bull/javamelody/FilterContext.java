@@ -42,11 +42,14 @@ import net.bull.javamelody.internal.common.Parameters;
 import net.bull.javamelody.internal.model.Collector;
 import net.bull.javamelody.internal.model.Counter;
 import net.bull.javamelody.internal.model.JRobin;
+import net.bull.javamelody.internal.model.JfrEvents;
 import net.bull.javamelody.internal.model.JobInformations;
 import net.bull.javamelody.internal.model.MBeans;
+import net.bull.javamelody.internal.model.MBeansCache;
 import net.bull.javamelody.internal.model.MavenArtifact;
 import net.bull.javamelody.internal.model.Period;
 import net.bull.javamelody.internal.model.SamplingProfiler;
+import net.bull.javamelody.internal.model.ThreadInformations;
 import net.bull.javamelody.internal.model.UpdateChecker;
 import net.bull.javamelody.internal.web.HttpCookieManager;
 import net.bull.javamelody.internal.web.MailReport;
@@ -128,6 +131,13 @@ class FilterContext {
 			}
 
 			this.samplingProfiler = initSamplingProfiler();
+			if (Parameter.THREAD_CONTENTION_ENABLED.getValueAsBoolean()) {
+				// temps bloqués et en attente par requête
+				ThreadInformations.initThreadContentionMonitoring();
+			}
+			if (Parameter.JFR_ENABLED.getValueAsBoolean()) {
+				JfrEvents.start();
+			}
 
 			final List<Counter> counters = initCounters();
 			final String application = Parameters.getCurrentApplication();
@@ -165,6 +175,7 @@ class FilterContext {
 	private static List<Counter> initCounters() {
 		// liaison des compteurs : les contextes par thread du sqlCounter ont pour parent le httpCounter
 		final Counter sqlCounter = JdbcWrapper.SINGLETON.getSqlCounter();
+		final Counter dataSourceCounter = JdbcWrapper.SINGLETON.getDataSourceCounter();
 		final Counter httpCounter = new Counter(Counter.HTTP_COUNTER_NAME, "dbweb.png", sqlCounter);
 		final Counter errorCounter = new Counter(Counter.ERROR_COUNTER_NAME, "error.png");
 		errorCounter.setMaxRequestsCount(250);
@@ -181,13 +192,13 @@ class FilterContext {
 		final List<Counter> counters;
 		if (JobInformations.QUARTZ_AVAILABLE) {
 			final Counter jobCounter = JobGlobalListener.getJobCounter();
-			counters = Arrays.asList(httpCounter, sqlCounter, jpaCounter, ejbCounter, springCounter,
-					guiceCounter, servicesCounter, strutsCounter, jsfCounter, jspCounter,
-					errorCounter, logCounter, jobCounter);
+			counters = Arrays.asList(httpCounter, sqlCounter, dataSourceCounter, jpaCounter,
+					ejbCounter, springCounter, guiceCounter, servicesCounter, strutsCounter,
+					jsfCounter, jspCounter, errorCounter, logCounter, jobCounter);
 		} else {
-			counters = Arrays.asList(httpCounter, sqlCounter, jpaCounter, ejbCounter, springCounter,
-					guiceCounter, servicesCounter, strutsCounter, jsfCounter, jspCounter,
-					errorCounter, logCounter);
+			counters = Arrays.asList(httpCounter, sqlCounter, dataSourceCounter, jpaCounter,
+					ejbCounter, springCounter, guiceCounter, servicesCounter, strutsCounter,
+					jsfCounter, jspCounter, errorCounter, logCounter);
 		}
 
 		setRequestTransformPatterns(counters);
@@ -196,6 +207,7 @@ class FilterContext {
 			// par défaut, les compteurs http, sql, error et log (et ceux qui sont utilisés) sont affichés
 			httpCounter.setDisplayed(true);
 			sqlCounter.setDisplayed(!Parameters.isNoDatabase());
+			dataSourceCounter.setDisplayed(dataSourceCounter.isUsed());
 			errorCounter.setDisplayed(true);
 			logCounter.setDisplayed(true);
 			jpaCounter.setDisplayed(jpaCounter.isUsed());
@@ -224,6 +236,13 @@ class FilterContext {
 				counter.setRequestTransformPattern(pattern);
 			}
 		}
+		if (Parameter.SQL_NORMALIZATION_ENABLED.getValueAsBoolean()) {
+			for (final Counter counter : counters) {
+				if (Counter.SQL_COUNTER_NAME.equals(counter.getName())) {
+					counter.setSqlNormalizationEnabled(true);
+				}
+			}
+		}
 	}
 
 	private static void setDisplayedCounters(List<Counter> counters, String displayedCounters) {
@@ -411,6 +430,7 @@ class FilterContext {
 	/**
 	 * Registers CounterRequestMXBean beans for each of the enabled counters.
 	 * The beans are registered under "net.bull.javamelody:type=CounterRequest,context=<webapp>,name=<counter name>" names.
+	 * And registers the SelfMonitoringMXBean bean under "net.bull.javamelody:type=SelfMonitoring,context=<webapp>".
 	 * @author Alexey Pushkin
 	 */
 	private void initJmxExpose() {
@@ -434,6 +454,12 @@ class FilterContext {
 					jmxNames.add(name);
 				}
 			}
+			final ObjectName selfMonitoringName = new ObjectName(
+					packageName + ":type=SelfMonitoring,context=" + webapp);
+			platformMBeanServer.registerMBean(
+					new SelfMonitoringMXBean.SelfMonitoringMXBeanImpl(collector),
+					selfMonitoringName);
+			jmxNames.add(selfMonitoringName);
 			LOG.debug("JMX mbeans registered");
 		} catch (final JMException e) {
 			LOG.warn("failed to register JMX mbeans", e);
@@ -484,6 +510,9 @@ class FilterContext {
 			if (samplingProfiler != null) {
 				samplingProfiler.clear();
 			}
+			JfrEvents.stop();
+			ThreadInformations.stopThreadContentionMonitoring();
+			MBeansCache.stop();
 			if (collector != null) {
 				collector.stop();
 			}
@@ -24,6 +24,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.Driver;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -44,6 +45,7 @@ import net.bull.javamelody.internal.common.LOG;
 import net.bull.javamelody.internal.common.Parameters;
 import net.bull.javamelody.internal.model.ConnectionInformations;
 import net.bull.javamelody.internal.model.Counter;
+import net.bull.javamelody.internal.model.LatencyRecorder;
 
 /**
  * Cette classe est utile pour construire des proxy de {@link DataSource}s ou de {@link Connection}s jdbc.<br>
@@ -72,8 +74,12 @@ public final class JdbcWrapper {
 
 	// Cette variable sqlCounter conserve un état qui est global au filtre et à l'application (donc thread-safe).
 	private final Counter sqlCounter;
+	// temps d'obtention, d'utilisation et de préparation par datasource, enregistrés par LatencyRecorder
+	private final Counter dataSourceCounter = new Counter(Counter.DATASOURCE_COUNTER_NAME,
+			"db.png");
 	private ServletContext servletContext;
 	private boolean connectionInformationsEnabled;
+	private boolean resultSetsEnabled;
 	private boolean jboss;
 	private boolean glassfish;
 	private boolean weblogic;
@@ -101,6 +107,9 @@ public final class JdbcWrapper {
 		// sans notre proxy pour pouvoir appeler les méthodes non standard du driver par ex.
 		private String requestName;
 		private final Statement statement;
+		// handler du dernier ResultSet, dont les lignes lues sont ajoutées au plus tard
+		// à la fermeture du Statement qui ferme aussi ce ResultSet
+		private ResultSetInvocationHandler resultSetHandler;
 
 		StatementInvocationHandler(String query, Statement statement) {
 			super();
@@ -139,7 +148,7 @@ public final class JdbcWrapper {
 				// si on n'a pas trouvé la requête, on prend "null"
 				requestName = String.valueOf(requestName);
 
-				return doExecute(requestName, statement, method, args);
+				return doExecute(requestName, statement, method, args, this);
 			} else if ("addBatch".equals(methodName) && isFirstArgAString(args)) {
 				// Bien que déconseillée la méthode est addBatch(String),
 				// la requête sql est alors le premier argument
@@ -152,31 +161,127 @@ public final class JdbcWrapper {
 				// sont appelées (et pas executeBatch()) alors la requête conservée est
 				// faussement celle du batch mais l'application cloche grave.
 				requestName = (String) args[0];
+			} else if (resultSetsEnabled && "getResultSet".equals(methodName)) {
+				// ResultSet de la requête exécutée par execute(String) ou execute()
+				final Object result = method.invoke(statement, args);
+				if (result instanceof ResultSet) {
+					return createResultSetProxy(String.valueOf(requestName), (ResultSet) result);
+				}
+				return result;
+			} else if ("close" == methodName || "getMoreResults" == methodName // NOPMD
+					&& (args == null || args.length == 0
+							|| Integer.valueOf(Statement.CLOSE_CURRENT_RESULT).equals(args[0]))) {
+				// == for perf (strings interned: == is ok)
+				// le ResultSet courant est fermé avec le Statement ou par getMoreResults,
+				// même si close n'est pas appelée sur le ResultSet
+				addResultSetRows();
 			}
 
 			// ce n'est pas une méthode executeXxx du Statement
 			return method.invoke(statement, args);
 		}
 
+		ResultSet createResultSetProxy(String name, ResultSet resultSet) {
+			// le ResultSet précédent de ce Statement est fermé par le driver
+			addResultSetRows();
+			// le constructeur de la classe de proxy est en cache par classe de ResultSet du driver,
+			// donc chaque proxy ne coûte que son instanciation et celle de ses handlers
+			resultSetHandler = new ResultSetInvocationHandler(name, resultSet);
+			return createProxy(resultSet, resultSetHandler);
+		}
+
+		private void addResultSetRows() {
+			if (resultSetHandler != null) {
+				resultSetHandler.addResultSetRows();
+				resultSetHandler = null;
+			}
+		}
+
 		private boolean isFirstArgAString(Object[] args) {
 			return args != null && args.length > 0 && args[0] instanceof String;
 		}
 	}
 
+	/**
+	 * Handler de proxy d'un {@link ResultSet} jdbc, pour compter les lignes lues
+	 * et le temps des appels à next(), c'est-à-dire les allers-retours vers la base de données
+	 * pour lire les lignes suivantes.
+	 * Ces valeurs sont ajoutées à la requête sql et à la requête http parente en cours
+	 * à la fin de la lecture ou à la fermeture du ResultSet ou de son Statement.
+	 */
+	private class ResultSetInvocationHandler implements InvocationHandler {
+		private final String requestName;
+		private final ResultSet resultSet;
+		// un ResultSet n'est pas utilisé par plusieurs threads
+		private long rows;
+		private long fetchNanos;
+		private boolean added;
+
+		ResultSetInvocationHandler(String requestName, ResultSet resultSet) {
+			super();
+			assert requestName != null;
+			assert resultSet != null;
+			this.requestName = requestName;
+			this.resultSet = resultSet;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			// performance : on évite method.invoke pour equals & hashCode
+			final String methodName = method.getName();
+			if (isEqualsMethod(methodName, args)) {
+				return resultSet.equals(args[0]);
+			} else if (isHashCodeMethod(methodName, args)) {
+				return resultSet.hashCode();
+			} else if ("next" == methodName) { // NOPMD
+				// == for perf (strings interned: == is ok)
+				final long start = System.nanoTime();
+				final Object result = method.invoke(resultSet, args);
+				fetchNanos += System.nanoTime() - start;
+				if (Boolean.TRUE.equals(result)) {
+					rows++;
+				} else {
+					// fin de la lecture, même si close n'est pas appelée
+					addResultSetRows();
+				}
+				return result;
+			} else if ("close" == methodName) { // NOPMD
+				addResultSetRows();
+			}
+			return method.invoke(resultSet, args);
+		}
+
+		void addResultSetRows() {
+			if (!added) {
+				added = true;
+				sqlCounter.addResultSetRows(requestName, rows, fetchNanos / 1000);
+			}
+		}
+	}
+
 	/**
 	 * Handler de proxy d'une {@link Connection} jdbc.
 	 */
 	private class ConnectionInvocationHandler implements InvocationHandler {
 		private final Connection connection;
+		// null si la connexion ne vient pas d'une datasource (driver jdbc par exemple)
+		private final LatencyRecorder holdRecorder;
+		private final LatencyRecorder prepareRecorder;
+		private long openingTime;
 		private boolean alreadyClosed;
 
-		ConnectionInvocationHandler(Connection connection) {
+		ConnectionInvocationHandler(Connection connection, LatencyRecorder holdRecorder,
+				LatencyRecorder prepareRecorder) {
 			super();
 			assert connection != null;
 			this.connection = connection;
+			this.holdRecorder = holdRecorder;
+			this.prepareRecorder = prepareRecorder;
 		}
 
 		void init() {
+			openingTime = System.currentTimeMillis();
 			// on limite la taille pour éviter une éventuelle saturation mémoire
 			if (isConnectionInformationsEnabled()
 					&& USED_CONNECTION_INFORMATIONS.size() < MAX_USED_CONNECTION_INFORMATIONS) {
@@ -199,10 +304,22 @@ public final class JdbcWrapper {
 				return connection.hashCode();
 			}
 			try {
+				final boolean prepare = "prepareStatement".equals(methodName)
+						|| "prepareCall".equals(methodName);
+				final long start;
+				if (prepare && prepareRecorder != null) {
+					start = System.currentTimeMillis();
+				} else {
+					start = -1;
+				}
 				Object result = method.invoke(connection, args);
+				if (start >= 0) {
+					// temps de préparation par le driver ou par le cache de statements du pool
+					prepareRecorder.record(Math.max(System.currentTimeMillis() - start, 0), false);
+				}
 				if (result instanceof Statement) {
 					final String requestName;
-					if ("prepareStatement".equals(methodName) || "prepareCall".equals(methodName)) {
+					if (prepare) {
 						// la méthode est du type prepareStatement(String) ou prepareCall(String),
 						// alors la requête sql est le premier argument
 						requestName = (String) args[0];
@@ -218,6 +335,11 @@ public final class JdbcWrapper {
 					USED_CONNECTION_INFORMATIONS
 							.remove(ConnectionInformations.getUniqueIdOfConnection(connection));
 					alreadyClosed = true;
+					if (holdRecorder != null) {
+						// durée d'utilisation de la connexion, de son obtention à sa fermeture
+						holdRecorder.record(Math.max(System.currentTimeMillis() - openingTime, 0),
+								false);
+					}
 				}
 			}
 		}
@@ -315,6 +437,7 @@ public final class JdbcWrapper {
 		this.servletContext = null;
 		connectionInformationsEnabled = Parameters.isSystemActionsEnabled()
 				&& !Parameters.isNoDatabase();
+		resultSetsEnabled = Parameter.SQL_RESULT_SETS_ENABLED.getValueAsBoolean();
 	}
 
 	void initServletContext(ServletContext context) {
@@ -328,6 +451,7 @@ public final class JdbcWrapper {
 		weblogic = serverInfo.contains("WebLogic");
 		connectionInformationsEnabled = Parameters.isSystemActionsEnabled()
 				&& !Parameters.isNoDatabase();
+		resultSetsEnabled = Parameter.SQL_RESULT_SETS_ENABLED.getValueAsBoolean();
 	}
 
 	public static int getUsedConnectionCount() {
@@ -369,6 +493,10 @@ public final class JdbcWrapper {
 		return sqlCounter;
 	}
 
+	public Counter getDataSourceCounter() {
+		return dataSourceCounter;
+	}
+
 	boolean isConnectionInformationsEnabled() {
 		return connectionInformationsEnabled;
 	}
@@ -394,7 +522,8 @@ public final class JdbcWrapper {
 		JdbcWrapperHelper.registerSpringDataSource(name, dataSource);
 	}
 
-	Object doExecute(String requestName, Statement statement, Method method, Object[] args)
+	Object doExecute(String requestName, Statement statement, Method method, Object[] args,
+			StatementInvocationHandler statementInvocationHandler)
 			throws IllegalAccessException, InvocationTargetException {
 		assert requestName != null;
 		assert statement != null;
@@ -421,6 +550,10 @@ public final class JdbcWrapper {
 
 			final Object result = method.invoke(statement, args);
 			systemError = false;
+			if (resultSetsEnabled && result instanceof ResultSet) {
+				return statementInvocationHandler.createResultSetProxy(requestName,
+						(ResultSet) result);
+			}
 			return result;
 		} catch (final InvocationTargetException e) {
 			if (e.getCause() instanceof SQLException) {
@@ -781,6 +914,20 @@ public final class JdbcWrapper {
 	public DataSource createDataSourceProxy(String name, final DataSource dataSource) {
 		assert dataSource != null;
 		JdbcWrapperHelper.pullDataSourceProperties(name, dataSource);
+		final String dataSourceName;
+		if (name != null) {
+			dataSourceName = name;
+		} else {
+			dataSourceName = "dataSource";
+		}
+		// recorders recherchés une seule fois par datasource et non à chaque connexion
+		final LatencyRecorder getConnectionRecorder = LatencyRecorder
+				.getInstance(dataSourceName + " getConnection");
+		final LatencyRecorder holdRecorder = LatencyRecorder
+				.getInstance(dataSourceName + " connection held");
+		final LatencyRecorder prepareRecorder = LatencyRecorder
+				.getInstance(dataSourceName + " prepareStatement");
+		dataSourceCounter.setUsed(true);
 		final InvocationHandler invocationHandler = new AbstractInvocationHandler<DataSource>(
 				dataSource) {
 			private static final long serialVersionUID = 1L;
@@ -788,11 +935,24 @@ public final class JdbcWrapper {
 			/** {@inheritDoc} */
 			@Override
 			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-				Object result = method.invoke(dataSource, args);
-				if (result instanceof Connection) {
-					result = createConnectionProxy((Connection) result);
+				if (!"getConnection".equals(method.getName())) {
+					return method.invoke(dataSource, args);
+				}
+				// attente pour obtenir une connexion du pool, y compris en cas d'échec
+				// (timeout du pool saturé par exemple) qui est alors une erreur système
+				final long start = System.currentTimeMillis();
+				boolean systemError = true;
+				try {
+					final Connection connection = (Connection) method.invoke(dataSource, args);
+					systemError = false;
+					if (connection == null) {
+						return null;
+					}
+					return createConnectionProxy(connection, holdRecorder, prepareRecorder);
+				} finally {
+					getConnectionRecorder.record(Math.max(System.currentTimeMillis() - start, 0),
+							systemError);
 				}
-				return result;
 			}
 		};
 		return createProxy(dataSource, invocationHandler);
@@ -813,6 +973,11 @@ public final class JdbcWrapper {
 	 * @return Connection
 	 */
 	public Connection createConnectionProxy(Connection connection) {
+		return createConnectionProxy(connection, null, null);
+	}
+
+	private Connection createConnectionProxy(Connection connection, LatencyRecorder holdRecorder,
+			LatencyRecorder prepareRecorder) {
 		assert connection != null;
 		// même si le counter sql n'est pas affiché on crée un proxy de la connexion
 		// pour avoir les graphiques USED_CONNECTION_COUNT et ACTIVE_CONNECTION_COUNT (cf issue 160)
@@ -820,7 +985,7 @@ public final class JdbcWrapper {
 			return connection;
 		}
 		final ConnectionInvocationHandler invocationHandler = new ConnectionInvocationHandler(
-				connection);
+				connection, holdRecorder, prepareRecorder);
 		final Connection result = createProxy(connection, invocationHandler);
 		if (result != connection) {
 			invocationHandler.init();
@@ -17,9 +17,6 @@
  */
 package net.bull.javamelody;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
-
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -28,6 +25,7 @@ import org.quartz.SchedulerException;
 
 import net.bull.javamelody.internal.common.LOG;
 import net.bull.javamelody.internal.model.Counter;
+import net.bull.javamelody.internal.model.CounterError;
 import net.bull.javamelody.internal.model.QuartzAdapter;
 
 /**
@@ -86,9 +84,7 @@ final class JobGlobalListener implements JobListener {
 		if (jobException == null) {
 			stackTrace = null;
 		} else {
-			final StringWriter stackTraceWriter = new StringWriter(200);
-			jobException.printStackTrace(new PrintWriter(stackTraceWriter));
-			stackTrace = stackTraceWriter.toString();
+			stackTrace = CounterError.getStackTrace(jobException);
 		}
 		// on enregistre la requête dans les statistiques
 		JOB_COUNTER.addRequestForCurrentContext(stackTrace);
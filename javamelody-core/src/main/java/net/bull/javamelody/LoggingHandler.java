@@ -17,8 +17,6 @@
  */
 package net.bull.javamelody;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.List;
@@ -29,6 +27,7 @@ import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
 import net.bull.javamelody.internal.model.Counter;
+import net.bull.javamelody.internal.model.CounterError;
 
 /**
  * Handler pour les logs de java.util.logging, configuré automatiquement par {@link MonitoringFilter}.
@@ -69,9 +68,7 @@ public class LoggingHandler extends Handler {
 		if (throwable == null) {
 			addErrorLogToCounter(message, (String) null);
 		} else {
-			final StringWriter stackTrace = new StringWriter(200);
-			throwable.printStackTrace(new PrintWriter(stackTrace));
-			addErrorLogToCounter(message, stackTrace.toString());
+			addErrorLogToCounter(message, CounterError.getStackTrace(throwable));
 		}
 	}
 
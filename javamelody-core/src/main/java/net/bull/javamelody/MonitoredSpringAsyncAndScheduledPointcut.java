@@ -28,6 +28,8 @@ import org.springframework.scheduling.annotation.Scheduled;
 
 /**
  * Pointcut that identifies methods/classes with the {@link Async}, {@link Scheduled} and Schedules annotation.
+ * To attach the sql requests of {@link Async} methods to the calling request,
+ * the executor of {@link Async} methods can be configured with a {@link MonitoringSpringTaskDecorator}.
  *
  * @author Emeric Vernat
  */
@@ -29,6 +29,10 @@ import javax.interceptor.Interceptor;
 public class MonitoringAsynchronousCdiInterceptor extends MonitoringInterceptor {
 	private static final long serialVersionUID = 1L;
 
+	// note: the container calls this interceptor in the asynchronous thread, without the context
+	// of the calling request; to attach sql requests to the calling request,
+	// tasks of a ManagedExecutorService can be wrapped with MonitoringExecutors.wrap(...)
+
 	// note: it would be cool to monitor methods having @Schedule or @Schedules like @Asynchronous,
 	// without having to add @Monitored on the method, but we can't
 }
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.bull.javamelody.internal.model.Counter;
+import net.bull.javamelody.internal.model.CounterRequestContext;
+
+/**
+ * Propagation du contexte de la requête courante (http, spring, ejb...) vers les tâches
+ * exécutées dans d'autres threads, pour que les requêtes sql et les appels de services
+ * de ces tâches soient rattachés à la requête parente.
+ * Il s'utilise comme ceci :
+ * 		{@code executorService = MonitoringExecutors.wrap(executorService);}
+ * ou avec CompletableFuture :
+ * 		{@code CompletableFuture.supplyAsync(supplier, MonitoringExecutors.wrap(executor));}
+ * @author Emeric Vernat
+ */
+public final class MonitoringExecutors {
+	// tous les compteurs parents (http, spring, ejb...) partagent le contexte du compteur sql
+	private static final Counter SQL_COUNTER = JdbcWrapper.SINGLETON.getSqlCounter();
+
+	private MonitoringExecutors() {
+		super();
+	}
+
+	/**
+	 * Tâche exécutée avec le contexte propagé depuis le thread qui l'a soumise.
+	 */
+	private static class ContextRunnable implements Runnable {
+		private final Runnable runnable;
+		private final CounterRequestContext context;
+
+		ContextRunnable(Runnable runnable, CounterRequestContext context) {
+			super();
+			this.runnable = runnable;
+			this.context = context;
+		}
+
+		@Override
+		public void run() {
+			final CounterRequestContext previousContext = SQL_COUNTER
+					.bindPropagatedContext(context);
+			try {
+				runnable.run();
+			} finally {
+				SQL_COUNTER.unbindPropagatedContext(previousContext);
+			}
+		}
+	}
+
+	/**
+	 * Tâche exécutée avec le contexte propagé depuis le thread qui l'a soumise.
+	 * @param <T> Type du résultat
+	 */
+	private static class ContextCallable<T> implements Callable<T> {
+		private final Callable<T> callable;
+		private final CounterRequestContext context;
+
+		ContextCallable(Callable<T> callable, CounterRequestContext context) {
+			super();
+			this.callable = callable;
+			this.context = context;
+		}
+
+		@Override
+		public T call() throws Exception { // NOPMD
+			final CounterRequestContext previousContext = SQL_COUNTER
+					.bindPropagatedContext(context);
+			try {
+				return callable.call();
+			} finally {
+				SQL_COUNTER.unbindPropagatedContext(previousContext);
+			}
+		}
+	}
+
+	/**
+	 * Executor qui propage le contexte de la requête courante aux tâches soumises.
+	 */
+	private static class ContextExecutor implements Executor {
+		private final Executor executor;
+
+		ContextExecutor(Executor executor) {
+			super();
+			this.executor = executor;
+		}
+
+		@Override
+		public void execute(Runnable command) {
+			executor.execute(wrap(command));
+		}
+	}
+
+	/**
+	 * ExecutorService qui propage le contexte de la requête courante aux tâches soumises.
+	 */
+	private static class ContextExecutorService extends ContextExecutor
+			implements ExecutorService {
+		private final ExecutorService executorService;
+
+		ContextExecutorService(ExecutorService executorService) {
+			super(executorService);
+			this.executorService = executorService;
+		}
+
+		@Override
+		public void shutdown() {
+			executorService.shutdown();
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			return executorService.shutdownNow();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return executorService.isShutdown();
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return executorService.isTerminated();
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			return executorService.awaitTermination(timeout, unit);
+		}
+
+		@Override
+		public <T> Future<T> submit(Callable<T> task) {
+			return executorService.submit(wrap(task));
+		}
+
+		@Override
+		public <T> Future<T> submit(Runnable task, T result) {
+			return executorService.submit(wrap(task), result);
+		}
+
+		@Override
+		public Future<?> submit(Runnable task) {
+			return executorService.submit(wrap(task));
+		}
+
+		@Override
+		public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks)
+				throws InterruptedException {
+			return executorService.invokeAll(wrap(tasks));
+		}
+
+		@Override
+		public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks,
+				long timeout, TimeUnit unit) throws InterruptedException {
+			return executorService.invokeAll(wrap(tasks), timeout, unit);
+		}
+
+		@Override
+		public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+				throws InterruptedException, ExecutionException {
+			return executorService.invokeAny(wrap(tasks));
+		}
+
+		@Override
+		public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout,
+				TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			return executorService.invokeAny(wrap(tasks), timeout, unit);
+		}
+	}
+
+	/**
+	 * Propage le contexte de la requête courante à une tâche.
+	 * @param runnable Runnable
+	 * @return Runnable exécutée avec le contexte courant, ou la même s'il n'y a pas de requête en cours
+	 */
+	public static Runnable wrap(Runnable runnable) {
+		final CounterRequestContext context = SQL_COUNTER.getCurrentContextToPropagate();
+		if (context == null || runnable instanceof ContextRunnable) {
+			return runnable;
+		}
+		return new ContextRunnable(runnable, context);
+	}
+
+	/**
+	 * Propage le contexte de la requête courante à une tâche.
+	 * @param callable Callable
+	 * @param <T> Type du résultat
+	 * @return Callable exécutée avec le contexte courant, ou la même s'il n'y a pas de requête en cours
+	 */
+	public static <T> Callable<T> wrap(Callable<T> callable) {
+		final CounterRequestContext context = SQL_COUNTER.getCurrentContextToPropagate();
+		if (context == null || callable instanceof ContextCallable) {
+			return callable;
+		}
+		return new ContextCallable<T>(callable, context);
+	}
+
+	/**
+	 * Propage le contexte de la requête courante aux tâches soumises à un executor
+	 * (y compris par CompletableFuture.*Async(..., executor) en Java 8+).
+	 * @param executor Executor
+	 * @return Executor
+	 */
+	public static Executor wrap(Executor executor) {
+		if (executor instanceof ContextExecutor) {
+			return executor;
+		}
+		if (executor instanceof ExecutorService) {
+			return new ContextExecutorService((ExecutorService) executor);
+		}
+		return new ContextExecutor(executor);
+	}
+
+	/**
+	 * Propage le contexte de la requête courante aux tâches soumises à un executorService.
+	 * @param executorService ExecutorService
+	 * @return ExecutorService
+	 */
+	public static ExecutorService wrap(ExecutorService executorService) {
+		if (executorService instanceof ContextExecutorService) {
+			return executorService;
+		}
+		return new ContextExecutorService(executorService);
+	}
+
+	private static <T> List<Callable<T>> wrap(Collection<? extends Callable<T>> tasks) {
+		final List<Callable<T>> result = new ArrayList<Callable<T>>(tasks.size());
+		for (final Callable<T> task : tasks) {
+			result.add(wrap(task));
+		}
+		return result;
+	}
+}
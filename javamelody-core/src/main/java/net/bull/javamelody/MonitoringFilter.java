@@ -18,8 +18,6 @@
 package net.bull.javamelody;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.ArrayList;
@@ -47,6 +45,7 @@ import net.bull.javamelody.internal.model.CounterError;
 import net.bull.javamelody.internal.model.CounterRequestContext;
 import net.bull.javamelody.internal.model.LabradorRetriever;
 import net.bull.javamelody.internal.model.ThreadInformations;
+import net.bull.javamelody.internal.model.UrlNormalizer;
 import net.bull.javamelody.internal.web.CounterServletResponseWrapper;
 import net.bull.javamelody.internal.web.HttpAuth;
 import net.bull.javamelody.internal.web.MonitoringController;
@@ -80,6 +79,7 @@ public class MonitoringFilter implements Filter {
 	private boolean logEnabled;
 	private boolean rumEnabled;
 	private Pattern urlExcludePattern;
+	private UrlNormalizer urlNormalizer;
 	private FilterContext filterContext;
 	private HttpAuth httpAuth;
 	private FilterConfig filterConfig;
@@ -158,6 +158,12 @@ public class MonitoringFilter implements Filter {
 			// lance une PatternSyntaxException si la syntaxe du pattern est invalide
 			urlExcludePattern = Pattern.compile(Parameter.URL_EXCLUDE_PATTERN.getValue());
 		}
+		if (Parameter.HTTP_NORMALIZATION_ENABLED.getValueAsBoolean()) {
+			urlNormalizer = new UrlNormalizer();
+			if (Parameter.HTTP_ROUTE_TEMPLATES.getValue() != null) {
+				urlNormalizer.addTemplates(Parameter.HTTP_ROUTE_TEMPLATES.getValue());
+			}
+		}
 
 		final long duration = System.currentTimeMillis() - start;
 		LOG.debug("JavaMelody filter init done in " + duration + " ms");
@@ -274,10 +280,9 @@ public class MonitoringFilter implements Filter {
 				putUserInfoInSession(httpRequest);
 				if (systemException != null) {
 					systemError = true;
-					final StringWriter stackTrace = new StringWriter(200);
-					systemException.printStackTrace(new PrintWriter(stackTrace));
 					errorCounter.addRequestForSystemError(systemException.toString(), duration,
-							cpuUsedMillis, allocatedKBytes, stackTrace.toString());
+							cpuUsedMillis, allocatedKBytes,
+							CounterError.getStackTrace(systemException));
 				} else if (wrappedResponse.getCurrentStatus() >= HttpServletResponse.SC_BAD_REQUEST
 						&& wrappedResponse
 								.getCurrentStatus() != HttpServletResponse.SC_UNAUTHORIZED) {
@@ -287,6 +292,10 @@ public class MonitoringFilter implements Filter {
 							"Error" + wrappedResponse.getCurrentStatus(), duration, cpuUsedMillis,
 							allocatedKBytes, null);
 				}
+				if (urlNormalizer != null && wrappedResponse
+						.getCurrentStatus() != HttpServletResponse.SC_NOT_FOUND) {
+					requestName = normalizeRequestName(httpRequest, requestName);
+				}
 				// prise en compte de Spring bestMatchingPattern s'il y a
 				requestName = CounterRequestContext.getHttpRequestName(httpRequest, requestName);
 				// taille du flux sortant
@@ -316,6 +325,18 @@ public class MonitoringFilter implements Filter {
 		}
 	}
 
+	private String normalizeRequestName(HttpServletRequest httpRequest, String requestName) {
+		final String bestMatchingPattern = (String) httpRequest
+				.getAttribute(CounterRequestContext.SPRING_BEST_MATCHING_PATTERN_ATTRIBUTE);
+		if (bestMatchingPattern != null) {
+			// le pattern de Spring remplacera l'url, il sert aussi de template pour les autres urls
+			urlNormalizer.addSpringTemplate(bestMatchingPattern, httpRequest.getServletPath(),
+					httpRequest.getPathInfo());
+			return requestName;
+		}
+		return urlNormalizer.normalizeRequestName(requestName);
+	}
+
 	protected CounterServletResponseWrapper createResponseWrapper(HttpServletRequest httpRequest,
 			HttpServletResponse httpResponse) {
 		HttpServletResponse httpResponse2 = httpResponse;
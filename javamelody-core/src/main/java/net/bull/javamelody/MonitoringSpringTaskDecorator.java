@@ -0,0 +1,60 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * {@link TaskDecorator} Spring (4.3+) qui propage le contexte de la requête courante
+ * aux méthodes {@code @Async}, pour que leurs requêtes sql et leurs appels de services
+ * soient rattachés à la requête parente.
+ * Il s'utilise par exemple comme ceci :
+ * 		{@code threadPoolTaskExecutor.setTaskDecorator(new MonitoringSpringTaskDecorator());}
+ * @author Emeric Vernat
+ */
+public class MonitoringSpringTaskDecorator implements TaskDecorator {
+	private final TaskDecorator delegate;
+
+	/**
+	 * Constructeur.
+	 */
+	public MonitoringSpringTaskDecorator() {
+		this(null);
+	}
+
+	/**
+	 * Constructeur.
+	 * @param delegate TaskDecorator existant à appliquer aussi (peut être null)
+	 */
+	public MonitoringSpringTaskDecorator(TaskDecorator delegate) {
+		super();
+		this.delegate = delegate;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Runnable decorate(Runnable runnable) {
+		final Runnable decorated;
+		if (delegate != null) {
+			decorated = delegate.decorate(runnable);
+		} else {
+			decorated = runnable;
+		}
+		return MonitoringExecutors.wrap(decorated);
+	}
+}
@@ -49,6 +49,26 @@ public enum Parameter {
 	 */
 	MAX_RRD_DISK_USAGE_MB("max-rrd-disk-usage-mb"),
 
+	/**
+	 * Nombre maximum de fichiers rrd gardés ouverts entre deux collectes (200 par défaut).
+	 * Au delà, les fichiers les moins récemment utilisés sont fermés.
+	 * 0 pour fermer chaque fichier dès qu'il n'est plus utilisé.
+	 */
+	RRD_MAX_OPEN_FILES("rrd-max-open-files"),
+
+	/**
+	 * Taille maximum en Mo des fichiers rrd gardés ouverts et mappés en mémoire
+	 * entre deux collectes (64 Mo par défaut).
+	 */
+	RRD_MAX_MAPPED_MB("rrd-max-mapped-mb"),
+
+	/**
+	 * Maximum of memory estimated for the requests of all the counters (0 by default: disabled,
+	 * 50 recommended). When reached, a new request is kept only if it was seen more often than
+	 * an existing request of lower value, which is evicted.
+	 */
+	MAX_REQUESTS_MEMORY_MB("max-requests-memory-mb"),
+
 	/**
 	 * Période en secondes du sampling pour trouver les hotspots (null par défaut : pas de sampling).
 	 * Une valeur de 10 est recommandée (c'est-à-dire 10 secondes) pour ne pas entraîner d'overhead,
@@ -58,6 +78,20 @@ public enum Parameter {
 	 */
 	SAMPLING_SECONDS("sampling-seconds"),
 
+	/**
+	 * Active ou non la mesure des temps bloqués et en attente des threads par la JVM,
+	 * pour les temps bloqués et en attente moyens par requête (false par défaut).
+	 * Cette mesure a un coût sur chaque entrée de moniteur contendue et sur chaque attente.
+	 */
+	THREAD_CONTENTION_ENABLED("thread-contention-enabled"),
+
+	/**
+	 * Active ou non la lecture en continu des événements de la JVM par le JDK Flight Recorder
+	 * (pauses du GC, safepoints, attentes de moniteurs et allocations par classe),
+	 * avec un jdk 14 ou plus (false par défaut).
+	 */
+	JFR_ENABLED("jfr-enabled"),
+
 	/**
 	 * Nom du répertoire de stockage (monitoring par défaut).
 	 * Si le nom du répertoire commence par '/', on considère que c'est un chemin absolu,
@@ -94,6 +128,21 @@ public enum Parameter {
 	 */
 	HTTP_TRANSFORM_PATTERN("http-transform-pattern"),
 
+	/**
+	 * Normalisation des urls du compteur http en templates de routes (false par défaut)
+	 * afin de permettre l'agrégation sur ces requêtes : par exemple /users/123/orders devient
+	 * /users/{id}/orders. Les templates sont appris d'après les urls reçues et d'après le
+	 * bestMatchingPattern de Spring MVC s'il y a.
+	 */
+	HTTP_NORMALIZATION_ENABLED("http-normalization-enabled"),
+
+	/**
+	 * Templates d'urls séparés par des virgules (null par défaut), par exemple
+	 * "/users/{id}/orders,/items/{id}", pour la normalisation des urls du compteur http
+	 * si le paramètre http-normalization-enabled est true.
+	 */
+	HTTP_ROUTE_TEMPLATES("http-route-templates"),
+
 	/**
 	 * Expression régulière (null par défaut) pour transformer la description de la requête sql
 	 * (identifiants non bindés dans une clause in par exemple)
@@ -101,6 +150,20 @@ public enum Parameter {
 	 */
 	SQL_TRANSFORM_PATTERN("sql-transform-pattern"),
 
+	/**
+	 * Normalisation des requêtes sql (false par défaut) afin de permettre l'agrégation sur ces requêtes :
+	 * les littéraux numériques et chaînes non bindés sont remplacés par '?', les listes de littéraux
+	 * (clause in, values) sont réduites et les espaces sont normalisés.
+	 * Cette normalisation est faite avant l'éventuel sql-transform-pattern.
+	 */
+	SQL_NORMALIZATION_ENABLED("sql-normalization-enabled"),
+
+	/**
+	 * Comptage des lignes lues et du temps des appels à next() sur les ResultSet jdbc (false par défaut),
+	 * par requête sql et pour la requête http (ou autre) en cours.
+	 */
+	SQL_RESULT_SETS_ENABLED("sql-result-sets-enabled"),
+
 	/**
 	 * Expression régulière (null par défaut) pour transformer la description d'une méthode ejb3.
 	 */
@@ -157,6 +220,11 @@ public enum Parameter {
 	 */
 	JSP_TRANSFORM_PATTERN("jsp-transform-pattern"),
 
+	/**
+	 * Expression régulière (null par défaut) pour transformer le nom d'une requête du compteur datasource.
+	 */
+	DATASOURCE_TRANSFORM_PATTERN("datasource-transform-pattern"),
+
 	/**
 	 * Compteurs affichés: mettre "http,sql,error,log,ejb" pour afficher les ejb3
 	 * ou "http,sql,error,log,spring" pour afficher les beans spring ("http,sql,error,log" par défaut).
@@ -392,7 +460,37 @@ public enum Parameter {
 	 * API key of the <a href='https://www.datadoghq.com/'>Datadog</a> to send metrics,
 	 * for example: 9775a026f1ca7d1c6c5af9d94d9595a4 (null by default).
 	 */
-	DATADOG_API_KEY("datadog-api-key");
+	DATADOG_API_KEY("datadog-api-key"),
+
+	/**
+	 * Maximum number of classes kept individually in a memory histogram, the biggest ones in bytes,
+	 * the other classes being only aggregated (null by default: all classes are kept).
+	 * For example: 1000, when the heap has tens of thousands of classes.
+	 */
+	HEAP_HISTO_MAX_CLASSES("heap-histo-max-classes"),
+
+	/**
+	 * Maximum number of rows by page in the database reports, the following rows being
+	 * in the next pages (1000 by default, must be > 0).
+	 */
+	DATABASE_MAX_ROWS("database-max-rows"),
+
+	/**
+	 * Path of a file shared by several collector servers, listing the URLs of the monitoring pages
+	 * of these collector servers, one by line, for example: http://localhost:8080/monitoring
+	 * (null by default: a single collector server collects all the applications).
+	 * Each application is then collected by only one of the collector servers, chosen by consistent hashing.
+	 * The list of the applications is then shared by the collector servers
+	 * in the file applications.properties of the directory of this file,
+	 * instead of the storage directory.
+	 */
+	COLLECTOR_SHARDS_FILE("collector-shards-file"),
+
+	/**
+	 * URL of the monitoring page of this collector server, as written in the collector-shards-file
+	 * (null by default).
+	 */
+	COLLECTOR_SHARD_URL("collector-shard-url");
 
 	private final String code;
 
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody;
+
+import java.util.Map;
+
+import net.bull.javamelody.internal.model.Collector;
+import net.bull.javamelody.internal.model.JRobin;
+import net.bull.javamelody.internal.model.RrdNioBackend;
+import net.bull.javamelody.internal.model.SelfMonitoring;
+
+/**
+ * MXBean qui expose via JMX le surcoût de javamelody lui-même :
+ * durées des parties de la dernière collecte, taille écrite sur disque,
+ * nombres d'appels de l'instrumentation, pauses du sampling
+ * et synchronisations des fichiers jrobin sur le disque.
+ * @see javax.management.MXBean
+ * @author Emeric Vernat
+ */
+public interface SelfMonitoringMXBean {
+	/**
+	 * @return Durée de la dernière collecte en millisecondes
+	 */
+	long getLastCollectDuration();
+
+	/**
+	 * @return Durée des compteurs dans la dernière collecte, hors écritures, en millisecondes
+	 */
+	double getLastCollectCountersDuration();
+
+	/**
+	 * @return Durée des écritures jrobin dans la dernière collecte en millisecondes
+	 */
+	double getLastCollectJRobinDuration();
+
+	/**
+	 * @return Durée des écritures des compteurs sur disque dans la dernière collecte en millisecondes
+	 */
+	double getLastCollectStorageDuration();
+
+	/**
+	 * @return Durée des publishers (graphite, statsd...) dans la dernière collecte en millisecondes
+	 */
+	double getLastCollectPublishersDuration();
+
+	/**
+	 * @return Taille des fichiers de compteurs écrits dans la dernière collecte en octets
+	 */
+	long getLastCollectWrittenBytes();
+
+	/**
+	 * @return Estimation de la mémoire utilisée par les compteurs en octets
+	 */
+	long getEstimatedMemorySize();
+
+	/**
+	 * @return Nombre d'appels de Counter.bindContext depuis le démarrage
+	 */
+	long getBindContextCount();
+
+	/**
+	 * @return Nombre d'appels de Counter.addRequest depuis le démarrage
+	 */
+	long getAddRequestCount();
+
+	/**
+	 * @return Nombre de pauses pour les stack-traces du sampling depuis le démarrage
+	 */
+	long getSamplingPausesCount();
+
+	/**
+	 * @return Durée totale des pauses pour les stack-traces du sampling en millisecondes
+	 */
+	long getSamplingPausesMillis();
+
+	/**
+	 * @return Nombre de fichiers jrobin écrits et pas encore synchronisés sur le disque
+	 */
+	int getRrdDirtyFilesCount();
+
+	/**
+	 * @return Nombre de synchronisations de fichiers jrobin sur le disque depuis le démarrage
+	 */
+	long getRrdSyncedFilesCount();
+
+	/**
+	 * @return Durée totale des synchronisations de fichiers jrobin sur le disque en millisecondes
+	 */
+	long getRrdSyncMillis();
+
+	/**
+	 * @return Nombre de fichiers jrobin gardés ouverts dans le pool
+	 */
+	int getRrdOpenFilesCount();
+
+	/**
+	 * @return Taille des fichiers jrobin gardés ouverts et mappés en mémoire dans le pool, en octets
+	 */
+	long getRrdMappedBytes();
+
+	/**
+	 * @return Nombre de fichiers jrobin fermés car le pool était plein, depuis le démarrage
+	 */
+	long getRrdPoolEvictionsCount();
+
+	/**
+	 * Implémentation.
+	 */
+	class SelfMonitoringMXBeanImpl implements SelfMonitoringMXBean {
+		private final Collector collector;
+
+		SelfMonitoringMXBeanImpl(Collector collector) {
+			super();
+			this.collector = collector;
+		}
+
+		@Override
+		public long getLastCollectDuration() {
+			return collector.getLastCollectDuration();
+		}
+
+		@Override
+		public double getLastCollectCountersDuration() {
+			return getLastCollectDuration("counters");
+		}
+
+		@Override
+		public double getLastCollectJRobinDuration() {
+			return getLastCollectDuration("jrobin");
+		}
+
+		@Override
+		public double getLastCollectStorageDuration() {
+			return getLastCollectDuration("storage");
+		}
+
+		@Override
+		public double getLastCollectPublishersDuration() {
+			return getLastCollectDuration("publishers");
+		}
+
+		private double getLastCollectDuration(String part) {
+			final Map<String, Double> durationsByPart = collector.getLastCollectDurationsByPart();
+			final Double duration = durationsByPart.get(part);
+			if (duration == null) {
+				// pas encore de collecte
+				return 0;
+			}
+			return duration;
+		}
+
+		@Override
+		public long getLastCollectWrittenBytes() {
+			return collector.getLastCollectWrittenBytes();
+		}
+
+		@Override
+		public long getEstimatedMemorySize() {
+			return collector.getEstimatedMemorySize();
+		}
+
+		@Override
+		public long getBindContextCount() {
+			return SelfMonitoring.getBindContextCount();
+		}
+
+		@Override
+		public long getAddRequestCount() {
+			return SelfMonitoring.getAddRequestCount();
+		}
+
+		@Override
+		public long getSamplingPausesCount() {
+			return SelfMonitoring.getSamplingPausesCount();
+		}
+
+		@Override
+		public long getSamplingPausesMillis() {
+			return SelfMonitoring.getSamplingPausesMillis();
+		}
+
+		@Override
+		public int getRrdDirtyFilesCount() {
+			return RrdNioBackend.getDirtyFilesCount();
+		}
+
+		@Override
+		public long getRrdSyncedFilesCount() {
+			return RrdNioBackend.getSyncedFilesCount();
+		}
+
+		@Override
+		public long getRrdSyncMillis() {
+			return RrdNioBackend.getSyncMillis();
+		}
+
+		@Override
+		public int getRrdOpenFilesCount() {
+			return JRobin.getOpenFilesCount();
+		}
+
+		@Override
+		public long getRrdMappedBytes() {
+			return JRobin.getMappedBytes();
+		}
+
+		@Override
+		public long getRrdPoolEvictionsCount() {
+			return JRobin.getPoolEvictionsCount();
+		}
+	}
+}
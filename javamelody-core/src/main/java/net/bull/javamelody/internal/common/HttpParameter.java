@@ -48,7 +48,14 @@ public enum HttpParameter {
 	TOKEN("token"),
 	CLASS("class"),
 	APPLICATION("application"),
-	ALGORITHM("algorithm");
+	ALGORITHM("algorithm"),
+	PAGE("page"),
+	SORT("sort"),
+	INDEX("index"),
+	CURSOR("cursor"),
+	PREFIX("prefix"),
+	PAGE_SIZE("pageSize"),
+	MBEAN("mbean");
 
 	private final String name;
 
@@ -34,6 +34,7 @@ public enum HttpPart {
 	JVM("jvm"),
 	SESSIONS("sessions"),
 	HOTSPOTS("hotspots"),
+	JVM_EVENTS("jvmEvents"),
 	DATABASE("database"),
 	CONNECTIONS("connections"),
 	GRAPH("graph"),
@@ -57,7 +58,8 @@ public enum HttpPart {
 	WEBAPP_VERSIONS("webappVersions"),
 	CACHE_KEYS("cacheKeys"),
 	JCACHE_KEYS("jcacheKeys"),
-	HASH_PASSWORD("hashPassword");
+	HASH_PASSWORD("hashPassword"),
+	COUNTER_DETAILS("counterDetails");
 
 	private final String name;
 
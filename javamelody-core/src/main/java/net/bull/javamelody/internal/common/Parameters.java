@@ -22,10 +22,12 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.channels.FileLock;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -56,11 +58,13 @@ public final class Parameters {
 	private static final int DEFAULT_RESOLUTION_SECONDS = 60;
 	// stockage des fichiers RRD de JRobin dans le répertoire temp/javamelody/<context> par défaut
 	private static final String DEFAULT_DIRECTORY = "javamelody";
-	// nom du fichier stockant les applications et leurs urls dans le répertoire de stockage
+	// nom du fichier stockant les applications et leurs urls dans le répertoire de stockage,
+	// ou dans celui du fichier collector-shards-file s'il y a plusieurs serveurs de collecte
 	private static final String COLLECTOR_APPLICATIONS_FILENAME = "applications.properties";
 	private static final boolean PDF_ENABLED = computePdfEnabled();
 	private static Map<String, List<URL>> urlsByApplications;
 	private static Map<String, List<String>> applicationsByAggregationApplications;
+	private static long collectorApplicationsLastModified;
 
 	private static FilterConfig filterConfig;
 	private static ServletContext servletContext;
@@ -115,55 +119,126 @@ public final class Parameters {
 	 * @return Nom et urls des applications telles que paramétrées dans un serveur de collecte.
 	 * @throws IOException e
 	 */
-	public static Map<String, List<URL>> getCollectorUrlsByApplications() throws IOException {
-		if (urlsByApplications == null) {
-			readCollectorApplications();
+	public static synchronized Map<String, List<URL>> getCollectorUrlsByApplications()
+			throws IOException {
+		if (urlsByApplications == null || isCollectorApplicationsFileModified()) {
+			reloadCollectorApplications();
 		}
 		return Collections.unmodifiableMap(urlsByApplications);
 	}
 
-	public static Map<String, List<String>> getApplicationsByAggregationApplication()
+	public static synchronized Map<String, List<String>> getApplicationsByAggregationApplication()
 			throws IOException {
-		if (applicationsByAggregationApplications == null) {
-			readCollectorApplications();
+		if (applicationsByAggregationApplications == null
+				|| isCollectorApplicationsFileModified()) {
+			reloadCollectorApplications();
 		}
 		return Collections.unmodifiableMap(applicationsByAggregationApplications);
 	}
 
-	public static void addCollectorApplication(String application, List<URL> urls)
+	/**
+	 * Relit la liste des applications, qui a pu être modifiée par un autre serveur de collecte
+	 * (collector-shards-file) sans que sa date de modification ait changé.
+	 * @throws IOException e
+	 */
+	public static synchronized void reloadCollectorApplications() throws IOException {
+		final FileLock lock = lockCollectorApplicationsFile();
+		try {
+			readCollectorApplications();
+		} finally {
+			unlock(lock);
+		}
+	}
+
+	private static boolean isCollectorApplicationsFileShared() {
+		return Parameter.COLLECTOR_SHARDS_FILE.getValue() != null;
+	}
+
+	private static boolean isCollectorApplicationsFileModified() {
+		// le fichier peut être partagé entre plusieurs serveurs de collecte (collector-shards-file),
+		// et donc modifié par un autre serveur de collecte
+		return isCollectorApplicationsFileShared()
+				&& getCollectorApplicationsFile().lastModified() != collectorApplicationsLastModified;
+	}
+
+	public static synchronized void addCollectorApplication(String application, List<URL> urls)
 			throws IOException {
 		assert application != null;
 		assert urls != null && !urls.isEmpty();
-		// initialisation si besoin
-		getCollectorUrlsByApplications();
-
-		urlsByApplications.put(application, urls);
-		writeCollectorApplications();
+		final FileLock lock = lockCollectorApplicationsFile();
+		try {
+			readCollectorApplicationsBeforeWrite();
+			urlsByApplications.put(application, urls);
+			writeCollectorApplications();
+		} finally {
+			unlock(lock);
+		}
 	}
 
-	public static void addCollectorAggregationApplication(String aggregationApplication,
-			List<String> aggregatedApplications) throws IOException {
+	public static synchronized void addCollectorAggregationApplication(
+			String aggregationApplication, List<String> aggregatedApplications)
+			throws IOException {
 		assert aggregationApplication != null;
 		assert aggregatedApplications != null && !aggregatedApplications.isEmpty();
-		// initialisation si besoin
-		getCollectorUrlsByApplications();
-
-		applicationsByAggregationApplications.put(aggregationApplication, aggregatedApplications);
-		writeCollectorApplications();
+		final FileLock lock = lockCollectorApplicationsFile();
+		try {
+			readCollectorApplicationsBeforeWrite();
+			applicationsByAggregationApplications.put(aggregationApplication,
+					aggregatedApplications);
+			writeCollectorApplications();
+		} finally {
+			unlock(lock);
+		}
 	}
 
-	public static void removeCollectorApplication(String application) throws IOException {
+	public static synchronized void removeCollectorApplication(String application)
+			throws IOException {
 		assert application != null;
-		// initialisation si besoin
-		getCollectorUrlsByApplications();
+		final FileLock lock = lockCollectorApplicationsFile();
+		try {
+			readCollectorApplicationsBeforeWrite();
+			if (urlsByApplications.containsKey(application)) {
+				urlsByApplications.remove(application);
+			} else {
+				applicationsByAggregationApplications.remove(application);
+			}
+			synchronizeAggregationApplications();
+			writeCollectorApplications();
+		} finally {
+			unlock(lock);
+		}
+	}
 
-		if (urlsByApplications.containsKey(application)) {
-			urlsByApplications.remove(application);
-		} else {
-			applicationsByAggregationApplications.remove(application);
+	private static void readCollectorApplicationsBeforeWrite() throws IOException {
+		// initialisation si besoin, et si le fichier est partagé (collector-shards-file),
+		// relecture sous le verrou pour ne pas écraser les modifications des autres serveurs
+		if (urlsByApplications == null || isCollectorApplicationsFileShared()) {
+			readCollectorApplications();
+		}
+	}
+
+	private static FileLock lockCollectorApplicationsFile() throws IOException {
+		if (!isCollectorApplicationsFileShared()) {
+			// un seul serveur de collecte, les méthodes synchronized suffisent
+			return null;
+		}
+		// verrou entre les serveurs de collecte sur un fichier à part,
+		// car le fichier des applications est réécrit par un autre flux
+		final File lockFile = new File(getCollectorApplicationsFile().getPath() + ".lock");
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(lockFile, "rw");
+		try {
+			return randomAccessFile.getChannel().lock();
+		} catch (final IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	private static void unlock(FileLock lock) throws IOException {
+		if (lock != null) {
+			// la fermeture du fichier libère aussi le verrou
+			lock.channel().close();
 		}
-		synchronizeAggregationApplications();
-		writeCollectorApplications();
 	}
 
 	private static void writeCollectorApplications() throws IOException {
@@ -210,6 +285,7 @@ public final class Parameters {
 		} finally {
 			output.close();
 		}
+		collectorApplicationsLastModified = collectorApplicationsFile.lastModified();
 	}
 
 	private static void readCollectorApplications() throws IOException {
@@ -223,6 +299,8 @@ public final class Parameters {
 		final Map<String, List<URL>> applications = new TreeMap<String, List<URL>>();
 		final Map<String, List<String>> aggregationApplications = new TreeMap<String, List<String>>();
 		final File file = getCollectorApplicationsFile();
+		// date lue avant le contenu, pour ne pas manquer une modification pendant la lecture
+		final long lastModified = file.lastModified();
 		if (file.exists()) {
 			final Properties properties = new Properties();
 			final FileInputStream input = new FileInputStream(file);
@@ -246,6 +324,7 @@ public final class Parameters {
 		}
 		urlsByApplications = applications;
 		applicationsByAggregationApplications = aggregationApplications;
+		collectorApplicationsLastModified = lastModified;
 
 		synchronizeAggregationApplications();
 	}
@@ -271,6 +350,13 @@ public final class Parameters {
 	}
 
 	public static File getCollectorApplicationsFile() {
+		final String shardsFile = Parameter.COLLECTOR_SHARDS_FILE.getValue();
+		if (shardsFile != null) {
+			// liste des applications partagée entre les serveurs de collecte,
+			// quels que soient leurs répertoires de stockage
+			return new File(new File(shardsFile).getAbsoluteFile().getParentFile(),
+					COLLECTOR_APPLICATIONS_FILENAME);
+		}
 		return new File(getStorageDirectory(""), COLLECTOR_APPLICATIONS_FILENAME);
 	}
 
@@ -41,7 +41,6 @@ import org.quartz.Scheduler;
 import net.bull.javamelody.Parameter;
 import net.bull.javamelody.SessionListener;
 import net.bull.javamelody.internal.common.I18N;
-import net.bull.javamelody.internal.common.InputOutput;
 import net.bull.javamelody.internal.common.LOG;
 import net.bull.javamelody.internal.common.Parameters;
 import net.bull.javamelody.internal.web.MailReport;
@@ -225,23 +224,19 @@ public enum Action {
 				// avec un suffixe contenant le host, la date et l'heure et avec une extension hprof
 				// (utiliser jvisualvm du jdk ou MAT d'eclipse en standalone ou en plugin)
 				final File heapDump = heapDump();
-				final File zipFile = new File(heapDump.getParentFile(),
-						heapDump.getName() + ".zip");
-				InputOutput.zipFile(heapDump, zipFile);
-				InputOutput.deleteFile(heapDump);
+				// la compression en parallèle dans un fichier gz et l'éventuel upload multipart S3
+				// se font en arrière-plan, sans bloquer la requête http pendant des minutes
+				final String bucketName = Parameter.HEAP_DUMP_S3_BUCKETNAME.getValue();
+				final HeapDumpCompressor heapDumpCompressor = HeapDumpCompressor
+						.startInBackground(heapDump, bucketName);
 				String message = "";
-				if (Parameter.HEAP_DUMP_S3_BUCKETNAME.getValue() != null) {
-					try {
-						S3.upload(zipFile, Parameter.HEAP_DUMP_S3_BUCKETNAME.getValue());
-						message = I18N.getFormattedString("heap_dump_uploaded_to_s3",
-								zipFile.getName()) + ' ';
-					} catch (final IOException e) {
-						message = "Failed to upload heap dump to S3 - " + e.getMessage() + '\n';
-					}
+				if (bucketName != null) {
+					message = I18N.getFormattedString("heap_dump_upload_to_s3_en_cours",
+							heapDumpCompressor.getGzipFile().getName()) + ' ';
 				}
-				final String path = zipFile.getPath();
-				messageForReport = message
-						+ I18N.getFormattedString("heap_dump_genere", path.replace('\\', '/'));
+				final String path = heapDumpCompressor.getGzipFile().getPath();
+				messageForReport = message + I18N.getFormattedString("heap_dump_genere_compression",
+						path.replace('\\', '/'));
 			}
 			break;
 		case INVALIDATE_SESSIONS:
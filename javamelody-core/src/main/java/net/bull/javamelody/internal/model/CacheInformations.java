@@ -58,19 +58,12 @@ public class CacheInformations implements Serializable {
 	private final long cacheHits;
 	private final long cacheMisses;
 	private final String configuration;
-	private final List<?> cacheKeys;
 
-	CacheInformations(Ehcache cache, boolean includeKeys) {
+	CacheInformations(Ehcache cache) {
 		super();
 		assert cache != null;
 		this.name = cache.getName();
 
-		if (includeKeys) {
-			this.cacheKeys = cache.getKeys();
-		} else {
-			this.cacheKeys = null;
-		}
-
 		if (EHCACHE_2_7) {
 			// Depuis ehcache 2.7.0, cache.getStatistics() retourne "StatisticsGateway" qui est nouvelle et plus "Statistics".
 			// CacheStatistics existe depuis ehcache 1.3.
@@ -172,7 +165,7 @@ public class CacheInformations implements Serializable {
 			final String[] cacheNames = cacheManager.getCacheNames();
 			try {
 				for (final String cacheName : cacheNames) {
-					result.add(new CacheInformations(cacheManager.getEhcache(cacheName), false));
+					result.add(new CacheInformations(cacheManager.getEhcache(cacheName)));
 				}
 			} catch (final Exception e) {
 				// Avoid Exception throwing in cache information parsing
@@ -184,7 +177,30 @@ public class CacheInformations implements Serializable {
 		return result;
 	}
 
-	public static CacheInformations buildCacheInformationsWithKeys(String cacheId) {
+	public static CacheInformations buildCacheInformations(String cacheId) {
+		return new CacheInformations(getEhcache(cacheId));
+	}
+
+	/**
+	 * Construit une page de clés d'un cache, sans sérialiser ni afficher toutes les clés du cache.
+	 * @param cacheId Nom du cache
+	 * @param prefix Préfixe des clés à retourner, ou null pour toutes les clés
+	 * @param cursor Position dans les clés du cache, 0 pour la première page
+	 * @param pageSize Nombre maximum de clés dans la page
+	 * @return CacheKeysPage
+	 */
+	public static CacheKeysPage buildCacheKeysPage(String cacheId, String prefix, int cursor,
+			int pageSize) {
+		// ehcache ne fournit pas d'itérateur sur les clés du cache : getKeys() construit
+		// la liste de toutes les clés, avec un coût proportionnel au nombre d'éléments du cache
+		// à chaque page. Cette liste n'est gardée que le temps de construire la page
+		// et seules les clés de la page sont converties en String et affichées
+		final List<?> keys = getEhcache(cacheId).getKeys();
+		return CacheKeysPage.build(cacheId, keys.iterator(), prefix, cursor, pageSize,
+				keys.size());
+	}
+
+	private static Ehcache getEhcache(String cacheId) {
 		assert EHCACHE_AVAILABLE;
 		assert cacheId != null;
 		final List<CacheManager> allCacheManagers = new ArrayList<CacheManager>(
@@ -192,7 +208,7 @@ public class CacheInformations implements Serializable {
 		for (final CacheManager cacheManager : allCacheManagers) {
 			final Ehcache ehcache = cacheManager.getEhcache(cacheId);
 			if (ehcache != null) {
-				return new CacheInformations(ehcache, true);
+				return ehcache;
 			}
 		}
 		throw new IllegalArgumentException("Cache not found");
@@ -351,10 +367,6 @@ public class CacheInformations implements Serializable {
 		return configuration;
 	}
 
-	public List<?> getCacheKeys() {
-		return cacheKeys;
-	}
-
 	/** {@inheritDoc} */
 	@Override
 	public String toString() {
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Page de clés d'un cache (ehcache ou jcache), pour afficher les clés d'un cache
+ * sans les convertir ni les afficher toutes, y compris avec des millions d'éléments.<br/>
+ * Les clés sont parcourues avec l'itérateur du cache, en commençant à la position du curseur
+ * et en gardant seulement celles commençant par le préfixe, dans la limite de la taille de page.
+ * Seules les clés de la page sont converties en String.<br/>
+ * Le curseur est la position dans l'itération du cache : les clés avant le curseur
+ * sont parcourues à nouveau pour chaque page, et si le cache est modifié
+ * entre deux pages, des clés peuvent être omises ou répétées.<br/>
+ * Le nombre total de clés du cache n'est connu que si le cache le fournit sans parcourir les clés.
+ * @author Emeric Vernat
+ */
+public class CacheKeysPage {
+	public static final int DEFAULT_PAGE_SIZE = 100;
+	public static final int MAX_PAGE_SIZE = 1000;
+	// nombre maximum de clés parcourues pour une page si peu de clés commencent par le préfixe
+	static final int MAX_SCANNED_KEYS = 100000;
+
+	private final String cacheId;
+	private final String prefix;
+	private final int cursor;
+	private final List<String> keys;
+	private final int nextCursor;
+	private final int keysCount;
+
+	CacheKeysPage(String cacheId, String prefix, int cursor, List<String> keys, int nextCursor,
+			int keysCount) {
+		super();
+		assert cacheId != null;
+		assert keys != null;
+		this.cacheId = cacheId;
+		this.prefix = prefix;
+		this.cursor = cursor;
+		this.keys = keys;
+		this.nextCursor = nextCursor;
+		this.keysCount = keysCount;
+	}
+
+	static CacheKeysPage build(String cacheId, Iterator<?> keysIterator, String prefix,
+			int cursor, int pageSize) {
+		return build(cacheId, keysIterator, prefix, cursor, pageSize, -1);
+	}
+
+	static CacheKeysPage build(String cacheId, Iterator<?> keysIterator, String prefix,
+			int cursor, int pageSize, int keysCount) {
+		assert cursor >= 0;
+		assert pageSize > 0 && pageSize <= MAX_PAGE_SIZE;
+		int position = 0;
+		while (position < cursor && keysIterator.hasNext()) {
+			keysIterator.next();
+			position++;
+		}
+		final List<String> keys = new ArrayList<String>(Math.min(pageSize, 16));
+		final int maxPosition = position + MAX_SCANNED_KEYS;
+		while (keys.size() < pageSize && position < maxPosition && keysIterator.hasNext()) {
+			final Object key = keysIterator.next();
+			position++;
+			if (key != null) {
+				final String myKey = key.toString();
+				if (prefix == null || myKey.startsWith(prefix)) {
+					keys.add(myKey);
+				}
+			}
+		}
+		final int nextCursor;
+		if (keysIterator.hasNext()) {
+			nextCursor = position;
+		} else {
+			nextCursor = -1;
+		}
+		return new CacheKeysPage(cacheId, prefix, cursor, Collections.unmodifiableList(keys),
+				nextCursor, keysCount);
+	}
+
+	public static int parseCursor(String cursor) {
+		if (cursor != null) {
+			// lance une NumberFormatException si ce n'est pas un nombre
+			return Math.max(0, Integer.parseInt(cursor));
+		}
+		return 0;
+	}
+
+	public static int parsePageSize(String pageSize) {
+		if (pageSize != null) {
+			// lance une NumberFormatException si ce n'est pas un nombre
+			return Math.max(1, Math.min(MAX_PAGE_SIZE, Integer.parseInt(pageSize)));
+		}
+		return DEFAULT_PAGE_SIZE;
+	}
+
+	public static String parsePrefix(String prefix) {
+		if (prefix == null || prefix.isEmpty()) {
+			return null;
+		}
+		return prefix;
+	}
+
+	public String getCacheId() {
+		return cacheId;
+	}
+
+	public String getPrefix() {
+		return prefix;
+	}
+
+	public int getCursor() {
+		return cursor;
+	}
+
+	public List<String> getKeys() {
+		return keys;
+	}
+
+	public boolean hasNextPage() {
+		return nextCursor >= 0;
+	}
+
+	public int getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * @return Nombre total de clés du cache, ou -1 s'il n'est pas connu
+	 */
+	public int getKeysCount() {
+		return keysCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[cacheId=" + getCacheId() + ", prefix="
+				+ getPrefix() + ", cursor=" + getCursor() + ", keys=" + getKeys().size()
+				+ ", nextCursor=" + getNextCursor() + ", keysCount=" + getKeysCount() + ']';
+	}
+}
@@ -68,6 +68,18 @@ public class Collector { // NOPMD
 	private long tomcatBytesReceived = NOT_A_NUMBER;
 	private long tomcatBytesSent = NOT_A_NUMBER;
 	private long lastCollectDuration;
+	// durées en nanosecondes des écritures jrobin, des écritures des compteurs sur disque
+	// et des envois aux publishers pendant la collecte en cours, et taille écrite sur disque
+	private long collectJRobinNanos;
+	private long collectStorageNanos;
+	private long collectPublishersNanos;
+	private long collectWrittenBytes;
+	private Map<String, Double> lastCollectDurationsByPart = Collections.emptyMap();
+	private long lastCollectWrittenBytes;
+	private long bindContextCount = NOT_A_NUMBER;
+	private long addRequestCount = NOT_A_NUMBER;
+	private long samplingPausesCount = NOT_A_NUMBER;
+	private long samplingPausesMillis = NOT_A_NUMBER;
 	private Throwable lastCollectorException;
 	private long estimatedMemorySize;
 	private long diskUsage;
@@ -77,6 +89,7 @@ public class Collector { // NOPMD
 	private List<MetricsPublisher> metricsPublishers;
 	private final WebappVersions webappVersions;
 	private final StorageLock storageLock;
+	private final RequestsBudget requestsBudget;
 
 	/**
 	 * Constructeur.
@@ -133,6 +146,9 @@ public class Collector { // NOPMD
 					+ Parameters.getStorageDirectory(application), e);
 		}
 
+		// budget mémoire global des requêtes de tous les compteurs, après la lecture des fichiers
+		this.requestsBudget = RequestsBudget.createIfEnabled(this.counters);
+
 		// puis pose le lock
 		this.storageLock = new StorageLock(application);
 
@@ -226,6 +242,28 @@ public class Collector { // NOPMD
 		return estimatedMemorySize;
 	}
 
+	/**
+	 * @return Budget mémoire global des requêtes des compteurs, ou null s'il est désactivé
+	 */
+	public RequestsBudget getRequestsBudget() {
+		return requestsBudget;
+	}
+
+	/**
+	 * @return Durées en millisecondes des parties de la dernière collecte : compteurs (hors écritures),
+	 * écritures jrobin, écritures des compteurs sur disque et publishers (graphite, statsd...)
+	 */
+	public Map<String, Double> getLastCollectDurationsByPart() {
+		return lastCollectDurationsByPart;
+	}
+
+	/**
+	 * @return Taille en octets des fichiers de compteurs écrits sur disque lors de la dernière collecte
+	 */
+	public long getLastCollectWrittenBytes() {
+		return lastCollectWrittenBytes;
+	}
+
 	public long getDiskUsage() {
 		if (diskUsage == 0) {
 			// si diskUsage == 0, le serveur a été démarré ce jour et la taille totale des fichiers
@@ -312,10 +350,21 @@ public class Collector { // NOPMD
 		// ici on n'inclue pas les informations de la bdd et des threads
 		// car on n'en a pas besoin pour la collecte et cela économise des requêtes sql
 		try {
+			final Counter dataSourceCounter = getCounterByName(Counter.DATASOURCE_COUNTER_NAME);
+			if (dataSourceCounter != null) {
+				// temps des datasources jdbc cumulés sans verrou depuis la collecte précédente
+				LatencyRecorder.drainAllTo(dataSourceCounter);
+			}
 			final JavaInformations javaInformations = new JavaInformations(
 					Parameters.getServletContext(), false);
 
 			collectWithoutErrors(Collections.singletonList(javaInformations));
+			// surcoût de l'instrumentation dans cette JVM, seulement si elle est monitorée localement
+			collectSelfMonitoringValues();
+			if (JfrEvents.isStarted()) {
+				// événements de la JVM lus par le JDK Flight Recorder, seulement pour cette JVM
+				collectJfrValues();
+			}
 		} catch (final Throwable t) { // NOPMD
 			// include cause in message for debugging logs in the report
 			LOG.warn("exception while collecting data: " + t, t);
@@ -340,6 +389,11 @@ public class Collector { // NOPMD
 
 	private synchronized long collect(List<JavaInformations> javaInformationsList)
 			throws IOException {
+		collectJRobinNanos = 0;
+		collectStorageNanos = 0;
+		collectPublishersNanos = 0;
+		collectWrittenBytes = 0;
+		long countersNanos = 0;
 		long memorySize = 0;
 		try {
 			// si pas d'informations, on ne met pas 0 : on ne met rien
@@ -351,6 +405,9 @@ public class Collector { // NOPMD
 				collectOtherJavaInformations(javaInformationsList);
 				collectTomcatInformations(javaInformationsList);
 			}
+			final long countersStart = System.nanoTime();
+			final long writesNanosBeforeCounters = collectJRobinNanos + collectStorageNanos
+					+ collectPublishersNanos;
 			for (final Counter counter : counters) {
 				// counter.isDisplayed() peut changer pour spring, ejb, guice ou services selon l'utilisation
 				dayCountersByCounter.get(counter).setDisplayed(counter.isDisplayed());
@@ -363,13 +420,22 @@ public class Collector { // NOPMD
 					memorySize += collectCounterData(counter);
 				}
 			}
+			// durée des compteurs sans les écritures jrobin et disque, comptées à part
+			countersNanos = System.nanoTime() - countersStart - (collectJRobinNanos
+					+ collectStorageNanos + collectPublishersNanos - writesNanosBeforeCounters);
 		} finally {
 			if (metricsPublishers != null) {
+				final long start = System.nanoTime();
 				for (final MetricsPublisher metricsPublisher : metricsPublishers) {
 					metricsPublisher.send();
 				}
+				collectPublishersNanos += System.nanoTime() - start;
 			}
 		}
+		collectDurationsByPart(countersNanos);
+		if (requestsBudget != null) {
+			requestsBudget.resync();
+		}
 
 		final Calendar calendar = Calendar.getInstance();
 		final int currentDayOfYear = calendar.get(Calendar.DAY_OF_YEAR);
@@ -640,17 +706,78 @@ public class Collector { // NOPMD
 		}
 	}
 
+	private void collectDurationsByPart(long countersNanos) throws IOException {
+		final Map<String, Double> durationsByPart = new LinkedHashMap<String, Double>();
+		durationsByPart.put("counters", Math.max(countersNanos, 0) / 1000000d);
+		durationsByPart.put("jrobin", collectJRobinNanos / 1000000d);
+		durationsByPart.put("storage", collectStorageNanos / 1000000d);
+		durationsByPart.put("publishers", collectPublishersNanos / 1000000d);
+		lastCollectDurationsByPart = Collections.unmodifiableMap(durationsByPart);
+		lastCollectWrittenBytes = collectWrittenBytes;
+		// pas de publishers pour ces valeurs, car ils ont déjà été envoyés pour cette collecte
+		getOtherJRobin("collectCountersDuration").addValue(durationsByPart.get("counters"));
+		getOtherJRobin("collectJRobinDuration").addValue(durationsByPart.get("jrobin"));
+		getOtherJRobin("collectStorageDuration").addValue(durationsByPart.get("storage"));
+		getOtherJRobin("collectPublishersDuration").addValue(durationsByPart.get("publishers"));
+		getOtherJRobin("collectWrittenBytes").addValue(collectWrittenBytes);
+	}
+
+	private synchronized void collectSelfMonitoringValues() throws IOException {
+		final long newBindContextCount = SelfMonitoring.getBindContextCount();
+		final long newAddRequestCount = SelfMonitoring.getAddRequestCount();
+		final long newSamplingPausesCount = SelfMonitoring.getSamplingPausesCount();
+		final long newSamplingPausesMillis = SelfMonitoring.getSamplingPausesMillis();
+		if (bindContextCount != NOT_A_NUMBER) {
+			final double periodMinutes = periodMillis / 60000d;
+			getOtherJRobin("bindContextRate")
+					.addValue((newBindContextCount - bindContextCount) / periodMinutes);
+			getOtherJRobin("addRequestRate")
+					.addValue((newAddRequestCount - addRequestCount) / periodMinutes);
+			final long pausesCount = newSamplingPausesCount - samplingPausesCount;
+			if (pausesCount > 0) {
+				// durée moyenne d'une pause pour les stack-traces du sampling
+				getOtherJRobin("samplingPauseMeanTime").addValue(
+						(double) (newSamplingPausesMillis - samplingPausesMillis) / pausesCount);
+			}
+		}
+		bindContextCount = newBindContextCount;
+		addRequestCount = newAddRequestCount;
+		samplingPausesCount = newSamplingPausesCount;
+		samplingPausesMillis = newSamplingPausesMillis;
+	}
+
+	private synchronized void collectJfrValues() throws IOException {
+		for (final Map.Entry<String, Double> entry : JfrEvents
+				.getAndResetPeriodValues(periodMillis).entrySet()) {
+			getOtherJRobin(entry.getKey()).addValue(entry.getValue());
+		}
+	}
+
 	private void addJRobinValue(JRobin jRobin, double value) throws IOException {
-		jRobin.addValue(value);
+		addValueInJRobin(jRobin, value);
 		// if value == -1, then do not publish that metric,
 		// and metricsPublishers may be null (#735)
 		if (value >= 0 && metricsPublishers != null) {
+			final long start = System.nanoTime();
 			for (final MetricsPublisher metricsPublisher : metricsPublishers) {
 				metricsPublisher.addValue(jRobin.getName(), value);
 			}
+			collectPublishersNanos += System.nanoTime() - start;
 		}
 	}
 
+	private void addValueInJRobin(JRobin jRobin, double value) throws IOException {
+		final long start = System.nanoTime();
+		jRobin.addValue(value);
+		collectJRobinNanos += System.nanoTime() - start;
+	}
+
+	private void writeCounterToFile(Counter counter) throws IOException {
+		final long start = System.nanoTime();
+		collectWrittenBytes += counter.writeToFile();
+		collectStorageNanos += System.nanoTime() - start;
+	}
+
 	private static double add(double t1, double t2) {
 		// avec des serveurs monitorés sur des OS/JVM multiples (windows, linux par exemple),
 		// des valeurs peuvent être négatives ie non disponibles pour une JVM/OS
@@ -739,7 +866,7 @@ public class Collector { // NOPMD
 					// s'il y a eu des requêtes, on persiste le compteur pour ne pas perdre les stats
 					// en cas de crash ou d'arrêt brutal (mais normalement ils seront aussi persistés
 					// lors de l'arrêt du serveur)
-					counter.writeToFile();
+					writeCounterToFile(counter);
 				}
 			}
 
@@ -769,7 +896,7 @@ public class Collector { // NOPMD
 		if (dayCounter.isErrorCounter()) {
 			dayCounter.addErrors(getDeltaOfErrors(counter, dayCounter));
 		}
-		dayCounter.writeToFile();
+		writeCounterToFile(dayCounter);
 		if (!firstCollectDoneForCounter) {
 			firstCollectDoneByCounter.put(counter, Boolean.TRUE);
 		}
@@ -783,7 +910,10 @@ public class Collector { // NOPMD
 			return requests;
 		}
 		final List<CounterRequest> result = new ArrayList<CounterRequest>(requests);
-		for (final CounterRequest request : requests) {
+		// on élimine d'abord les requêtes ayant le moins de hits
+		final List<CounterRequest> requestsByHits = new ArrayList<CounterRequest>(requests);
+		Collections.sort(requestsByHits, new Counter.CounterRequestByHitsComparator());
+		for (final CounterRequest request : requestsByHits) {
 			if (result.size() > maxRequestsCount && request.getHits() < 10) {
 				// Si le nombre de requêtes est supérieur à 10000
 				// on suppose que l'application a des requêtes sql non bindées
@@ -795,12 +925,15 @@ public class Collector { // NOPMD
 				result.remove(request);
 			}
 		}
-		while (result.size() > maxRequestsCount && !result.isEmpty()) {
+		if (result.size() > maxRequestsCount) {
 			// cas extrême: si le nombre de requêtes est encore trop grand,
-			// on enlève n'importe quelle requête
-			final CounterRequest request = result.get(0);
-			removeRequest(counter, request);
-			result.remove(request);
+			// on enlève les requêtes ayant le moins de hits
+			Collections.sort(result, new Counter.CounterRequestByHitsComparator());
+			while (result.size() > maxRequestsCount) {
+				final CounterRequest request = result.get(0);
+				removeRequest(counter, request);
+				result.remove(0);
+			}
 		}
 		return result;
 	}
@@ -829,7 +962,7 @@ public class Collector { // NOPMD
 				// plus nécessaire: if (dayCounter.isErrorCounter()) requestJRobin.addValue(lastPeriodRequest.getHits());
 
 				// pas addJRobinValue ici, il y en aurait trop pour Graphite
-				requestJRobin.addValue(lastPeriodRequest.getMean());
+				addValueInJRobin(requestJRobin, lastPeriodRequest.getMean());
 			}
 
 			// agrégation de la requête sur le compteur pour le jour courant
@@ -20,10 +20,18 @@ package net.bull.javamelody.internal.model;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jrobin.core.Archive;
 import org.jrobin.core.Robin;
@@ -37,8 +45,14 @@ import net.bull.javamelody.internal.common.InputOutput;
  * @author Emeric Vernat
  */
 abstract class CollectorDataMerge {
+	// nombre de messages de progression pendant la fusion
+	private static final int PROGRESS_STEPS = 20;
+
 	private final List<File> sourceDirectories;
 	private final File targetDirectory;
+	private final int threadsCount;
+	private final AtomicInteger doneFilesCount = new AtomicInteger();
+	private final AtomicLong doneBytes = new AtomicLong();
 
 	// tri par dates décroissantes de fichiers
 	private static final Comparator<File> FILES_COMPARATOR = new Comparator<File>() {
@@ -49,62 +63,139 @@ abstract class CollectorDataMerge {
 	};
 
 	CollectorDataMerge(List<File> sourceDirectories, File targetDirectory) {
+		this(sourceDirectories, targetDirectory, Runtime.getRuntime().availableProcessors());
+	}
+
+	CollectorDataMerge(List<File> sourceDirectories, File targetDirectory, int threadsCount) {
 		super();
+		assert threadsCount > 0;
 		this.sourceDirectories = sourceDirectories;
 		this.targetDirectory = targetDirectory;
+		this.threadsCount = threadsCount;
 	}
 
 	protected abstract void log(String msg);
 
 	int mergeDirectories() throws IOException {
-		final List<String> mergedFileNames = new ArrayList<String>();
+		// index des fichiers à fusionner par nom de fichier, en un seul parcours des répertoires
+		final Map<String, List<File>> filesToMergeByFileName = indexFiles();
+		final int filesCount = filesToMergeByFileName.size();
+		final long start = System.currentTimeMillis();
+		doneFilesCount.set(0);
+		doneBytes.set(0);
+		// les fichiers sont indépendants entre eux, donc ils sont fusionnés en parallèle
+		final ExecutorService executorService = Executors.newFixedThreadPool(threadsCount);
+		try {
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>(filesCount);
+			for (final Map.Entry<String, List<File>> entry : filesToMergeByFileName.entrySet()) {
+				final String fileName = entry.getKey();
+				final List<File> filesToMerge = entry.getValue();
+				futures.add(executorService.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						mergeFiles(fileName, filesToMerge);
+						logProgress(filesCount, start);
+						return null;
+					}
+				}));
+			}
+			for (final Future<Void> future : futures) {
+				waitFor(future);
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+		return filesCount;
+	}
+
+	private Map<String, List<File>> indexFiles() {
+		final Map<String, List<File>> filesToMergeByFileName = new LinkedHashMap<String, List<File>>();
+		final List<String> excludedFileNames = new ArrayList<String>();
 		for (final File directory : sourceDirectories) {
-			final List<File> files = listFiles(directory);
+			final File[] files = directory.listFiles();
+			if (files == null) {
+				continue;
+			}
 			for (final File file : files) {
 				final String fileName = file.getName();
-				if (!mergedFileNames.contains(fileName)) {
+				List<File> filesToMerge = filesToMergeByFileName.get(fileName);
+				if (filesToMerge == null) {
 					if (isFileExcluded(fileName)) {
-						log("Excluding " + fileName);
-					} else {
-						mergedFileNames.add(fileName);
-						final List<File> filesToMerge = new ArrayList<File>();
-						for (final File directoryToMerge : sourceDirectories) {
-							final File fileToMerge = new File(directoryToMerge, fileName);
-							if (fileToMerge.exists()) {
-								filesToMerge.add(fileToMerge);
-							}
-						}
-						assert !filesToMerge.isEmpty();
-						final File target = new File(targetDirectory, fileName);
-						if (fileName.endsWith(".rrd")) {
-							log("Merging " + fileName);
-							if (filesToMerge.size() == 1) {
-								InputOutput.copyFile(filesToMerge.get(0),
-										new File(targetDirectory, fileName));
-							} else {
-								Collections.sort(filesToMerge, FILES_COMPARATOR);
-								mergeGraphs(filesToMerge, target);
-							}
-						} else if (fileName.endsWith(".ser.gz")) {
-							log("Merging " + fileName);
-							if (filesToMerge.size() == 1) {
-								InputOutput.copyFile(filesToMerge.get(0),
-										new File(targetDirectory, fileName));
-							} else {
-								Collections.sort(filesToMerge, FILES_COMPARATOR);
-								mergeStatistics(filesToMerge, target);
-							}
-						} else {
-							log("Ignoring " + fileName);
-						}
-						if (target.exists()) {
-							target.setLastModified(filesToMerge.get(0).lastModified());
+						if (!excludedFileNames.contains(fileName)) {
+							excludedFileNames.add(fileName);
+							log("Excluding " + fileName);
 						}
+						continue;
 					}
+					filesToMerge = new ArrayList<File>();
+					filesToMergeByFileName.put(fileName, filesToMerge);
 				}
+				filesToMerge.add(file);
+			}
+		}
+		return filesToMergeByFileName;
+	}
+
+	private void mergeFiles(String fileName, List<File> filesToMerge) throws IOException {
+		assert !filesToMerge.isEmpty();
+		final File target = new File(targetDirectory, fileName);
+		if (fileName.endsWith(".rrd")) {
+			log("Merging " + fileName);
+			if (filesToMerge.size() == 1) {
+				InputOutput.copyFile(filesToMerge.get(0), target);
+			} else {
+				Collections.sort(filesToMerge, FILES_COMPARATOR);
+				mergeGraphs(filesToMerge, target);
 			}
+		} else if (fileName.endsWith(".ser.gz")) {
+			log("Merging " + fileName);
+			if (filesToMerge.size() == 1) {
+				InputOutput.copyFile(filesToMerge.get(0), target);
+			} else {
+				Collections.sort(filesToMerge, FILES_COMPARATOR);
+				mergeStatistics(filesToMerge, target);
+			}
+		} else {
+			log("Ignoring " + fileName);
+		}
+		if (target.exists()) {
+			target.setLastModified(filesToMerge.get(0).lastModified());
+		}
+		long length = 0;
+		for (final File file : filesToMerge) {
+			length += file.length();
+		}
+		doneBytes.addAndGet(length);
+	}
+
+	private void logProgress(int filesCount, long start) {
+		final int done = doneFilesCount.incrementAndGet();
+		final int step = Math.max(1, filesCount / PROGRESS_STEPS);
+		if (done % step == 0 || done == filesCount) {
+			final long duration = Math.max(1, System.currentTimeMillis() - start);
+			log("Progress: " + done * 100 / filesCount + "% (" + done + '/' + filesCount
+					+ " files, " + done * 1000L / duration + " files/s, "
+					+ doneBytes.get() * 1000L / duration / 1024 + " KB/s)");
+		}
+	}
+
+	private static void waitFor(Future<Void> future) throws IOException {
+		try {
+			future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e.toString(), e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause.toString(), cause);
 		}
-		return mergedFileNames.size();
 	}
 
 	private boolean isFileExcluded(String fileName) {
@@ -160,14 +251,15 @@ abstract class CollectorDataMerge {
 			final Archive mergedArchive = mergedRrdDb.getArchive(i);
 			assert sourceArchive.getArcStep() == mergedArchive.getArcStep();
 			assert sourceArchive.getConsolFun().equals(mergedArchive.getConsolFun());
+			final int deltaSteps = (int) ((mergedArchive.getEndTime() - sourceArchive.getEndTime())
+					/ mergedArchive.getArcStep());
+			// robin par robin, pour ne pas charger en mémoire toutes les valeurs du fichier
 			for (int j = 0; j < sourceRrdDb.getDsCount(); j++) {
 				final Robin sourceRobin = sourceArchive.getRobin(j);
 				final Robin mergedRobin = mergedArchive.getRobin(j);
 				final double[] sourceValues = sourceRobin.getValues();
 				final double[] mergedValues = mergedRobin.getValues();
 				assert sourceValues.length == mergedValues.length;
-				final int deltaSteps = (int) ((mergedArchive.getEndTime()
-						- sourceArchive.getEndTime()) / mergedArchive.getArcStep());
 				// les fichiers à merger sont triés par dates descendantes
 				// donc deltaSteps >= 0 en général et les valeurs sources sont plus vieilles
 				// càd que les valeurs à la fin de mergedValues sont plus récentes que les valeurs à la fin de sourceValues
@@ -224,12 +316,4 @@ abstract class CollectorDataMerge {
 		assert mergedCounter != null;
 		CounterStorage.writeToFile(mergedCounter, target);
 	}
-
-	private List<File> listFiles(final File directory) {
-		final File[] files = directory.listFiles();
-		if (files == null) {
-			return Collections.emptyList();
-		}
-		return Arrays.asList(files);
-	}
 }
@@ -23,6 +23,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +63,8 @@ public class CollectorServer {
 
 	private final Timer timer;
 
+	private final CollectorShards shards;
+
 	/**
 	 * Constructeur.
 	 * @throws IOException e
@@ -71,6 +74,7 @@ public class CollectorServer {
 		boolean initOk = false;
 		this.timer = new Timer("collector", true);
 		try {
+			this.shards = createCollectorShards();
 			LOGGER.info(
 					"reading applications list from: " + Parameters.getCollectorApplicationsFile());
 			final Map<String, List<URL>> urlsByApplication = Parameters
@@ -115,10 +119,40 @@ public class CollectorServer {
 		}
 	}
 
+	private static CollectorShards createCollectorShards() {
+		final String shardsFile = Parameter.COLLECTOR_SHARDS_FILE.getValue();
+		if (shardsFile == null) {
+			return null;
+		}
+		final String shardUrl = Parameter.COLLECTOR_SHARD_URL.getValue();
+		if (shardUrl == null) {
+			throw new IllegalStateException("The parameter "
+					+ Parameter.COLLECTOR_SHARD_URL.getCode() + " is required with the parameter "
+					+ Parameter.COLLECTOR_SHARDS_FILE.getCode());
+		}
+		LOGGER.info("reading collector servers list from: " + shardsFile
+				+ ", url of this collector server: " + shardUrl);
+		return new CollectorShards(new File(shardsFile), shardUrl);
+	}
+
 	public void collectWithoutErrors() {
 		try {
+			if (shards != null) {
+				// la liste partagée a pu être modifiée par un autre serveur de collecte
+				Parameters.reloadCollectorApplications();
+			}
 			final Map<String, List<URL>> urlsByApplication = new LinkedHashMap<String, List<URL>>(
 					Parameters.getCollectorUrlsByApplications());
+			if (shards != null) {
+				// chaque serveur de collecte ne collecte que sa part des applications
+				releaseApplicationsOfOtherShards();
+				for (final Iterator<String> it = urlsByApplication.keySet().iterator(); it
+						.hasNext();) {
+					if (!isLocalShard(it.next())) {
+						it.remove();
+					}
+				}
+			}
 			final List<Future<?>> futures = new ArrayList<Future<?>>(
 					collectForApplicationsWithoutErrors(urlsByApplication));
 
@@ -133,8 +167,10 @@ public class CollectorServer {
 				urlsByApplication.clear();
 				for (final String aggregationApplication : applicationsByAggregationApplication
 						.keySet()) {
-					// pas la peine de lister les URLs, elles seront recalculées dans RemoteCollector.getURLs()
-					urlsByApplication.put(aggregationApplication, new ArrayList<URL>());
+					if (isLocalShard(aggregationApplication)) {
+						// pas la peine de lister les URLs, elles seront recalculées dans RemoteCollector.getURLs()
+						urlsByApplication.put(aggregationApplication, new ArrayList<URL>());
+					}
 				}
 				futures.addAll(collectForApplicationsWithoutErrors(urlsByApplication));
 				for (final Future<?> future : futures) {
@@ -312,10 +348,10 @@ public class CollectorServer {
 		return getRemoteCollectorByApplication(application).collectHeapHistogram();
 	}
 
-	public DatabaseInformations collectDatabaseInformations(String application, int requestIndex)
-			throws IOException {
+	public DatabaseInformations collectDatabaseInformations(String application, int requestIndex,
+			int page, int sortColumn) throws IOException {
 		return getRemoteCollectorByApplication(application)
-				.collectDatabaseInformations(requestIndex);
+				.collectDatabaseInformations(requestIndex, page, sortColumn);
 	}
 
 	public List<List<ConnectionInformations>> collectConnectionInformations(String application)
@@ -384,7 +420,11 @@ public class CollectorServer {
 		} else {
 			nodesUrls = urls;
 		}
-		collectForApplication(application, nodesUrls);
+		if (isLocalShard(application)) {
+			collectForApplication(application, nodesUrls);
+		}
+		// sinon, l'application sera collectée par son serveur de collecte
+		// à sa prochaine collecte, après relecture du fichier partagé des applications
 		Parameters.addCollectorApplication(application, nodesUrls);
 	}
 
@@ -462,6 +502,78 @@ public class CollectorServer {
 				+ " in " + durationInSeconds + " s");
 	}
 
+	/**
+	 * Retourne l'url du serveur de collecte qui collecte une application, si ce n'est pas celui-ci.
+	 * @param application Code de l'application
+	 * @return URL ou null si l'application est collectée ici, si elle est inconnue
+	 * ou s'il n'y a pas plusieurs serveurs de collecte (collector-shards-file)
+	 * @throws IOException e
+	 */
+	public URL getShardUrl(String application) throws IOException {
+		if (shards == null || application == null
+				|| !Parameters.getCollectorUrlsByApplications().containsKey(application)
+						&& !Parameters.getApplicationsByAggregationApplication()
+								.containsKey(application)) {
+			return null;
+		}
+		final String owner = shards.getOwner(getShardKey(application));
+		if (owner.equals(shards.getLocalUrl())) {
+			return null;
+		}
+		return new URL(owner);
+	}
+
+	private boolean isLocalShard(String application) throws IOException {
+		return shards == null || shards.isLocal(getShardKey(application));
+	}
+
+	private String getShardKey(String application) throws IOException {
+		// les nodes Jenkins sont collectés avec leur master,
+		// et une application aggrégée avec son application d'aggrégation
+		// qui a besoin de ses données en mémoire dans RemoteCollector.collectData()
+		if (application.endsWith(JENKINS_NODES_SUFFIX)) {
+			return getShardKey(application.substring(0,
+					application.length() - JENKINS_NODES_SUFFIX.length()));
+		}
+		for (final Map.Entry<String, List<String>> entry : Parameters
+				.getApplicationsByAggregationApplication().entrySet()) {
+			if (entry.getValue().contains(application)) {
+				return getShardKey(entry.getKey());
+			}
+		}
+		return application;
+	}
+
+	private synchronized void releaseApplicationsOfOtherShards() throws IOException {
+		// après l'ajout ou le retrait d'un serveur de collecte dans le fichier partagé,
+		// les applications qui sont maintenant collectées ailleurs ne sont plus collectées ici,
+		// ni celles qui ont été supprimées de la liste partagée par un autre serveur de collecte
+		// (synchronized pour ne pas libérer une application en cours d'ajout ici)
+		for (final String application : new ArrayList<String>(
+				remoteCollectorsByApplication.keySet())) {
+			final boolean removed = !Parameters.getCollectorUrlsByApplications()
+					.containsKey(application)
+					&& !Parameters.getApplicationsByAggregationApplication()
+							.containsKey(application);
+			if (removed || !isLocalShard(application)) {
+				if (removed) {
+					LOGGER.info("the application " + application
+							+ " has been removed by another collector server");
+				} else {
+					LOGGER.info("the application " + application + " is now collected by "
+							+ shards.getOwner(getShardKey(application)));
+				}
+				lastCollectExceptionsByApplication.remove(application);
+				final RemoteCollector remoteCollector = remoteCollectorsByApplication
+						.remove(application);
+				if (remoteCollector != null && remoteCollector.getCollector() != null) {
+					// persiste les compteurs et libère le répertoire de stockage
+					remoteCollector.getCollector().stop();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Retourne le {@link Collector} pour une application à partir de son code.
 	 * @param application Code de l'application
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Répartition des applications entre plusieurs serveurs de collecte, par hachage cohérent.<br/>
+ * Les urls des serveurs de collecte sont lues dans un fichier partagé (une url par ligne,
+ * les lignes vides ou commençant par # étant ignorées) et relues lorsque ce fichier est modifié.
+ * Chaque url est placée plusieurs fois sur un anneau de hachage, et une application est collectée
+ * par le premier serveur de collecte qui suit le hachage de son nom sur l'anneau :
+ * l'ajout ou le retrait d'un serveur de collecte ne déplace donc qu'environ 1/n des applications.
+ * @author Emeric Vernat
+ */
+final class CollectorShards {
+	// nombre de noeuds virtuels par serveur de collecte, pour une répartition homogène
+	private static final int VIRTUAL_NODES = 100;
+
+	private final File file;
+	private final String localUrl;
+	private long lastModified = -1;
+	private List<String> shardUrls = Collections.emptyList();
+	private SortedMap<Long, String> ring = new TreeMap<Long, String>();
+
+	CollectorShards(File file, String localUrl) {
+		super();
+		assert file != null;
+		assert localUrl != null;
+		this.file = file;
+		this.localUrl = localUrl.trim();
+	}
+
+	String getLocalUrl() {
+		return localUrl;
+	}
+
+	synchronized List<String> getShardUrls() throws IOException {
+		reloadIfModified();
+		return shardUrls;
+	}
+
+	/**
+	 * Retourne l'url du serveur de collecte qui collecte une application.
+	 * @param application Code de l'application
+	 * @return String
+	 * @throws IOException e
+	 */
+	synchronized String getOwner(String application) throws IOException {
+		assert application != null;
+		reloadIfModified();
+		if (ring.isEmpty()) {
+			// pas de fichier ou fichier vide : ce serveur de collecte collecte tout
+			return localUrl;
+		}
+		final SortedMap<Long, String> tailMap = ring.tailMap(hash(application));
+		if (tailMap.isEmpty()) {
+			// on fait le tour de l'anneau
+			return ring.get(ring.firstKey());
+		}
+		return tailMap.get(tailMap.firstKey());
+	}
+
+	boolean isLocal(String application) throws IOException {
+		return localUrl.equals(getOwner(application));
+	}
+
+	private void reloadIfModified() throws IOException {
+		final long modified = file.lastModified();
+		if (modified == lastModified) {
+			return;
+		}
+		final List<String> urls = readShardUrls();
+		final SortedMap<Long, String> newRing = new TreeMap<Long, String>();
+		for (final String url : urls) {
+			for (int i = 0; i < VIRTUAL_NODES; i++) {
+				newRing.put(hash(url + '#' + i), url);
+			}
+		}
+		if (!urls.isEmpty() && !urls.contains(localUrl)) {
+			CollectorServer.LOGGER.warn("the url " + localUrl + " of this collector server is not in "
+					+ file + ", no application will be collected here");
+		}
+		CollectorServer.LOGGER.info("collector servers read from " + file + ": " + urls);
+		shardUrls = Collections.unmodifiableList(urls);
+		ring = newRing;
+		lastModified = modified;
+	}
+
+	private List<String> readShardUrls() throws IOException {
+		final List<String> urls = new ArrayList<String>();
+		if (!file.exists()) {
+			return urls;
+		}
+		final BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				final String url = line.trim();
+				if (!url.isEmpty() && url.charAt(0) != '#' && !urls.contains(url)) {
+					urls.add(url);
+				}
+				line = reader.readLine();
+			}
+		} finally {
+			reader.close();
+		}
+		return urls;
+	}
+
+	static long hash(String key) {
+		// MD5 plutôt que hashCode pour une répartition homogène sur l'anneau,
+		// et identique dans tous les serveurs de collecte quelle que soit la JVM
+		final byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+		long result = 0;
+		for (int i = 0; i < 8; i++) {
+			result = result << 8 | digest[i] & 0xFF;
+		}
+		return result;
+	}
+}
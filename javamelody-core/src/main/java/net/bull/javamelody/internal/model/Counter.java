@@ -86,6 +86,10 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 	 * Nom du counter des builds Jenkins.
 	 */
 	public static final String BUILDS_COUNTER_NAME = "builds";
+	/**
+	 * Nom du counter des temps des datasources jdbc (obtention, utilisation et préparation).
+	 */
+	public static final String DATASOURCE_COUNTER_NAME = "datasource";
 	/**
 	 * Nombre max d'erreurs conservées par le counter (si counter d'erreurs http ou de log d'erreurs).
 	 */
@@ -114,9 +118,14 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 	private final ConcurrentMap<String, CounterRequest> requests = new ConcurrentHashMap<String, CounterRequest>();
 	// note : même si rootCurrentContextsByThreadId n'est pas transient la map est normalement vide avant sérialisation
 	// (on garde en non transient pour ne pas avoir null après désérialisation ce qui pourrait donner des NPE)
+	// Les contextes sont indexés par leur identifiant et non plus par l'id du thread,
+	// pour supporter les threads virtuels et les contextes propagés vers d'autres threads
+	// (le nom du champ est conservé pour la compatibilité de sérialisation et du format xml)
 	@SuppressWarnings("all")
 	private final ConcurrentMap<Long, CounterRequestContext> rootCurrentContextsByThreadId = new ConcurrentHashMap<Long, CounterRequestContext>();
 	private final LinkedList<CounterError> errors; // NOPMD
+	// groupes d'erreurs par empreinte, non sérialisés (recalculés à partir des erreurs si besoin)
+	private final transient CounterErrorRing errorRing;
 	private Date startDate = new Date();
 	private int maxRequestsCount = MAX_REQUESTS_COUNT;
 	private long estimatedMemorySize;
@@ -125,6 +134,8 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 	// et le contexte serait incomplet.
 	private final transient ThreadLocal<CounterRequestContext> contextThreadLocal;
 	private transient Pattern requestTransformPattern;
+	private transient boolean sqlNormalizationEnabled;
+	private transient RequestsBudget requestsBudget;
 
 	/**
 	 * Comparateur pour ordonner les requêtes par sommes des durées.
@@ -257,8 +268,10 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 		this.contextThreadLocal = contextThreadLocal;
 		if (errorCounter) {
 			this.errors = new LinkedList<CounterError>();
+			this.errorRing = new CounterErrorRing();
 		} else {
 			this.errors = null;
+			this.errorRing = null;
 		}
 	}
 
@@ -389,6 +402,23 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 		this.requestTransformPattern = requestTransformPattern;
 	}
 
+	/**
+	 * Retourne true si les requêtes sql de ce counter sont normalisées avant agrégation.
+	 * @return boolean
+	 */
+	boolean isSqlNormalizationEnabled() {
+		return sqlNormalizationEnabled;
+	}
+
+	/**
+	 * Définit si les requêtes sql de ce counter sont normalisées avant agrégation
+	 * (littéraux remplacés par '?', listes de littéraux réduites et espaces normalisés).
+	 * @param sqlNormalizationEnabled boolean
+	 */
+	public void setSqlNormalizationEnabled(boolean sqlNormalizationEnabled) {
+		this.sqlNormalizationEnabled = sqlNormalizationEnabled;
+	}
+
 	/**
 	 * Retourne le nombre maximum de requêtes dans ce counter (entier positif).
 	 * @return int
@@ -415,6 +445,18 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 		return estimatedMemorySize;
 	}
 
+	void setRequestsBudget(RequestsBudget requestsBudget) {
+		this.requestsBudget = requestsBudget;
+	}
+
+	long getRequestsEstimatedMemorySize() {
+		long result = 0;
+		for (final CounterRequest request : requests.values()) {
+			result += RequestsBudget.estimateSize(request);
+		}
+		return result;
+	}
+
 	public void bindContextIncludingCpu(String requestName) {
 		bindContext(requestName, requestName, null, ThreadInformations.getCurrentThreadCpuTime(),
 				ThreadInformations.getCurrentThreadAllocatedBytes());
@@ -422,6 +464,7 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 
 	public void bindContext(String requestName, String completeRequestName,
 			HttpServletRequest httpRequest, long startCpuTime, long startAllocatedBytes) {
+		SelfMonitoring.incrementBindContextCount();
 		String remoteUser = null;
 		String sessionId = null;
 		if (httpRequest != null) {
@@ -447,15 +490,58 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 				startCpuTime, startAllocatedBytes, sessionId);
 		contextThreadLocal.set(context);
 		if (context.getParentContext() == null) {
-			rootCurrentContextsByThreadId.put(context.getThreadId(), context);
+			rootCurrentContextsByThreadId.put(context.getId(), context);
 		}
 	}
 
 	public void unbindContext() {
+		final CounterRequestContext context = contextThreadLocal.get();
 		try {
 			contextThreadLocal.remove();
 		} finally {
-			rootCurrentContextsByThreadId.remove(Thread.currentThread().getId());
+			if (context != null) {
+				// le contexte root de ce thread, même s'il restait un contexte fils
+				// (exception comme OutOfMemoryError par exemple)
+				rootCurrentContextsByThreadId.remove(context.getRootContext().getId());
+			}
+		}
+	}
+
+	/**
+	 * Retourne le contexte courant de ce thread pour le propager vers un autre thread
+	 * (tâche d'un executor par exemple), afin que les requêtes filles exécutées dans l'autre thread
+	 * soient rattachées à la requête courante.
+	 * @return CounterRequestContext ou null s'il n'y a pas de requête en cours dans ce thread
+	 */
+	public CounterRequestContext getCurrentContextToPropagate() {
+		final CounterRequestContext context = contextThreadLocal.get();
+		if (context != null && !context.isPropagated()) {
+			context.setPropagated();
+		}
+		return context;
+	}
+
+	/**
+	 * Associe au thread courant un contexte propagé depuis un autre thread.
+	 * @param context Contexte obtenu par getCurrentContextToPropagate() dans l'autre thread
+	 * @return Contexte précédent du thread courant, à restaurer par unbindPropagatedContext
+	 */
+	public CounterRequestContext bindPropagatedContext(CounterRequestContext context) {
+		assert context != null && context.isPropagated();
+		final CounterRequestContext previousContext = contextThreadLocal.get();
+		contextThreadLocal.set(context);
+		return previousContext;
+	}
+
+	/**
+	 * Restaure le contexte du thread courant après l'exécution d'une tâche avec un contexte propagé.
+	 * @param previousContext Contexte retourné par bindPropagatedContext
+	 */
+	public void unbindPropagatedContext(CounterRequestContext previousContext) {
+		if (previousContext == null) {
+			contextThreadLocal.remove();
+		} else {
+			contextThreadLocal.set(previousContext);
 		}
 	}
 
@@ -498,13 +584,23 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 
 		assert requestName != null;
 		assert duration >= 0;
+		SelfMonitoring.incrementAddRequestCount();
 		assert cpuTime >= -1; // -1 pour requêtes sql
 		assert allocatedKBytes >= -1; // -1 pour requêtes sql
 		assert responseSize >= -1L; // -1 pour requêtes sql
 
 		final String aggregateRequestName = getAggregateRequestName(requestName);
+		recordHitInRequestsBudget(aggregateRequestName);
 
 		final CounterRequestContext context = contextThreadLocal.get();
+		final long[] contentionTimes;
+		if (context != null && context.getParentCounter() == this
+				&& context.getParentContext() == null) {
+			// temps bloqué et en attente seulement pour le contexte root, comme pour le temps cpu
+			contentionTimes = context.getContentionTimes();
+		} else {
+			contentionTimes = null;
+		}
 		final CounterRequest request = getCounterRequestInternal(aggregateRequestName);
 		synchronized (request) {
 			// on synchronise par l'objet request pour éviter de mélanger des ajouts de hits
@@ -513,6 +609,14 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 			// sur les méthodes addHit et addChildHits dans la classe CounterRequest.
 			request.addHit(duration, cpuTime, allocatedKBytes, systemError, systemErrorStackTrace,
 					responseSize);
+			if (contentionTimes != null) {
+				request.addContentionTimes(contentionTimes[0], contentionTimes[1]);
+			}
+			if (context != null && context.getParentCounter() == this
+					&& context.getParentContext() == null) {
+				// lignes lues dans les ResultSet des requêtes sql de ce contexte root
+				request.addResultSetRows(context.getResultSetRows(), context.getFetchMicros());
+			}
 
 			if (context != null) {
 				// on ajoute dans la requête parente toutes les requêtes filles du contexte
@@ -535,7 +639,7 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 					context.addChildRequest(this, aggregateRequestName, request.getId(), duration,
 							systemError, responseSize);
 					// et reporte les requêtes filles dans le contexte parent et rebinde celui-ci
-					parentContext.closeChildContext();
+					parentContext.closeChildContext(context);
 					contextThreadLocal.set(parentContext);
 				}
 			} else {
@@ -547,12 +651,52 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 		}
 		if (systemErrorStackTrace != null) {
 			assert errorCounter;
-			synchronized (errors) {
-				errors.addLast(new CounterError(requestName, systemErrorStackTrace));
-				if (errors.size() > MAX_ERRORS_COUNT) {
-					errors.removeFirst();
-				}
-			}
+			addError(requestName, systemErrorStackTrace);
+		}
+	}
+
+	/**
+	 * Ajoute les lignes lues et le temps de lecture d'un ResultSet à une requête de ce compteur (sql),
+	 * ainsi qu'au contexte root en cours dans ce thread (requête http par exemple).
+	 * @param requestName Nom de la requête sql
+	 * @param rows Nombre de lignes lues
+	 * @param fetchMicros Temps des appels à next() en microsecondes
+	 */
+	public void addResultSetRows(String requestName, long rows, long fetchMicros) {
+		assert requestName != null;
+		assert rows >= 0;
+		assert fetchMicros >= 0;
+		// la requête a déjà été ajoutée lors de l'exécution, on ne la crée pas ici
+		final CounterRequest request = getCounterRequestInternal(
+				getAggregateRequestName(requestName), false);
+		synchronized (request) {
+			request.addResultSetRows(rows, fetchMicros);
+		}
+		// le contexte sql est déjà fermé après l'exécution, le contexte courant est celui de la requête parente
+		final CounterRequestContext context = contextThreadLocal.get();
+		if (context != null) {
+			context.getRootContext().addResultSetRows(rows, fetchMicros);
+		}
+	}
+
+	/**
+	 * Ajoute à une requête de ce compteur des hits cumulés par un {@link LatencyRecorder}.
+	 * @param requestName Nom de la requête
+	 * @param hits Nombre de hits
+	 * @param durationsSum Somme des durées
+	 * @param durationsSquareSum Somme des carrés des durées
+	 * @param maximum Durée maximum
+	 * @param systemErrors Nombre d'erreurs systèmes
+	 */
+	void addHits(String requestName, long hits, long durationsSum, long durationsSquareSum,
+			long maximum, long systemErrors) {
+		assert requestName != null;
+		assert hits > 0;
+		final String aggregateRequestName = getAggregateRequestName(requestName);
+		recordHitInRequestsBudget(aggregateRequestName);
+		final CounterRequest request = getCounterRequestInternal(aggregateRequestName);
+		synchronized (request) {
+			request.addHits(hits, durationsSum, durationsSquareSum, maximum, systemErrors);
 		}
 	}
 
@@ -571,13 +715,32 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 		// le code ci-après suppose qu'il n'y a pas de contexte courant pour les erreurs systèmes
 		// contrairement à la méthode addRequest
 		assert contextThreadLocal.get() == null;
+		SelfMonitoring.incrementAddRequestCount();
 		final String aggregateRequestName = getAggregateRequestName(requestName);
+		recordHitInRequestsBudget(aggregateRequestName);
 		final CounterRequest request = getCounterRequestInternal(aggregateRequestName);
 		synchronized (request) {
 			request.addHit(duration, cpuTime, allocatedKBytes, true, stackTrace, -1);
 		}
+		addError(requestName, stackTrace);
+	}
+
+	private void addError(String message, String stackTrace) {
+		// pendant une rafale d'erreurs identiques, seule la première occurrence de chaque fenêtre
+		// de temps est ajoutée dans la liste synchronisée des dernières erreurs,
+		// les autres sont seulement comptées sans verrou dans les groupes d'erreurs
+		final CounterError counterError;
+		if (errorRing != null) {
+			counterError = errorRing.add(message, stackTrace, System.currentTimeMillis());
+			if (counterError == null) {
+				// occurrence comptée dans l'erreur de la fenêtre en cours
+				return;
+			}
+		} else {
+			counterError = new CounterError(message, stackTrace);
+		}
 		synchronized (errors) {
-			errors.addLast(new CounterError(requestName, stackTrace));
+			errors.addLast(counterError);
 			if (errors.size() > MAX_ERRORS_COUNT) {
 				errors.removeFirst();
 			}
@@ -639,21 +802,29 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 	}
 
 	private String getAggregateRequestName(String requestName) {
+		final String normalizedRequestName;
+		if (sqlNormalizationEnabled) {
+			// normalisation en une seule passe des littéraux sql non bindés,
+			// avec un cache selon l'identité de la chaîne
+			normalizedRequestName = SqlNormalizer.normalize(requestName);
+		} else {
+			normalizedRequestName = requestName;
+		}
 		final String aggregateRequestName;
 		if (requestTransformPattern == null) {
-			aggregateRequestName = requestName;
+			aggregateRequestName = normalizedRequestName;
 		} else {
 			// ce pattern optionnel permet de transformer la description de la requête
 			// pour supprimer des parties variables (identifiant d'objet par exemple)
 			// et pour permettre l'agrégation sur cette requête
-			final Matcher matcher = requestTransformPattern.matcher(requestName);
+			final Matcher matcher = requestTransformPattern.matcher(normalizedRequestName);
 			try {
 				aggregateRequestName = matcher.replaceAll(TRANSFORM_REPLACEMENT);
 			} catch (final StackOverflowError e) {
 				// regexp can throw StackOverflowError for (A|B)*
 				// see https://github.com/javamelody/javamelody/issues/480
 				LOG.warn(e.toString(), e);
-				return requestName;
+				return normalizedRequestName;
 			}
 		}
 		return aggregateRequestName;
@@ -682,12 +853,16 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 		if (size > maxRequests) {
 			// Si le nombre de requêtes est supérieur à 10000 (sql non bindé par ex.),
 			// on essaye ici d'éviter de saturer la mémoire (et le disque dur)
-			// avec toutes ces requêtes différentes en éliminant celles ayant moins de 10 hits.
+			// avec toutes ces requêtes différentes en éliminant celles ayant moins de 10 hits,
+			// en commençant par celles ayant le moins de hits.
 			// (utile pour une agrégation par année dans PeriodCounterFactory par ex.)
 			// Mais inutile de le faire dans d'autres méthodes de Counter
 			// car ce serait mauvais pour les perfs, cela ne laisserait aucune chance
 			// à une nouvelle requête et car cela sera fait par la classe collector
-			for (final CounterRequest request : requests.values()) {
+			final List<CounterRequest> requestsByHits = new ArrayList<CounterRequest>(
+					requests.values());
+			Collections.sort(requestsByHits, new CounterRequestByHitsComparator());
+			for (final CounterRequest request : requestsByHits) {
 				if (request.getHits() < 10) {
 					removeRequest(request.getName());
 					size--;
@@ -740,7 +915,37 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 
 	void removeRequest(String requestName) {
 		assert requestName != null;
-		requests.remove(requestName);
+		final CounterRequest request = requests.remove(requestName);
+		if (request != null && requestsBudget != null) {
+			requestsBudget.release(request);
+		}
+	}
+
+	private void recordHitInRequestsBudget(String aggregateRequestName) {
+		final RequestsBudget budget = requestsBudget;
+		if (budget != null) {
+			// chaque hit compte pour la fréquence, que la requête soit admise ou non
+			budget.recordHit(this, aggregateRequestName);
+		}
+	}
+
+	/**
+	 * Enlève la requête en paramètre, si elle est toujours dans ce counter,
+	 * pour faire de la place dans le budget mémoire des requêtes.
+	 * @param request CounterRequest (non cloné)
+	 * @return true si la requête a été enlevée par cet appel
+	 */
+	boolean evictRequest(CounterRequest request) {
+		return requests.remove(request.getName(), request);
+	}
+
+	/**
+	 * Retourne une copie du tableau des requêtes de ce counter (non clonées),
+	 * pour l'échantillonnage des victimes du budget mémoire des requêtes.
+	 * @return Tableau de CounterRequest
+	 */
+	CounterRequest[] getRequestsSnapshot() {
+		return requests.values().toArray(new CounterRequest[0]);
 	}
 
 	/**
@@ -780,10 +985,16 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 		CounterRequest request = requests.get(requestName);
 		if (request == null) {
 			request = new CounterRequest(requestName, getName());
-			if (saveRequestIfAbsent) {
+			// si le budget mémoire des requêtes est atteint, la nouvelle requête n'est conservée
+			// que si elle a été vue plus souvent qu'une requête existante de moindre valeur
+			final RequestsBudget budget = requestsBudget;
+			if (saveRequestIfAbsent && (budget == null || budget.admit(this, request))) {
 				// putIfAbsent a l'avantage d'être garanti atomique, même si ce n'est pas indispensable
 				final CounterRequest precedentRequest = requests.putIfAbsent(requestName, request);
 				if (precedentRequest != null) {
+					if (budget != null) {
+						budget.release(request);
+					}
 					request = precedentRequest;
 				}
 			}
@@ -894,6 +1105,24 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 		}
 	}
 
+	/**
+	 * @return Liste des groupes d'erreurs identiques triée par nombre d'occurrences décroissant,
+	 * 	à partir des erreurs récentes comptées dans ce counter ou sinon à partir de la liste des erreurs
+	 * 	(counter lu depuis un fichier ou venant d'un serveur distant par exemple).
+	 */
+	public List<CounterErrorGroup> getErrorGroups() {
+		if (errors == null) {
+			return Collections.emptyList();
+		}
+		if (errorRing != null) {
+			final List<CounterErrorGroup> errorGroups = errorRing.getErrorGroups();
+			if (!errorGroups.isEmpty()) {
+				return errorGroups;
+			}
+		}
+		return CounterErrorGroup.groupErrors(getErrors());
+	}
+
 	/**
 	 * Retourne le nombre d'erreurs dans ce counter.
 	 * @return int
@@ -914,10 +1143,16 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 	 */
 	public void clear() {
 		requests.clear();
+		if (requestsBudget != null) {
+			requestsBudget.resync();
+		}
 		if (errors != null) {
 			synchronized (errors) {
 				errors.clear();
 			}
+			if (errorRing != null) {
+				errorRing.clear();
+			}
 		}
 		startDate = new Date();
 	}
@@ -934,6 +1169,7 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 		clone.maxRequestsCount = getMaxRequestsCount();
 		clone.displayed = isDisplayed();
 		clone.requestTransformPattern = getRequestTransformPattern();
+		clone.sqlNormalizationEnabled = isSqlNormalizationEnabled();
 		// on ne copie pas rootCurrentContextsByThreadId car on ne fournit pas les requêtes en cours
 		// qui sont très rapidement obsolètes au serveur de collecte (et sinon cela poserait la question
 		// des clones de parentCounter, de l'agrégation, de la synchro d'horloge pour la durée
@@ -951,15 +1187,18 @@ public class Counter implements Cloneable, Serializable { // NOPMD
 
 	/**
 	 * Enregistre le counter.
+	 * @return Taille du fichier écrit, ou 0 s'il n'a pas été écrit
 	 * @throws IOException e
 	 */
-	void writeToFile() throws IOException {
+	long writeToFile() throws IOException {
 		// on clone le counter avant de le sérialiser pour ne pas avoir de problèmes de concurrences d'accès
 		final Counter counter = this.clone();
 		// on n'écrit pas rootCurrentContextsByThreadId en fichier
 		// puisque ces données ne seront plus vraies dans quelques secondes (clear pour être sûr ici)
 		counter.rootCurrentContextsByThreadId.clear();
-		estimatedMemorySize = new CounterStorage(counter).writeToFile();
+		final CounterStorage counterStorage = new CounterStorage(counter);
+		estimatedMemorySize = counterStorage.writeToFile();
+		return counterStorage.getWrittenBytes();
 	}
 
 	/**
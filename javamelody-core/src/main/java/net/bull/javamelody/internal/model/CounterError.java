@@ -17,8 +17,14 @@
  */
 package net.bull.javamelody.internal.model;
 
+import java.io.PrintWriter;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -41,12 +47,27 @@ public class CounterError implements Serializable {
 	 * Max size of error stack-trace.
 	 */
 	private static final int STACKTRACE_MAX_LENGTH = 50000;
+	/**
+	 * Number of top frames of each exception in the fingerprint of a stack-trace.
+	 */
+	private static final int FINGERPRINT_FRAMES_COUNT = 5;
+	private static final int MAX_CAUSES_COUNT = 10;
+	// puissance de 2
+	private static final int RENDERED_STACK_TRACES_SIZE = 64;
+	private static final AtomicReferenceArray<RenderedStackTrace> RENDERED_STACK_TRACES = new AtomicReferenceArray<RenderedStackTrace>(
+			RENDERED_STACK_TRACES_SIZE);
+	private static final AtomicLongFieldUpdater<CounterError> OTHER_OCCURRENCES_UPDATER = AtomicLongFieldUpdater
+			.newUpdater(CounterError.class, "otherOccurrences");
 
 	private final long time;
 	private final String remoteUser;
 	private final String httpRequest;
 	private final String message;
 	private final String stackTrace;
+	// occurrences identiques suivantes dans la même fenêtre de temps (cf CounterErrorRing),
+	// sérialisées avec l'erreur pour le serveur de collecte et le stockage
+	// (et 0 si l'erreur a été sérialisée par une version précédente)
+	private volatile long otherOccurrences;
 
 	public CounterError(String message, String stackTrace) {
 		super();
@@ -83,6 +104,71 @@ public class CounterError implements Serializable {
 		}
 	}
 
+	/**
+	 * Stack-trace déjà rendue en texte, avec son empreinte.
+	 */
+	private static final class RenderedStackTrace {
+		private final List<Object> fingerprint;
+		private final int hash;
+		private final String stackTrace;
+		private final long time;
+
+		RenderedStackTrace(List<Object> fingerprint, int hash, String stackTrace, long time) {
+			super();
+			this.fingerprint = fingerprint;
+			this.hash = hash;
+			this.stackTrace = stackTrace;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * Retourne la stack-trace d'une exception en texte. Pendant une rafale d'erreurs,
+	 * le texte n'est rendu qu'une fois par empreinte (classes et messages des exceptions
+	 * et premières lignes de leurs stack-traces) et par fenêtre de temps,
+	 * puis la même instance est retournée.
+	 * @param throwable Throwable
+	 * @return String
+	 */
+	public static String getStackTrace(Throwable throwable) {
+		final List<Object> fingerprint = getFingerprint(throwable);
+		final int hash = fingerprint.hashCode();
+		final int index = (hash ^ hash >>> 16) & (RENDERED_STACK_TRACES_SIZE - 1);
+		final long now = System.currentTimeMillis();
+		final RenderedStackTrace rendered = RENDERED_STACK_TRACES.get(index);
+		if (rendered != null && rendered.hash == hash
+				&& now - rendered.time < CounterErrorRing.WINDOW_MILLIS
+				&& rendered.fingerprint.equals(fingerprint)) {
+			return rendered.stackTrace;
+		}
+		final StringWriter stackTrace = new StringWriter(200);
+		throwable.printStackTrace(new PrintWriter(stackTrace));
+		final String result = stackTrace.toString();
+		RENDERED_STACK_TRACES.set(index, new RenderedStackTrace(fingerprint, hash, result, now));
+		return result;
+	}
+
+	private static List<Object> getFingerprint(Throwable throwable) {
+		final List<Object> fingerprint = new ArrayList<Object>();
+		Throwable current = throwable;
+		int causesCount = 0;
+		while (current != null && causesCount < MAX_CAUSES_COUNT) {
+			// toString() pour la classe et le message, tels qu'affichés dans la stack-trace
+			fingerprint.add(current.toString());
+			final StackTraceElement[] stackTrace = current.getStackTrace();
+			for (int i = 0; i < stackTrace.length && i < FINGERPRINT_FRAMES_COUNT; i++) {
+				fingerprint.add(stackTrace[i]);
+			}
+			final Throwable cause = current.getCause();
+			if (cause == current) {
+				break;
+			}
+			current = cause;
+			causesCount++;
+		}
+		return fingerprint;
+	}
+
 	/**
 	 * Définit la requête http (peut être nulle) pour le thread courant.
 	 * @param request HttpServletRequest
@@ -132,6 +218,18 @@ public class CounterError implements Serializable {
 		return stackTrace;
 	}
 
+	void addOccurrence() {
+		OTHER_OCCURRENCES_UPDATER.incrementAndGet(this);
+	}
+
+	/**
+	 * @return Nombre d'occurrences de cette erreur, y compris les occurrences identiques suivantes
+	 * dans la même fenêtre de temps
+	 */
+	public long getOccurrencesCount() {
+		return 1 + otherOccurrences;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public String toString() {
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groupe d'erreurs identiques (même message et même stack-trace), avec le nombre d'occurrences
+ * et les dates de première et de dernière occurrence.
+ * @author Emeric Vernat
+ */
+public class CounterErrorGroup implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final String message;
+	private final String stackTrace;
+	private final long count;
+	private final long firstTime;
+	private final long lastTime;
+
+	/**
+	 * Comparateur pour ordonner les groupes d'erreurs par nombre d'occurrences.
+	 */
+	static final class CounterErrorGroupComparator
+			implements Comparator<CounterErrorGroup>, Serializable {
+		private static final long serialVersionUID = 1L;
+
+		/** {@inheritDoc} */
+		@Override
+		public int compare(CounterErrorGroup group1, CounterErrorGroup group2) {
+			if (group1.getCount() < group2.getCount()) {
+				return -1;
+			} else if (group1.getCount() > group2.getCount()) {
+				return 1;
+			}
+			return 0;
+		}
+	}
+
+	CounterErrorGroup(String message, String stackTrace, long count, long firstTime,
+			long lastTime) {
+		super();
+		assert message != null;
+		this.message = message;
+		this.stackTrace = stackTrace;
+		this.count = count;
+		this.firstTime = firstTime;
+		this.lastTime = lastTime;
+	}
+
+	/**
+	 * Regroupe des erreurs par message et stack-trace, par exemple pour des erreurs venant
+	 * d'un serveur distant pour lesquelles on n'a que la liste des dernières erreurs.
+	 * @param errors Liste d'erreurs triée par date croissante
+	 * @return Liste des groupes triée par nombre d'occurrences décroissant
+	 */
+	static List<CounterErrorGroup> groupErrors(List<CounterError> errors) {
+		final Map<String, List<CounterError>> errorsByKey = new LinkedHashMap<String, List<CounterError>>();
+		for (final CounterError error : errors) {
+			final String key = error.getMessage() + '\n' + error.getStackTrace();
+			List<CounterError> list = errorsByKey.get(key);
+			if (list == null) {
+				list = new ArrayList<CounterError>();
+				errorsByKey.put(key, list);
+			}
+			list.add(error);
+		}
+		final List<CounterErrorGroup> result = new ArrayList<CounterErrorGroup>(
+				errorsByKey.size());
+		for (final List<CounterError> list : errorsByKey.values()) {
+			final CounterError first = list.get(0);
+			final CounterError last = list.get(list.size() - 1);
+			long count = 0;
+			for (final CounterError error : list) {
+				count += error.getOccurrencesCount();
+			}
+			result.add(new CounterErrorGroup(first.getMessage(), first.getStackTrace(), count,
+					first.getTime(), last.getTime()));
+		}
+		sort(result);
+		return result;
+	}
+
+	static void sort(List<CounterErrorGroup> groups) {
+		if (groups.size() > 1) {
+			Collections.sort(groups, Collections.reverseOrder(new CounterErrorGroupComparator()));
+		}
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public String getStackTrace() {
+		return stackTrace;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public Date getFirstDate() {
+		return new Date(firstTime);
+	}
+
+	public Date getLastDate() {
+		return new Date(lastTime);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[message=" + getMessage() + ", count=" + getCount()
+				+ ']';
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Anneau borné et sans verrou des groupes d'erreurs d'un compteur d'erreurs, par empreinte
+ * (message et stack-trace). Il conserve le nombre d'occurrences et les dates de première et
+ * de dernière occurrence, et ne crée qu'une {@link CounterError} par groupe et par fenêtre de temps
+ * pour que la liste synchronisée des dernières erreurs ne soit pas saturée par une rafale
+ * d'erreurs identiques : les occurrences suivantes dans la fenêtre sont comptées dans cette
+ * CounterError, et donc conservées avec elle lors de la sérialisation.<br/>
+ * Seules les erreurs avec stack-trace sont ainsi regroupées dans la liste des dernières erreurs :
+ * les erreurs sans stack-trace (Error404, Error500 du filtre http) y sont toutes conservées,
+ * car elles ne se distinguent que par leur url et leur utilisateur.
+ * @author Emeric Vernat
+ */
+final class CounterErrorRing {
+	/**
+	 * Durée de la fenêtre pendant laquelle une seule occurrence d'un groupe est conservée
+	 * dans la liste des dernières erreurs.
+	 */
+	static final long WINDOW_MILLIS = 60 * 1000;
+	// puissance de 2
+	private static final int SIZE = 128;
+	// nombre de positions consécutives essayées en cas de collision
+	private static final int MAX_PROBES = 8;
+
+	private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<Entry>(SIZE);
+
+	/**
+	 * Groupe d'erreurs dans l'anneau.
+	 */
+	private static final class Entry {
+		private final int hash;
+		private final String message;
+		private final String stackTrace;
+		private final long firstTime;
+		private final AtomicLong count = new AtomicLong(1);
+		private final AtomicLong windowStartTime;
+		private volatile long lastTime;
+		// erreur de la fenêtre de temps en cours, dans la liste des dernières erreurs
+		private volatile CounterError windowError;
+
+		Entry(int hash, String message, String stackTrace, long time, CounterError windowError) {
+			super();
+			this.hash = hash;
+			this.message = message;
+			this.stackTrace = stackTrace;
+			this.firstTime = time;
+			this.lastTime = time;
+			this.windowStartTime = new AtomicLong(time);
+			this.windowError = windowError;
+		}
+
+		CounterError addOccurrence(long time) {
+			count.incrementAndGet();
+			lastTime = time;
+			if (stackTrace == null) {
+				// erreur sans stack-trace : occurrence conservée avec son url et son utilisateur
+				return new CounterError(message, null);
+			}
+			final long start = windowStartTime.get();
+			// un seul thread gagne le compareAndSet pour une nouvelle fenêtre
+			if (time - start >= WINDOW_MILLIS && windowStartTime.compareAndSet(start, time)) {
+				final CounterError counterError = new CounterError(message, stackTrace);
+				windowError = counterError;
+				return counterError;
+			}
+			windowError.addOccurrence();
+			return null;
+		}
+
+		boolean matches(int otherHash, String otherMessage, String otherStackTrace) {
+			// la stack-trace est souvent la même instance pendant une rafale
+			// (cf CounterError.getStackTrace(Throwable)), d'où un equals rapide
+			return hash == otherHash && message.equals(otherMessage)
+					&& (stackTrace == null ? otherStackTrace == null
+							: stackTrace.equals(otherStackTrace));
+		}
+
+		CounterErrorGroup toCounterErrorGroup() {
+			return new CounterErrorGroup(message, stackTrace, count.get(), firstTime, lastTime);
+		}
+	}
+
+	/**
+	 * Ajoute une occurrence d'erreur.
+	 * @param message Message
+	 * @param stackTrace Stack-trace éventuelle
+	 * @param time Date de l'occurrence en millisecondes
+	 * @return CounterError à ajouter dans la liste des dernières erreurs si cette occurrence est
+	 * la première de son groupe dans la fenêtre de temps, ou null si elle a été comptée
+	 * dans la CounterError de la fenêtre en cours
+	 */
+	CounterError add(String message, String stackTrace, long time) {
+		final int hash = hash(message, stackTrace);
+		while (true) {
+			// sondage linéaire : le groupe, ou une position libre, parmi quelques positions
+			int oldestIndex = -1;
+			Entry oldest = null;
+			int freeIndex = -1;
+			for (int i = 0; i < MAX_PROBES; i++) {
+				final int index = (hash + i) & (SIZE - 1);
+				final Entry entry = entries.get(index);
+				if (entry == null) {
+					freeIndex = index;
+					break;
+				}
+				if (entry.matches(hash, message, stackTrace)) {
+					return entry.addOccurrence(time);
+				}
+				if (oldest == null || entry.lastTime < oldest.lastTime) {
+					oldest = entry;
+					oldestIndex = index;
+				}
+			}
+			final CounterError counterError = new CounterError(message, stackTrace);
+			final Entry newEntry = new Entry(hash, message, stackTrace, time, counterError);
+			if (freeIndex != -1) {
+				if (entries.compareAndSet(freeIndex, null, newEntry)) {
+					return counterError;
+				}
+			} else if (entries.compareAndSet(oldestIndex, oldest, newEntry)) {
+				// anneau plein à cet endroit : le groupe le moins récent est remplacé,
+				// ses occurrences restant comptées dans ses CounterError
+				return counterError;
+			}
+			// modifié entre-temps par un autre thread, on recommence
+		}
+	}
+
+	private static int hash(String message, String stackTrace) {
+		int hash = message.hashCode();
+		if (stackTrace != null) {
+			hash = 31 * hash + stackTrace.hashCode();
+		}
+		// dispersion de tous les bits (finalisation de murmur3), car les messages d'erreurs
+		// se suivent souvent ("Error404", "Error500") et formeraient des grappes lors du sondage linéaire
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		return hash ^ hash >>> 16;
+	}
+
+	/**
+	 * @return Liste des groupes d'erreurs triée par nombre d'occurrences décroissant
+	 */
+	List<CounterErrorGroup> getErrorGroups() {
+		final List<CounterErrorGroup> result = new ArrayList<CounterErrorGroup>();
+		for (int i = 0; i < SIZE; i++) {
+			final Entry entry = entries.get(i);
+			if (entry != null) {
+				result.add(entry.toCounterErrorGroup());
+			}
+		}
+		CounterErrorGroup.sort(result);
+		return result;
+	}
+
+	void clear() {
+		for (int i = 0; i < SIZE; i++) {
+			entries.set(i, null);
+		}
+	}
+}
@@ -49,6 +49,13 @@ public class CounterRequest implements Cloneable, Serializable {
 	private long maximum;
 	private long cpuTimeSum;
 	private long allocatedKBytesSum;
+	// hits pour lesquels les temps bloqués et en attente ont été mesurés
+	private long contentionHits;
+	private long blockedTimeSum;
+	private long waitedTimeSum;
+	// lignes lues et temps des appels à next() des ResultSet (requêtes sql ou requêtes parentes)
+	private long resultSetRowsSum;
+	private long fetchMicrosSum;
 	private long systemErrors;
 	private long responseSizesSum;
 	private long childHits;
@@ -208,6 +215,56 @@ public class CounterRequest implements Cloneable, Serializable {
 		return -1;
 	}
 
+	/**
+	 * @return Moyenne des temps bloqués en attente d'entrée dans des moniteurs (synchronized)
+	 * pour l'exécution de cette requête, ou -1 si non mesurés
+	 */
+	public int getBlockedTimeMean() {
+		if (contentionHits > 0) {
+			return (int) (blockedTimeSum / contentionHits);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Moyenne des temps en attente (wait, sleep, park) pour l'exécution de cette requête,
+	 * ou -1 si non mesurés
+	 */
+	public int getWaitedTimeMean() {
+		if (contentionHits > 0) {
+			return (int) (waitedTimeSum / contentionHits);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Booléen selon que des lignes de ResultSet ont été lues pour cette requête
+	 */
+	public boolean hasResultSetRows() {
+		return resultSetRowsSum > 0 || fetchMicrosSum > 0;
+	}
+
+	/**
+	 * @return Nombre moyen de lignes lues dans les ResultSet pour l'exécution de cette requête
+	 */
+	public long getResultSetRowsMean() {
+		if (hits > 0) {
+			return resultSetRowsSum / hits;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Moyenne des temps de lecture des lignes des ResultSet (appels à next()) en millisecondes
+	 * pour l'exécution de cette requête
+	 */
+	public int getFetchDurationMean() {
+		if (hits > 0) {
+			return (int) (fetchMicrosSum / hits / 1000);
+		}
+		return -1;
+	}
+
 	/**
 	 * @return Pourcentage des erreurs systèmes dans l'exécution de cette requête
 	 */
@@ -309,6 +366,32 @@ public class CounterRequest implements Cloneable, Serializable {
 		responseSizesSum += responseSize;
 	}
 
+	void addContentionTimes(long blockedTime, long waitedTime) {
+		contentionHits++;
+		blockedTimeSum += blockedTime;
+		waitedTimeSum += waitedTime;
+	}
+
+	void addResultSetRows(long rows, long fetchMicros) {
+		resultSetRowsSum += rows;
+		fetchMicrosSum += fetchMicros;
+	}
+
+	void addHits(long hitsToAdd, long durationsSumToAdd, long durationsSquareSumToAdd,
+			long maximumToAdd, long systemErrorsToAdd) {
+		// hits sans temps cpu, ni Ko alloués, ni taille de réponse, comme pour les requêtes sql
+		hits += hitsToAdd;
+		durationsSum += durationsSumToAdd;
+		durationsSquareSum += durationsSquareSumToAdd;
+		if (maximumToAdd > maximum) {
+			maximum = maximumToAdd;
+		}
+		cpuTimeSum -= hitsToAdd;
+		allocatedKBytesSum -= hitsToAdd;
+		systemErrors += systemErrorsToAdd;
+		responseSizesSum -= hitsToAdd;
+	}
+
 	void addChildHits(ICounterRequestContext context) {
 		childHits += context.getChildHits();
 		childDurationsSum += context.getChildDurationsSum();
@@ -352,6 +435,11 @@ public class CounterRequest implements Cloneable, Serializable {
 			}
 			cpuTimeSum += request.cpuTimeSum;
 			allocatedKBytesSum += request.allocatedKBytesSum;
+			contentionHits += request.contentionHits;
+			blockedTimeSum += request.blockedTimeSum;
+			waitedTimeSum += request.waitedTimeSum;
+			resultSetRowsSum += request.resultSetRowsSum;
+			fetchMicrosSum += request.fetchMicrosSum;
 			systemErrors += request.systemErrors;
 			responseSizesSum += request.responseSizesSum;
 			childHits += request.childHits;
@@ -387,6 +475,11 @@ public class CounterRequest implements Cloneable, Serializable {
 			}
 			cpuTimeSum -= request.cpuTimeSum;
 			allocatedKBytesSum -= request.allocatedKBytesSum;
+			contentionHits -= request.contentionHits;
+			blockedTimeSum -= request.blockedTimeSum;
+			waitedTimeSum -= request.waitedTimeSum;
+			resultSetRowsSum -= request.resultSetRowsSum;
+			fetchMicrosSum -= request.fetchMicrosSum;
 			systemErrors -= request.systemErrors;
 			responseSizesSum -= request.responseSizesSum;
 			childHits -= request.childHits;
@@ -41,6 +41,8 @@ public class CounterRequestAggregation {
 	private final boolean timesDisplayed;
 	private final boolean cpuTimesDisplayed;
 	private final boolean allocatedKBytesDisplayed;
+	private final boolean contentionTimesDisplayed;
+	private final boolean resultSetRowsDisplayed;
 	private final CounterRequest warningRequest;
 	private final CounterRequest severeRequest;
 
@@ -69,6 +71,8 @@ public class CounterRequestAggregation {
 		this.timesDisplayed = globalRequest.getMean() >= 0;
 		this.cpuTimesDisplayed = globalRequest.getCpuTimeMean() >= 0;
 		this.allocatedKBytesDisplayed = globalRequest.getAllocatedKBytesMean() >= 0;
+		this.contentionTimesDisplayed = globalRequest.getBlockedTimeMean() >= 0;
+		this.resultSetRowsDisplayed = globalRequest.hasResultSetRows();
 
 		// globalMean et globalStandardDeviation sont utilisées pour déterminer
 		// les seuils des couleurs des moyennes dans le tableau quand les paramètres
@@ -153,6 +157,14 @@ public class CounterRequestAggregation {
 		return allocatedKBytesDisplayed;
 	}
 
+	public boolean isContentionTimesDisplayed() {
+		return contentionTimesDisplayed;
+	}
+
+	public boolean isResultSetRowsDisplayed() {
+		return resultSetRowsDisplayed;
+	}
+
 	public List<CounterRequest> getRequestsAggregatedOrFilteredByClassName(String requestId) {
 		final List<CounterRequest> requestsAggregatedByClassName = getRequestsAggregatedByClassName();
 		final List<CounterRequest> requestList;
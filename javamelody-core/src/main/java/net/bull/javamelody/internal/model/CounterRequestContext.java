@@ -18,12 +18,14 @@
 package net.bull.javamelody.internal.model;
 
 import java.io.Serializable;
+import java.lang.management.ThreadInfo;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -38,7 +40,8 @@ import net.bull.javamelody.internal.model.CounterRequest.ICounterRequestContext;
 public class CounterRequestContext implements ICounterRequestContext, Cloneable, Serializable {
 	private static final long serialVersionUID = 1L;
 	private static final Long ONE = 1L;
-	private static final String SPRING_BEST_MATCHING_PATTERN_ATTRIBUTE = "org.springframework.web.servlet.HandlerMapping.bestMatchingPattern";
+	private static final AtomicLong NEXT_ID = new AtomicLong();
+	public static final String SPRING_BEST_MATCHING_PATTERN_ATTRIBUTE = "org.springframework.web.servlet.HandlerMapping.bestMatchingPattern";
 	// attention de ne pas sérialiser le counter d'origine vers le serveur de collecte, le vrai ayant été cloné
 	private Counter parentCounter;
 	private final CounterRequestContext parentContext;
@@ -52,12 +55,24 @@ public class CounterRequestContext implements ICounterRequestContext, Cloneable,
 	private final long startTime;
 	private final long startCpuTime;
 	private final long startAllocatedBytes;
+	// temps bloqué et en attente du thread au début du contexte root, -1 si non mesurés
+	private long startBlockedTime = -1;
+	private long startWaitedTime = -1;
 	private final String sessionId;
 	// ces 2 champs sont initialisés à 0
 	private int childHits;
 	private int childDurationsSum;
+	// lignes lues et temps de lecture des ResultSet des requêtes sql, seulement dans un contexte root
+	private long resultSetRows;
+	private long fetchMicros;
 	@SuppressWarnings("all")
 	private Map<String, Long> childRequestsExecutionsByRequestId;
+	// true si ce contexte a été propagé vers d'autres threads (tâches d'un executor par exemple),
+	// auquel cas les requêtes filles peuvent être ajoutées de manière concurrente
+	private transient volatile boolean propagated;
+	// identifiant dans les requêtes en cours d'un counter, indépendant du thread
+	// (un thread virtuel ou un thread de pool peut exécuter successivement plusieurs requêtes)
+	private final transient long id = NEXT_ID.incrementAndGet();
 
 	// CHECKSTYLE:OFF
 	public CounterRequestContext(Counter parentCounter, CounterRequestContext parentContext,
@@ -67,7 +82,16 @@ public class CounterRequestContext implements ICounterRequestContext, Cloneable,
 		this(parentCounter, parentContext, requestName, completeRequestName, httpRequest,
 				remoteUser, Thread.currentThread().getId(), System.currentTimeMillis(),
 				startCpuTime, startAllocatedBytes, sessionId);
-		if (parentContext != null) {
+		if (parentContext == null) {
+			final ThreadInfo threadInfo = ThreadInformations.getCurrentThreadContentionInfo();
+			if (threadInfo != null) {
+				this.startBlockedTime = threadInfo.getBlockedTime();
+				this.startWaitedTime = threadInfo.getWaitedTime();
+			}
+		}
+		if (parentContext != null && parentContext.getThreadId() == getThreadId()) {
+			// si le contexte parent a été propagé depuis un autre thread, ce contexte fils
+			// ne fait pas partie de la chaîne des contextes fils courants du thread parent
 			parentContext.setCurrentChildContext(this);
 		}
 	}
@@ -171,6 +195,18 @@ public class CounterRequestContext implements ICounterRequestContext, Cloneable,
 		return threadId;
 	}
 
+	long getId() {
+		return id;
+	}
+
+	CounterRequestContext getRootContext() {
+		CounterRequestContext context = this;
+		while (context.getParentContext() != null) {
+			context = context.getParentContext();
+		}
+		return context;
+	}
+
 	public int getDuration(long timeOfSnapshot) {
 		// durée écoulée (non négative même si resynchro d'horloge)
 		return (int) Math.max(timeOfSnapshot - startTime, 0);
@@ -195,6 +231,36 @@ public class CounterRequestContext implements ICounterRequestContext, Cloneable,
 		return Math.max(allocatedKBytes, 0);
 	}
 
+	/**
+	 * Temps bloqué en attente d'entrée dans des moniteurs (synchronized) et temps en attente
+	 * (wait, sleep, park) depuis le début de ce contexte root, dans le thread courant.
+	 * @return Tableau des temps bloqué et en attente en millisecondes, ou null si non mesurés
+	 */
+	long[] getContentionTimes() {
+		if (startBlockedTime < 0 || getThreadId() != Thread.currentThread().getId()) {
+			return null;
+		}
+		final ThreadInfo threadInfo = ThreadInformations.getCurrentThreadContentionInfo();
+		if (threadInfo == null) {
+			return null;
+		}
+		return new long[] { Math.max(threadInfo.getBlockedTime() - startBlockedTime, 0),
+				Math.max(threadInfo.getWaitedTime() - startWaitedTime, 0), };
+	}
+
+	synchronized void addResultSetRows(long rows, long micros) {
+		resultSetRows += rows;
+		fetchMicros += micros;
+	}
+
+	long getResultSetRows() {
+		return resultSetRows;
+	}
+
+	long getFetchMicros() {
+		return fetchMicros;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public int getChildHits() {
@@ -211,6 +277,12 @@ public class CounterRequestContext implements ICounterRequestContext, Cloneable,
 		if (childRequestsExecutionsByRequestId == null) {
 			return Collections.emptyMap();
 		}
+		if (propagated) {
+			// des requêtes filles peuvent être ajoutées par d'autres threads
+			synchronized (this) {
+				return new LinkedHashMap<String, Long>(childRequestsExecutionsByRequestId);
+			}
+		}
 		// pas de nouvelle instance de map ici pour raison de perf
 		// (la méthode est utilisée sur un seul thread)
 		return childRequestsExecutionsByRequestId;
@@ -264,6 +336,14 @@ public class CounterRequestContext implements ICounterRequestContext, Cloneable,
 		return Collections.unmodifiableList(childContexts);
 	}
 
+	boolean isPropagated() {
+		return propagated;
+	}
+
+	void setPropagated() {
+		this.propagated = true;
+	}
+
 	private CounterRequestContext getCurrentChildContext() {
 		return currentChildContext;
 	}
@@ -279,8 +359,10 @@ public class CounterRequestContext implements ICounterRequestContext, Cloneable,
 		// comme sql pour http alors on ajoute la requête fille
 		if (parentContext != null && parentCounter.getName()
 				.equals(parentContext.getParentCounter().getChildCounterName())) {
-			childHits++;
-			childDurationsSum += (int) duration;
+			synchronized (this) {
+				childHits++;
+				childDurationsSum += (int) duration;
+			}
 		}
 
 		// pour drill-down on conserve pour chaque requête mère, les requêtes filles appelées et le
@@ -292,7 +374,7 @@ public class CounterRequestContext implements ICounterRequestContext, Cloneable,
 		}
 	}
 
-	private void addChildRequestForDrillDown(String requestId) {
+	private synchronized void addChildRequestForDrillDown(String requestId) {
 		if (childRequestsExecutionsByRequestId == null) {
 			childRequestsExecutionsByRequestId = new LinkedHashMap<String, Long>();
 		}
@@ -305,12 +387,15 @@ public class CounterRequestContext implements ICounterRequestContext, Cloneable,
 		childRequestsExecutionsByRequestId.put(requestId, nbExecutions);
 	}
 
-	void closeChildContext() {
-		final CounterRequestContext childContext = getCurrentChildContext();
-		childHits += childContext.getChildHits();
-		childDurationsSum += childContext.getChildDurationsSum();
+	void closeChildContext(CounterRequestContext childContext) {
+		synchronized (this) {
+			childHits += childContext.getChildHits();
+			childDurationsSum += childContext.getChildDurationsSum();
+		}
 		// ce contexte fils est terminé
-		setCurrentChildContext(null);
+		if (getCurrentChildContext() == childContext) {
+			setCurrentChildContext(null);
+		}
 	}
 
 	/** {@inheritDoc} */
@@ -331,6 +416,10 @@ public class CounterRequestContext implements ICounterRequestContext, Cloneable,
 		final CounterRequestContext clone = new CounterRequestContext(counter, parentContextClone,
 				getRequestName(), getCompleteRequestName(), httpRequest, getRemoteUser(),
 				getThreadId(), startTime, startCpuTime, startAllocatedBytes, sessionId);
+		clone.startBlockedTime = startBlockedTime;
+		clone.startWaitedTime = startWaitedTime;
+		clone.resultSetRows = resultSetRows;
+		clone.fetchMicros = fetchMicros;
 		clone.childHits = getChildHits();
 		clone.childDurationsSum = getChildDurationsSum();
 		final CounterRequestContext childContext = getCurrentChildContext();
@@ -338,8 +427,10 @@ public class CounterRequestContext implements ICounterRequestContext, Cloneable,
 			clone.currentChildContext = childContext.clone(clone);
 		}
 		if (childRequestsExecutionsByRequestId != null) {
-			clone.childRequestsExecutionsByRequestId = new LinkedHashMap<String, Long>(
-					childRequestsExecutionsByRequestId);
+			synchronized (this) {
+				clone.childRequestsExecutionsByRequestId = new LinkedHashMap<String, Long>(
+						childRequestsExecutionsByRequestId);
+			}
 		}
 		return clone;
 	}
@@ -45,6 +45,7 @@ public class CounterStorage {
 	private static final int DEFAULT_OBSOLETE_STATS_DAYS = 365;
 	private static boolean storageDisabled;
 	private final Counter counter;
+	private long writtenBytes;
 
 	// do not user CounterResponseStream to not depend on the net.bull.internal.web package
 	private static class CounterOutputStream extends OutputStream {
@@ -114,7 +115,16 @@ public class CounterStorage {
 		if (!directory.mkdirs() && !directory.exists()) {
 			throw new IOException("JavaMelody directory can't be created: " + directory.getPath());
 		}
-		return writeToFile(counter, file);
+		final int dataLength = writeToFile(counter, file);
+		writtenBytes = file.length();
+		return dataLength;
+	}
+
+	/**
+	 * @return Taille du fichier (compressé) écrit par writeToFile(), ou 0 s'il n'a pas été écrit
+	 */
+	long getWrittenBytes() {
+		return writtenBytes;
 	}
 
 	static int writeToFile(Counter counter, File file) throws IOException {
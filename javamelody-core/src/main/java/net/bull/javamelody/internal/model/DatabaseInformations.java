@@ -30,8 +30,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.PriorityQueue;
 import java.util.ResourceBundle;
 
 import javax.naming.NamingException;
@@ -192,15 +194,202 @@ public class DatabaseInformations implements Serializable {
 		}
 	}
 
+	private static final int DEFAULT_MAX_ROWS = 1000;
+
 	private final Database database;
 	@SuppressWarnings("all")
 	private final List<String> requestNames;
 	private final int selectedRequestIndex;
 	private final String[][] result;
+	private final int page;
+	private final int sortColumn;
+	private final int maxRows;
+	private final boolean nextPage;
+
+	/**
+	 * Lecteur en flux d'un ResultSet, qui ne garde en mémoire que les lignes d'une page
+	 * (ou, avec un tri, les lignes jusqu'à la fin de cette page).
+	 */
+	private static final class PageReader {
+		private final int firstRow;
+		private final int maxRows;
+		private final int sortColumn;
+		private boolean nextPage;
+
+		PageReader(int firstRow, int maxRows, int sortColumn) {
+			super();
+			this.firstRow = firstRow;
+			this.maxRows = maxRows;
+			this.sortColumn = sortColumn;
+		}
+
+		void prepare(PreparedStatement statement) {
+			if (maxRows <= 0) {
+				return;
+			}
+			try {
+				// lecture par blocs pour ne pas charger tout le résultat dans le driver jdbc
+				statement.setFetchSize(Math.min(maxRows, DEFAULT_MAX_ROWS));
+				if (sortColumn == 0) {
+					// sans tri, la base de données n'a pas besoin de retourner plus que cette page
+					statement.setMaxRows(firstRow + maxRows + 1);
+				}
+			} catch (final SQLException e) {
+				// fetch size et max rows ne sont que des indications, non supportées par certains drivers
+				return;
+			}
+		}
+
+		List<String[]> readRows(ResultSet resultSet, int columnCount) throws SQLException {
+			if (maxRows <= 0) {
+				final List<String[]> list = new ArrayList<String[]>();
+				while (resultSet.next()) {
+					list.add(readRow(resultSet, columnCount));
+				}
+				return list;
+			}
+			if (sortColumn == 0) {
+				return readPage(resultSet, columnCount);
+			}
+			return readSortedPage(resultSet, columnCount);
+		}
+
+		private List<String[]> readPage(ResultSet resultSet, int columnCount)
+				throws SQLException {
+			final List<String[]> list = new ArrayList<String[]>();
+			int index = 0;
+			while (resultSet.next()) {
+				if (index >= firstRow + maxRows) {
+					nextPage = true;
+					break;
+				}
+				if (index >= firstRow) {
+					list.add(readRow(resultSet, columnCount));
+				}
+				index++;
+			}
+			return list;
+		}
+
+		private List<String[]> readSortedPage(ResultSet resultSet, int columnCount)
+				throws SQLException {
+			// tri en flux : on ne garde que les lignes jusqu'à la fin de la page demandée,
+			// dans un tas dont la racine est la plus grande ligne gardée
+			final int keptRows = firstRow + maxRows;
+			final Comparator<String[]> comparator = new RowComparator(Math.abs(sortColumn) - 1,
+					sortColumn < 0);
+			final PriorityQueue<String[]> heap = new PriorityQueue<String[]>(keptRows + 1,
+					Collections.reverseOrder(comparator));
+			while (resultSet.next()) {
+				final String[] row = readRow(resultSet, columnCount);
+				if (heap.size() < keptRows) {
+					heap.add(row);
+				} else {
+					nextPage = true;
+					if (comparator.compare(row, heap.peek()) < 0) {
+						heap.poll();
+						heap.add(row);
+					}
+				}
+			}
+			final List<String[]> list = new ArrayList<String[]>(heap);
+			Collections.sort(list, comparator);
+			if (firstRow >= list.size()) {
+				return new ArrayList<String[]>();
+			}
+			return new ArrayList<String[]>(list.subList(firstRow, list.size()));
+		}
+
+		private static String[] readRow(ResultSet resultSet, int columnCount)
+				throws SQLException {
+			final String[] values = new String[columnCount];
+			for (int i = 1; i <= columnCount; i++) {
+				values[i - 1] = resultSet.getString(i);
+			}
+			return values;
+		}
+
+		boolean hasNextPage() {
+			return nextPage;
+		}
+	}
+
+	/**
+	 * Comparateur de lignes selon une colonne, numérique si les valeurs sont des nombres.
+	 * L'ordre est total même si la colonne mélange nombres et textes :
+	 * null, puis les nombres, puis les textes.
+	 */
+	static final class RowComparator implements Comparator<String[]>, Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final int column;
+		private final boolean descending;
+
+		RowComparator(int column, boolean descending) {
+			super();
+			this.column = column;
+			this.descending = descending;
+		}
+
+		@Override
+		public int compare(String[] row1, String[] row2) {
+			final int result = compareValues(getValue(row1), getValue(row2));
+			return descending ? -result : result;
+		}
+
+		private String getValue(String[] row) {
+			if (column < row.length) {
+				return row[column];
+			}
+			return null;
+		}
+
+		private static int compareValues(String value1, String value2) {
+			if (value1 == null) {
+				return value2 == null ? 0 : -1;
+			} else if (value2 == null) {
+				return 1;
+			}
+			final Double number1 = parseNumber(value1);
+			final Double number2 = parseNumber(value2);
+			if (number1 != null && number2 != null) {
+				return number1.compareTo(number2);
+			} else if (number1 != null) {
+				return -1;
+			} else if (number2 != null) {
+				return 1;
+			}
+			return value1.compareTo(value2);
+		}
+
+		private static Double parseNumber(String value) {
+			try {
+				return Double.valueOf(value);
+			} catch (final NumberFormatException e) {
+				return null;
+			}
+		}
+	}
 
 	public DatabaseInformations(int selectedRequestIndex) throws SQLException, NamingException {
+		this(selectedRequestIndex, 0, 0);
+	}
+
+	/**
+	 * Constructeur.
+	 * @param selectedRequestIndex Index de la requête
+	 * @param page Numéro de page à partir de 0
+	 * @param sortColumn Numéro de colonne de tri à partir de 1 (négatif si tri décroissant, 0 si pas de tri)
+	 * @throws SQLException e
+	 * @throws NamingException e
+	 */
+	public DatabaseInformations(int selectedRequestIndex, int page, int sortColumn)
+			throws SQLException, NamingException {
 		super();
 		this.selectedRequestIndex = selectedRequestIndex;
+		this.page = page;
+		this.sortColumn = sortColumn;
+		this.maxRows = getMaxRowsParameter();
 		final Connection connection = getConnection();
 		assert connection != null;
 		try {
@@ -208,12 +397,37 @@ public class DatabaseInformations implements Serializable {
 			requestNames = database.getRequestNames();
 			final String request = database
 					.getRequestByName(requestNames.get(selectedRequestIndex));
-			result = executeRequest(connection, request, null);
+			final PageReader pageReader = new PageReader(getFirstRow(page, maxRows), maxRows,
+					sortColumn);
+			result = executeRequest(connection, request, null, pageReader);
+			nextPage = pageReader.hasNextPage();
 		} finally {
 			connection.close();
 		}
 	}
 
+	private static int getMaxRowsParameter() {
+		final String parameter = Parameter.DATABASE_MAX_ROWS.getValue();
+		if (parameter != null) {
+			// lance une NumberFormatException si ce n'est pas un nombre
+			final int result = Integer.parseInt(parameter);
+			if (result <= 0) {
+				throw new IllegalStateException(
+						"The parameter " + Parameter.DATABASE_MAX_ROWS.getCode() + " should be > 0");
+			}
+			return result;
+		}
+		return DEFAULT_MAX_ROWS;
+	}
+
+	private static int getFirstRow(int page, int maxRows) {
+		// firstRow + maxRows + 1 ne doit pas dépasser Integer.MAX_VALUE
+		if ((long) page * maxRows > Integer.MAX_VALUE - maxRows - 1L) {
+			throw new IllegalArgumentException("page " + page + " is too big");
+		}
+		return page * maxRows;
+	}
+
 	public static int parseRequestIndex(String requestIndex) {
 		if (requestIndex != null) {
 			return Integer.parseInt(requestIndex);
@@ -221,6 +435,25 @@ public class DatabaseInformations implements Serializable {
 		return 0;
 	}
 
+	public static int parsePage(String page) {
+		if (page != null) {
+			return Math.max(0, Integer.parseInt(page));
+		}
+		return 0;
+	}
+
+	public static int parseSortColumn(String sortColumn) {
+		if (sortColumn != null) {
+			final int result = Integer.parseInt(sortColumn);
+			// Math.abs(Integer.MIN_VALUE) est négatif
+			if (result == Integer.MIN_VALUE) {
+				throw new IllegalArgumentException("sort " + sortColumn);
+			}
+			return result;
+		}
+		return 0;
+	}
+
 	public int getNbColumns() {
 		final String selectedRequestName = getSelectedRequestName();
 		if ("oracle.statistics".equals(selectedRequestName)) {
@@ -249,14 +482,31 @@ public class DatabaseInformations implements Serializable {
 		return result; // NOPMD
 	}
 
+	public int getPage() {
+		return page;
+	}
+
+	public int getSortColumn() {
+		return sortColumn;
+	}
+
+	public int getMaxRows() {
+		return maxRows;
+	}
+
+	public boolean hasNextPage() {
+		return nextPage;
+	}
+
 	public List<String> getRequestNames() {
 		return requestNames;
 	}
 
 	private static String[][] executeRequest(Connection connection, String request,
-			List<?> parametersValues) throws SQLException {
+			List<?> parametersValues, PageReader pageReader) throws SQLException {
 		final PreparedStatement statement = connection.prepareStatement(request);
 		try {
+			pageReader.prepare(statement);
 			if (parametersValues != null) {
 				int i = 1;
 				for (final Object parameterValue : parametersValues) {
@@ -264,7 +514,7 @@ public class DatabaseInformations implements Serializable {
 					i++;
 				}
 			}
-			return executeQuery(statement);
+			return executeQuery(statement, pageReader);
 		} catch (final SQLException e) {
 			if (e.getErrorCode() == 942 && e.getMessage() != null
 					&& e.getMessage().startsWith("ORA-")) {
@@ -279,26 +529,21 @@ public class DatabaseInformations implements Serializable {
 		}
 	}
 
-	private static String[][] executeQuery(PreparedStatement statement) throws SQLException {
+	private static String[][] executeQuery(PreparedStatement statement, PageReader pageReader)
+			throws SQLException {
 		final ResultSet resultSet = statement.executeQuery();
 		try {
 			final ResultSetMetaData metaData = resultSet.getMetaData();
 			final int columnCount = metaData.getColumnCount();
 			final List<String[]> list = new ArrayList<String[]>();
-			String[] values = new String[columnCount];
+			final String[] values = new String[columnCount];
 			for (int i = 1; i <= columnCount; i++) {
 				values[i - 1] = metaData.getColumnName(i) + '\n' + metaData.getColumnTypeName(i)
 						+ '(' + metaData.getColumnDisplaySize(i) + ')';
 			}
 			list.add(values);
 
-			while (resultSet.next()) {
-				values = new String[columnCount];
-				for (int i = 1; i <= columnCount; i++) {
-					values[i - 1] = resultSet.getString(i);
-				}
-				list.add(values);
-			}
+			list.addAll(pageReader.readRows(resultSet, columnCount));
 			return list.toArray(new String[0][]);
 		} finally {
 			resultSet.close();
@@ -423,7 +668,7 @@ public class DatabaseInformations implements Serializable {
 		// table PLAN_TABLE par défaut et format par défaut
 		final String planTableRequest = "select * from table(dbms_xplan.display(null,?, null))";
 		final String[][] planTableOutput = executeRequest(connection, planTableRequest,
-				Collections.singletonList(statementId));
+				Collections.singletonList(statementId), new PageReader(0, 0, 0));
 		final StringBuilder sb = new StringBuilder();
 		for (final String[] row : planTableOutput) {
 			for (final String value : row) {
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import net.bull.javamelody.internal.common.InputOutput;
+import net.bull.javamelody.internal.common.LOG;
+
+/**
+ * Compression d'un heap dump en arrière-plan, par blocs compressés en parallèle
+ * (membres gzip indépendants et concaténés comme pigz, lisibles par gunzip ou GZIPInputStream),
+ * les parties compressées étant envoyées au fil de l'eau dans un fichier local
+ * et éventuellement dans un upload multipart S3.
+ * @author Emeric Vernat
+ */
+public final class HeapDumpCompressor implements Runnable {
+	private static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024; // 4 mb
+	// une partie d'upload multipart S3 doit faire au moins 5 mb, sauf la dernière
+	private static final int DEFAULT_PART_SIZE = 16 * 1024 * 1024; // 16 mb
+
+	private static volatile HeapDumpCompressor lastHeapDumpCompressor;
+
+	private final File heapDump;
+	private final File gzipFile;
+	private final List<PartSink> sinks;
+	private final int blockSize;
+	private final int partSize;
+	private final int threadsCount;
+	// destinations n'ayant pas encore échoué
+	private final List<PartSink> activeSinks;
+	private final AtomicLong readBytes = new AtomicLong();
+	private final AtomicLong writtenBytes = new AtomicLong();
+	private final AtomicLong compressedBytes = new AtomicLong();
+	private final long totalBytes;
+	private volatile boolean done;
+	private volatile String errorMessage;
+
+	/**
+	 * Destination des parties compressées, dans l'ordre.
+	 */
+	interface PartSink {
+		void start() throws IOException;
+
+		/**
+		 * Ajoute une partie compressée.
+		 * @param partNumber Numéro de la partie, à partir de 1
+		 * @param data Données compressées
+		 * @param length Longueur des données dans le tableau
+		 * @throws IOException e
+		 */
+		void addPart(int partNumber, byte[] data, int length) throws IOException;
+
+		void complete() throws IOException;
+
+		void abort();
+	}
+
+	/**
+	 * Destination fichier local.
+	 */
+	static class FilePartSink implements PartSink {
+		private final File file;
+		private OutputStream output;
+
+		FilePartSink(File file) {
+			super();
+			this.file = file;
+		}
+
+		@Override
+		public void start() throws IOException {
+			output = new FileOutputStream(file);
+		}
+
+		@Override
+		public void addPart(int partNumber, byte[] data, int length) throws IOException {
+			output.write(data, 0, length);
+		}
+
+		@Override
+		public void complete() throws IOException {
+			output.close();
+		}
+
+		@Override
+		public void abort() {
+			if (output != null) {
+				try {
+					output.close();
+				} catch (final IOException e) {
+					LOG.debug(e.toString(), e);
+				}
+			}
+			// fichier incomplet
+			InputOutput.deleteFile(file);
+		}
+	}
+
+	HeapDumpCompressor(File heapDump, File gzipFile, List<PartSink> sinks) {
+		this(heapDump, gzipFile, sinks, DEFAULT_BLOCK_SIZE, DEFAULT_PART_SIZE,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	HeapDumpCompressor(File heapDump, File gzipFile, List<PartSink> sinks, int blockSize,
+			int partSize, int threadsCount) {
+		super();
+		assert heapDump != null;
+		assert sinks != null && !sinks.isEmpty();
+		assert blockSize > 0 && partSize > 0 && threadsCount > 0;
+		this.heapDump = heapDump;
+		this.gzipFile = gzipFile;
+		this.sinks = sinks;
+		this.activeSinks = new ArrayList<PartSink>(sinks);
+		this.blockSize = blockSize;
+		this.partSize = partSize;
+		this.threadsCount = threadsCount;
+		this.totalBytes = heapDump.length();
+	}
+
+	/**
+	 * Lance la compression du heap dump dans un thread en arrière-plan,
+	 * vers un fichier .gz à côté du heap dump et vers S3 si bucketName n'est pas null.
+	 * Le heap dump non compressé est supprimé lorsque toutes les destinations ont été complétées,
+	 * et le fichier .gz local est conservé même si l'upload S3 échoue.
+	 * @param heapDump Fichier hprof
+	 * @param bucketName Nom du bucket S3 ou null
+	 * @return HeapDumpCompressor pour suivre l'avancement
+	 */
+	static HeapDumpCompressor startInBackground(File heapDump, String bucketName) {
+		final File gzipFile = new File(heapDump.getParentFile(), heapDump.getName() + ".gz");
+		final List<PartSink> sinks = new ArrayList<PartSink>();
+		sinks.add(new FilePartSink(gzipFile));
+		if (bucketName != null) {
+			sinks.add(S3.createMultipartUpload(bucketName, gzipFile.getName()));
+		}
+		final HeapDumpCompressor heapDumpCompressor = new HeapDumpCompressor(heapDump, gzipFile,
+				sinks);
+		lastHeapDumpCompressor = heapDumpCompressor;
+		final Thread thread = new Thread(heapDumpCompressor,
+				"javamelody heap dump compression " + heapDump.getName());
+		thread.setDaemon(true);
+		thread.start();
+		return heapDumpCompressor;
+	}
+
+	/**
+	 * @return Dernière compression de heap dump lancée (éventuellement terminée), ou null
+	 */
+	public static HeapDumpCompressor getLastHeapDumpCompressor() {
+		return lastHeapDumpCompressor;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void run() {
+		try {
+			final long start = System.currentTimeMillis();
+			compress();
+			LOG.info("Heap dump " + heapDump.getName() + " compressed in "
+					+ (System.currentTimeMillis() - start) + " ms: " + totalBytes + " bytes to "
+					+ compressedBytes.get() + " bytes");
+		} catch (final Exception e) {
+			errorMessage = e.toString();
+			LOG.warn("compression of heap dump " + heapDump.getName() + " failed", e);
+		} finally {
+			done = true;
+		}
+	}
+
+	void compress() throws IOException, InterruptedException {
+		final ExecutorService executorService = Executors.newFixedThreadPool(threadsCount,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						final Thread thread = new Thread(runnable,
+								"javamelody heap dump compression worker");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		IOException sinkFailure = null;
+		boolean completed = false;
+		try {
+			for (final PartSink sink : new ArrayList<PartSink>(activeSinks)) {
+				try {
+					sink.start();
+				} catch (final IOException e) {
+					sinkFailure = abortSink(sink, e, sinkFailure);
+				}
+			}
+			sinkFailure = compress(executorService, sinkFailure);
+			for (final PartSink sink : new ArrayList<PartSink>(activeSinks)) {
+				try {
+					sink.complete();
+				} catch (final IOException e) {
+					sinkFailure = abortSink(sink, e, sinkFailure);
+				}
+			}
+			completed = true;
+		} finally {
+			executorService.shutdownNow();
+			if (!completed) {
+				for (final PartSink sink : activeSinks) {
+					sink.abort();
+				}
+			}
+		}
+		if (sinkFailure != null) {
+			// une destination a échoué (S3 par exemple) mais pas toutes :
+			// les autres sont complétées et le heap dump non compressé est conservé
+			throw sinkFailure;
+		}
+		// toutes les destinations ont reçu le heap dump compressé, il n'est plus utile
+		InputOutput.deleteFile(heapDump);
+	}
+
+	private IOException abortSink(PartSink sink, IOException exception, IOException sinkFailure)
+			throws IOException {
+		// une destination en échec est abandonnée, sans abandonner les autres
+		sink.abort();
+		activeSinks.remove(sink);
+		if (activeSinks.isEmpty()) {
+			throw exception;
+		}
+		LOG.warn("compression of heap dump " + heapDump.getName() + " failed for one destination",
+				exception);
+		if (sinkFailure == null) {
+			return exception;
+		}
+		return sinkFailure;
+	}
+
+	private IOException compress(ExecutorService executorService, IOException sinkFailure)
+			throws IOException, InterruptedException {
+		// nombre borné de blocs en cours de compression pour borner la mémoire utilisée,
+		// et les blocs compressés sont récupérés dans l'ordre de lecture
+		final int maxPendingBlocks = threadsCount * 2;
+		final LinkedList<Future<byte[]>> pendingBlocks = new LinkedList<Future<byte[]>>();
+		// tailles non compressées des blocs en cours, pour l'avancement
+		final LinkedList<Integer> pendingLengths = new LinkedList<Integer>();
+		final PartBuffer partBuffer = new PartBuffer(sinkFailure);
+		final InputStream input = new FileInputStream(heapDump);
+		try {
+			byte[] block = readBlock(input);
+			while (block != null) {
+				if (pendingBlocks.size() >= maxPendingBlocks) {
+					partBuffer.write(getCompressedBlock(pendingBlocks.removeFirst()),
+							pendingLengths.removeFirst());
+				}
+				pendingBlocks.add(executorService.submit(new BlockCompression(block)));
+				pendingLengths.add(block.length);
+				block = readBlock(input);
+			}
+		} finally {
+			input.close();
+		}
+		if (readBytes.get() == 0) {
+			// un fichier gzip valide même si le heap dump est vide
+			pendingBlocks.add(executorService.submit(new BlockCompression(new byte[0])));
+			pendingLengths.add(0);
+		}
+		while (!pendingBlocks.isEmpty()) {
+			partBuffer.write(getCompressedBlock(pendingBlocks.removeFirst()),
+					pendingLengths.removeFirst());
+		}
+		partBuffer.flush();
+		return partBuffer.sinkFailure;
+	}
+
+	private byte[] readBlock(InputStream input) throws IOException {
+		final byte[] block = new byte[blockSize];
+		int length = 0;
+		int read = input.read(block, 0, blockSize);
+		while (read != -1) {
+			length += read;
+			if (length == blockSize) {
+				break;
+			}
+			read = input.read(block, length, blockSize - length);
+		}
+		if (length == 0) {
+			return null;
+		}
+		readBytes.addAndGet(length);
+		if (length < blockSize) {
+			return Arrays.copyOf(block, length);
+		}
+		return block;
+	}
+
+	private static byte[] getCompressedBlock(Future<byte[]> future)
+			throws IOException, InterruptedException {
+		try {
+			return future.get();
+		} catch (final ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Compression d'un bloc en un membre gzip complet.
+	 */
+	private static class BlockCompression implements Callable<byte[]> {
+		private final byte[] block;
+
+		BlockCompression(byte[] block) {
+			super();
+			this.block = block;
+		}
+
+		@Override
+		public byte[] call() throws IOException {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream(block.length / 4);
+			final GZIPOutputStream gzipOutput = new GZIPOutputStream(output);
+			try {
+				gzipOutput.write(block);
+			} finally {
+				gzipOutput.close();
+			}
+			return output.toByteArray();
+		}
+	}
+
+	/**
+	 * Accumule les blocs compressés jusqu'à la taille d'une partie.
+	 */
+	private class PartBuffer extends ByteArrayOutputStream {
+		private int partNumber;
+		private long uncompressedLength;
+		IOException sinkFailure;
+
+		PartBuffer(IOException sinkFailure) {
+			super(partSize);
+			this.sinkFailure = sinkFailure;
+		}
+
+		void write(byte[] data, int blockLength) throws IOException {
+			write(data, 0, data.length);
+			compressedBytes.addAndGet(data.length);
+			uncompressedLength += blockLength;
+			if (size() >= partSize) {
+				writePart();
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			// la dernière partie
+			if (size() > 0) {
+				writePart();
+			}
+		}
+
+		private void writePart() throws IOException {
+			partNumber++;
+			for (final PartSink sink : new ArrayList<PartSink>(activeSinks)) {
+				try {
+					sink.addPart(partNumber, buf, count);
+				} catch (final IOException e) {
+					sinkFailure = abortSink(sink, e, sinkFailure);
+				}
+			}
+			writtenBytes.addAndGet(uncompressedLength);
+			uncompressedLength = 0;
+			reset();
+		}
+	}
+
+	public File getHeapDump() {
+		return heapDump;
+	}
+
+	public File getGzipFile() {
+		return gzipFile;
+	}
+
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public long getReadBytes() {
+		return readBytes.get();
+	}
+
+	public long getCompressedBytes() {
+		return compressedBytes.get();
+	}
+
+	/**
+	 * @return Pourcentage du heap dump compressé et écrit dans les destinations,
+	 * 100 seulement lorsque les destinations sont complétées (upload S3 terminé)
+	 */
+	public int getPercentDone() {
+		if (done) {
+			return 100;
+		}
+		if (totalBytes == 0) {
+			return 0;
+		}
+		return (int) Math.min(99, 100 * writtenBytes.get() / totalBytes);
+	}
+
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * @return Message d'erreur si la compression ou l'upload a échoué, null sinon
+	 */
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+}
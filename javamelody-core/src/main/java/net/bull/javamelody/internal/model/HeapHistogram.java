@@ -17,17 +17,21 @@
  */
 package net.bull.javamelody.internal.model;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.security.CodeSource;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.PriorityQueue;
 
 /**
  * Histogramme mémoire.
@@ -47,16 +51,37 @@ public class HeapHistogram implements Serializable {
 	private long totalPermgenInstances;
 	private boolean sourceDisplayed;
 	private boolean deltaDisplayed; // deltaDisplayed kept for backward compatibility with all collect servers
+	// classes du heap non conservées individuellement (au-delà de maxClasses), agrégées en "autres"
+	private int otherHeapClassesCount;
+	private long otherHeapBytes;
+	private long otherHeapInstances;
 
-	public HeapHistogram(InputStream in, boolean jrockit) {
+	public HeapHistogram(InputStream in, boolean jrockit) throws IOException {
+		this(in, jrockit, -1);
+	}
+
+	/**
+	 * Constructeur.
+	 * @param in Flux de l'histogramme au format texte de "jmap -histo"
+	 * @param jrockit true si format de JRockit
+	 * @param maxClasses Nombre max de classes du heap conservées individuellement
+	 * (les plus grosses en octets), les autres étant seulement agrégées, ou -1 pour toutes les conserver
+	 * @throws IOException e
+	 */
+	public HeapHistogram(InputStream in, boolean jrockit, int maxClasses) throws IOException {
+		super();
+		assert maxClasses == -1 || maxClasses > 0;
 		time = new Date();
-		final Scanner sc = new Scanner(in, "UTF-8");
-		final List<ClassInfo> classInfos = scan(sc, jrockit);
+		// lecture en flux ligne par ligne, sans Scanner ni expressions régulières,
+		// et sans instancier de ClassInfo pour les classes qui ne seront pas conservées
+		final TopClassInfos topClassInfos = new TopClassInfos(maxClasses);
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		parse(reader, jrockit, topClassInfos);
 
 		classes = new ArrayList<ClassInfo>();
 		permGenClasses = new ArrayList<ClassInfo>();
 
-		for (final ClassInfo classInfo : classInfos) {
+		for (final ClassInfo classInfo : topClassInfos.getClassInfos()) {
 			if (classInfo.isPermGen()) {
 				permGenClasses.add(classInfo);
 				totalPermGenBytes += classInfo.getBytes();
@@ -66,17 +91,17 @@ public class HeapHistogram implements Serializable {
 				totalHeapBytes += classInfo.getBytes();
 				totalHeapInstances += classInfo.getInstancesCount();
 			}
+			// la recherche de la source (Class.forName) n'est faite que pour les classes conservées
+			classInfo.initSource();
 			if (!sourceDisplayed && classInfo.getSource() != null) {
 				sourceDisplayed = true;
 			}
 		}
-		if (!jrockit) {
-			sc.next("Total");
-			final long totalInstances = sc.nextLong();
-			final long totalBytes = sc.nextLong();
-			assert totalInstances == totalPermgenInstances + totalHeapInstances;
-			assert totalBytes == totalPermGenBytes + totalHeapBytes;
-		}
+		otherHeapClassesCount = topClassInfos.otherClassesCount;
+		otherHeapBytes = topClassInfos.otherBytes;
+		otherHeapInstances = topClassInfos.otherInstances;
+		totalHeapBytes += otherHeapBytes;
+		totalHeapInstances += otherHeapInstances;
 		sort();
 	}
 
@@ -99,6 +124,9 @@ public class HeapHistogram implements Serializable {
 		totalHeapInstances += second.getTotalHeapInstances();
 		totalPermGenBytes += second.getTotalPermGenBytes();
 		totalPermgenInstances += second.getTotalPermGenInstances();
+		otherHeapClassesCount = Math.max(otherHeapClassesCount, second.getOtherHeapClassesCount());
+		otherHeapBytes += second.getOtherHeapBytes();
+		otherHeapInstances += second.getOtherHeapInstances();
 		classes.clear();
 		classes.addAll(classesMap.values());
 		permGenClasses.clear();
@@ -132,6 +160,28 @@ public class HeapHistogram implements Serializable {
 		return totalHeapBytes;
 	}
 
+	/**
+	 * @return Nombre de classes du heap qui n'ont pas été conservées individuellement
+	 * (0 si toutes les classes sont dans {@link #getHeapHistogram()})
+	 */
+	public int getOtherHeapClassesCount() {
+		return otherHeapClassesCount;
+	}
+
+	/**
+	 * @return Taille cumulée des classes du heap qui n'ont pas été conservées individuellement
+	 */
+	public long getOtherHeapBytes() {
+		return otherHeapBytes;
+	}
+
+	/**
+	 * @return Nombre cumulé d'instances des classes du heap qui n'ont pas été conservées individuellement
+	 */
+	public long getOtherHeapInstances() {
+		return otherHeapInstances;
+	}
+
 	public List<ClassInfo> getPermGenHistogram() {
 		return Collections.unmodifiableList(permGenClasses);
 	}
@@ -180,34 +230,153 @@ public class HeapHistogram implements Serializable {
 		}
 	}
 
-	private void skipHeader(Scanner sc, boolean jrockit) {
-		final String nextLine = sc.nextLine();
-		// avant jdk 9, il y a une ligne blanche puis le header, mais en jdk 9 il y a juste le header
-		if (nextLine.isEmpty()) {
-			sc.nextLine();
+	private static void parse(BufferedReader reader, boolean jrockit,
+			TopClassInfos topClassInfos) throws IOException {
+		// les lignes d'en-tête (ligne blanche avant jdk 9, titres, tirets) sont ignorées
+		// jusqu'à la première ligne de classe, et la lecture s'arrête à la première ligne
+		// qui n'est plus une ligne de classe ("Total" ou "total ---" pour JRockit)
+		final String[] tokens = new String[5];
+		final char firstTokenEnd;
+		if (jrockit) {
+			// "35.3% 2134k    24304  +2134k [C"
+			firstTokenEnd = '%';
+		} else {
+			// "   1:         26077        3279704  <constMethodKlass>" et en jdk 9 "(module)" à la fin
+			firstTokenEnd = ':';
 		}
-		if (!jrockit) {
-			sc.skip("-+");
-			sc.nextLine();
+		boolean classLinesStarted = false;
+		String line = reader.readLine();
+		while (line != null) {
+			final int count = tokenize(line, tokens);
+			final boolean classLine = count >= 4
+					&& tokens[0].charAt(tokens[0].length() - 1) == firstTokenEnd;
+			if (classLine) {
+				classLinesStarted = true;
+				if (jrockit) {
+					final long bytes = ClassInfo.parseLongWithK(tokens[1]);
+					final long instances = Long.parseLong(tokens[2]);
+					// le nom de classe est après la colonne de delta "+2134k" s'il y en a une
+					final String jvmName = count >= 5 ? tokens[4] : tokens[3];
+					topClassInfos.add(jvmName, instances, bytes);
+				} else {
+					final long instances = Long.parseLong(tokens[1]);
+					final long bytes = Long.parseLong(tokens[2]);
+					topClassInfos.add(tokens[3], instances, bytes);
+				}
+			} else if (classLinesStarted) {
+				break;
+			}
+			line = reader.readLine();
 		}
 	}
 
-	private List<ClassInfo> scan(Scanner sc, boolean jrockit) {
-		final Map<String, ClassInfo> classInfoMap = new HashMap<String, ClassInfo>(1024);
-		sc.useRadix(10);
-		skipHeader(sc, jrockit);
+	/**
+	 * Découpe une ligne selon les espaces, sans expression régulière.
+	 * @param line Ligne
+	 * @param tokens Tableau à remplir, au plus tokens.length éléments
+	 * @return Nombre d'éléments trouvés
+	 */
+	static int tokenize(String line, String[] tokens) {
+		final int length = line.length();
+		int count = 0;
+		int i = 0;
+		while (count < tokens.length) {
+			while (i < length && line.charAt(i) <= ' ') {
+				i++;
+			}
+			if (i == length) {
+				break;
+			}
+			final int start = i;
+			while (i < length && line.charAt(i) > ' ') {
+				i++;
+			}
+			tokens[count] = line.substring(start, i);
+			count++;
+		}
+		return count;
+	}
 
-		final String nextLine;
-		if (jrockit) {
-			nextLine = "[0-9.]+%";
-		} else {
-			nextLine = "[0-9]+:";
+	/**
+	 * Sélection en flux des maxClasses plus grosses classes du heap,
+	 * avec agrégation des autres classes dans des totaux.
+	 * Les classes de PermGen sont toujours conservées (elles sont peu nombreuses).
+	 */
+	private static final class TopClassInfos {
+		private final int maxClasses;
+		// les clés sont les noms jvm pour ne pas avoir à convertir le nom des classes non conservées
+		private final Map<String, ClassInfo> classInfosByJvmName = new HashMap<String, ClassInfo>(
+				1024);
+		// tas des classes conservées, la plus petite en tête, si maxClasses est défini
+		private final PriorityQueue<ClassInfo> smallestFirst;
+		int otherClassesCount;
+		long otherBytes;
+		long otherInstances;
+
+		TopClassInfos(int maxClasses) {
+			super();
+			this.maxClasses = maxClasses;
+			if (maxClasses > 0) {
+				smallestFirst = new PriorityQueue<ClassInfo>(maxClasses + 1,
+						new ClassInfoComparator());
+			} else {
+				smallestFirst = null;
+			}
 		}
-		while (sc.hasNext(nextLine)) {
-			final ClassInfo newClInfo = new ClassInfo(sc, jrockit);
-			addClassInfo(newClInfo, classInfoMap);
+
+		void add(String jvmName, long instances, long bytes) {
+			final ClassInfo oldClInfo = classInfosByJvmName.get(jvmName);
+			if (oldClInfo != null) {
+				// même classe dans plusieurs classloaders
+				if (smallestFirst != null && !oldClInfo.isPermGen()) {
+					smallestFirst.remove(oldClInfo);
+					oldClInfo.add(instances, bytes);
+					smallestFirst.add(oldClInfo);
+				} else {
+					oldClInfo.add(instances, bytes);
+				}
+			} else if (smallestFirst == null || ClassInfo.isPermGen(jvmName)) {
+				classInfosByJvmName.put(jvmName, new ClassInfo(jvmName, instances, bytes));
+			} else if (smallestFirst.size() < maxClasses) {
+				final ClassInfo classInfo = new ClassInfo(jvmName, instances, bytes);
+				classInfosByJvmName.put(jvmName, classInfo);
+				smallestFirst.add(classInfo);
+			} else if (bytes > smallestFirst.peek().getBytes()) {
+				final ClassInfo evicted = smallestFirst.poll();
+				classInfosByJvmName.remove(evicted.getJvmName());
+				addToOther(evicted.getInstancesCount(), evicted.getBytes());
+				final ClassInfo classInfo = new ClassInfo(jvmName, instances, bytes);
+				classInfosByJvmName.put(jvmName, classInfo);
+				smallestFirst.add(classInfo);
+			} else {
+				// cas le plus courant au-delà de maxClasses puisque l'histogramme est trié
+				// par taille décroissante : aucune instanciation
+				addToOther(instances, bytes);
+			}
+		}
+
+		private void addToOther(long instances, long bytes) {
+			// approximatif si une même classe est dans plusieurs classloaders
+			otherClassesCount++;
+			otherInstances += instances;
+			otherBytes += bytes;
+		}
+
+		Collection<ClassInfo> getClassInfos() {
+			// des noms jvm différents pourraient donner le même nom converti,
+			// donc on fusionne selon le nom converti comme pour l'ajout de 2 histogrammes
+			final Map<String, ClassInfo> classInfosByName = new HashMap<String, ClassInfo>(
+					classInfosByJvmName.size());
+			for (final ClassInfo classInfo : classInfosByJvmName.values()) {
+				final ClassInfo oldClInfo = classInfosByName.get(classInfo.getName());
+				if (oldClInfo == null) {
+					classInfosByName.put(classInfo.getName(), classInfo);
+				} else {
+					oldClInfo.add(classInfo);
+				}
+			}
+			return classInfosByName.values();
 		}
-		return new ArrayList<ClassInfo>(classInfoMap.values());
 	}
 
 	/**
@@ -235,39 +404,43 @@ public class HeapHistogram implements Serializable {
 		private final String jvmName;
 		private final String name;
 		private final boolean permGen;
-		private final String source;
+		private String source;
 
-		ClassInfo(Scanner sc, boolean jrockit) {
+		ClassInfo(String jvmName, long instances, long bytes) {
 			super();
-
-			sc.next();
-			if (jrockit) {
-				bytes = parseLongWithK(sc.next());
-				instances = sc.nextLong();
-			} else {
-				instances = sc.nextLong();
-				bytes = sc.nextLong();
-			}
-			jvmName = sc.next();
-			permGen = jvmName.charAt(0) == '<';
+			this.jvmName = jvmName;
+			this.instances = instances;
+			this.bytes = bytes;
+			permGen = isPermGen(jvmName);
 			name = convertJVMName();
+		}
+
+		static boolean isPermGen(String jvmName) {
+			return jvmName.charAt(0) == '<';
+		}
+
+		void initSource() {
 			source = findSource();
-			if (sc.hasNext("\\([a-zA-Z.@0-9]*\\)")) {
-				// in jdk 9: (module)
-				sc.next();
-			}
 		}
 
 		void add(ClassInfo classInfo) {
 			assert getName().equals(classInfo.getName());
-			this.bytes += classInfo.getBytes();
-			this.instances += classInfo.getInstancesCount();
+			add(classInfo.getInstancesCount(), classInfo.getBytes());
+		}
+
+		void add(long addedInstances, long addedBytes) {
+			this.bytes += addedBytes;
+			this.instances += addedInstances;
 		}
 
 		public String getName() {
 			return name;
 		}
 
+		String getJvmName() {
+			return jvmName;
+		}
+
 		public long getInstancesCount() {
 			return instances;
 		}
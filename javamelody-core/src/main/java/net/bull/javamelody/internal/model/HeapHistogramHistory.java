@@ -0,0 +1,377 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.bull.javamelody.internal.common.LOG;
+import net.bull.javamelody.internal.common.Parameters;
+
+/**
+ * Historique sur disque d'instantanés compacts des histogrammes mémoire,
+ * pour trouver les classes dont la taille augmente au fil du temps (fuites mémoire) sans heap dump.
+ * @author Emeric Vernat
+ */
+public class HeapHistogramHistory {
+	private static final String SNAPSHOT_PREFIX = "heaphisto_";
+	// pas d'extension .ser.gz qui est réservée aux compteurs
+	private static final String SNAPSHOT_SUFFIX = ".txt.gz";
+	// nombre max d'instantanés conservés, les plus anciens étant supprimés
+	private static final int MAX_SNAPSHOTS = 10;
+	// durée min entre deux instantanés, pour que quelques affichages successifs de l'histogramme
+	// ne remplacent pas tout l'historique : il couvre donc au moins 10 heures
+	private static final long MIN_SNAPSHOTS_INTERVAL_MILLIS = 60 * 60 * 1000;
+	// nombre max de classes conservées par instantané, les plus grosses en octets
+	private static final int MAX_CLASSES_PER_SNAPSHOT = 1000;
+	private static final char SEPARATOR = '\t';
+
+	private final File directory;
+
+	/**
+	 * Instantané compact d'un histogramme mémoire : taille par classe du heap.
+	 */
+	public static class Snapshot {
+		private final Date time;
+		private final long totalHeapBytes;
+		private final Map<String, Long> bytesByClassName;
+		private final long smallestBytes;
+
+		Snapshot(Date time, long totalHeapBytes, Map<String, Long> bytesByClassName) {
+			super();
+			assert time != null;
+			assert bytesByClassName != null;
+			this.time = time;
+			this.totalHeapBytes = totalHeapBytes;
+			this.bytesByClassName = bytesByClassName;
+			long smallest = 0;
+			for (final Long bytes : bytesByClassName.values()) {
+				if (smallest == 0 || bytes < smallest) {
+					smallest = bytes;
+				}
+			}
+			this.smallestBytes = smallest;
+		}
+
+		public Date getTime() {
+			return time;
+		}
+
+		public long getTotalHeapBytes() {
+			return totalHeapBytes;
+		}
+
+		/**
+		 * @param className Nom de classe
+		 * @return Taille en octets de la classe, ou si elle n'était pas parmi les plus grosses
+		 * classes conservées, la plus petite taille conservée (dont sa taille était proche
+		 * si elle était juste sous la limite) pour ne pas compter une fausse croissance
+		 */
+		long getBytes(String className) {
+			final Long bytes = bytesByClassName.get(className);
+			if (bytes == null) {
+				return smallestBytes;
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * Croissance d'une classe entre le plus ancien instantané et l'histogramme courant.
+	 */
+	public static class ClassGrowth {
+		private final String name;
+		private final long bytes;
+		private final long deltaBytes;
+		private final int growthsCount;
+		private final int intervalsCount;
+
+		ClassGrowth(String name, long bytes, long deltaBytes, int growthsCount,
+				int intervalsCount) {
+			super();
+			this.name = name;
+			this.bytes = bytes;
+			this.deltaBytes = deltaBytes;
+			this.growthsCount = growthsCount;
+			this.intervalsCount = intervalsCount;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getDeltaBytes() {
+			return deltaBytes;
+		}
+
+		/**
+		 * @return Nombre d'intervalles entre instantanés successifs où la taille a augmenté
+		 */
+		public int getGrowthsCount() {
+			return growthsCount;
+		}
+
+		public int getIntervalsCount() {
+			return intervalsCount;
+		}
+
+		/**
+		 * @return true si la taille a augmenté entre chaque instantané successif (fuite probable)
+		 */
+		public boolean isSteadilyGrowing() {
+			return intervalsCount > 0 && growthsCount == intervalsCount;
+		}
+	}
+
+	/**
+	 * Comparateur pour ordonner les croissances de classes par delta en octets.
+	 */
+	static final class ClassGrowthComparator implements Comparator<ClassGrowth> {
+		/** {@inheritDoc} */
+		@Override
+		public int compare(ClassGrowth growth1, ClassGrowth growth2) {
+			if (growth1.getDeltaBytes() > growth2.getDeltaBytes()) {
+				return 1;
+			} else if (growth1.getDeltaBytes() < growth2.getDeltaBytes()) {
+				return -1;
+			} else {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Constructeur.
+	 * @param application Code de l'application, pour le répertoire de stockage
+	 */
+	public HeapHistogramHistory(String application) {
+		this(Parameters.getStorageDirectory(application));
+	}
+
+	HeapHistogramHistory(File directory) {
+		super();
+		assert directory != null;
+		this.directory = directory;
+	}
+
+	/**
+	 * Enregistre un instantané compact de l'histogramme, si le précédent date
+	 * d'au moins une heure, et supprime les instantanés les plus anciens.
+	 * @param heapHistogram HeapHistogram
+	 * @return true si l'instantané a été enregistré
+	 * @throws IOException e
+	 */
+	public boolean addSnapshot(HeapHistogram heapHistogram) throws IOException {
+		final long time = heapHistogram.getTime().getTime();
+		final List<File> previousFiles = listSnapshotFiles();
+		if (!previousFiles.isEmpty() && time - getSnapshotTime(previousFiles
+				.get(previousFiles.size() - 1).getName()) < MIN_SNAPSHOTS_INTERVAL_MILLIS) {
+			return false;
+		}
+		if (!directory.mkdirs() && !directory.exists()) {
+			throw new IOException("JavaMelody directory can't be created: " + directory.getPath());
+		}
+		final File file = new File(directory, SNAPSHOT_PREFIX + time + SNAPSHOT_SUFFIX);
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			final Writer writer = new BufferedWriter(
+					new OutputStreamWriter(new GZIPOutputStream(out), "UTF-8"));
+			try {
+				writer.write(String.valueOf(heapHistogram.getTotalHeapBytes()));
+				writer.write('\n');
+				// getHeapHistogram() est déjà triée par taille décroissante
+				int count = 0;
+				for (final HeapHistogram.ClassInfo classInfo : heapHistogram.getHeapHistogram()) {
+					if (count >= MAX_CLASSES_PER_SNAPSHOT) {
+						break;
+					}
+					writer.write(String.valueOf(classInfo.getBytes()));
+					writer.write(SEPARATOR);
+					writer.write(classInfo.getName());
+					writer.write('\n');
+					count++;
+				}
+			} finally {
+				// ce close libère les ressources du GZIPOutputStream
+				writer.close();
+			}
+		} finally {
+			out.close();
+		}
+		final List<File> files = listSnapshotFiles();
+		for (int i = 0; i < files.size() - MAX_SNAPSHOTS; i++) {
+			if (!files.get(i).delete()) {
+				files.get(i).deleteOnExit();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Liste des instantanés enregistrés, triée par date croissante
+	 */
+	public List<Snapshot> getSnapshots() {
+		final List<File> files = listSnapshotFiles();
+		final List<Snapshot> result = new ArrayList<Snapshot>(files.size());
+		for (final File file : files) {
+			try {
+				result.add(readSnapshot(file));
+			} catch (final IOException e) {
+				// fichier tronqué par exemple, on ignore cet instantané
+				LOG.debug("heap histogram snapshot ignored: " + file.getName(), e);
+			} catch (final NumberFormatException e) {
+				LOG.debug("heap histogram snapshot ignored: " + file.getName(), e);
+			}
+		}
+		return result;
+	}
+
+	private static Snapshot readSnapshot(File file) throws IOException {
+		final Date time = new Date(getSnapshotTime(file.getName()));
+		final Map<String, Long> bytesByClassName = new HashMap<String, Long>();
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			final BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new GZIPInputStream(in), "UTF-8"));
+			try {
+				final String firstLine = reader.readLine();
+				if (firstLine == null) {
+					throw new IOException("empty file");
+				}
+				final long totalHeapBytes = Long.parseLong(firstLine);
+				String line = reader.readLine();
+				while (line != null) {
+					final int index = line.indexOf(SEPARATOR);
+					if (index != -1) {
+						bytesByClassName.put(line.substring(index + 1),
+								Long.parseLong(line.substring(0, index)));
+					}
+					line = reader.readLine();
+				}
+				return new Snapshot(time, totalHeapBytes, bytesByClassName);
+			} finally {
+				reader.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static long getSnapshotTime(String fileName) {
+		return Long.parseLong(fileName.substring(SNAPSHOT_PREFIX.length(),
+				fileName.length() - SNAPSHOT_SUFFIX.length()));
+	}
+
+	private List<File> listSnapshotFiles() {
+		final FilenameFilter filenameFilter = new FilenameFilter() {
+			/** {@inheritDoc} */
+			@Override
+			public boolean accept(File dir, String fileName) {
+				return fileName.startsWith(SNAPSHOT_PREFIX) && fileName.endsWith(SNAPSHOT_SUFFIX);
+			}
+		};
+		final File[] files = directory.listFiles(filenameFilter);
+		if (files == null) {
+			return Collections.emptyList();
+		}
+		final List<File> result = new ArrayList<File>(files.length);
+		for (final File file : files) {
+			try {
+				getSnapshotTime(file.getName());
+				result.add(file);
+			} catch (final NumberFormatException e) {
+				// pas un instantané
+				continue;
+			}
+		}
+		Collections.sort(result, new Comparator<File>() {
+			/** {@inheritDoc} */
+			@Override
+			public int compare(File file1, File file2) {
+				final long time1 = getSnapshotTime(file1.getName());
+				final long time2 = getSnapshotTime(file2.getName());
+				if (time1 < time2) {
+					return -1;
+				} else if (time1 > time2) {
+					return 1;
+				}
+				return 0;
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Calcule les classes du heap dont la taille a augmenté depuis le plus ancien instantané.
+	 * @param heapHistogram Histogramme courant
+	 * @param snapshots Instantanés précédents, triés par date croissante
+	 * @return Liste triée par croissance décroissante en octets (vide si pas d'instantané)
+	 */
+	public static List<ClassGrowth> computeGrowths(HeapHistogram heapHistogram,
+			List<Snapshot> snapshots) {
+		if (snapshots.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final List<ClassGrowth> result = new ArrayList<ClassGrowth>();
+		final int intervalsCount = snapshots.size();
+		for (final HeapHistogram.ClassInfo classInfo : heapHistogram.getHeapHistogram()) {
+			final String name = classInfo.getName();
+			final long bytes = classInfo.getBytes();
+			final long deltaBytes = bytes - snapshots.get(0).getBytes(name);
+			if (deltaBytes <= 0) {
+				continue;
+			}
+			int growthsCount = 0;
+			long previousBytes = snapshots.get(0).getBytes(name);
+			for (int i = 1; i < intervalsCount; i++) {
+				final long snapshotBytes = snapshots.get(i).getBytes(name);
+				if (snapshotBytes > previousBytes) {
+					growthsCount++;
+				}
+				previousBytes = snapshotBytes;
+			}
+			if (bytes > previousBytes) {
+				growthsCount++;
+			}
+			result.add(new ClassGrowth(name, bytes, deltaBytes, growthsCount, intervalsCount));
+		}
+		Collections.sort(result, Collections.reverseOrder(new ClassGrowthComparator()));
+		return result;
+	}
+}
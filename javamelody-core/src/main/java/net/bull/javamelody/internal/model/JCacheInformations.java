@@ -20,6 +20,7 @@ package net.bull.javamelody.internal.model;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -51,7 +52,6 @@ public class JCacheInformations implements Serializable {
 	private final long cacheHits;
 	private final long cacheMisses;
 	private boolean availableByApi;
-	private List<?> cacheKeys;
 
 	JCacheInformations(ObjectName cache) {
 		super();
@@ -112,7 +112,28 @@ public class JCacheInformations implements Serializable {
 		return result;
 	}
 
-	public static JCacheInformations buildJCacheInformationsWithKeys(String cacheId) {
+	public static JCacheInformations buildJCacheInformations(String cacheId) {
+		assert JCACHE_AVAILABLE;
+		assert cacheId != null;
+		for (final JCacheInformations cacheInformations : buildJCacheInformationsList()) {
+			if (cacheInformations.getName().equals(cacheId)) {
+				return cacheInformations;
+			}
+		}
+		throw new IllegalArgumentException("Cache not found");
+	}
+
+	/**
+	 * Construit une page de clés d'un cache, en itérant sur le cache sans copier toutes ses clés
+	 * (mais en parcourant les clés avant le curseur).
+	 * @param cacheId Nom du cache
+	 * @param prefix Préfixe des clés à retourner, ou null pour toutes les clés
+	 * @param cursor Position dans les clés du cache, 0 pour la première page
+	 * @param pageSize Nombre maximum de clés dans la page
+	 * @return CacheKeysPage
+	 */
+	public static CacheKeysPage buildJCacheKeysPage(String cacheId, String prefix, int cursor,
+			int pageSize) {
 		assert JCACHE_AVAILABLE;
 		assert cacheId != null;
 		for (final CachingProvider cachingProvider : Caching.getCachingProviders()) {
@@ -121,16 +142,27 @@ public class JCacheInformations implements Serializable {
 				if (cacheName.equals(cacheId)) {
 					// getCache may never return null
 					final Cache<Object, Object> cache = cacheManager.getCache(cacheId);
-					final List<Object> cacheKeys = new ArrayList<Object>();
-					for (final Entry<Object, Object> entry : cache) {
-						cacheKeys.add(entry.getKey());
-					}
-					for (final JCacheInformations cacheInformations : buildJCacheInformationsList()) {
-						if (cacheInformations.getName().equals(cacheId)) {
-							cacheInformations.cacheKeys = cacheKeys;
-							return cacheInformations; // NOPMD
+					final Iterator<Entry<Object, Object>> entries = cache.iterator();
+					final Iterator<Object> keys = new Iterator<Object>() {
+						@Override
+						public boolean hasNext() {
+							return entries.hasNext();
 						}
-					}
+
+						@Override
+						public Object next() {
+							final Entry<Object, Object> entry = entries.next();
+							return entry == null ? null : entry.getKey();
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+					// jcache ne fournit pas le nombre de clés sans itérer sur tout le cache,
+					// donc le nombre total de clés n'est pas connu
+					return CacheKeysPage.build(cacheId, keys, prefix, cursor, pageSize);
 				}
 			}
 		}
@@ -180,10 +212,6 @@ public class JCacheInformations implements Serializable {
 		return availableByApi;
 	}
 
-	public List<?> getCacheKeys() {
-		return cacheKeys;
-	}
-
 	/** {@inheritDoc} */
 	@Override
 	public String toString() {
@@ -43,7 +43,6 @@ import org.jrobin.core.ConsolFuns;
 import org.jrobin.core.FetchRequest;
 import org.jrobin.core.RrdBackendFactory;
 import org.jrobin.core.RrdDb;
-import org.jrobin.core.RrdDbPool;
 import org.jrobin.core.RrdDef;
 import org.jrobin.core.RrdException;
 import org.jrobin.core.Sample;
@@ -77,7 +76,7 @@ public final class JRobin {
 	private static final int DEFAULT_MAX_RRD_DISK_USAGE_MB = 20;
 
 	// pool of open RRD files
-	private final RrdDbPool rrdPool = getRrdDbPool();
+	private final RrdDbHandlePool rrdPool = RrdDbHandlePool.getInstance();
 	private final String application;
 	private final String name;
 	private final String rrdFileName;
@@ -131,8 +130,13 @@ public final class JRobin {
 	}
 
 	public static void stop() {
-		if (RrdNioBackend.getFileSyncTimer() != null) {
-			RrdNioBackend.getFileSyncTimer().cancel();
+		try {
+			// fermeture des fichiers restés ouverts dans le pool, ce qui les synchronise sur le disque
+			RrdDbHandlePool.getInstance().closeAll();
+		} finally {
+			if (RrdNioBackend.getFileSyncTimer() != null) {
+				RrdNioBackend.getFileSyncTimer().cancel();
+			}
 		}
 	}
 
@@ -144,6 +148,11 @@ public final class JRobin {
 	 */
 	public static void initBackendFactory(Timer timer) throws IOException {
 		RrdNioBackend.setFileSyncTimer(timer);
+		RrdDbHandlePool.getInstance().setCapacity(
+				getPositiveParameter(Parameter.RRD_MAX_OPEN_FILES,
+						RrdDbHandlePool.DEFAULT_MAX_OPEN_FILES),
+				getPositiveParameter(Parameter.RRD_MAX_MAPPED_MB,
+						RrdDbHandlePool.DEFAULT_MAX_MAPPED_MB) * 1024L * 1024L);
 
 		try {
 			if (!RrdBackendFactory.getDefaultFactory().getFactoryName()
@@ -262,10 +271,10 @@ public final class JRobin {
 
 			graphDef.setImageFormat("png");
 			graphDef.setFilename("-");
-			// il faut utiliser le pool pour les performances
-			// et pour éviter des erreurs d'accès concurrents sur les fichiers
-			// entre différentes générations de graphs et aussi avec l'écriture des données
-			graphDef.setPoolUsed(true);
+			// le pool de jrobin n'est pas utilisé : il ferme chaque fichier dès qu'il n'est plus utilisé,
+			// et jrobin ouvre et mappe alors le fichier en lecture seule,
+			// sans occuper de place dans le pool utilisé pour les écritures
+			graphDef.setPoolUsed(false);
 			return new RrdGraph(graphDef).getRrdGraphInfo().getBytes();
 		} catch (final RrdException e) {
 			throw createIOException(e);
@@ -468,8 +477,7 @@ public final class JRobin {
 
 	public void dumpXml(OutputStream output, Range range) throws IOException {
 		try {
-			// request RRD database reference from the pool
-			final RrdDb rrdDb = rrdPool.requestRrdDb(rrdFileName);
+			final RrdDb rrdDb = openReadOnlyRrdDb();
 			try {
 				if (range.getPeriod() == Period.TOUT) {
 					rrdDb.exportXml(output);
@@ -482,8 +490,7 @@ public final class JRobin {
 					output.write(xml.getBytes("UTF-8"));
 				}
 			} finally {
-				// release RRD database reference
-				rrdPool.release(rrdDb);
+				rrdDb.close();
 			}
 		} catch (final RrdException e) {
 			throw createIOException(e);
@@ -492,8 +499,7 @@ public final class JRobin {
 
 	public String dumpTxt(Range range) throws IOException {
 		try {
-			// request RRD database reference from the pool
-			final RrdDb rrdDb = rrdPool.requestRrdDb(rrdFileName);
+			final RrdDb rrdDb = openReadOnlyRrdDb();
 			try {
 				if (range.getPeriod() == Period.TOUT) {
 					return rrdDb.dump();
@@ -502,14 +508,20 @@ public final class JRobin {
 						range.getJRobinStartTime(), range.getJRobinEndTime());
 				return fetchRequest.fetchData().dump();
 			} finally {
-				// release RRD database reference
-				rrdPool.release(rrdDb);
+				rrdDb.close();
 			}
 		} catch (final RrdException e) {
 			throw createIOException(e);
 		}
 	}
 
+	private RrdDb openReadOnlyRrdDb() throws IOException, RrdException {
+		// pour les dumps, le fichier est ouvert et mappé en lecture seule hors du pool,
+		// afin de ne pas occuper de place dans le pool utilisé pour les écritures
+		// et de ne jamais avoir à synchroniser ce fichier sur le disque
+		return new RrdDb(rrdFileName, true);
+	}
+
 	double getMeanValue(Range range) throws IOException {
 		assert range.getPeriod() == null;
 		try {
@@ -536,15 +548,60 @@ public final class JRobin {
 		final long startTime = range.getJRobinStartTime();
 		final DataProcessor dproc = new DataProcessor(startTime, endTime);
 		dproc.addDatasource("average", rrdFileName, dataSourceName, ConsolFuns.CF_AVERAGE);
-		dproc.setPoolUsed(true);
+		dproc.setPoolUsed(false);
 		dproc.processData();
 		return dproc;
 	}
 
 	boolean deleteFile() {
+		closeRrdDb(rrdFileName);
 		return new File(rrdFileName).delete();
 	}
 
+	private static void closeRrdDb(String path) {
+		try {
+			// un fichier encore ouvert ne peut pas être supprimé sous Windows
+			RrdDbHandlePool.getInstance().closeRrdDb(path);
+		} catch (final IOException e) {
+			LOG.warn("exception while closing jrobin file " + path, e);
+		}
+	}
+
+	/**
+	 * @return Nombre de fichiers jrobin ouverts dans le pool
+	 */
+	public static int getOpenFilesCount() {
+		return RrdDbHandlePool.getInstance().getOpenFilesCount();
+	}
+
+	/**
+	 * @return Taille des fichiers jrobin ouverts et mappés en mémoire dans le pool, en octets
+	 */
+	public static long getMappedBytes() {
+		return RrdDbHandlePool.getInstance().getMappedBytes();
+	}
+
+	/**
+	 * @return Nombre de fichiers jrobin fermés car le pool était plein, depuis le démarrage
+	 */
+	public static long getPoolEvictionsCount() {
+		return RrdDbHandlePool.getInstance().getEvictionsCount();
+	}
+
+	/**
+	 * @return Nombre d'ouvertures de fichiers jrobin évitées car déjà ouverts dans le pool, depuis le démarrage
+	 */
+	public static long getPoolHitsCount() {
+		return RrdDbHandlePool.getInstance().getHitsCount();
+	}
+
+	/**
+	 * @return Nombre d'ouvertures de fichiers jrobin dans le pool, depuis le démarrage
+	 */
+	public static long getPoolMissesCount() {
+		return RrdDbHandlePool.getInstance().getMissesCount();
+	}
+
 	private String getApplication() {
 		return application;
 	}
@@ -595,6 +652,7 @@ public final class JRobin {
 				final boolean obsolete = lastUpdateTime < timestamp;
 				boolean deleted = false;
 				if (obsolete) {
+					closeRrdDb(file.getPath());
 					deleted = file.delete();
 				}
 				if (!deleted) {
@@ -627,6 +685,7 @@ public final class JRobin {
 				}
 				if (file.getName().length() > counterRequestIdLength) {
 					final long length = file.length();
+					closeRrdDb(file.getPath());
 					if (file.delete()) {
 						diskUsage -= length;
 					}
@@ -639,11 +698,13 @@ public final class JRobin {
 
 	private static long getLastUpdateTime(File file) {
 		try {
-			final RrdDbPool rrdPool = getRrdDbPool();
-			final RrdDb rrdDb = rrdPool.requestRrdDb(file.getPath());
-			final long lastUpdateTime = rrdDb.getLastUpdateTime();
-			rrdPool.release(rrdDb);
-			return lastUpdateTime;
+			// fichier ouvert en lecture seule hors du pool, il sera peut-être supprimé
+			final RrdDb rrdDb = new RrdDb(file.getPath(), true);
+			try {
+				return rrdDb.getLastUpdateTime();
+			} finally {
+				rrdDb.close();
+			}
 		} catch (final IOException e) {
 			return file.lastModified() / 1000L;
 		} catch (final RrdException e) {
@@ -651,6 +712,20 @@ public final class JRobin {
 		}
 	}
 
+	private static int getPositiveParameter(Parameter parameter, int defaultValue) {
+		final String param = parameter.getValue();
+		if (param != null) {
+			// lance une NumberFormatException si ce n'est pas un nombre
+			final int result = Integer.parseInt(param);
+			if (result < 0) {
+				throw new IllegalStateException(
+						"The parameter " + parameter.getCode() + " should be >= 0");
+			}
+			return result;
+		}
+		return defaultValue;
+	}
+
 	private static long getMaxRrdDiskUsageMb() {
 		final String param = Parameters.getParameterValue(Parameter.MAX_RRD_DISK_USAGE_MB);
 		if (param != null) {
@@ -700,14 +775,6 @@ public final class JRobin {
 		return Arrays.asList(files);
 	}
 
-	private static RrdDbPool getRrdDbPool() throws IOException {
-		try {
-			return RrdDbPool.getInstance();
-		} catch (final RrdException e) {
-			throw createIOException(e);
-		}
-	}
-
 	@Override
 	public String toString() {
 		return getClass().getSimpleName() + "[application=" + getApplication() + ", name="
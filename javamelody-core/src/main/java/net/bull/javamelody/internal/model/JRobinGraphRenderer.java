@@ -0,0 +1,197 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.bull.javamelody.internal.common.I18N;
+import net.bull.javamelody.internal.common.LOG;
+
+/**
+ * Génération en parallèle des images des courbes d'un rapport (pdf, mail ou images pour l'ihm Swing),
+ * sur un nombre borné de threads et avec un délai maximum pour l'ensemble du rapport.
+ * Chaque courbe nécessite une lecture dans le fichier rrd et un rendu Java2D,
+ * ce qui est long pour un rapport mensuel avec de nombreuses courbes.
+ * @author Emeric Vernat
+ */
+public class JRobinGraphRenderer {
+	/**
+	 * Délai maximum par défaut pour générer les courbes d'un rapport.
+	 */
+	static final long DEFAULT_TIMEOUT_MILLIS = 5 * 60 * 1000;
+	private static final int MAX_DEFAULT_THREADS_COUNT = 4;
+
+	// pool partagé par tous les rapports, avec un thread par processeur (4 au plus),
+	// pour que des rapports simultanés ne multiplient pas les threads ;
+	// les threads s'arrêtent d'eux-mêmes après une minute sans courbe à générer
+	private static final ExecutorService SHARED_EXECUTOR_SERVICE = createSharedExecutorService();
+
+	private final ExecutorService executorService;
+	private final long deadline;
+	private boolean deadlineExceeded;
+
+	/**
+	 * Constructeur avec le pool de threads partagé et le délai maximum par défaut,
+	 * à partir de maintenant.
+	 */
+	public JRobinGraphRenderer() {
+		this(SHARED_EXECUTOR_SERVICE, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Constructeur.
+	 * @param executorService Pool de threads pour générer les courbes (null pour les générer dans le thread courant)
+	 * @param timeoutMillis Délai maximum à partir de maintenant pour générer toutes les courbes du rapport
+	 */
+	JRobinGraphRenderer(ExecutorService executorService, long timeoutMillis) {
+		super();
+		assert timeoutMillis > 0;
+		this.executorService = executorService;
+		this.deadline = System.currentTimeMillis() + timeoutMillis;
+	}
+
+	private static ExecutorService createSharedExecutorService() {
+		final int threadsCount = Math.min(Runtime.getRuntime().availableProcessors(),
+				MAX_DEFAULT_THREADS_COUNT);
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(threadsCount, threadsCount, 60,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						final Thread thread = new Thread(runnable,
+								"javamelody graph rendering worker");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Génère les images de courbes.
+	 * Si le délai maximum est dépassé, les courbes non encore générées sont absentes du résultat.
+	 * @param jrobins Courbes
+	 * @param range Période
+	 * @param width Largeur
+	 * @param height Hauteur
+	 * @return Images par nom de courbe, dans l'ordre des courbes
+	 * @throws IOException e
+	 */
+	public Map<String, byte[]> graphs(Collection<JRobin> jrobins, final Range range,
+			final int width, final int height) throws IOException {
+		final Map<String, byte[]> images = new LinkedHashMap<String, byte[]>(jrobins.size());
+		if (jrobins.isEmpty() || isDeadlineExceeded()) {
+			return images;
+		}
+		if (executorService == null || jrobins.size() == 1) {
+			for (final JRobin jrobin : jrobins) {
+				if (isDeadlineExceeded()) {
+					break;
+				}
+				images.put(jrobin.getName(), jrobin.graph(range, width, height));
+			}
+			return images;
+		}
+		// la langue des libellés des courbes est celle du thread courant
+		final Locale locale = I18N.getCurrentLocale();
+		final Map<String, Future<byte[]>> futures = new LinkedHashMap<String, Future<byte[]>>();
+		try {
+			for (final JRobin jrobin : jrobins) {
+				futures.put(jrobin.getName(), executorService.submit(new Callable<byte[]>() {
+					@Override
+					public byte[] call() throws IOException {
+						I18N.bindLocale(locale);
+						try {
+							return jrobin.graph(range, width, height);
+						} finally {
+							I18N.unbindLocale();
+						}
+					}
+				}));
+			}
+			for (final Map.Entry<String, Future<byte[]>> entry : futures.entrySet()) {
+				final byte[] image = waitFor(entry.getValue());
+				if (image == null) {
+					break;
+				}
+				images.put(entry.getKey(), image);
+			}
+		} finally {
+			// annule les courbes restantes si le délai est dépassé ou en cas d'erreur,
+			// sans arrêter le pool partagé
+			for (final Future<byte[]> future : futures.values()) {
+				future.cancel(true);
+			}
+		}
+		return images;
+	}
+
+	private byte[] waitFor(Future<byte[]> future) throws IOException {
+		try {
+			final long remainingMillis = deadline - System.currentTimeMillis();
+			return future.get(Math.max(remainingMillis, 0), TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			setDeadlineExceeded();
+			return null;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e.toString(), e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause.toString(), cause);
+		}
+	}
+
+	/**
+	 * @return true si le délai maximum pour générer les courbes du rapport est dépassé
+	 */
+	public boolean isDeadlineExceeded() {
+		if (!deadlineExceeded && System.currentTimeMillis() >= deadline) {
+			setDeadlineExceeded();
+		}
+		return deadlineExceeded;
+	}
+
+	private void setDeadlineExceeded() {
+		if (!deadlineExceeded) {
+			deadlineExceeded = true;
+			// le rapport sera généré sans les courbes restantes, plutôt que pas du tout
+			LOG.info("graphs rendering deadline exceeded, the remaining graphs are skipped");
+		}
+	}
+}
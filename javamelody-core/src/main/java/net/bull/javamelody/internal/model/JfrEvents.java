@@ -0,0 +1,431 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.bull.javamelody.internal.common.LOG;
+
+/**
+ * Agrégation d'événements de la JVM lus en continu par le JDK Flight Recorder (JFR) :
+ * pauses du ramasse-miette, safepoints, temps bloqué en attente de moniteurs par classe
+ * et échantillons d'allocations par classe.<br/>
+ * La durée d'un safepoint va du début de jdk.SafepointBegin à la fin de jdk.SafepointEnd
+ * avec le même safepointId, car la durée de jdk.SafepointBegin seule n'est que le temps
+ * pour atteindre le safepoint.<br/>
+ * Le JFR est utilisé par réflexion avec jdk.jfr.consumer.RecordingStream (jdk 14 ou plus),
+ * sans fichier d'enregistrement : le dépôt du stream est limité en taille et en âge
+ * et il est supprimé par la JVM à la fermeture du stream.
+ * En mémoire, seuls des totaux sont gardés, avec un nombre limité de classes.
+ * @author Emeric Vernat
+ */
+public final class JfrEvents {
+	/**
+	 * Bornes supérieures en millisecondes des tranches de l'histogramme des pauses du ramasse-miette,
+	 * la dernière tranche étant au delà.
+	 */
+	public static final long[] GC_PAUSES_BUCKETS_MILLIS = { 1, 5, 10, 50, 100, 500, 1000 };
+	static final String OTHER_CLASSES = "(other)";
+	// classe absente de l'événement, à ne pas confondre avec les classes agrégées
+	static final String UNKNOWN_CLASS = "(unknown)";
+	// nombre maximum de classes gardées, les suivantes étant agrégées dans OTHER_CLASSES
+	static final int MAX_CLASSES = 200;
+	private static final long MONITOR_THRESHOLD_MILLIS = 10;
+	private static final long MAX_AGE_SECONDS = 30;
+	private static final long MAX_SIZE_BYTES = 10 * 1024 * 1024;
+	private static final int MAX_PENDING_SAFEPOINTS = 100;
+
+	private static final Object LOCK = new Object();
+	private static final long[] GC_PAUSES_COUNTS = new long[GC_PAUSES_BUCKETS_MILLIS.length + 1];
+	private static final Map<String, long[]> MONITOR_BLOCKED_BY_CLASS = new HashMap<String, long[]>();
+	private static final Map<String, long[]> ALLOCATED_BYTES_BY_CLASS = new HashMap<String, long[]>();
+	// début en nanosecondes des safepoints dont jdk.SafepointEnd n'est pas encore lu, par safepointId
+	private static final Map<Long, Long> PENDING_SAFEPOINTS_START_NANOS = new HashMap<Long, Long>();
+	private static long gcPausesNanos;
+	private static long safepointsCount;
+	private static long safepointsNanos;
+	private static long maxSafepointNanos;
+	// valeurs depuis la collecte précédente
+	private static long periodGcPausesNanos;
+	private static long periodMaxGcPauseNanos;
+	private static long periodSafepointsNanos;
+	private static long periodMonitorBlockedNanos;
+	private static long periodAllocatedBytes;
+
+	private static Object recordingStream;
+	private static Method toNanosMethod;
+	private static Method getDurationMethod;
+	private static Method getStartTimeMethod;
+	private static Method getEndTimeMethod;
+	private static Method getEpochSecondMethod;
+	private static Method getNanoMethod;
+	private static Method getDurationFieldMethod;
+	private static Method getClassMethod;
+	private static Method getClassNameMethod;
+	private static Method getLongMethod;
+	private static Method getEventTypeMethod;
+	private static Method getEventTypeNameMethod;
+
+	private JfrEvents() {
+		super();
+	}
+
+	/**
+	 * Démarre la lecture des événements du JFR, si disponible (jdk 14 ou plus).
+	 * @return true si démarré
+	 */
+	public static synchronized boolean start() {
+		if (recordingStream != null) {
+			return true;
+		}
+		try {
+			final Class<?> recordingStreamClass = Class
+					.forName("jdk.jfr.consumer.RecordingStream");
+			final Class<?> durationClass = Class.forName("java.time.Duration");
+			final Class<?> eventSettingsClass = Class.forName("jdk.jfr.EventSettings");
+			final Class<?> recordedObjectClass = Class.forName("jdk.jfr.consumer.RecordedObject");
+			final Class<?> recordedEventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+			final Class<?> consumerClass = Class.forName("java.util.function.Consumer");
+			toNanosMethod = durationClass.getMethod("toNanos");
+			getDurationMethod = recordedEventClass.getMethod("getDuration");
+			getStartTimeMethod = recordedEventClass.getMethod("getStartTime");
+			getEndTimeMethod = recordedEventClass.getMethod("getEndTime");
+			final Class<?> instantClass = Class.forName("java.time.Instant");
+			getEpochSecondMethod = instantClass.getMethod("getEpochSecond");
+			getNanoMethod = instantClass.getMethod("getNano");
+			getDurationFieldMethod = recordedObjectClass.getMethod("getDuration", String.class);
+			getClassMethod = recordedObjectClass.getMethod("getClass", String.class);
+			getClassNameMethod = Class.forName("jdk.jfr.consumer.RecordedClass")
+					.getMethod("getName");
+			getLongMethod = recordedObjectClass.getMethod("getLong", String.class);
+			getEventTypeMethod = recordedEventClass.getMethod("getEventType");
+			getEventTypeNameMethod = Class.forName("jdk.jfr.EventType").getMethod("getName");
+			final Method ofMillisMethod = durationClass.getMethod("ofMillis", long.class);
+			final Method enableMethod = recordingStreamClass.getMethod("enable", String.class);
+			final Method withThresholdMethod = eventSettingsClass.getMethod("withThreshold",
+					durationClass);
+
+			final Object stream = recordingStreamClass.newInstance();
+			// dépôt du stream limité, pour ne pas garder d'événements sur le disque
+			recordingStreamClass.getMethod("setMaxAge", durationClass).invoke(stream,
+					durationClass.getMethod("ofSeconds", long.class).invoke(null,
+							MAX_AGE_SECONDS));
+			recordingStreamClass.getMethod("setMaxSize", long.class).invoke(stream,
+					MAX_SIZE_BYTES);
+			final Object zero = ofMillisMethod.invoke(null, 0L);
+			withThresholdMethod.invoke(enableMethod.invoke(stream, "jdk.GCPhasePause"), zero);
+			withThresholdMethod.invoke(enableMethod.invoke(stream, "jdk.SafepointBegin"), zero);
+			withThresholdMethod.invoke(enableMethod.invoke(stream, "jdk.SafepointEnd"), zero);
+			// seulement les attentes de moniteurs assez longues, comme dans le profil par défaut
+			withThresholdMethod.invoke(enableMethod.invoke(stream, "jdk.JavaMonitorEnter"),
+					ofMillisMethod.invoke(null, MONITOR_THRESHOLD_MILLIS));
+			// échantillons d'allocations limités en nombre par seconde (jdk 16 ou plus)
+			enableMethod.invoke(stream, "jdk.ObjectAllocationSample");
+
+			final Object consumer = Proxy.newProxyInstance(consumerClass.getClassLoader(),
+					new Class<?>[] { consumerClass }, new InvocationHandler() {
+						@Override
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							if ("accept".equals(method.getName())) {
+								onEvent(args[0]);
+								return null;
+							} else if ("equals".equals(method.getName())) {
+								return proxy == args[0];
+							} else if ("hashCode".equals(method.getName())) {
+								return System.identityHashCode(proxy);
+							}
+							return "JfrEvents consumer";
+						}
+					});
+			recordingStreamClass.getMethod("onEvent", consumerClass).invoke(stream, consumer);
+			recordingStreamClass.getMethod("startAsync").invoke(stream);
+			recordingStream = stream;
+			LOG.debug("JFR events stream started");
+			return true;
+		} catch (final ClassNotFoundException e) {
+			// jdk 13 ou avant
+			LOG.debug("JFR events stream not available: " + e.toString());
+			return false;
+		} catch (final Throwable t) { // NOPMD
+			// par exemple JFR désactivé dans la JVM
+			LOG.warn("JFR events stream not started: " + t.toString(), t);
+			return false;
+		}
+	}
+
+	/**
+	 * Arrête la lecture des événements du JFR et supprime le dépôt du stream.
+	 */
+	public static synchronized void stop() {
+		if (recordingStream != null) {
+			try {
+				recordingStream.getClass().getMethod("close").invoke(recordingStream);
+			} catch (final Exception e) {
+				LOG.warn("exception while closing JFR events stream", e);
+			}
+			recordingStream = null;
+		}
+	}
+
+	public static synchronized boolean isStarted() {
+		return recordingStream != null;
+	}
+
+	static void onEvent(Object event) {
+		try {
+			final String eventName = (String) getEventTypeNameMethod
+					.invoke(getEventTypeMethod.invoke(event));
+			if ("jdk.GCPhasePause".equals(eventName)) {
+				addGcPause(getDurationNanos(getDurationMethod.invoke(event)));
+			} else if ("jdk.SafepointBegin".equals(eventName)) {
+				addSafepointBegin((Long) getLongMethod.invoke(event, "safepointId"),
+						getInstantNanos(getStartTimeMethod.invoke(event)));
+			} else if ("jdk.SafepointEnd".equals(eventName)) {
+				addSafepointEnd((Long) getLongMethod.invoke(event, "safepointId"),
+						getInstantNanos(getEndTimeMethod.invoke(event)));
+			} else if ("jdk.JavaMonitorEnter".equals(eventName)) {
+				addMonitorBlocked(getClassName(event, "monitorClass"),
+						getDurationNanos(getDurationMethod.invoke(event)));
+			} else if ("jdk.ObjectAllocationSample".equals(eventName)) {
+				addAllocation(getClassName(event, "objectClass"),
+						(Long) getLongMethod.invoke(event, "weight"));
+			}
+		} catch (final Exception e) {
+			// ne doit pas arriver, mais ne doit pas arrêter le stream
+			LOG.debug(e.toString(), e);
+		}
+	}
+
+	private static long getDurationNanos(Object duration) throws Exception { // NOPMD
+		return (Long) toNanosMethod.invoke(duration);
+	}
+
+	private static long getInstantNanos(Object instant) throws Exception { // NOPMD
+		return (Long) getEpochSecondMethod.invoke(instant) * 1000000000L
+				+ (Integer) getNanoMethod.invoke(instant);
+	}
+
+	private static String getClassName(Object event, String field) throws Exception { // NOPMD
+		final Object recordedClass = getClassMethod.invoke(event, field);
+		if (recordedClass == null) {
+			return UNKNOWN_CLASS;
+		}
+		return (String) getClassNameMethod.invoke(recordedClass);
+	}
+
+	static void addGcPause(long durationNanos) {
+		final long durationMillis = durationNanos / 1000000;
+		int bucket = 0;
+		while (bucket < GC_PAUSES_BUCKETS_MILLIS.length
+				&& durationMillis >= GC_PAUSES_BUCKETS_MILLIS[bucket]) {
+			bucket++;
+		}
+		synchronized (LOCK) {
+			GC_PAUSES_COUNTS[bucket]++;
+			gcPausesNanos += durationNanos;
+			periodGcPausesNanos += durationNanos;
+			periodMaxGcPauseNanos = Math.max(periodMaxGcPauseNanos, durationNanos);
+		}
+	}
+
+	static void addSafepointBegin(long safepointId, long startNanos) {
+		synchronized (LOCK) {
+			if (PENDING_SAFEPOINTS_START_NANOS.size() >= MAX_PENDING_SAFEPOINTS) {
+				// événements jdk.SafepointEnd non reçus, on ne garde pas les débuts indéfiniment
+				PENDING_SAFEPOINTS_START_NANOS.clear();
+			}
+			PENDING_SAFEPOINTS_START_NANOS.put(safepointId, startNanos);
+		}
+	}
+
+	static void addSafepointEnd(long safepointId, long endNanos) {
+		synchronized (LOCK) {
+			final Long startNanos = PENDING_SAFEPOINTS_START_NANOS.remove(safepointId);
+			if (startNanos != null) {
+				// sinon le début n'a pas été lu, par exemple au démarrage du stream
+				addSafepoint(endNanos - startNanos);
+			}
+		}
+	}
+
+	static void addSafepoint(long durationNanos) {
+		synchronized (LOCK) {
+			safepointsCount++;
+			safepointsNanos += durationNanos;
+			maxSafepointNanos = Math.max(maxSafepointNanos, durationNanos);
+			periodSafepointsNanos += durationNanos;
+		}
+	}
+
+	static void addMonitorBlocked(String className, long durationNanos) {
+		synchronized (LOCK) {
+			add(MONITOR_BLOCKED_BY_CLASS, className, durationNanos);
+			periodMonitorBlockedNanos += durationNanos;
+		}
+	}
+
+	static void addAllocation(String className, long bytes) {
+		synchronized (LOCK) {
+			add(ALLOCATED_BYTES_BY_CLASS, className, bytes);
+			periodAllocatedBytes += bytes;
+		}
+	}
+
+	private static void add(Map<String, long[]> valuesByClass, String className, long value) {
+		assert Thread.holdsLock(LOCK);
+		long[] values = valuesByClass.get(className);
+		if (values == null) {
+			final String key = valuesByClass.size() < MAX_CLASSES ? className : OTHER_CLASSES;
+			values = valuesByClass.get(key);
+			if (values == null) {
+				// nombre d'événements et somme des valeurs
+				values = new long[2];
+				valuesByClass.put(key, values);
+			}
+		}
+		values[0]++;
+		values[1] += value;
+	}
+
+	/**
+	 * Retourne les valeurs depuis l'appel précédent, pour les courbes de la collecte,
+	 * et les remet à zéro.
+	 * @param periodMillis Période de la collecte en millisecondes
+	 * @return Map des valeurs par nom de courbe
+	 */
+	static Map<String, Double> getAndResetPeriodValues(long periodMillis) {
+		final double periodMinutes = periodMillis / 60000d;
+		final Map<String, Double> values = new LinkedHashMap<String, Double>();
+		synchronized (LOCK) {
+			values.put("jfrGcPausesTime", periodGcPausesNanos / 1000000d / periodMinutes);
+			values.put("jfrMaxGcPause", periodMaxGcPauseNanos / 1000000d);
+			values.put("jfrSafepointsTime", periodSafepointsNanos / 1000000d / periodMinutes);
+			values.put("jfrMonitorBlockedTime",
+					periodMonitorBlockedNanos / 1000000d / periodMinutes);
+			values.put("jfrAllocationRate", periodAllocatedBytes / 1024d / 1024 / periodMinutes);
+			periodGcPausesNanos = 0;
+			periodMaxGcPauseNanos = 0;
+			periodSafepointsNanos = 0;
+			periodMonitorBlockedNanos = 0;
+			periodAllocatedBytes = 0;
+		}
+		return values;
+	}
+
+	/**
+	 * @return Nombres de pauses du ramasse-miette par tranche de {@link #GC_PAUSES_BUCKETS_MILLIS}
+	 */
+	public static long[] getGcPausesCounts() {
+		synchronized (LOCK) {
+			return GC_PAUSES_COUNTS.clone();
+		}
+	}
+
+	public static long getGcPausesMillis() {
+		synchronized (LOCK) {
+			return gcPausesNanos / 1000000;
+		}
+	}
+
+	public static long getSafepointsCount() {
+		synchronized (LOCK) {
+			return safepointsCount;
+		}
+	}
+
+	public static long getSafepointsMillis() {
+		synchronized (LOCK) {
+			return safepointsNanos / 1000000;
+		}
+	}
+
+	public static long getMaxSafepointMillis() {
+		synchronized (LOCK) {
+			return maxSafepointNanos / 1000000;
+		}
+	}
+
+	/**
+	 * @return Nombres d'attentes et durées en millisecondes par classe de moniteur,
+	 * de la plus grande à la plus petite durée
+	 */
+	public static Map<String, long[]> getMonitorBlockedMillisByClass() {
+		final Map<String, long[]> result = getSortedValuesByClass(MONITOR_BLOCKED_BY_CLASS);
+		for (final long[] values : result.values()) {
+			values[1] = values[1] / 1000000;
+		}
+		return result;
+	}
+
+	/**
+	 * @return Nombres d'échantillons et octets alloués estimés par classe,
+	 * du plus grand au plus petit nombre d'octets
+	 */
+	public static Map<String, long[]> getAllocatedBytesByClass() {
+		return getSortedValuesByClass(ALLOCATED_BYTES_BY_CLASS);
+	}
+
+	private static Map<String, long[]> getSortedValuesByClass(Map<String, long[]> valuesByClass) {
+		final List<Map.Entry<String, long[]>> entries;
+		synchronized (LOCK) {
+			entries = new ArrayList<Map.Entry<String, long[]>>(valuesByClass.size());
+			for (final Map.Entry<String, long[]> entry : valuesByClass.entrySet()) {
+				final Map<String, long[]> copy = Collections.singletonMap(entry.getKey(),
+						entry.getValue().clone());
+				entries.add(copy.entrySet().iterator().next());
+			}
+		}
+		Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+			@Override
+			public int compare(Map.Entry<String, long[]> o1, Map.Entry<String, long[]> o2) {
+				return o1.getValue()[1] > o2.getValue()[1] ? -1
+						: o1.getValue()[1] < o2.getValue()[1] ? 1 : 0;
+			}
+		});
+		final Map<String, long[]> result = new LinkedHashMap<String, long[]>();
+		for (final Map.Entry<String, long[]> entry : entries) {
+			result.put(entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+
+	static void clear() {
+		synchronized (LOCK) {
+			for (int i = 0; i < GC_PAUSES_COUNTS.length; i++) {
+				GC_PAUSES_COUNTS[i] = 0;
+			}
+			MONITOR_BLOCKED_BY_CLASS.clear();
+			ALLOCATED_BYTES_BY_CLASS.clear();
+			PENDING_SAFEPOINTS_START_NANOS.clear();
+			gcPausesNanos = 0;
+			safepointsCount = 0;
+			safepointsNanos = 0;
+			maxSafepointNanos = 0;
+			getAndResetPeriodValues(60000);
+		}
+	}
+}
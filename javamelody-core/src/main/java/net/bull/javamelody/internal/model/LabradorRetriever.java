@@ -28,6 +28,7 @@ import java.net.URLConnection;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
@@ -53,6 +54,14 @@ public class LabradorRetriever {
 	/** Timeout de lecture des connections serveur en millisecondes (0 : pas de timeout). */
 	private static final int READ_TIMEOUT = 60000;
 
+	/** En-têtes de requête transmis par {@link #forwardTo}. */
+	private static final List<String> FORWARDED_REQUEST_HEADERS = Arrays
+			.asList("Accept-Language", "Cookie", "Authorization");
+
+	/** En-têtes de réponse recopiés par {@link #forwardTo}. */
+	private static final List<String> FORWARDED_RESPONSE_HEADERS = Arrays
+			.asList("Content-Disposition", "Location", "Set-Cookie", "WWW-Authenticate");
+
 	private final URL url;
 	private final Map<String, String> headers;
 
@@ -220,6 +229,74 @@ public class LabradorRetriever {
 		}
 	}
 
+	/**
+	 * Transmet une requête http GET à l'url avec la langue, les cookies et l'authentification
+	 * de la requête, puis recopie la réponse avec son statut, ses cookies et ses redirections
+	 * (proxy vers un autre serveur de collecte). Le corps de la requête n'est pas transmis.
+	 * @param httpRequest HttpServletRequest
+	 * @param httpResponse HttpServletResponse
+	 * @throws IOException e
+	 */
+	public void forwardTo(HttpServletRequest httpRequest, HttpServletResponse httpResponse)
+			throws IOException {
+		assert httpRequest != null;
+		assert httpResponse != null;
+		assert httpRequest.getMethod() == null || "GET".equals(httpRequest.getMethod());
+		final long start = System.currentTimeMillis();
+		int dataLength = -1;
+		try {
+			final HttpURLConnection connection = (HttpURLConnection) openConnection();
+			// les redirections sont recopiées pour le navigateur, comme les cookies
+			connection.setInstanceFollowRedirects(false);
+			// l'authentification de la requête remplace celle éventuelle de l'url
+			for (final String header : FORWARDED_REQUEST_HEADERS) {
+				final String value = httpRequest.getHeader(header);
+				if (value != null) {
+					connection.setRequestProperty(header, value);
+				}
+			}
+			connection.connect();
+			final int status = connection.getResponseCode();
+			httpResponse.setStatus(status);
+			for (final Map.Entry<String, List<String>> entry : connection.getHeaderFields()
+					.entrySet()) {
+				final String header = getForwardedResponseHeader(entry.getKey());
+				if (header != null) {
+					for (final String value : entry.getValue()) {
+						httpResponse.addHeader(header, value);
+					}
+				}
+			}
+			if (connection.getContentType() != null) {
+				httpResponse.setContentType(connection.getContentType());
+			}
+			final InputStream input;
+			if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+				input = connection.getErrorStream();
+			} else {
+				input = connection.getInputStream();
+			}
+			if (input != null) {
+				// la fermeture de ce flux suffit, getInputStream() échouant si statut d'erreur
+				dataLength = pump(httpResponse.getOutputStream(), connection, input);
+			}
+		} finally {
+			LOG.info("http call done in " + (System.currentTimeMillis() - start) + " ms with "
+					+ dataLength / 1024 + " KB read for " + url);
+		}
+	}
+
+	private static String getForwardedResponseHeader(String header) {
+		// les noms d'en-têtes http ne sont pas sensibles à la casse (par ex. "Set-cookie"),
+		// et le nom null est celui de la ligne de statut
+		for (final String forwardedHeader : FORWARDED_RESPONSE_HEADERS) {
+			if (forwardedHeader.equalsIgnoreCase(header)) {
+				return forwardedHeader;
+			}
+		}
+		return null;
+	}
+
 	void downloadTo(OutputStream output) throws IOException {
 		if (shouldMock()) {
 			return;
@@ -239,9 +316,17 @@ public class LabradorRetriever {
 	}
 
 	private int pump(OutputStream output, URLConnection connection) throws IOException {
-		final int dataLength;
-		final CounterInputStream counterInputStream = new CounterInputStream(
-				connection.getInputStream());
+		final InputStream inputStream = connection.getInputStream();
+		try {
+			return pump(output, connection, inputStream);
+		} finally {
+			close(connection);
+		}
+	}
+
+	private static int pump(OutputStream output, URLConnection connection,
+			InputStream inputStream) throws IOException {
+		final CounterInputStream counterInputStream = new CounterInputStream(inputStream);
 		InputStream input = counterInputStream;
 		try {
 			if ("gzip".equals(connection.getContentEncoding())) {
@@ -249,14 +334,9 @@ public class LabradorRetriever {
 			}
 			InputOutput.pump(input, output);
 		} finally {
-			try {
-				input.close();
-			} finally {
-				close(connection);
-				dataLength = counterInputStream.getDataLength();
-			}
+			input.close();
 		}
-		return dataLength;
+		return counterInputStream.getDataLength();
 	}
 
 	public void post(ByteArrayOutputStream payload) throws IOException {
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Enregistreur sans verrou des durées d'une requête du compteur des datasources jdbc,
+ * par exemple l'attente pour obtenir une connexion du pool.<br/>
+ * Les durées sont cumulées avec des AtomicLong par les threads de l'application, sans synchronized,
+ * car ces temps sont surtout utiles quand le pool de connexions est saturé et que de nombreux threads
+ * attendent en même temps. A chaque collecte, les cumuls sont remplacés par des cumuls à zéro
+ * puis reportés dans le compteur : les valeurs reportées sont donc cohérentes entre elles,
+ * et une durée enregistrée pendant ce remplacement est comptée dans cette période
+ * ou dans la suivante.
+ * @author Emeric Vernat
+ */
+public final class LatencyRecorder {
+	private static final ConcurrentMap<String, LatencyRecorder> INSTANCES = new ConcurrentHashMap<String, LatencyRecorder>();
+
+	private final String requestName;
+	private final AtomicReference<Latencies> latencies = new AtomicReference<Latencies>(
+			new Latencies());
+
+	/**
+	 * Cumuls des durées d'une période, remplacés à chaque collecte.
+	 */
+	private static final class Latencies {
+		// nombre de threads en train d'enregistrer une durée dans ces cumuls
+		final AtomicInteger recordingThreads = new AtomicInteger();
+		final AtomicLong hits = new AtomicLong();
+		final AtomicLong durationsSum = new AtomicLong();
+		final AtomicLong durationsSquareSum = new AtomicLong();
+		final AtomicLong maximum = new AtomicLong();
+		final AtomicLong systemErrors = new AtomicLong();
+
+		Latencies() {
+			super();
+		}
+
+		void record(long duration, boolean systemError) {
+			hits.incrementAndGet();
+			durationsSum.addAndGet(duration);
+			durationsSquareSum.addAndGet(duration * duration);
+			long max = maximum.get();
+			while (duration > max && !maximum.compareAndSet(max, duration)) {
+				max = maximum.get();
+			}
+			if (systemError) {
+				systemErrors.incrementAndGet();
+			}
+		}
+	}
+
+	private LatencyRecorder(String requestName) {
+		super();
+		this.requestName = requestName;
+	}
+
+	/**
+	 * @param requestName Nom de la requête dans le compteur des datasources
+	 * @return Instance de LatencyRecorder pour ce nom de requête
+	 */
+	public static LatencyRecorder getInstance(String requestName) {
+		assert requestName != null;
+		LatencyRecorder recorder = INSTANCES.get(requestName);
+		if (recorder == null) {
+			recorder = new LatencyRecorder(requestName);
+			final LatencyRecorder previous = INSTANCES.putIfAbsent(requestName, recorder);
+			if (previous != null) {
+				recorder = previous;
+			}
+		}
+		return recorder;
+	}
+
+	public String getRequestName() {
+		return requestName;
+	}
+
+	/**
+	 * Enregistre une durée.
+	 * @param duration Durée en millisecondes
+	 * @param systemError true si erreur système
+	 */
+	public void record(long duration, boolean systemError) {
+		assert duration >= 0;
+		while (true) {
+			final Latencies current = latencies.get();
+			current.recordingThreads.incrementAndGet();
+			try {
+				if (latencies.get() == current) {
+					// les cumuls n'ont pas été remplacés avant que ce thread soit compté,
+					// donc drainTo attendra la fin de cet enregistrement
+					current.record(duration, systemError);
+					return;
+				}
+			} finally {
+				current.recordingThreads.decrementAndGet();
+			}
+			// cumuls remplacés entre-temps par drainTo, on enregistre dans les nouveaux
+		}
+	}
+
+	private void drainTo(Counter counter) {
+		if (latencies.get().hits.get() == 0) {
+			// rien à reporter, sans remplacer les cumuls
+			return;
+		}
+		final Latencies drained = latencies.getAndSet(new Latencies());
+		while (drained.recordingThreads.get() != 0) {
+			// enregistrements en cours dans les anciens cumuls (quelques instructions seulement)
+			Thread.yield();
+		}
+		counter.addHits(requestName, drained.hits.get(), drained.durationsSum.get(),
+				drained.durationsSquareSum.get(), drained.maximum.get(),
+				drained.systemErrors.get());
+	}
+
+	static void drainAllTo(Counter counter) {
+		for (final LatencyRecorder recorder : INSTANCES.values()) {
+			recorder.drainTo(counter);
+		}
+	}
+
+	static void clear() {
+		INSTANCES.clear();
+	}
+}
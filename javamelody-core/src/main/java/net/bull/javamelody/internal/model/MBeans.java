@@ -23,12 +23,12 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
-import javax.management.Attribute;
 import javax.management.InstanceNotFoundException;
 import javax.management.JMException;
 import javax.management.MBeanAttributeInfo;
@@ -66,7 +66,11 @@ public final class MBeans {
 			return o1.getName().compareTo(o2.getName());
 		}
 	};
+	// durée maximale de lecture des valeurs des attributs pour un arbre complet des MBeans
+	// ou pour un MBean, au delà les valeurs des attributs suivants ne sont pas lues
+	private static final long MAX_ATTRIBUTES_DURATION_MILLIS = 20000;
 	private final MBeanServer mbeanServer;
+	private final MBeansCache mbeansCache;
 
 	MBeans() {
 		this(getPlatformMBeanServer());
@@ -75,13 +79,34 @@ public final class MBeans {
 	private MBeans(MBeanServer mbeanServer) {
 		super();
 		this.mbeanServer = mbeanServer;
+		this.mbeansCache = MBeansCache.getInstance(mbeanServer);
 	}
 
 	Object getAttribute(ObjectName name, String attribute) throws JMException {
 		return mbeanServer.getAttribute(name, attribute);
 	}
 
+	/**
+	 * Retourne l'arbre des MBeans avec les valeurs de leurs attributs,
+	 * par exemple pour le rapport pdf ou pour le serveur de collecte.
+	 * @return List
+	 * @throws JMException e
+	 */
 	public static List<MBeanNode> getAllMBeanNodes() throws JMException {
+		return getAllMBeanNodes(true);
+	}
+
+	/**
+	 * Retourne l'arbre des MBeans sans leurs descriptions ni les valeurs de leurs attributs,
+	 * qui seront lues à la demande pour chaque MBean affiché par {@link #getMBeanNode(String)}.
+	 * @return List
+	 * @throws JMException e
+	 */
+	public static List<MBeanNode> getAllMBeanNodesWithoutAttributes() throws JMException {
+		return getAllMBeanNodes(false);
+	}
+
+	private static List<MBeanNode> getAllMBeanNodes(boolean withAttributes) throws JMException {
 		initJRockitMBeansIfNeeded();
 
 		final List<MBeanNode> result = new ArrayList<MBeanNode>();
@@ -89,7 +114,7 @@ public final class MBeans {
 		final MBeanNode platformNode = new MBeanNode("");
 		// MBeans pour la plateforme
 		final MBeans platformMBeans = new MBeans();
-		platformNode.getChildren().addAll(platformMBeans.getMBeanNodes());
+		platformNode.getChildren().addAll(platformMBeans.getMBeanNodes(withAttributes));
 		result.add(platformNode);
 
 		// pour JBoss 5.0.x, les MBeans de JBoss sont dans un autre MBeanServer
@@ -97,7 +122,7 @@ public final class MBeans {
 			if (!mbeanServer.equals(platformMBeanServer)) {
 				final MBeanNode node = new MBeanNode(mbeanServer.getDefaultDomain());
 				final MBeans mbeans = new MBeans(mbeanServer);
-				node.getChildren().addAll(mbeans.getMBeanNodes());
+				node.getChildren().addAll(mbeans.getMBeanNodes(withAttributes));
 				result.add(node);
 			}
 		}
@@ -123,19 +148,44 @@ public final class MBeans {
 		}
 	}
 
-	private List<MBeanNode> getMBeanNodes() throws JMException {
+	/**
+	 * Retourne un MBean avec sa description et les valeurs de ses attributs.
+	 * @param mbeanName Nom du MBean
+	 * @return MBeanNode
+	 * @throws JMException e
+	 */
+	public static MBeanNode getMBeanNode(String mbeanName) throws JMException {
+		final ObjectName name = MBeansCache.getObjectName(mbeanName);
+		for (final MBeanServer mbeanServer : getMBeanServers()) {
+			final MBeans mbeans = new MBeans(mbeanServer);
+			if (mbeans.mbeansCache.isRegistered(name)) {
+				return mbeans.getMBeanNode(name,
+						System.currentTimeMillis() + MAX_ATTRIBUTES_DURATION_MILLIS);
+			}
+		}
+		throw new InstanceNotFoundException(mbeanName);
+	}
+
+	private List<MBeanNode> getMBeanNodes(boolean withAttributes) throws JMException {
 		final List<MBeanNode> result = new ArrayList<MBeanNode>();
-		final Set<ObjectName> names = mbeanServer.queryNames(null, null);
+		// index des noeuds par domaine et par valeur de la première propriété,
+		// pour ne pas parcourir les listes avec des dizaines de milliers de MBeans
+		final Map<String, MBeanNode> domainNodes = new HashMap<String, MBeanNode>();
+		final Map<MBeanNode, Map<String, MBeanNode>> firstPropertyNodesByDomainNode = new HashMap<MBeanNode, Map<String, MBeanNode>>();
+		final long deadline = System.currentTimeMillis() + MAX_ATTRIBUTES_DURATION_MILLIS;
+		final Set<ObjectName> names = mbeansCache.getNames();
 		for (final ObjectName name : names) {
 			final String domain = name.getDomain();
 			if ("jboss.deployment".equals(domain)) {
 				// la partie "jboss.deployment" dans JBoss (5.0.x) est plutôt inutile et trop lourde
 				continue;
 			}
-			MBeanNode domainNode = getMBeanNodeFromList(result, domain);
+			MBeanNode domainNode = domainNodes.get(domain);
 			if (domainNode == null) {
 				domainNode = new MBeanNode(domain);
 				result.add(domainNode);
+				domainNodes.put(domain, domainNode);
+				firstPropertyNodesByDomainNode.put(domainNode, new HashMap<String, MBeanNode>());
 			}
 			final String keyPropertyListString = name.getKeyPropertyListString();
 			final String firstPropertyValue;
@@ -147,15 +197,25 @@ public final class MBeans {
 				firstPropertyValue = name
 						.getKeyProperty(keyPropertyListString.substring(0, indexOf));
 			}
-			MBeanNode firstPropertyNode = getMBeanNodeFromList(domainNode.getChildren(),
-					firstPropertyValue);
+			final Map<String, MBeanNode> firstPropertyNodes = firstPropertyNodesByDomainNode
+					.get(domainNode);
+			MBeanNode firstPropertyNode = firstPropertyNodes.get(firstPropertyValue);
 			if (firstPropertyNode == null) {
 				firstPropertyNode = new MBeanNode(firstPropertyValue);
 				domainNode.getChildren().add(firstPropertyNode);
+				firstPropertyNodes.put(firstPropertyValue, firstPropertyNode);
+			}
+			if (!withAttributes) {
+				// description et attributs lus à la demande, seulement pour les MBeans affichés
+				firstPropertyNode.getChildren().add(new MBeanNode(name.toString(), null, null));
+				continue;
 			}
 			try {
-				final MBeanNode mbean = getMBeanNode(name);
+				final MBeanNode mbean = getMBeanNode(name, deadline);
 				firstPropertyNode.getChildren().add(mbean);
+			} catch (final InstanceNotFoundException e) {
+				// désenregistré entre-temps
+				continue;
 			} catch (final IllegalStateException e) {
 				// for JBoss EAP 6 (#757)
 				continue;
@@ -175,62 +235,55 @@ public final class MBeans {
 			if (children != null) {
 				sortMBeanNodes(children);
 			}
-			final List<MBeanAttribute> attributes = node.getAttributes();
-			if (attributes != null && attributes.size() > 1) {
-				Collections.sort(attributes, ATTRIBUTE_COMPARATOR);
-			}
-		}
-	}
-
-	private static MBeanNode getMBeanNodeFromList(List<MBeanNode> list, String name) {
-		for (final MBeanNode node : list) {
-			if (node.getName().equals(name)) {
-				return node;
-			}
 		}
-		return null;
 	}
 
-	private MBeanNode getMBeanNode(ObjectName name) throws JMException {
+	private MBeanNode getMBeanNode(ObjectName name, long deadline) throws JMException {
 		final String mbeanName = name.toString();
-		final MBeanInfo mbeanInfo = mbeanServer.getMBeanInfo(name);
+		// MBeanInfo gardé en cache jusqu'au désenregistrement du MBean, s'il est immuable
+		final MBeanInfo mbeanInfo = mbeansCache.getMBeanInfo(name);
 		final String description = formatDescription(mbeanInfo.getDescription());
-		final MBeanAttributeInfo[] attributeInfos = mbeanInfo.getAttributes();
-		final List<MBeanAttribute> attributes = getAttributes(name, attributeInfos);
-		// les attributs seront triés par ordre alphabétique dans getMBeanNodes
+		final List<MBeanAttribute> attributes = getAttributes(name, mbeanInfo.getAttributes(),
+				deadline);
+		if (attributes.size() > 1) {
+			Collections.sort(attributes, ATTRIBUTE_COMPARATOR);
+		}
 		return new MBeanNode(mbeanName, description, attributes);
 	}
 
 	private List<MBeanAttribute> getAttributes(ObjectName name,
-			MBeanAttributeInfo[] attributeInfos) {
-		final List<String> attributeNames = new ArrayList<String>(attributeInfos.length);
-		for (final MBeanAttributeInfo attribute : attributeInfos) {
+			MBeanAttributeInfo[] attributeInfos, long deadline) {
+		final List<MBeanAttribute> result = new ArrayList<MBeanAttribute>();
+		// l'API JMX n'a pas de timeout : les attributs sont lus un par un
+		// pour vérifier la durée maximale entre chaque lecture
+		for (final MBeanAttributeInfo attributeInfo : attributeInfos) {
 			// on ne veut pas afficher l'attribut password, jamais
 			// (notamment, dans users tomcat ou dans datasources tomcat)
-			if (attribute.isReadable() && !"password".equalsIgnoreCase(attribute.getName())) {
-				attributeNames.add(attribute.getName());
+			if (!attributeInfo.isReadable()
+					|| "password".equalsIgnoreCase(attributeInfo.getName())) {
+				continue;
 			}
-		}
-		final String[] attributeNamesArray = attributeNames.toArray(new String[0]);
-		final List<MBeanAttribute> result = new ArrayList<MBeanAttribute>();
-		try {
-			// issue 116: asList sur mbeanServer.getAttributes(name, attributeNamesArray) n'existe qu'en java 1.6
-			final List<Object> attributes = mbeanServer.getAttributes(name, attributeNamesArray);
-			for (final Object object : attributes) {
-				final Attribute attribute = (Attribute) object;
-				final Object value = convertValueIfNeeded(attribute.getValue());
-				final String attributeDescription = getAttributeDescription(attribute.getName(),
-						attributeInfos);
-				final String formattedAttributeValue = formatAttributeValue(value);
-				final MBeanAttribute mbeanAttribute = new MBeanAttribute(attribute.getName(),
-						attributeDescription, formattedAttributeValue);
-				result.add(mbeanAttribute);
+			if (System.currentTimeMillis() >= deadline) {
+				// certains attributs peuvent être longs à calculer : au delà de la durée maximale,
+				// les valeurs suivantes ne sont plus lues pour ne pas bloquer le rapport
+				result.add(new MBeanAttribute("timeout", null,
+						"attributes not read, MBeans took more than "
+								+ MAX_ATTRIBUTES_DURATION_MILLIS / 1000 + " s"));
+				break;
 			}
-		} catch (final Exception e) {
-			// issue 201: do not stop to render MBeans tree when exception in mbeanServer.getAttributes
-			final MBeanAttribute mbeanAttribute = new MBeanAttribute("exception", null,
-					e.toString());
-			result.add(mbeanAttribute);
+			final String attributeName = attributeInfo.getName();
+			final String attributeDescription = getAttributeDescription(attributeInfo);
+			String formattedAttributeValue;
+			try {
+				final Object value = convertValueIfNeeded(
+						mbeanServer.getAttribute(name, attributeName));
+				formattedAttributeValue = formatAttributeValue(value);
+			} catch (final Exception e) {
+				// issue 201: do not stop to render MBeans tree when exception in mbeanServer.getAttribute
+				formattedAttributeValue = e.toString();
+			}
+			result.add(new MBeanAttribute(attributeName, attributeDescription,
+					formattedAttributeValue));
 		}
 		return result;
 	}
@@ -345,8 +398,14 @@ public final class MBeans {
 			for (final MBeanServer mbeanServer : mBeanServers) {
 				try {
 					final MBeans mbeans = new MBeans(mbeanServer);
-					final Object jmxValue = mbeans.convertValueIfNeeded(
-							mbeans.getAttribute(new ObjectName(name), attribute));
+					// ObjectName gardé en cache, et MBeanServer du MBean trouvé d'après les noms
+					// tenus à jour par notifications, sans appeler getAttribute sur les autres
+					final ObjectName objectName = MBeansCache.getObjectName(name);
+					if (mBeanServers.size() > 1 && !mbeans.mbeansCache.isRegistered(objectName)) {
+						throw new InstanceNotFoundException(name);
+					}
+					final Object jmxValue = mbeans
+							.convertValueIfNeeded(mbeans.getAttribute(objectName, attribute));
 					result.add(jmxValue);
 					instanceNotFoundException = null;
 					// ObjectName trouvé dans ce MBeanServer, inutile de chercher dans les suivants
@@ -386,22 +445,16 @@ public final class MBeans {
 		return sb.toString();
 	}
 
-	private String getAttributeDescription(String name, MBeanAttributeInfo[] attributeInfos) {
-		for (final MBeanAttributeInfo attributeInfo : attributeInfos) {
-			if (name.equals(attributeInfo.getName())) {
-				// certaines descriptions d'attributs comme les NamingResources dans Tomcat 7 contiennent aussi des espaces qui se suivent
-				final String attributeDescription = formatDescription(
-						attributeInfo.getDescription());
-				if (attributeDescription == null || name.equals(attributeDescription)
-						|| attributeDescription.isEmpty()) {
-					// les attributs des MBeans de java.lang ont des descriptions égales aux noms,
-					// ce sont des descriptions inutiles
-					return null;
-				}
-				return attributeDescription;
-			}
+	private String getAttributeDescription(MBeanAttributeInfo attributeInfo) {
+		// certaines descriptions d'attributs comme les NamingResources dans Tomcat 7 contiennent aussi des espaces qui se suivent
+		final String attributeDescription = formatDescription(attributeInfo.getDescription());
+		if (attributeDescription == null || attributeInfo.getName().equals(attributeDescription)
+				|| attributeDescription.isEmpty()) {
+			// les attributs des MBeans de java.lang ont des descriptions égales aux noms,
+			// ce sont des descriptions inutiles
+			return null;
 		}
-		return null;
+		return attributeDescription;
 	}
 
 	/**
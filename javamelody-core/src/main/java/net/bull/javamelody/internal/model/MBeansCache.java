@@ -0,0 +1,205 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.Descriptor;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+
+import net.bull.javamelody.internal.common.LOG;
+
+/**
+ * Cache des noms et des MBeanInfo des MBeans d'un MBeanServer.<br/>
+ * Les noms des MBeans sont lus une seule fois par queryNames, puis tenus à jour
+ * par les notifications d'enregistrement et de désenregistrement du MBeanServerDelegate,
+ * et les MBeanInfo sont lus à la première demande puis gardés jusqu'au désenregistrement du MBean,
+ * seulement s'ils sont déclarés immuables par le champ "immutableInfo" de leur Descriptor.
+ * Cela évite de parcourir tous les MBeans à chaque affichage du rapport des MBeans,
+ * ce qui peut prendre plusieurs dizaines de secondes sur un serveur d'applications
+ * avec des dizaines de milliers de MBeans.<br/>
+ * Si le MBeanServer n'accepte pas l'ajout d'un listener, rien n'est gardé en cache.
+ * @author Emeric Vernat
+ */
+public final class MBeansCache implements NotificationListener {
+	private static final Map<MBeanServer, MBeansCache> INSTANCES = new IdentityHashMap<MBeanServer, MBeansCache>();
+	private static final int MAX_OBJECT_NAMES_SIZE = 1000;
+	// noms des MBeans demandés par jmxValue, par exemple à chaque scrape de PrometheusMBeanTag
+	private static final ConcurrentMap<String, ObjectName> OBJECT_NAMES = new ConcurrentHashMap<String, ObjectName>();
+
+	private final MBeanServer mbeanServer;
+	private final Set<ObjectName> names = Collections
+			.newSetFromMap(new ConcurrentHashMap<ObjectName, Boolean>());
+	private final ConcurrentMap<ObjectName, MBeanInfo> mbeanInfos = new ConcurrentHashMap<ObjectName, MBeanInfo>();
+	private final boolean listening;
+
+	private MBeansCache(MBeanServer mbeanServer) {
+		super();
+		this.mbeanServer = mbeanServer;
+		this.listening = addListener();
+		if (listening) {
+			// listener ajouté avant la lecture des noms, pour ne manquer aucun enregistrement
+			names.addAll(mbeanServer.queryNames(null, null));
+		}
+	}
+
+	static MBeansCache getInstance(MBeanServer mbeanServer) {
+		synchronized (INSTANCES) {
+			MBeansCache instance = INSTANCES.get(mbeanServer);
+			if (instance == null) {
+				instance = new MBeansCache(mbeanServer);
+				INSTANCES.put(mbeanServer, instance);
+			}
+			return instance;
+		}
+	}
+
+	/**
+	 * Retire les listeners des MBeanServers et vide les caches, à l'arrêt de l'application.
+	 */
+	public static void stop() {
+		synchronized (INSTANCES) {
+			for (final MBeansCache instance : INSTANCES.values()) {
+				instance.removeListener();
+			}
+			INSTANCES.clear();
+		}
+		OBJECT_NAMES.clear();
+	}
+
+	private boolean addListener() {
+		try {
+			mbeanServer.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this, null,
+					null);
+			return true;
+		} catch (final Exception e) {
+			// par exemple un MBeanServer qui n'autorise pas l'ajout de listener
+			LOG.debug("MBeans will not be cached: " + e.toString(), e);
+			return false;
+		}
+	}
+
+	private void removeListener() {
+		if (listening) {
+			try {
+				mbeanServer.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this);
+			} catch (final Exception e) {
+				// par exemple le MBeanServer a déjà été libéré
+				LOG.debug(e.toString(), e);
+			}
+		}
+		names.clear();
+		mbeanInfos.clear();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		if (notification instanceof MBeanServerNotification) {
+			final ObjectName name = ((MBeanServerNotification) notification).getMBeanName();
+			if (MBeanServerNotification.REGISTRATION_NOTIFICATION
+					.equals(notification.getType())) {
+				names.add(name);
+			} else if (MBeanServerNotification.UNREGISTRATION_NOTIFICATION
+					.equals(notification.getType())) {
+				names.remove(name);
+				mbeanInfos.remove(name);
+			}
+		}
+	}
+
+	Set<ObjectName> getNames() {
+		if (listening) {
+			return Collections.unmodifiableSet(names);
+		}
+		return mbeanServer.queryNames(null, null);
+	}
+
+	boolean isRegistered(ObjectName name) {
+		if (listening) {
+			return names.contains(name);
+		}
+		return mbeanServer.isRegistered(name);
+	}
+
+	MBeanInfo getMBeanInfo(ObjectName name) throws JMException {
+		if (!listening) {
+			return mbeanServer.getMBeanInfo(name);
+		}
+		MBeanInfo mbeanInfo = mbeanInfos.get(name);
+		if (mbeanInfo == null) {
+			try {
+				mbeanInfo = mbeanServer.getMBeanInfo(name);
+			} catch (final InstanceNotFoundException e) {
+				// désenregistré pendant la lecture initiale des noms
+				names.remove(name);
+				throw e;
+			}
+			if (isImmutableInfo(mbeanInfo)) {
+				mbeanInfos.put(name, mbeanInfo);
+				if (!names.contains(name)) {
+					// désenregistré pendant la lecture du MBeanInfo
+					mbeanInfos.remove(name, mbeanInfo);
+				}
+			}
+		}
+		return mbeanInfo;
+	}
+
+	private static boolean isImmutableInfo(MBeanInfo mbeanInfo) {
+		// un MBean dynamique peut changer de MBeanInfo pendant sa vie :
+		// il n'est gardé en cache que si le MBean le déclare immuable, comme les MBeans standards
+		final Descriptor descriptor = mbeanInfo.getDescriptor();
+		if (descriptor == null) {
+			return false;
+		}
+		final Object immutableInfo = descriptor.getFieldValue("immutableInfo");
+		return "true".equalsIgnoreCase(String.valueOf(immutableInfo));
+	}
+
+	int getMBeanInfosCount() {
+		return mbeanInfos.size();
+	}
+
+	static ObjectName getObjectName(String name) throws MalformedObjectNameException {
+		ObjectName objectName = OBJECT_NAMES.get(name);
+		if (objectName == null) {
+			objectName = new ObjectName(name);
+			if (OBJECT_NAMES.size() >= MAX_OBJECT_NAMES_SIZE) {
+				// cache plein, on repart de zéro plutôt que de gérer un ordre d'éviction
+				OBJECT_NAMES.clear();
+			}
+			OBJECT_NAMES.put(name, objectName);
+		}
+		return objectName;
+	}
+}
@@ -18,15 +18,20 @@
 package net.bull.javamelody.internal.model; // NOPMD
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -37,18 +42,22 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import javax.servlet.ServletContext;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import net.bull.javamelody.Parameter;
 import net.bull.javamelody.internal.common.InputOutput;
@@ -69,6 +78,20 @@ public final class MavenArtifact implements Serializable {
 
 	private static final String TOMCAT_ARCHIVES = "https://archive.apache.org/dist/tomcat/";
 
+	// nombre maximum de jars résolus en même temps
+	private static final int RESOLUTION_THREADS_COUNT = 8;
+
+	// cache persistant des artifacts résolus par hash SHA-1 des jars de WEB-INF/lib,
+	// pour ne pas relire les poms et ne pas résoudre de nouveau les parents et les dépendances
+	// à chaque affichage du rapport des dépendances
+	private static final String RESOLVED_ARTIFACTS_FILE_NAME = "resolvedArtifacts.ser.gz";
+
+	private static final Object RESOLVED_ARTIFACTS_LOCK = new Object();
+
+	private static final Object SOURCE_FILE_PATHS_LOCK = new Object();
+
+	private static Map<String, MavenArtifact> resolvedArtifactsByHash;
+
 	private static Map<String, String> sourceFilePathsByJarFileNames;
 
 	private static String webappVersion;
@@ -100,16 +123,19 @@ public final class MavenArtifact implements Serializable {
 	}
 
 	private void parsePomXml(InputStream pomXml) throws IOException {
-		final DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
 		try {
-			final DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			final Document doc = dBuilder.parse(pomXml);
-			final Node projectNode = doc.getElementsByTagName("project").item(0);
-			final NodeList childNodes = projectNode.getChildNodes();
-			properties = new HashMap<String, String>();
-			for (int i = 0; i < childNodes.getLength(); i++) {
-				final Node node = childNodes.item(i);
-				parseNode(node);
+			// lecture en flux avec StAX, sans construire de DOM pour chaque pom
+			final XMLStreamReader reader = createXMLStreamReader(pomXml);
+			try {
+				if (!nextElement(reader, "project")) {
+					throw new IOException("project element not found in pom.xml");
+				}
+				properties = new HashMap<String, String>();
+				while (nextChildElement(reader)) {
+					parseElement(reader);
+				}
+			} finally {
+				reader.close();
 			}
 			properties.put("project.groupId", groupId);
 			properties.put("pom.groupId", groupId);
@@ -126,63 +152,117 @@ public final class MavenArtifact implements Serializable {
 				dependency.version = replaceProperty(dependency.version, properties);
 			}
 			properties = null;
-		} catch (final ParserConfigurationException e) {
-			throw new IOException(e.getMessage(), e);
-		} catch (final SAXException e) {
+		} catch (final XMLStreamException e) {
 			throw new IOException(e.getMessage(), e);
 		}
 		updated = true;
 	}
 
+	private static XMLStreamReader createXMLStreamReader(InputStream input)
+			throws XMLStreamException {
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		// pas de DTD ni d'entités externes dans un pom.xml (XXE)
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory.createXMLStreamReader(input);
+	}
+
+	private static boolean nextElement(XMLStreamReader reader, String elementName)
+			throws XMLStreamException {
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamConstants.START_ELEMENT
+					&& elementName.equals(reader.getLocalName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// avance jusqu'au prochain élément fils de l'élément courant
+	// et retourne false à la fin de l'élément courant
+	private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext()) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				return true;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	// équivalent de Node.getTextContent() : texte de l'élément courant et de ses descendants,
+	// en lisant jusqu'à la fin de l'élément courant
+	private static String readTextContent(XMLStreamReader reader) throws XMLStreamException {
+		final StringBuilder sb = new StringBuilder();
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			} else if (event == XMLStreamConstants.CHARACTERS
+					|| event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE
+					|| event == XMLStreamConstants.ENTITY_REFERENCE) {
+				sb.append(reader.getText());
+			}
+		}
+		return sb.toString();
+	}
+
 	// CHECKSTYLE:OFF
-	private void parseNode(Node node) {
+	private void parseElement(XMLStreamReader reader) throws XMLStreamException {
 		// CHECKSTYLE:ON
-		final String nodeName = node.getNodeName();
-		if ("name".equals(nodeName)) {
-			this.name = node.getTextContent();
-		} else if ("description".equals(nodeName) && this.name == null) {
-			this.name = node.getTextContent();
-		} else if ("url".equals(nodeName)) {
-			this.url = node.getTextContent();
-		} else if ("groupId".equals(nodeName) && !node.getTextContent().startsWith("${")) {
-			this.groupId = node.getTextContent();
-		} else if ("artifactId".equals(nodeName)) {
-			this.artifactId = node.getTextContent();
-		} else if ("version".equals(nodeName) && !node.getTextContent().startsWith("${")) {
-			this.version = node.getTextContent();
-		} else if ("parent".equals(nodeName)) {
-			parseParentNode(node);
-		} else if ("properties".equals(nodeName)) {
-			properties.putAll(parsePropertiesNode(node));
-		} else if ("licenses".equals(nodeName)) {
-			parseLicensesNode(node);
-		} else if ("dependencies".equals(nodeName)) {
-			this.dependencies.addAll(parseDependenciesNode(node));
-		} else if ("dependencyManagement".equals(nodeName)) {
-			final NodeList childNodes = node.getChildNodes();
-			for (int i = 0; i < childNodes.getLength(); i++) {
-				final Node childNode = childNodes.item(i);
-				if ("dependencies".equals(childNode.getNodeName())) {
-					this.managedDependencies.addAll(parseDependenciesNode(childNode));
+		final String elementName = reader.getLocalName();
+		if ("parent".equals(elementName)) {
+			parseParentElement(reader);
+		} else if ("properties".equals(elementName)) {
+			properties.putAll(parsePropertiesElement(reader));
+		} else if ("licenses".equals(elementName)) {
+			parseLicensesElement(reader);
+		} else if ("dependencies".equals(elementName)) {
+			this.dependencies.addAll(parseDependenciesElement(reader));
+		} else if ("dependencyManagement".equals(elementName)) {
+			while (nextChildElement(reader)) {
+				if ("dependencies".equals(reader.getLocalName())) {
+					this.managedDependencies.addAll(parseDependenciesElement(reader));
+				} else {
+					readTextContent(reader);
 				}
 			}
+		} else {
+			final String text = readTextContent(reader);
+			if ("name".equals(elementName)) {
+				this.name = text;
+			} else if ("description".equals(elementName) && this.name == null) {
+				this.name = text;
+			} else if ("url".equals(elementName)) {
+				this.url = text;
+			} else if ("groupId".equals(elementName) && !text.startsWith("${")) {
+				this.groupId = text;
+			} else if ("artifactId".equals(elementName)) {
+				this.artifactId = text;
+			} else if ("version".equals(elementName) && !text.startsWith("${")) {
+				this.version = text;
+			}
 		}
 	}
 
-	private void parseParentNode(Node node) {
-		final NodeList parentNodes = node.getChildNodes();
+	private void parseParentElement(XMLStreamReader reader) throws XMLStreamException {
 		String parentGroupId = null;
 		String parentArtifactId = null;
 		String parentVersion = null;
-		for (int k = 0; k < parentNodes.getLength(); k++) {
-			final Node childParentNode = parentNodes.item(k);
-			final String nodeName = childParentNode.getNodeName();
-			if ("groupId".equals(nodeName)) {
-				parentGroupId = childParentNode.getTextContent();
-			} else if ("artifactId".equals(nodeName)) {
-				parentArtifactId = childParentNode.getTextContent();
-			} else if ("version".equals(nodeName)) {
-				parentVersion = childParentNode.getTextContent();
+		while (nextChildElement(reader)) {
+			final String elementName = reader.getLocalName();
+			final String text = readTextContent(reader);
+			if ("groupId".equals(elementName)) {
+				parentGroupId = text;
+			} else if ("artifactId".equals(elementName)) {
+				parentArtifactId = text;
+			} else if ("version".equals(elementName)) {
+				parentVersion = text;
 			}
 		}
 		if (this.groupId == null) {
@@ -197,34 +277,28 @@ public final class MavenArtifact implements Serializable {
 		this.parent.version = parentVersion;
 	}
 
-	private Map<String, String> parsePropertiesNode(Node propertiesNode) {
+	private static Map<String, String> parsePropertiesElement(XMLStreamReader reader)
+			throws XMLStreamException {
 		final Map<String, String> props = new HashMap<String, String>();
-		final NodeList propertiesNodes = propertiesNode.getChildNodes();
-		for (int j = 0; j < propertiesNodes.getLength(); j++) {
-			final Node propertyNode = propertiesNodes.item(j);
-			final String nodeName = propertyNode.getNodeName();
-			if (nodeName != null) {
-				props.put(nodeName, propertyNode.getTextContent());
-			}
+		while (nextChildElement(reader)) {
+			final String elementName = reader.getLocalName();
+			props.put(elementName, readTextContent(reader));
 		}
 		return props;
 	}
 
-	private void parseLicensesNode(Node licensesNode) {
-		final NodeList licenseNodes = licensesNode.getChildNodes();
-		for (int j = 0; j < licenseNodes.getLength(); j++) {
-			final Node licenseNode = licenseNodes.item(j);
-			if ("license".equals(licenseNode.getNodeName())) {
+	private void parseLicensesElement(XMLStreamReader reader) throws XMLStreamException {
+		while (nextChildElement(reader)) {
+			if ("license".equals(reader.getLocalName())) {
 				String licenseName = null;
 				String licenseUrl = null;
-				final NodeList childLicenseNodes = licenseNode.getChildNodes();
-				for (int k = 0; k < childLicenseNodes.getLength(); k++) {
-					final Node childLicenseNode = childLicenseNodes.item(k);
-					final String nodeName = childLicenseNode.getNodeName();
-					if ("name".equals(nodeName)) {
-						licenseName = childLicenseNode.getTextContent();
-					} else if ("url".equals(nodeName)) {
-						licenseUrl = childLicenseNode.getTextContent();
+				while (nextChildElement(reader)) {
+					final String elementName = reader.getLocalName();
+					final String text = readTextContent(reader);
+					if ("name".equals(elementName)) {
+						licenseName = text;
+					} else if ("url".equals(elementName)) {
+						licenseUrl = text;
 					}
 				}
 				if (licenseName != null) {
@@ -236,40 +310,42 @@ public final class MavenArtifact implements Serializable {
 						licenseUrlsByName.put(licenseUrl, licenseUrl);
 					}
 				}
+			} else {
+				readTextContent(reader);
 			}
 		}
 	}
 
 	// CHECKSTYLE:OFF
-	private List<MavenArtifact> parseDependenciesNode(Node dependenciesNode) {
+	private static List<MavenArtifact> parseDependenciesElement(XMLStreamReader reader)
+			throws XMLStreamException {
 		// CHECKSTYLE:ON
 		final List<MavenArtifact> deps = new ArrayList<MavenArtifact>();
-		final NodeList dependencyNodes = dependenciesNode.getChildNodes();
-		for (int j = 0; j < dependencyNodes.getLength(); j++) {
-			final Node dependencyNode = dependencyNodes.item(j);
-			if ("dependency".equals(dependencyNode.getNodeName())) {
-				final NodeList childDependencyNodes = dependencyNode.getChildNodes();
+		while (nextChildElement(reader)) {
+			if ("dependency".equals(reader.getLocalName())) {
 				final MavenArtifact dependency = new MavenArtifact();
 				String scope = null;
 				String optional = null;
-				for (int k = 0; k < childDependencyNodes.getLength(); k++) {
-					final Node childDependencyNode = childDependencyNodes.item(k);
-					final String nodeName = childDependencyNode.getNodeName();
-					if ("groupId".equals(nodeName)) {
-						dependency.groupId = childDependencyNode.getTextContent();
-					} else if ("artifactId".equals(nodeName)) {
-						dependency.artifactId = childDependencyNode.getTextContent();
-					} else if ("version".equals(nodeName)) {
-						dependency.version = childDependencyNode.getTextContent();
-					} else if ("scope".equals(nodeName)) {
-						scope = childDependencyNode.getTextContent();
-					} else if ("optional".equals(nodeName)) {
-						optional = childDependencyNode.getTextContent();
+				while (nextChildElement(reader)) {
+					final String elementName = reader.getLocalName();
+					final String text = readTextContent(reader);
+					if ("groupId".equals(elementName)) {
+						dependency.groupId = text;
+					} else if ("artifactId".equals(elementName)) {
+						dependency.artifactId = text;
+					} else if ("version".equals(elementName)) {
+						dependency.version = text;
+					} else if ("scope".equals(elementName)) {
+						scope = text;
+					} else if ("optional".equals(elementName)) {
+						optional = text;
 					}
 				}
 				if ((scope == null || "compile".equals(scope)) && !"true".equals(optional)) {
 					deps.add(dependency);
 				}
+			} else {
+				readTextContent(reader);
 			}
 		}
 		return deps;
@@ -418,7 +494,8 @@ public final class MavenArtifact implements Serializable {
 		for (final MavenArtifact dependency : webappDependencies.values()) {
 			if (dependency != null && !dependency.isContained(allDependencies)) {
 				allDependencies.add(dependency);
-				for (final MavenArtifact transitiveDependency : dependency.getAllDependencies()) {
+				// les dépendances d'un artifact résolu sont déjà toutes ses dépendances transitives
+				for (final MavenArtifact transitiveDependency : dependency.dependencies) {
 					if (!transitiveDependency.isContained(allDependencies)) {
 						allDependencies.add(transitiveDependency);
 					}
@@ -466,21 +543,227 @@ public final class MavenArtifact implements Serializable {
 		if (dependencies == null || dependencies.isEmpty()) {
 			return Collections.emptyMap();
 		}
-		final Map<String, MavenArtifact> result = new TreeMap<String, MavenArtifact>();
+		final Map<String, URL> jarFileLocations = new TreeMap<String, URL>();
 		for (final String dependency : dependencies) {
 			if (dependency.endsWith(".jar") || dependency.endsWith(".JAR")) {
 				final String fileName = dependency.substring(directory.length());
-				final URL jarFileLocation = servletContext.getResource(dependency);
+				jarFileLocations.put(fileName, servletContext.getResource(dependency));
+			}
+		}
+		final Map<String, MavenArtifact> resolvedArtifactsByHash = getResolvedArtifactsByHash();
+		final Map<String, MavenArtifact> newResolvedArtifactsByHash = new HashMap<String, MavenArtifact>();
+		final Map<String, MavenArtifact> result = new TreeMap<String, MavenArtifact>();
+		if (jarFileLocations.isEmpty()) {
+			return result;
+		}
+		// résolution en parallèle des jars, avec un nombre borné de threads
+		// car chaque résolution peut télécharger des poms parents et de dépendances
+		final ExecutorService executorService = Executors.newFixedThreadPool(
+				Math.min(jarFileLocations.size(), RESOLUTION_THREADS_COUNT), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						final Thread thread = new Thread(runnable,
+								"javamelody dependencies resolution worker");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try {
+			final Map<String, Future<String>> hashFutures = new TreeMap<String, Future<String>>();
+			final Map<String, Future<MavenArtifact>> futures = new TreeMap<String, Future<MavenArtifact>>();
+			for (final Map.Entry<String, URL> entry : jarFileLocations.entrySet()) {
+				final URL jarFileLocation = entry.getValue();
 				if (jarFileLocation != null) {
-					result.put(fileName, parseDependency(jarFileLocation));
-				} else {
+					final Future<String> hashFuture = executorService
+							.submit(new Callable<String>() {
+								@Override
+								public String call() throws IOException {
+									return getHash(jarFileLocation);
+								}
+							});
+					hashFutures.put(entry.getKey(), hashFuture);
+				}
+			}
+			for (final Map.Entry<String, Future<String>> entry : hashFutures.entrySet()) {
+				final String hash = waitFor(entry.getValue());
+				final URL jarFileLocation = jarFileLocations.get(entry.getKey());
+				if (!resolvedArtifactsByHash.containsKey(hash)) {
+					futures.put(entry.getKey(),
+							executorService.submit(new Callable<MavenArtifact>() {
+								@Override
+								public MavenArtifact call() throws IOException {
+									return resolveDependency(jarFileLocation);
+								}
+							}));
+				}
+			}
+			for (final Map.Entry<String, URL> entry : jarFileLocations.entrySet()) {
+				final String fileName = entry.getKey();
+				final Future<String> hashFuture = hashFutures.get(fileName);
+				if (hashFuture == null) {
 					result.put(fileName, null);
+					continue;
+				}
+				final String hash = waitFor(hashFuture);
+				final Future<MavenArtifact> future = futures.get(fileName);
+				final MavenArtifact dependency;
+				if (future == null) {
+					dependency = resolvedArtifactsByHash.get(hash);
+				} else {
+					dependency = waitFor(future);
 				}
+				newResolvedArtifactsByHash.put(hash, dependency);
+				result.put(fileName, dependency);
 			}
+		} finally {
+			executorService.shutdownNow();
+		}
+		// seuls les jars actuels de WEB-INF/lib sont conservés dans le cache
+		if (!newResolvedArtifactsByHash.equals(resolvedArtifactsByHash)) {
+			saveResolvedArtifactsByHash(newResolvedArtifactsByHash);
 		}
 		return result;
 	}
 
+	private static MavenArtifact resolveDependency(URL jarFileLocation) throws IOException {
+		final MavenArtifact dependency = parseDependency(jarFileLocation);
+		if (dependency == null) {
+			return null;
+		}
+		return dependency.toResolvedArtifact();
+	}
+
+	/**
+	 * Copie résolue de cet artifact, à conserver dans le cache : nom, url et licences
+	 * (éventuellement hérités des poms parents) et liste de toutes les dépendances transitives,
+	 * sans les poms parents.
+	 * @return MavenArtifact
+	 * @throws IOException e
+	 */
+	private MavenArtifact toResolvedArtifact() throws IOException {
+		final MavenArtifact resolvedArtifact = new MavenArtifact();
+		resolvedArtifact.groupId = groupId;
+		resolvedArtifact.artifactId = artifactId;
+		resolvedArtifact.version = version;
+		resolvedArtifact.name = getName();
+		resolvedArtifact.url = getUrl();
+		resolvedArtifact.licenseUrlsByName.putAll(getLicenseUrlsByName());
+		for (final MavenArtifact dependency : getAllDependencies()) {
+			// les dépendances transitives seront mises à jour si besoin depuis leurs poms
+			final MavenArtifact transitiveDependency = new MavenArtifact();
+			transitiveDependency.groupId = dependency.groupId;
+			transitiveDependency.artifactId = dependency.artifactId;
+			transitiveDependency.version = dependency.version;
+			resolvedArtifact.dependencies.add(transitiveDependency);
+		}
+		resolvedArtifact.updated = true;
+		return resolvedArtifact;
+	}
+
+	private static String getHash(URL jarFileLocation) throws IOException {
+		final MessageDigest messageDigest;
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		final InputStream input = jarFileLocation.openStream();
+		try {
+			final byte[] bytes = new byte[8192];
+			int length = input.read(bytes);
+			while (length != -1) {
+				messageDigest.update(bytes, 0, length);
+				length = input.read(bytes);
+			}
+		} finally {
+			input.close();
+		}
+		final StringBuilder sb = new StringBuilder();
+		for (final byte b : messageDigest.digest()) {
+			sb.append(Integer.toHexString((b & 0xF0) >> 4)).append(Integer.toHexString(b & 0x0F));
+		}
+		return sb.toString();
+	}
+
+	private static <T> T waitFor(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e.toString(), e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause.toString(), cause);
+		}
+	}
+
+	private static File getResolvedArtifactsFile() {
+		final File storageDirectory = Parameters
+				.getStorageDirectory(Parameters.getCurrentApplication());
+		return new File(storageDirectory, "poms/" + RESOLVED_ARTIFACTS_FILE_NAME);
+	}
+
+	private static Map<String, MavenArtifact> getResolvedArtifactsByHash() {
+		synchronized (RESOLVED_ARTIFACTS_LOCK) {
+			if (resolvedArtifactsByHash == null) {
+				resolvedArtifactsByHash = readResolvedArtifactsByHash(getResolvedArtifactsFile());
+			}
+			return resolvedArtifactsByHash;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, MavenArtifact> readResolvedArtifactsByHash(File file) {
+		if (file.exists()) {
+			try {
+				final InputStream input = new FileInputStream(file);
+				try {
+					final ObjectInputStream in = TransportFormat.createObjectInputStream(
+							new GZIPInputStream(new BufferedInputStream(input)));
+					try {
+						return (Map<String, MavenArtifact>) in.readObject();
+					} finally {
+						in.close();
+					}
+				} finally {
+					input.close();
+				}
+			} catch (final Exception e) {
+				// fichier corrompu ou d'une version incompatible : les jars seront résolus de nouveau
+				LOG.debug(e.toString(), e);
+			}
+		}
+		return Collections.emptyMap();
+	}
+
+	private static void saveResolvedArtifactsByHash(Map<String, MavenArtifact> artifactsByHash)
+			throws IOException {
+		synchronized (RESOLVED_ARTIFACTS_LOCK) {
+			final File file = getResolvedArtifactsFile();
+			mkdirs(file.getParentFile());
+			final OutputStream output = new FileOutputStream(file);
+			try {
+				final ObjectOutputStream out = new ObjectOutputStream(
+						new GZIPOutputStream(new BufferedOutputStream(output)));
+				try {
+					out.writeObject(artifactsByHash);
+				} finally {
+					out.close();
+				}
+			} finally {
+				output.close();
+			}
+			resolvedArtifactsByHash = artifactsByHash;
+		}
+	}
+
 	public static InputStream getWebappPomXmlAsStream() {
 		return getWebappPomFile("pom.xml");
 	}
@@ -555,22 +838,25 @@ public final class MavenArtifact implements Serializable {
 		return getMavenArtifact(filePath);
 	}
 
-	private static synchronized Map<String, String> getSourceFilePathsByJarFileNames()
-			throws IOException {
-		if (sourceFilePathsByJarFileNames == null) {
-			final Map<String, MavenArtifact> webappDependencies = getWebappDependencies();
-			final Map<String, String> sourceFilePaths = new HashMap<String, String>();
-			for (final Map.Entry<String, MavenArtifact> entry : webappDependencies.entrySet()) {
-				final String jarFileName = entry.getKey();
-				final MavenArtifact dependency = entry.getValue();
-				if (dependency != null) {
-					final String filePath = dependency.getPath("-sources.jar");
-					sourceFilePaths.put(jarFileName, filePath);
+	private static Map<String, String> getSourceFilePathsByJarFileNames() throws IOException {
+		// verrou distinct de celui de getWebappVersion() qui n'a pas à attendre la résolution
+		synchronized (SOURCE_FILE_PATHS_LOCK) {
+			if (sourceFilePathsByJarFileNames == null) {
+				final Map<String, MavenArtifact> webappDependencies = getWebappDependencies();
+				final Map<String, String> sourceFilePaths = new HashMap<String, String>();
+				for (final Map.Entry<String, MavenArtifact> entry : webappDependencies
+						.entrySet()) {
+					final String jarFileName = entry.getKey();
+					final MavenArtifact dependency = entry.getValue();
+					if (dependency != null) {
+						final String filePath = dependency.getPath("-sources.jar");
+						sourceFilePaths.put(jarFileName, filePath);
+					}
 				}
+				sourceFilePathsByJarFileNames = sourceFilePaths;
 			}
-			sourceFilePathsByJarFileNames = sourceFilePaths;
+			return sourceFilePathsByJarFileNames;
 		}
-		return sourceFilePathsByJarFileNames;
 	}
 
 	private static File getMavenArtifact(String filePath) throws IOException {
@@ -599,19 +885,28 @@ public final class MavenArtifact implements Serializable {
 					return new File(url);
 				}
 				mkdirs(file.getParentFile());
-				final OutputStream output = new FileOutputStream(file);
+				// téléchargement dans un fichier temporaire puis renommage,
+				// car un même pom parent peut être téléchargé en même temps par plusieurs threads
+				final File tmpFile = File.createTempFile(file.getName(), ".tmp",
+						file.getParentFile());
+				final OutputStream output = new FileOutputStream(tmpFile);
+				boolean downloaded = false;
 				try {
 					final LabradorRetriever labradorRetriever = new LabradorRetriever(new URL(url));
 					labradorRetriever.downloadTo(output);
-					// si trouvé, on arrête
-					break;
+					downloaded = true;
 				} catch (final IOException e) {
-					output.close();
-					InputOutput.deleteFile(file);
 					// si non trouvé, on continue avec le repo suivant s'il y en a un
+					LOG.debug(e.toString(), e);
 				} finally {
 					output.close();
 				}
+				if (downloaded && (tmpFile.renameTo(file) || file.exists())) {
+					// si trouvé, on arrête
+					InputOutput.deleteFile(tmpFile);
+					break;
+				}
+				InputOutput.deleteFile(tmpFile);
 			}
 		}
 		if (file.exists()) {
@@ -192,6 +192,7 @@ class PeriodCounterFactory {
 		result.setApplication(currentDayCounter.getApplication());
 		result.setDisplayed(currentDayCounter.isDisplayed());
 		result.setRequestTransformPattern(currentDayCounter.getRequestTransformPattern());
+		result.setSqlNormalizationEnabled(currentDayCounter.isSqlNormalizationEnabled());
 		result.setMaxRequestsCount(currentDayCounter.getMaxRequestsCount());
 		return result;
 	}
@@ -157,9 +157,11 @@ class RemoteCall {
 		return collectForUrl(heapHistoUrl);
 	}
 
-	DatabaseInformations collectDatabaseInformations(int requestIndex) throws IOException {
+	DatabaseInformations collectDatabaseInformations(int requestIndex, int page, int sortColumn)
+			throws IOException {
 		final URL databaseUrl = new URL(url.toString() + '&' + HttpParameter.PART + '='
-				+ HttpPart.DATABASE + '&' + HttpParameter.REQUEST + '=' + requestIndex);
+				+ HttpPart.DATABASE + '&' + HttpParameter.REQUEST + '=' + requestIndex + '&'
+				+ HttpParameter.PAGE + '=' + page + '&' + HttpParameter.SORT + '=' + sortColumn);
 		return collectForUrl(databaseUrl);
 	}
 
@@ -252,8 +252,13 @@ public class RemoteCollector {
 	}
 
 	public DatabaseInformations collectDatabaseInformations(int requestIndex) throws IOException {
+		return collectDatabaseInformations(requestIndex, 0, 0);
+	}
+
+	public DatabaseInformations collectDatabaseInformations(int requestIndex, int page,
+			int sortColumn) throws IOException {
 		final URL url = getURLs().get(0);
-		return createRemoteCall(url).collectDatabaseInformations(requestIndex);
+		return createRemoteCall(url).collectDatabaseInformations(requestIndex, page, sortColumn);
 	}
 
 	public List<List<ConnectionInformations>> collectConnectionInformations() throws IOException {
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.bull.javamelody.Parameter;
+import net.bull.javamelody.internal.common.LOG;
+import net.bull.javamelody.internal.common.Parameters;
+
+/**
+ * Budget mémoire global, en octets, des requêtes de tous les compteurs d'un collector.<br/>
+ * Chaque hit de chaque requête est compté dans un sketch de fréquences avec vieillissement.
+ * Quand le budget est atteint, une nouvelle requête n'est conservée que si elle est plus
+ * fréquente, selon ce sketch (admission TinyLFU), qu'une requête existante moins fréquente
+ * choisie par échantillonnage dans tous les compteurs, et qui est alors évincée.<br/>
+ * Cela évite qu'une rafale de requêtes sql non bindées ou d'urls aléatoires
+ * n'évince arbitrairement les requêtes utiles conservées depuis longtemps.<br/>
+ * Il n'y a pas de verrou global : la taille utilisée est un compteur atomique
+ * et le sketch est modifié par compare-and-set.
+ * @author Emeric Vernat
+ */
+public final class RequestsBudget {
+	// estimation de la taille en mémoire d'un CounterRequest hors chaînes name et id
+	// (champs, map des requêtes filles et entrée dans la map des requêtes du compteur)
+	private static final int REQUEST_BASE_SIZE = 300;
+	// nombre de requêtes existantes comparées pour choisir une victime
+	private static final int VICTIMS_SAMPLE_SIZE = 8;
+	// âge max des copies des requêtes des compteurs dans lesquelles les victimes sont choisies
+	private static final long SNAPSHOTS_MAX_AGE_MILLIS = 1000;
+	// nombre max de victimes évincées pour admettre une nouvelle requête
+	private static final int MAX_EVICTIONS_BY_ADMISSION = 4;
+
+	private final long maxBytes;
+	private final List<Counter> counters;
+	private final FrequencySketch sketch;
+	private final AtomicLong usedBytes = new AtomicLong();
+	private final Map<String, AtomicLong> evictionsByCounterName = new HashMap<String, AtomicLong>();
+	private final Map<String, AtomicLong> rejectionsByCounterName = new HashMap<String, AtomicLong>();
+	private final Map<String, long[]> loggedCountsByCounterName = new HashMap<String, long[]>();
+	// un Random par thread, pour ne pas partager entre les threads la graine d'un seul Random
+	private final ThreadLocal<Random> randoms = new ThreadLocal<Random>() {
+		@Override
+		protected Random initialValue() {
+			return new Random();
+		}
+	};
+	// copie des requêtes de chaque compteur, pour échantillonner les victimes au hasard
+	// parmi toutes les requêtes et non seulement parmi les premières de chaque map
+	private volatile CounterRequest[][] requestsSnapshots;
+	private volatile long requestsSnapshotsTimestamp;
+	private volatile int requestsSnapshotsSize;
+	private volatile long requestsSnapshotsAdmissions;
+	private final AtomicLong admissionsCount = new AtomicLong();
+
+	/**
+	 * Sketch de fréquences "count-min" de compteurs sur 4 bits, avec vieillissement
+	 * (les fréquences sont divisées par 2 après un certain nombre d'incréments),
+	 * comme dans TinyLFU. Les estimations peuvent être supérieures à la réalité
+	 * en cas de collision, mais jamais inférieures (sauf après vieillissement).
+	 */
+	private static final class FrequencySketch {
+		private static final int MAX_FREQUENCY = 15;
+		private static final long RESET_MASK = 0x7777777777777777L;
+		private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+				0x9ae16a3b2f90404fL, 0xcbf29ce484222325L, };
+		// chaque long contient 16 compteurs de 4 bits, 4 pour chacune des 4 fonctions de hachage
+		private final AtomicLongArray table;
+		private final int tableMask;
+		private final int sampleSize;
+		private final AtomicInteger additions = new AtomicInteger();
+
+		FrequencySketch(long maximumSize) {
+			super();
+			int width = 1024;
+			while (width < maximumSize && width < 1 << 20) {
+				width <<= 1;
+			}
+			this.table = new AtomicLongArray(width);
+			this.tableMask = width - 1;
+			this.sampleSize = 10 * width;
+		}
+
+		int frequency(int hashCode) {
+			final int hash = spread(hashCode);
+			int frequency = MAX_FREQUENCY;
+			for (int i = 0; i < 4; i++) {
+				final int offset = offsetOf(hash, i);
+				final long value = table.get(indexOf(hash, i));
+				frequency = Math.min(frequency, (int) ((value >>> offset) & 0xfL));
+			}
+			return frequency;
+		}
+
+		void increment(int hashCode) {
+			final int hash = spread(hashCode);
+			boolean added = false;
+			for (int i = 0; i < 4; i++) {
+				added |= incrementAt(indexOf(hash, i), offsetOf(hash, i));
+			}
+			if (added && additions.incrementAndGet() == sampleSize) {
+				reset();
+			}
+		}
+
+		private boolean incrementAt(int index, int offset) {
+			final long mask = 0xfL << offset;
+			while (true) {
+				final long value = table.get(index);
+				if ((value & mask) == mask) {
+					// compteur saturé
+					return false;
+				}
+				if (table.compareAndSet(index, value, value + (1L << offset))) {
+					return true;
+				}
+			}
+		}
+
+		private void reset() {
+			// vieillissement : les fréquences sont divisées par 2
+			for (int i = 0; i < table.length(); i++) {
+				while (true) {
+					final long value = table.get(i);
+					if (table.compareAndSet(i, value, (value >>> 1) & RESET_MASK)) {
+						break;
+					}
+				}
+			}
+			additions.set(sampleSize / 2);
+		}
+
+		private int indexOf(int hash, int i) {
+			long result = (hash + SEEDS[i]) * SEEDS[i];
+			result += result >>> 32;
+			return (int) result & tableMask;
+		}
+
+		private static int offsetOf(int hash, int i) {
+			// un compteur de 4 bits parmi les 4 réservés à la fonction de hachage i dans le long
+			return ((i << 2) + ((hash >>> (i << 3)) & 3)) << 2;
+		}
+
+		private static int spread(int hashCode) {
+			int x = ((hashCode >>> 16) ^ hashCode) * 0x45d9f3b;
+			x = ((x >>> 16) ^ x) * 0x45d9f3b;
+			return (x >>> 16) ^ x;
+		}
+	}
+
+	private RequestsBudget(long maxBytes, List<Counter> counters) {
+		super();
+		assert maxBytes > 0;
+		assert counters != null;
+		this.maxBytes = maxBytes;
+		this.counters = counters;
+		this.sketch = new FrequencySketch(maxBytes / (REQUEST_BASE_SIZE * 2));
+		for (final Counter counter : counters) {
+			evictionsByCounterName.put(counter.getName(), new AtomicLong());
+			rejectionsByCounterName.put(counter.getName(), new AtomicLong());
+			loggedCountsByCounterName.put(counter.getName(), new long[2]);
+		}
+	}
+
+	/**
+	 * Crée le budget pour les compteurs en paramètre, s'il est activé par le paramètre
+	 * max-requests-memory-mb (désactivé par défaut), et l'associe aux compteurs.
+	 * @param counters Compteurs du collector
+	 * @return RequestsBudget ou null si désactivé
+	 */
+	static RequestsBudget createIfEnabled(List<Counter> counters) {
+		final long maxMegaBytes = getMaxRequestsMemoryMb();
+		if (maxMegaBytes == 0 || counters.isEmpty()) {
+			return null;
+		}
+		final RequestsBudget requestsBudget = new RequestsBudget(maxMegaBytes * 1024 * 1024,
+				counters);
+		requestsBudget.resync();
+		LOG.info("requests memory budget of " + maxMegaBytes + " MB enabled");
+		for (final Counter counter : counters) {
+			counter.setRequestsBudget(requestsBudget);
+		}
+		return requestsBudget;
+	}
+
+	private static long getMaxRequestsMemoryMb() {
+		final String param = Parameters.getParameterValue(Parameter.MAX_REQUESTS_MEMORY_MB);
+		if (param != null) {
+			// lance une NumberFormatException si ce n'est pas un nombre
+			final int result = Integer.parseInt(param);
+			if (result < 0) {
+				throw new IllegalStateException(
+						"The parameter max-requests-memory-mb should be >= 0 (50 recommended, 0 to disable)");
+			}
+			return result;
+		}
+		// désactivé par défaut : sans ce paramètre, max-requests-count limite les requêtes
+		return 0;
+	}
+
+	static long estimateSize(CounterRequest request) {
+		// les chaînes name et id sont en UTF-16
+		return REQUEST_BASE_SIZE + 2L * (request.getName().length() + request.getId().length());
+	}
+
+	/**
+	 * Compte un hit d'une requête, admise ou non, dans le sketch de fréquences.
+	 * @param counter Counter
+	 * @param requestName Nom agrégé de la requête
+	 */
+	void recordHit(Counter counter, String requestName) {
+		sketch.increment(hashCode(counter.getName(), requestName));
+	}
+
+	private int frequency(String counterName, String requestName) {
+		return sketch.frequency(hashCode(counterName, requestName));
+	}
+
+	private static int hashCode(String counterName, String requestName) {
+		return 31 * counterName.hashCode() + requestName.hashCode();
+	}
+
+	/**
+	 * Décide si une nouvelle requête peut être ajoutée dans le compteur en paramètre,
+	 * en évinçant si nécessaire des requêtes moins fréquentes dans tous les compteurs.
+	 * Si elle est admise, sa taille est réservée dans le budget.
+	 * @param counter Counter
+	 * @param request CounterRequest pas encore dans le compteur
+	 * @return true si la requête peut être ajoutée
+	 */
+	boolean admit(Counter counter, CounterRequest request) {
+		final long size = estimateSize(request);
+		if (usedBytes.addAndGet(size) <= maxBytes) {
+			admissionsCount.incrementAndGet();
+			return true;
+		}
+		// budget atteint : la nouvelle requête doit être plus fréquente, selon le sketch,
+		// que les requêtes existantes évincées pour lui faire de la place
+		final int candidateFrequency = frequency(counter.getName(), request.getName());
+		refreshSnapshotsIfStale();
+		final CounterRequest[][] snapshots = requestsSnapshots;
+		final Random random = randoms.get();
+		for (int i = 0; i < MAX_EVICTIONS_BY_ADMISSION; i++) {
+			final int victimCounterIndex = sampleCounterIndex(snapshots, random);
+			if (victimCounterIndex == -1) {
+				break;
+			}
+			final Counter victimCounter = counters.get(victimCounterIndex);
+			final CounterRequest victim = findVictim(victimCounter.getName(),
+					snapshots[victimCounterIndex], random);
+			if (frequency(victimCounter.getName(), victim.getName()) >= candidateFrequency) {
+				break;
+			}
+			// la victime peut déjà avoir été enlevée depuis la copie des requêtes
+			if (victimCounter.evictRequest(victim)) {
+				release(victim);
+				evictionsByCounterName.get(victimCounter.getName()).incrementAndGet();
+			}
+			if (usedBytes.get() <= maxBytes) {
+				admissionsCount.incrementAndGet();
+				return true;
+			}
+		}
+		usedBytes.addAndGet(-size);
+		final AtomicLong rejections = rejectionsByCounterName.get(counter.getName());
+		if (rejections != null) {
+			rejections.incrementAndGet();
+		}
+		return false;
+	}
+
+	/**
+	 * Libère dans le budget la taille d'une requête enlevée d'un compteur.
+	 * @param request CounterRequest
+	 */
+	void release(CounterRequest request) {
+		usedBytes.addAndGet(-estimateSize(request));
+	}
+
+	private void refreshSnapshotsIfStale() {
+		if (isSnapshotsStale()) {
+			synchronized (this) {
+				if (isSnapshotsStale()) {
+					refreshSnapshots();
+				}
+			}
+		}
+	}
+
+	private boolean isSnapshotsStale() {
+		// la copie est refaite après une seconde, ou plus tôt si plus de requêtes ont été
+		// admises depuis qu'il n'y en a dans la copie (coût réparti sur ces admissions)
+		return System.currentTimeMillis() - requestsSnapshotsTimestamp > SNAPSHOTS_MAX_AGE_MILLIS
+				|| admissionsCount.get() - requestsSnapshotsAdmissions > requestsSnapshotsSize;
+	}
+
+	private void refreshSnapshots() {
+		final long admissions = admissionsCount.get();
+		final CounterRequest[][] snapshots = new CounterRequest[counters.size()][];
+		int size = 0;
+		for (int i = 0; i < snapshots.length; i++) {
+			snapshots[i] = counters.get(i).getRequestsSnapshot();
+			size += snapshots[i].length;
+		}
+		requestsSnapshots = snapshots;
+		requestsSnapshotsSize = size;
+		requestsSnapshotsAdmissions = admissions;
+		requestsSnapshotsTimestamp = System.currentTimeMillis();
+	}
+
+	private static int sampleCounterIndex(CounterRequest[][] snapshots, Random random) {
+		// choix d'un compteur en proportion de son nombre de requêtes
+		int total = 0;
+		for (final CounterRequest[] snapshot : snapshots) {
+			total += snapshot.length;
+		}
+		if (total == 0) {
+			return -1;
+		}
+		int index = random.nextInt(total);
+		for (int i = 0; i < snapshots.length; i++) {
+			index -= snapshots[i].length;
+			if (index < 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private CounterRequest findVictim(String counterName, CounterRequest[] snapshot,
+			Random random) {
+		// la victime est la requête la moins fréquente selon le sketch dans un échantillon
+		// pris au hasard parmi toutes les requêtes du compteur : comme pour la nouvelle requête,
+		// c'est la fréquence récente qui compte et non le nombre de hits depuis le démarrage
+		CounterRequest victim = null;
+		int victimFrequency = Integer.MAX_VALUE;
+		for (int i = 0; i < VICTIMS_SAMPLE_SIZE; i++) {
+			final CounterRequest request = snapshot[random.nextInt(snapshot.length)];
+			final int frequency = frequency(counterName, request.getName());
+			if (frequency < victimFrequency) {
+				victim = request;
+				victimFrequency = frequency;
+			}
+		}
+		return victim;
+	}
+
+	/**
+	 * Recalcule la taille utilisée à partir des requêtes des compteurs,
+	 * pour corriger les écarts éventuels (lecture de fichiers, purges),
+	 * et log les évictions et les refus depuis le dernier appel.
+	 */
+	synchronized void resync() {
+		long total = 0;
+		for (final Counter counter : counters) {
+			total += counter.getRequestsEstimatedMemorySize();
+		}
+		usedBytes.set(total);
+		refreshSnapshots();
+		for (final Counter counter : counters) {
+			final long[] loggedCounts = loggedCountsByCounterName.get(counter.getName());
+			final long evictions = getEvictionsCount(counter.getName());
+			final long rejections = getRejectionsCount(counter.getName());
+			if (evictions != loggedCounts[0] || rejections != loggedCounts[1]) {
+				LOG.info("requests memory budget of " + maxBytes / 1024 / 1024 + " MB reached: "
+						+ (evictions - loggedCounts[0]) + " requests evicted and "
+						+ (rejections - loggedCounts[1]) + " new requests rejected in counter "
+						+ counter.getName());
+				loggedCounts[0] = evictions;
+				loggedCounts[1] = rejections;
+			}
+		}
+	}
+
+	/**
+	 * @return Taille maximale en octets des requêtes de tous les compteurs
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return Estimation de la taille en octets des requêtes de tous les compteurs
+	 */
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	/**
+	 * @param counterName Nom d'un compteur
+	 * @return Nombre de requêtes évincées de ce compteur depuis le démarrage
+	 */
+	public long getEvictionsCount(String counterName) {
+		final AtomicLong evictions = evictionsByCounterName.get(counterName);
+		return evictions == null ? 0 : evictions.get();
+	}
+
+	/**
+	 * @param counterName Nom d'un compteur
+	 * @return Nombre de nouvelles requêtes non admises dans ce compteur depuis le démarrage
+	 */
+	public long getRejectionsCount(String counterName) {
+		final AtomicLong rejections = rejectionsByCounterName.get(counterName);
+		return rejections == null ? 0 : rejections.get();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[maxBytes=" + getMaxBytes() + ", usedBytes="
+				+ getUsedBytes() + ']';
+	}
+}
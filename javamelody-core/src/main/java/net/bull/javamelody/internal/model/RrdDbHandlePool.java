@@ -0,0 +1,294 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.jrobin.core.RrdException;
+
+import net.bull.javamelody.internal.common.LOG;
+
+/**
+ * Pool des fichiers jrobin ouverts et mappés en mémoire, utilisé par {@link JRobin}
+ * à la place du RrdDbPool de jrobin.<br/>
+ * Le RrdDbPool de jrobin ferme chaque fichier dès qu'il n'est plus utilisé, donc chaque fichier
+ * est ouvert, mappé, synchronisé sur le disque et fermé à chaque collecte, et il bloque les threads
+ * quand sa capacité est atteinte.
+ * Ici les fichiers restent ouverts entre deux collectes dans la limite d'un nombre de fichiers
+ * ouverts et d'une taille mappée en mémoire, et les fichiers les moins récemment utilisés sont fermés
+ * (et démappés) au delà de ces limites, pour ne pas épuiser les descripteurs de fichiers
+ * ni le vm.max_map_count sur un serveur de collecte avec de nombreuses applications.
+ * Les fichiers en cours d'utilisation ne sont jamais fermés, quitte à dépasser temporairement les limites.
+ * @author Emeric Vernat
+ */
+final class RrdDbHandlePool {
+	static final int DEFAULT_MAX_OPEN_FILES = 200;
+	static final int DEFAULT_MAX_MAPPED_MB = 64;
+
+	private static final RrdDbHandlePool INSTANCE = new RrdDbHandlePool();
+
+	// ordre d'accès, du moins récemment utilisé au plus récemment utilisé
+	private final Map<String, Handle> handles = new LinkedHashMap<String, Handle>(16, 0.75f,
+			true);
+	// fichiers supprimés mais encore en cours d'utilisation, à fermer dès qu'ils ne sont plus utilisés
+	private final Map<RrdDb, Handle> detachedHandles = new IdentityHashMap<RrdDb, Handle>();
+	private int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+	private long maxMappedBytes = DEFAULT_MAX_MAPPED_MB * 1024L * 1024L;
+	private long mappedBytes;
+	private final AtomicLong hitsCount = new AtomicLong();
+	private final AtomicLong missesCount = new AtomicLong();
+	private final AtomicLong evictionsCount = new AtomicLong();
+
+	private static final class Handle {
+		final RrdDb rrdDb;
+		final long length;
+		int usages;
+		// fichier à fermer dès qu'il n'est plus utilisé, par exemple avant sa suppression
+		boolean closeOnRelease;
+
+		Handle(RrdDb rrdDb, long length) {
+			super();
+			this.rrdDb = rrdDb;
+			this.length = length;
+		}
+	}
+
+	private RrdDbHandlePool() {
+		super();
+	}
+
+	static RrdDbHandlePool getInstance() {
+		return INSTANCE;
+	}
+
+	synchronized void setCapacity(int newMaxOpenFiles, long newMaxMappedBytes) {
+		this.maxOpenFiles = newMaxOpenFiles;
+		this.maxMappedBytes = newMaxMappedBytes;
+	}
+
+	RrdDb requestRrdDb(String path) throws IOException, RrdException {
+		// test hors du lock, car c'est un appel système
+		final boolean exists = new File(path).exists();
+		final List<RrdDb> deletedRrdDbs;
+		synchronized (this) {
+			final Handle handle = handles.get(path);
+			if (handle != null && exists) {
+				handle.usages++;
+				hitsCount.incrementAndGet();
+				return handle.rrdDb;
+			}
+			// fichier supprimé hors de JRobin, par exemple à la main dans le répertoire de stockage :
+			// le fichier ouvert n'est plus utilisé, pour que le fichier soit recréé (issue 255)
+			deletedRrdDbs = detach(path);
+		}
+		close(deletedRrdDbs);
+		missesCount.incrementAndGet();
+		// ouverture du fichier hors du lock, pour ne pas bloquer les autres threads
+		return addHandle(path, new RrdDb(path));
+	}
+
+	RrdDb requestRrdDb(RrdDef rrdDef) throws IOException, RrdException {
+		final List<RrdDb> deletedRrdDbs;
+		synchronized (this) {
+			// le fichier créé remplace un éventuel fichier supprimé encore ouvert
+			deletedRrdDbs = detach(rrdDef.getPath());
+		}
+		close(deletedRrdDbs);
+		missesCount.incrementAndGet();
+		// création du fichier
+		return addHandle(rrdDef.getPath(), new RrdDb(rrdDef));
+	}
+
+	private RrdDb addHandle(String path, RrdDb rrdDb) throws IOException {
+		final Handle existingHandle;
+		final List<RrdDb> evictedRrdDbs;
+		synchronized (this) {
+			existingHandle = handles.get(path);
+			if (existingHandle == null) {
+				final Handle handle = new Handle(rrdDb, rrdDb.getRrdBackend().getLength());
+				handle.usages = 1;
+				handles.put(path, handle);
+				mappedBytes += handle.length;
+				evictedRrdDbs = evict();
+			} else {
+				// ouvert entre-temps par un autre thread
+				existingHandle.usages++;
+				evictedRrdDbs = Collections.singletonList(rrdDb);
+			}
+		}
+		close(evictedRrdDbs);
+		if (existingHandle != null) {
+			return existingHandle.rrdDb;
+		}
+		return rrdDb;
+	}
+
+	void release(RrdDb rrdDb) {
+		final List<RrdDb> evictedRrdDbs;
+		synchronized (this) {
+			final Handle handle = handles.get(rrdDb.getPath());
+			if (handle == null || handle.rrdDb != rrdDb) { // NOPMD
+				// fichier supprimé entre-temps, ou déjà fermé par closeAll
+				evictedRrdDbs = releaseDetached(rrdDb);
+			} else {
+				handle.usages--;
+				if (handle.usages <= 0 && handle.closeOnRelease) {
+					removeHandle(rrdDb.getPath(), handle);
+					evictedRrdDbs = Collections.singletonList(rrdDb);
+				} else {
+					evictedRrdDbs = evict();
+				}
+			}
+		}
+		close(evictedRrdDbs);
+	}
+
+	/**
+	 * Ferme le fichier s'il est ouvert dans le pool, par exemple avant de le supprimer.
+	 * S'il est en cours d'utilisation, il sera fermé dès qu'il ne sera plus utilisé.
+	 * @param path Chemin du fichier
+	 * @throws IOException e
+	 */
+	void closeRrdDb(String path) throws IOException {
+		final Handle handle;
+		synchronized (this) {
+			handle = handles.get(path);
+			if (handle == null) {
+				return;
+			}
+			if (handle.usages > 0) {
+				handle.closeOnRelease = true;
+				return;
+			}
+			removeHandle(path, handle);
+		}
+		handle.rrdDb.close();
+	}
+
+	private List<RrdDb> detach(String path) {
+		assert Thread.holdsLock(this);
+		final Handle handle = handles.get(path);
+		if (handle == null) {
+			return Collections.emptyList();
+		}
+		removeHandle(path, handle);
+		if (handle.usages > 0) {
+			// fermé dès qu'il ne sera plus utilisé
+			detachedHandles.put(handle.rrdDb, handle);
+			return Collections.emptyList();
+		}
+		return Collections.singletonList(handle.rrdDb);
+	}
+
+	private List<RrdDb> releaseDetached(RrdDb rrdDb) {
+		assert Thread.holdsLock(this);
+		final Handle handle = detachedHandles.get(rrdDb);
+		if (handle == null) {
+			return Collections.emptyList();
+		}
+		handle.usages--;
+		if (handle.usages > 0) {
+			return Collections.emptyList();
+		}
+		detachedHandles.remove(rrdDb);
+		return Collections.singletonList(rrdDb);
+	}
+
+	void closeAll() {
+		final List<RrdDb> rrdDbs;
+		synchronized (this) {
+			rrdDbs = new ArrayList<RrdDb>(handles.size() + detachedHandles.size());
+			for (final Handle handle : handles.values()) {
+				rrdDbs.add(handle.rrdDb);
+			}
+			rrdDbs.addAll(detachedHandles.keySet());
+			handles.clear();
+			detachedHandles.clear();
+			mappedBytes = 0;
+		}
+		close(rrdDbs);
+	}
+
+	private List<RrdDb> evict() {
+		assert Thread.holdsLock(this);
+		if (handles.size() <= maxOpenFiles && mappedBytes <= maxMappedBytes) {
+			return Collections.emptyList();
+		}
+		final List<RrdDb> evictedRrdDbs = new ArrayList<RrdDb>();
+		final Iterator<Handle> iterator = handles.values().iterator();
+		while (iterator.hasNext()
+				&& (handles.size() > maxOpenFiles || mappedBytes > maxMappedBytes)) {
+			final Handle handle = iterator.next();
+			if (handle.usages <= 0) {
+				iterator.remove();
+				mappedBytes -= handle.length;
+				evictedRrdDbs.add(handle.rrdDb);
+				evictionsCount.incrementAndGet();
+			}
+		}
+		return evictedRrdDbs;
+	}
+
+	private void removeHandle(String path, Handle handle) {
+		assert Thread.holdsLock(this);
+		handles.remove(path);
+		mappedBytes -= handle.length;
+	}
+
+	private static void close(List<RrdDb> rrdDbs) {
+		// fermeture hors du lock, car elle synchronise le fichier sur le disque s'il a été écrit
+		for (final RrdDb rrdDb : rrdDbs) {
+			try {
+				rrdDb.close();
+			} catch (final IOException e) {
+				LOG.warn("exception while closing jrobin file " + rrdDb.getPath(), e);
+			}
+		}
+	}
+
+	synchronized int getOpenFilesCount() {
+		return handles.size();
+	}
+
+	synchronized long getMappedBytes() {
+		return mappedBytes;
+	}
+
+	long getHitsCount() {
+		return hitsCount.get();
+	}
+
+	long getMissesCount() {
+		return missesCount.get();
+	}
+
+	long getEvictionsCount() {
+		return evictionsCount.get();
+	}
+}
@@ -31,8 +31,12 @@ import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jrobin.core.RrdFileBackend;
 
@@ -41,19 +45,29 @@ import sun.nio.ch.DirectBuffer; // NOPMD
 /**
  * JRobin backend which is used to store RRD data to ordinary disk files
  * by using fast java.nio.* package. This is the default backend engine since JRobin 1.4.0.
+ * <p>
+ * Instead of one sync task per file in the timer, a single sync task forces only
+ * the files written since their last sync (the dirty files), in batches spread over the sync period.
+ * Files opened in read-only mode are mapped read-only and are never synced.
  */
 public class RrdNioBackend extends RrdFileBackend {
 	private static final Object THE_UNSAFE = getTheUnsafe();
 	private static final Method JAVA9_INVOKE_CLEANER = getJava9InvokeCleaner();
+	// number of batches in a sync period: each dirty file is synced once per period,
+	// in the batch of its path hash, to spread the disk writes over the period
+	private static final int SYNC_BATCHES_COUNT = 10;
+	private static final Set<RrdNioBackend> DIRTY_BACKENDS = Collections
+			.newSetFromMap(new ConcurrentHashMap<RrdNioBackend, Boolean>());
+	private static final AtomicLong SYNCED_FILES_COUNT = new AtomicLong();
+	private static final AtomicLong SYNC_NANOS = new AtomicLong();
 	private static Timer fileSyncTimer;
+	private static Timer scheduledSyncTimer;
+	private static int scheduledSyncPeriod;
+	private static TimerTask syncTask;
 
 	private MappedByteBuffer byteBuffer;
-	private final TimerTask syncTask = new TimerTask() {
-		@Override
-		public void run() {
-			sync();
-		}
-	};
+	private final int syncBatch;
+	private boolean dirty;
 
 	/**
 	 * Creates RrdFileBackend object for the given file path, backed by java.nio.* classes.
@@ -65,10 +79,11 @@ public class RrdNioBackend extends RrdFileBackend {
 	 */
 	protected RrdNioBackend(String path, boolean readOnly, int syncPeriod) throws IOException {
 		super(path, readOnly);
+		this.syncBatch = (path.hashCode() & Integer.MAX_VALUE) % SYNC_BATCHES_COUNT;
 		try {
 			mapFile();
 			if (!readOnly) {
-				fileSyncTimer.schedule(syncTask, syncPeriod * 1000L, syncPeriod * 1000L);
+				scheduleSyncTask(syncPeriod);
 			}
 		} catch (final IOException ioe) {
 			super.close(); // NOPMD
@@ -96,12 +111,67 @@ public class RrdNioBackend extends RrdFileBackend {
 		fileSyncTimer = timer;
 	}
 
+	/**
+	 * @return Number of files written and not yet synchronized to the disk.
+	 */
+	public static int getDirtyFilesCount() {
+		return DIRTY_BACKENDS.size();
+	}
+
+	/**
+	 * @return Number of file synchronizations since startup.
+	 */
+	public static long getSyncedFilesCount() {
+		return SYNCED_FILES_COUNT.get();
+	}
+
+	/**
+	 * @return Total duration in milliseconds of file synchronizations since startup.
+	 */
+	public static long getSyncMillis() {
+		return SYNC_NANOS.get() / 1000000;
+	}
+
+	private static synchronized void scheduleSyncTask(int syncPeriod) {
+		if (syncTask != null && scheduledSyncTimer == fileSyncTimer
+				&& scheduledSyncPeriod == syncPeriod) {
+			// already scheduled in this timer
+			return;
+		}
+		if (syncTask != null) {
+			syncTask.cancel();
+		}
+		final long batchPeriod = Math.max(syncPeriod * 1000L / SYNC_BATCHES_COUNT, 1);
+		final TimerTask task = new TimerTask() {
+			private int batch;
+
+			@Override
+			public void run() {
+				syncDirtyBackends(batch);
+				batch = (batch + 1) % SYNC_BATCHES_COUNT;
+			}
+		};
+		// throws IllegalStateException if the timer is cancelled (issue #592)
+		fileSyncTimer.schedule(task, batchPeriod, batchPeriod);
+		syncTask = task;
+		scheduledSyncTimer = fileSyncTimer;
+		scheduledSyncPeriod = syncPeriod;
+	}
+
+	static void syncDirtyBackends(int batch) {
+		for (final RrdNioBackend backend : DIRTY_BACKENDS) {
+			if (backend.syncBatch == batch) {
+				backend.sync();
+			}
+		}
+	}
+
 	private void mapFile() throws IOException {
 		final long length = getLength();
 		if (length > 0) {
-			final FileChannel.MapMode mapMode =
-					// (issue 328) readOnly ? FileChannel.MapMode.READ_ONLY :
-					FileChannel.MapMode.READ_WRITE;
+			// (issue 328) the file is opened in "r" mode when read-only, so it must be mapped read-only
+			final FileChannel.MapMode mapMode = readOnly ? FileChannel.MapMode.READ_ONLY
+					: FileChannel.MapMode.READ_WRITE;
 			byteBuffer = file.getChannel().map(mapMode, 0, length);
 		}
 	}
@@ -173,6 +243,10 @@ public class RrdNioBackend extends RrdFileBackend {
 		if (byteBuffer != null) {
 			byteBuffer.position((int) offset);
 			byteBuffer.put(b);
+			if (!dirty) {
+				dirty = true;
+				DIRTY_BACKENDS.add(this);
+			}
 		} else {
 			throw new IOException("Write failed, file " + getPath() + " not mapped for I/O");
 		}
@@ -201,11 +275,7 @@ public class RrdNioBackend extends RrdFileBackend {
 	 */
 	@Override
 	public synchronized void close() throws IOException {
-		// cancel synchronization
 		try {
-			if (syncTask != null) {
-				syncTask.cancel();
-			}
 			sync();
 			unmapFile();
 		} finally {
@@ -213,13 +283,28 @@ public class RrdNioBackend extends RrdFileBackend {
 		}
 	}
 
+	/**
+	 * @return true if the file was written since its last synchronization.
+	 */
+	synchronized boolean isDirty() {
+		return dirty;
+	}
+
 	/**
 	 * This method forces all data cached in memory but not yet stored in the file,
 	 * to be stored in it.
 	 */
 	protected synchronized void sync() {
+		if (!dirty) {
+			return;
+		}
+		dirty = false;
+		DIRTY_BACKENDS.remove(this);
 		if (byteBuffer != null) {
+			final long start = System.nanoTime();
 			byteBuffer.force();
+			SYNC_NANOS.addAndGet(System.nanoTime() - start);
+			SYNCED_FILES_COUNT.incrementAndGet();
 		}
 	}
 }
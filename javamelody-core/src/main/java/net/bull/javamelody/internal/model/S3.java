@@ -1,6 +1,6 @@
 package net.bull.javamelody.internal.model;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -10,55 +10,87 @@ import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
-import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
 import com.amazonaws.services.s3.model.PartETag;
-import com.amazonaws.services.s3.model.PutObjectRequest;
-import com.amazonaws.services.s3.transfer.internal.UploadPartRequestFactory;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 
 import net.bull.javamelody.internal.common.LOG;
+import net.bull.javamelody.internal.model.HeapDumpCompressor.PartSink;
 
 /**
  * Upload to AWS S3.
  * @author Salah Qasem
  */
 final class S3 {
-	private static final long MINIMUM_SIZE_FOR_MULTIPART = 300 * 1024 * 1024; // 300 mb
-	private static final long PART_SIZE = 200 * 1024 * 1024; // 200 mb
-
 	private S3() {
 		super();
 	}
 
-	static void upload(File file, String bucketName) throws IOException {
-		final AmazonS3 s3Client = AmazonS3ClientBuilder.defaultClient();
-		if (file.length() > MINIMUM_SIZE_FOR_MULTIPART) {
-			// multipart upload
-			final List<PartETag> partETags = new ArrayList<PartETag>();
-			final InitiateMultipartUploadResult initResponse = s3Client.initiateMultipartUpload(
-					new InitiateMultipartUploadRequest(bucketName, file.getName()));
-			final String uploadId = initResponse.getUploadId();
-			final UploadPartRequestFactory requestFactory = new UploadPartRequestFactory(
-					new PutObjectRequest(bucketName, file.getName(), file), uploadId, PART_SIZE);
+	/**
+	 * Multipart upload fed part by part, as soon as each part is produced.
+	 */
+	static class MultipartUpload implements PartSink {
+		private final AmazonS3 s3Client;
+		private final String bucketName;
+		private final String key;
+		private final List<PartETag> partETags = new ArrayList<PartETag>();
+		private String uploadId;
+
+		MultipartUpload(AmazonS3 s3Client, String bucketName, String key) {
+			super();
+			this.s3Client = s3Client;
+			this.bucketName = bucketName;
+			this.key = key;
+		}
+
+		@Override
+		public void start() throws IOException {
 			try {
-				while (requestFactory.hasMoreRequests()) {
-					partETags.add(s3Client.uploadPart(requestFactory.getNextUploadPartRequest())
-							.getPartETag());
-				}
-				final CompleteMultipartUploadRequest compRequest = new CompleteMultipartUploadRequest(
-						bucketName, file.getName(), uploadId, partETags);
-				s3Client.completeMultipartUpload(compRequest);
+				uploadId = s3Client
+						.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, key))
+						.getUploadId();
 			} catch (final Exception e) {
-				s3Client.abortMultipartUpload(
-						new AbortMultipartUploadRequest(bucketName, file.getName(), uploadId));
 				throw new IOException(e);
 			}
-		} else {
+		}
+
+		@Override
+		public void addPart(int partNumber, byte[] data, int length) throws IOException {
+			final UploadPartRequest uploadPartRequest = new UploadPartRequest()
+					.withBucketName(bucketName).withKey(key).withUploadId(uploadId)
+					.withPartNumber(partNumber).withPartSize(length)
+					.withInputStream(new ByteArrayInputStream(data, 0, length));
 			try {
-				s3Client.putObject(bucketName, file.getName(), file);
+				partETags.add(s3Client.uploadPart(uploadPartRequest).getPartETag());
 			} catch (final Exception e) {
 				throw new IOException(e);
 			}
 		}
-		LOG.info("File " + file.getName() + " uploaded successfully to S3");
+
+		@Override
+		public void complete() throws IOException {
+			try {
+				s3Client.completeMultipartUpload(
+						new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags));
+			} catch (final Exception e) {
+				throw new IOException(e);
+			}
+			LOG.info("File " + key + " uploaded successfully to S3");
+		}
+
+		@Override
+		public void abort() {
+			if (uploadId != null) {
+				try {
+					s3Client.abortMultipartUpload(
+							new AbortMultipartUploadRequest(bucketName, key, uploadId));
+				} catch (final Exception e) {
+					LOG.warn("abort of S3 multipart upload failed for " + key, e);
+				}
+			}
+		}
+	}
+
+	static MultipartUpload createMultipartUpload(String bucketName, String key) {
+		return new MultipartUpload(AmazonS3ClientBuilder.defaultClient(), bucketName, key);
 	}
 }
@@ -191,7 +191,10 @@ public class SamplingProfiler {
 	}
 
 	public synchronized void update() {
+		final long start = System.nanoTime();
 		final Map<Thread, StackTraceElement[]> stackTraces = Thread.getAllStackTraces();
+		// les stack-traces sont obtenues pendant une pause de tous les threads de la JVM (safepoint)
+		SelfMonitoring.addSamplingPause(System.nanoTime() - start);
 		try {
 			final Thread currentThread = Thread.currentThread();
 			for (final Map.Entry<Thread, StackTraceElement[]> entry : stackTraces.entrySet()) {
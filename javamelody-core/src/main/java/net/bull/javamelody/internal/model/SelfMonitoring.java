@@ -0,0 +1,103 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Mesures du surcoût de l'instrumentation de javamelody dans la JVM monitorée :
+ * nombres d'appels de Counter.bindContext et Counter.addRequest,
+ * et pauses de la JVM pour les stack-traces du sampling.
+ * Les durées de chaque partie de la collecte sont dans {@link Collector}.
+ * @author Emeric Vernat
+ */
+public final class SelfMonitoring {
+	// les nombres d'appels sont incrémentés à chaque requête dans les threads de l'application,
+	// donc ils sont répartis sur plusieurs cases selon le thread pour éviter la contention
+	// (puissance de 2)
+	private static final int STRIPES_COUNT = 8;
+	// 16 longs, soit 128 octets entre deux cases, pour ne pas partager de ligne de cache
+	private static final int PADDING = 16;
+
+	private static final AtomicLongArray BIND_CONTEXT_COUNTS = new AtomicLongArray(
+			STRIPES_COUNT * PADDING);
+	private static final AtomicLongArray ADD_REQUEST_COUNTS = new AtomicLongArray(
+			STRIPES_COUNT * PADDING);
+	private static final AtomicLong SAMPLING_PAUSES_COUNT = new AtomicLong();
+	private static final AtomicLong SAMPLING_PAUSES_NANOS = new AtomicLong();
+
+	private SelfMonitoring() {
+		super();
+	}
+
+	static void incrementBindContextCount() {
+		increment(BIND_CONTEXT_COUNTS);
+	}
+
+	static void incrementAddRequestCount() {
+		increment(ADD_REQUEST_COUNTS);
+	}
+
+	static void addSamplingPause(long durationNanos) {
+		SAMPLING_PAUSES_COUNT.incrementAndGet();
+		SAMPLING_PAUSES_NANOS.addAndGet(durationNanos);
+	}
+
+	private static void increment(AtomicLongArray counts) {
+		final int stripe = (int) Thread.currentThread().getId() & (STRIPES_COUNT - 1);
+		counts.incrementAndGet(stripe * PADDING);
+	}
+
+	private static long sum(AtomicLongArray counts) {
+		long sum = 0;
+		for (int i = 0; i < STRIPES_COUNT; i++) {
+			sum += counts.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	/**
+	 * @return Nombre d'appels de Counter.bindContext depuis le démarrage
+	 */
+	public static long getBindContextCount() {
+		return sum(BIND_CONTEXT_COUNTS);
+	}
+
+	/**
+	 * @return Nombre d'appels de Counter.addRequest depuis le démarrage
+	 */
+	public static long getAddRequestCount() {
+		return sum(ADD_REQUEST_COUNTS);
+	}
+
+	/**
+	 * @return Nombre de pauses pour les stack-traces du sampling depuis le démarrage
+	 */
+	public static long getSamplingPausesCount() {
+		return SAMPLING_PAUSES_COUNT.get();
+	}
+
+	/**
+	 * @return Durée totale en millisecondes des pauses pour les stack-traces du sampling
+	 * depuis le démarrage
+	 */
+	public static long getSamplingPausesMillis() {
+		return SAMPLING_PAUSES_NANOS.get() / 1000000;
+	}
+}
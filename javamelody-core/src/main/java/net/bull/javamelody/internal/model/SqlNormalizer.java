@@ -0,0 +1,283 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Normalisation des requêtes sql avant agrégation dans le compteur sql, en une seule passe
+ * sans expression régulière :
+ * les littéraux numériques et chaînes sont remplacés par '?',
+ * les listes entre parenthèses composées uniquement de littéraux ou de paramètres bindés
+ * (clause in, tuples de values) sont réduites à (?), les tuples de values répétés à un seul,
+ * les commentaires de fin de ligne sont supprimés et les espaces sont normalisés.<br/>
+ * Les noms entre guillemets ou entre quotes inversées et les commentaires /* ... *&#47;
+ * sont conservés.<br/>
+ * Le résultat est mis en cache selon l'identité de la chaîne en paramètre, car c'est en général
+ * la même instance de String qui est passée à chaque appel de prepareStatement pour une requête.
+ * @author Emeric Vernat
+ */
+final class SqlNormalizer {
+	// puissance de 2
+	private static final int CACHE_SIZE = 1024;
+	private static final AtomicReferenceArray<CacheEntry> CACHE = new AtomicReferenceArray<CacheEntry>(
+			CACHE_SIZE);
+
+	private final String sql;
+	private final StringBuilder result;
+	// pour chaque niveau de parenthèses ouvertes : position dans le résultat
+	// et si la liste ne contient jusqu'ici que des littéraux
+	private int[] parenthesisStarts = new int[8];
+	private boolean[] literalsOnly = new boolean[8];
+	private int depth;
+	private boolean pendingSpace;
+
+	private static final class CacheEntry {
+		final String sql;
+		final String normalizedSql;
+
+		CacheEntry(String sql, String normalizedSql) {
+			super();
+			this.sql = sql;
+			this.normalizedSql = normalizedSql;
+		}
+	}
+
+	private SqlNormalizer(String sql) {
+		super();
+		this.sql = sql;
+		this.result = new StringBuilder(sql.length());
+	}
+
+	/**
+	 * Normalise une requête sql, avec un cache selon l'identité de la chaîne.
+	 * @param sql Requête sql
+	 * @return Requête normalisée
+	 */
+	static String normalize(String sql) {
+		final int index = System.identityHashCode(sql) & (CACHE_SIZE - 1);
+		final CacheEntry entry = CACHE.get(index);
+		if (entry != null && entry.sql == sql) { // NOPMD
+			return entry.normalizedSql;
+		}
+		final String normalizedSql = normalizeWithoutCache(sql);
+		CACHE.lazySet(index, new CacheEntry(sql, normalizedSql));
+		return normalizedSql;
+	}
+
+	static String normalizeWithoutCache(String sql) {
+		return new SqlNormalizer(sql).normalize();
+	}
+
+	// CHECKSTYLE:OFF
+	private String normalize() { // NOPMD
+		// CHECKSTYLE:ON
+		final int length = sql.length();
+		int i = 0;
+		while (i < length) {
+			final char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				pendingSpace = true;
+				i++;
+			} else if (c == '\'') {
+				removeLiteralPrefix();
+				i = skipQuoted(i, '\'');
+				appendLiteral();
+			} else if (c == '"' || c == '`') {
+				final int end = skipQuoted(i, c);
+				appendToken(sql, i, end);
+				i = end;
+			} else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				// commentaire de fin de ligne, supprimé
+				while (i < length && sql.charAt(i) != '\n') {
+					i++;
+				}
+				pendingSpace = true;
+			} else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				final int end = sql.indexOf("*/", i + 2);
+				final int commentEnd = end == -1 ? length : end + 2;
+				appendToken(sql, i, commentEnd);
+				i = commentEnd;
+			} else if (isNumberStart(i) || isSignedNumberStart(i)) {
+				i = skipNumber(i + 1);
+				appendLiteral();
+			} else if (c == '?') {
+				appendLiteral();
+				i++;
+			} else if (c == '(') {
+				appendChar(c);
+				openParenthesis();
+				i++;
+			} else if (c == ')') {
+				closeParenthesis();
+				i++;
+			} else if (c == ',') {
+				pendingSpace = false;
+				result.append(c);
+				i++;
+			} else {
+				appendChar(c);
+				i++;
+			}
+		}
+		return result.toString();
+	}
+
+	private int skipQuoted(int start, char quote) {
+		final int length = sql.length();
+		int i = start + 1;
+		while (i < length) {
+			if (sql.charAt(i) == quote) {
+				if (i + 1 < length && sql.charAt(i + 1) == quote) {
+					// quote doublée dans la chaîne
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return length;
+	}
+
+	private boolean isNumberStart(int i) {
+		final char c = sql.charAt(i);
+		final boolean digit = c >= '0' && c <= '9' || c == '.' && i + 1 < sql.length()
+				&& sql.charAt(i + 1) >= '0' && sql.charAt(i + 1) <= '9';
+		// un chiffre dans un identifiant (t1, col2) n'est pas un nombre
+		return digit && (i == 0 || !isIdentifierChar(sql.charAt(i - 1)));
+	}
+
+	private boolean isSignedNumberStart(int i) {
+		final char c = sql.charAt(i);
+		if ((c == '-' || c == '+') && i + 1 < sql.length() && isNumberStart(i + 1)) {
+			// signe unaire seulement après un opérateur, une parenthèse, une virgule ou au début
+			final int last = result.length() - 1;
+			return last < 0 || "(,=<>+-*/%|".indexOf(result.charAt(last)) != -1;
+		}
+		return false;
+	}
+
+	private int skipNumber(int start) {
+		final int length = sql.length();
+		int i = start;
+		while (i < length) {
+			final char c = sql.charAt(i);
+			if (Character.isLetterOrDigit(c) || c == '.' || c == '_') {
+				i++;
+			} else if ((c == '-' || c == '+')
+					&& (sql.charAt(i - 1) == 'e' || sql.charAt(i - 1) == 'E')) {
+				// exposant
+				i++;
+			} else {
+				break;
+			}
+		}
+		return i;
+	}
+
+	private static boolean isIdentifierChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#' || c == '@';
+	}
+
+	private void removeLiteralPrefix() {
+		// préfixe de chaîne N'...', E'...', X'...' ou B'...'
+		final int length = result.length();
+		if (!pendingSpace && length > 0 && "NnEeXxBb".indexOf(result.charAt(length - 1)) != -1
+				&& (length == 1 || !isIdentifierChar(result.charAt(length - 2)))) {
+			result.setLength(length - 1);
+		}
+	}
+
+	private void appendLiteral() {
+		appendSpaceIfPending('?');
+		result.append('?');
+	}
+
+	private void appendChar(char c) {
+		appendSpaceIfPending(c);
+		result.append(c);
+		if (depth > 0) {
+			literalsOnly[depth - 1] = false;
+		}
+	}
+
+	private void appendToken(String token, int start, int end) {
+		appendSpaceIfPending(token.charAt(start));
+		result.append(token, start, end);
+		if (depth > 0) {
+			literalsOnly[depth - 1] = false;
+		}
+	}
+
+	private void appendSpaceIfPending(char next) {
+		if (pendingSpace) {
+			final int length = result.length();
+			if (length > 0 && result.charAt(length - 1) != '(' && next != ')') {
+				result.append(' ');
+			}
+			pendingSpace = false;
+		}
+	}
+
+	private void openParenthesis() {
+		if (depth == parenthesisStarts.length) {
+			parenthesisStarts = Arrays.copyOf(parenthesisStarts, depth * 2);
+			literalsOnly = Arrays.copyOf(literalsOnly, depth * 2);
+		}
+		// position de la parenthèse ouvrante
+		parenthesisStarts[depth] = result.length() - 1;
+		literalsOnly[depth] = true;
+		depth++;
+	}
+
+	private void closeParenthesis() {
+		pendingSpace = false;
+		if (depth == 0) {
+			// parenthèse fermante sans ouvrante
+			result.append(')');
+			return;
+		}
+		depth--;
+		final int start = parenthesisStarts[depth];
+		if (literalsOnly[depth] && result.length() > start + 1) {
+			// liste de littéraux seulement : réduite à (?)
+			result.setLength(start + 1);
+			result.append("?)");
+			removeRepeatedTuple(start);
+		} else {
+			result.append(')');
+			if (depth > 0) {
+				literalsOnly[depth - 1] = false;
+			}
+		}
+	}
+
+	private void removeRepeatedTuple(int start) {
+		// "(?), (?)" dans values (...), (...) : un seul tuple est conservé
+		int i = start - 1;
+		if (i >= 0 && result.charAt(i) == ' ') {
+			i--;
+		}
+		if (i >= 3 && result.charAt(i) == ',' && result.charAt(i - 1) == ')'
+				&& result.charAt(i - 2) == '?' && result.charAt(i - 3) == '(') {
+			result.setLength(i);
+		}
+	}
+}
@@ -19,6 +19,7 @@ package net.bull.javamelody.internal.model;
 
 import java.io.Serializable;
 import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -40,6 +41,12 @@ public class ThreadInformations implements Serializable {
 	private static final boolean CPU_TIME_ENABLED = THREAD_BEAN.isThreadCpuTimeSupported()
 			&& THREAD_BEAN.isThreadCpuTimeEnabled();
 	private static final Method THREAD_ALLOCATED_BYTES_METHOD = getThreadAllocatedBytesMethod();
+	// Thread.isVirtual() existe depuis Java 21 (ou 19 en preview) : classe des threads virtuels
+	// chargée une seule fois, pour un simple isInstance à chaque requête au lieu d'une réflexion
+	private static final Class<?> VIRTUAL_THREAD_CLASS = getVirtualThreadClass();
+	private static volatile boolean contentionMonitoringEnabled;
+	// mesure déjà activée avant initThreadContentionMonitoring, à laisser activée à l'arrêt
+	private static boolean contentionMonitoringPreviouslyEnabled;
 	private final String name;
 	private final long id;
 	private final int priority;
@@ -72,7 +79,14 @@ public class ThreadInformations implements Serializable {
 	}
 
 	public static long getCurrentThreadCpuTime() {
-		return getThreadCpuTime(Thread.currentThread().getId());
+		final Thread currentThread = Thread.currentThread();
+		if (isVirtualThread(currentThread)) {
+			// le temps cpu d'un thread virtuel n'est pas disponible par ThreadMXBean
+			// (-1 après une recherche inutile parmi tous les threads) :
+			// 0 comme si le temps cpu n'était pas activé, pour ne pas fausser les sommes
+			return 0;
+		}
+		return getThreadCpuTime(currentThread.getId());
 	}
 
 	static long getThreadCpuTime(long threadId) {
@@ -84,7 +98,90 @@ public class ThreadInformations implements Serializable {
 	}
 
 	public static long getCurrentThreadAllocatedBytes() {
-		return getThreadAllocatedBytes(Thread.currentThread().getId());
+		final Thread currentThread = Thread.currentThread();
+		if (isVirtualThread(currentThread)) {
+			// idem getCurrentThreadCpuTime()
+			return 0;
+		}
+		return getThreadAllocatedBytes(currentThread.getId());
+	}
+
+	/**
+	 * Active la mesure des temps bloqués et en attente des threads, si la JVM la supporte,
+	 * pour les temps bloqués et en attente par requête.
+	 */
+	public static synchronized void initThreadContentionMonitoring() {
+		if (!contentionMonitoringEnabled && THREAD_BEAN.isThreadContentionMonitoringSupported()) {
+			contentionMonitoringPreviouslyEnabled = THREAD_BEAN
+					.isThreadContentionMonitoringEnabled();
+			if (!contentionMonitoringPreviouslyEnabled) {
+				THREAD_BEAN.setThreadContentionMonitoringEnabled(true);
+			}
+			contentionMonitoringEnabled = true;
+		}
+	}
+
+	/**
+	 * Remet la mesure des temps bloqués et en attente des threads dans son état précédent.
+	 */
+	public static synchronized void stopThreadContentionMonitoring() {
+		if (contentionMonitoringEnabled) {
+			contentionMonitoringEnabled = false;
+			if (!contentionMonitoringPreviouslyEnabled) {
+				THREAD_BEAN.setThreadContentionMonitoringEnabled(false);
+			}
+		}
+	}
+
+	/**
+	 * @return ThreadInfo du thread courant, sans stack-trace, pour les temps bloqués et en attente,
+	 * ou null si ces temps ne sont pas mesurés
+	 */
+	static ThreadInfo getCurrentThreadContentionInfo() {
+		if (!contentionMonitoringEnabled) {
+			return null;
+		}
+		final Thread currentThread = Thread.currentThread();
+		if (isVirtualThread(currentThread)) {
+			// idem getCurrentThreadCpuTime()
+			return null;
+		}
+		// seulement le thread courant et sans stack-trace, donc sans safepoint pour les autres threads
+		final ThreadInfo threadInfo = THREAD_BEAN.getThreadInfo(currentThread.getId());
+		if (threadInfo == null || threadInfo.getBlockedTime() < 0) {
+			// mesure désactivée entre-temps par ailleurs
+			return null;
+		}
+		return threadInfo;
+	}
+
+	/**
+	 * @param thread Thread
+	 * @return true si le thread est un thread virtuel (Java 21+)
+	 */
+	public static boolean isVirtualThread(Thread thread) {
+		return VIRTUAL_THREAD_CLASS != null && VIRTUAL_THREAD_CLASS.isInstance(thread);
+	}
+
+	private static Class<?> getVirtualThreadClass() {
+		try {
+			// pas de threads virtuels avant Java 19
+			Thread.class.getMethod("isVirtual");
+		} catch (final NoSuchMethodException e) {
+			return null;
+		} catch (final SecurityException e) {
+			return null;
+		}
+		// classe mère des threads virtuels depuis Java 20, ou classe des threads virtuels en Java 19
+		for (final String className : new String[] { "java.lang.BaseVirtualThread",
+				"java.lang.VirtualThread" }) {
+			try {
+				return Class.forName(className);
+			} catch (final ClassNotFoundException e) {
+				continue;
+			}
+		}
+		return null;
 	}
 
 	static long getThreadAllocatedBytes(long threadId) {
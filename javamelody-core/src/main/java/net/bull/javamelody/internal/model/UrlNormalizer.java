@@ -0,0 +1,321 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Normalisation des urls du compteur http en templates de routes, tels que /users/{id}/orders,
+ * pour que le nombre de requêtes et la mémoire du compteur restent stables avec des api REST
+ * ayant des identifiants dans les urls.<br/>
+ * Les templates sont appris du trafic dans un arbre de segments d'urls :
+ * un segment ressemblant à un identifiant (nombre, uuid, hexadécimal, jeton opaque) est variable,
+ * et un segment ayant trop de valeurs différentes après un même préfixe devient variable.
+ * Les templates peuvent aussi être enregistrés, par exemple depuis le paramètre http-route-templates
+ * ou depuis le bestMatchingPattern de Spring MVC.<br/>
+ * La normalisation se fait sans expression régulière, en temps proportionnel à la longueur
+ * de l'url, avec un cache borné des urls déjà normalisées.
+ * @author Emeric Vernat
+ */
+public final class UrlNormalizer {
+	private static final String DEFAULT_VARIABLE_NAME = "{id}";
+	// nombre de valeurs différentes d'un segment après un même préfixe
+	// au delà duquel ce segment est considéré comme variable (sauf le premier segment)
+	private static final int MAX_LITERAL_CHILDREN = 50;
+	private static final int MAX_NODES_COUNT = 10000;
+	private static final int MAX_CACHE_SIZE = 10000;
+
+	private final Node root = new Node();
+	private final AtomicInteger nodesCount = new AtomicInteger();
+	private final ConcurrentMap<String, String> cache = new ConcurrentHashMap<String, String>();
+	private final ConcurrentMap<String, Boolean> registeredTemplates = new ConcurrentHashMap<String, Boolean>();
+
+	private static final class Node {
+		final ConcurrentMap<String, Node> literalChildren = new ConcurrentHashMap<String, Node>();
+		volatile Node variableChild;
+		volatile String variableName = DEFAULT_VARIABLE_NAME;
+		// segment variable enregistré par un template : les segments inconnus sont variables
+		volatile boolean templateVariable;
+		// trop de valeurs différentes : les segments non enregistrés sont variables
+		volatile boolean variable;
+		// segment enregistré par un template, conservé même si le segment parent devient variable
+		volatile boolean registered;
+
+		Node() {
+			super();
+		}
+
+		synchronized Node getOrCreateVariableChild() {
+			if (variableChild == null) {
+				variableChild = new Node();
+			}
+			return variableChild;
+		}
+	}
+
+	/**
+	 * Constructeur.
+	 */
+	public UrlNormalizer() {
+		super();
+	}
+
+	/**
+	 * Enregistre des templates d'urls.
+	 * @param templates Templates séparés par des virgules, par exemple "/users/{id}/orders,/items/{id}"
+	 */
+	public void addTemplates(String templates) {
+		int start = 0;
+		while (start < templates.length()) {
+			int end = templates.indexOf(',', start);
+			if (end == -1) {
+				end = templates.length();
+			}
+			final String template = templates.substring(start, end).trim();
+			if (!template.isEmpty()) {
+				addTemplate(template);
+			}
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Enregistre un template d'url, dont les segments variables sont entre accolades
+	 * ou sont * ou **, par exemple "/users/{id}/orders".
+	 * @param template String
+	 */
+	public void addTemplate(String template) {
+		if (registeredTemplates.putIfAbsent(template, Boolean.TRUE) != null) {
+			// déjà enregistré, par exemple à chaque requête depuis le bestMatchingPattern de Spring
+			return;
+		}
+		Node node = root;
+		int start = 0;
+		final int length = template.length();
+		while (start < length) {
+			if (template.charAt(start) == '/') {
+				start++;
+				continue;
+			}
+			int end = template.indexOf('/', start);
+			if (end == -1) {
+				end = length;
+			}
+			final String segment = template.substring(start, end);
+			if (segment.charAt(0) == '{' || "*".equals(segment) || "**".equals(segment)) {
+				if (!node.templateVariable) {
+					node.variableName = segment;
+					node.templateVariable = true;
+				}
+				node = node.getOrCreateVariableChild();
+			} else {
+				final Node child = putLiteralChild(node, segment);
+				child.registered = true;
+				node = child;
+			}
+			start = end;
+		}
+		cache.clear();
+	}
+
+	/**
+	 * Enregistre le bestMatchingPattern de Spring MVC comme template d'url.<br/>
+	 * Quand la DispatcherServlet est mappée sur un préfixe (par exemple /api/*),
+	 * ce pattern est relatif à ce préfixe alors que les urls normalisées sont relatives
+	 * au contexte de la webapp : le servlet path est alors ajouté devant le pattern.
+	 * @param bestMatchingPattern Pattern de Spring MVC
+	 * @param servletPath HttpServletRequest.getServletPath()
+	 * @param pathInfo HttpServletRequest.getPathInfo()
+	 */
+	public void addSpringTemplate(String bestMatchingPattern, String servletPath,
+			String pathInfo) {
+		// sans pathInfo, la servlet est mappée sur / et le servlet path est déjà toute l'url ;
+		// avec alwaysUseFullPath dans Spring, le pattern commence déjà par le servlet path
+		if (pathInfo == null || servletPath == null || servletPath.isEmpty()
+				|| bestMatchingPattern.startsWith(servletPath + '/')) {
+			addTemplate(bestMatchingPattern);
+		} else {
+			addTemplate(servletPath + bestMatchingPattern);
+		}
+	}
+
+	/**
+	 * Normalise le nom d'une requête http de la forme "url méthode".
+	 * @param requestName Nom de la requête
+	 * @return Nom de la requête avec l'url normalisée
+	 */
+	public String normalizeRequestName(String requestName) {
+		final int indexOfSpace = requestName.indexOf(' ');
+		if (indexOfSpace == -1) {
+			return normalize(requestName);
+		}
+		final String path = requestName.substring(0, indexOfSpace);
+		final String normalizedPath = normalize(path);
+		if (normalizedPath.equals(path)) {
+			return requestName;
+		}
+		return normalizedPath + requestName.substring(indexOfSpace);
+	}
+
+	/**
+	 * Normalise une url, en apprenant les templates d'après cette url.
+	 * @param path Url sans le contexte de la webapp
+	 * @return Url normalisée
+	 */
+	public String normalize(String path) {
+		final String cached = cache.get(path);
+		if (cached != null) {
+			return cached;
+		}
+		final String result = normalizeWithoutCache(path);
+		if (cache.size() >= MAX_CACHE_SIZE) {
+			// cache plein, on repart de zéro plutôt que de gérer un ordre d'éviction
+			cache.clear();
+		}
+		cache.put(path, result);
+		return result;
+	}
+
+	private String normalizeWithoutCache(String path) {
+		final int length = path.length();
+		final StringBuilder sb = new StringBuilder(length);
+		Node node = root;
+		int start = 0;
+		while (start < length) {
+			if (path.charAt(start) == '/') {
+				sb.append('/');
+				start++;
+				continue;
+			}
+			int end = path.indexOf('/', start);
+			if (end == -1) {
+				end = length;
+			}
+			node = next(node, path.substring(start, end), sb);
+			start = end;
+		}
+		return sb.toString();
+	}
+
+	private Node next(Node node, String segment, StringBuilder sb) {
+		Node child = node.literalChildren.get(segment);
+		if (child != null && (child.registered || !node.variable)) {
+			sb.append(segment);
+			return child;
+		}
+		if (child == null && !node.variable && !node.templateVariable
+				&& !looksLikeIdentifier(segment)) {
+			child = addLiteralChild(node, segment);
+			if (child != null) {
+				sb.append(segment);
+				return child;
+			}
+		}
+		sb.append(node.variableName);
+		return node.getOrCreateVariableChild();
+	}
+
+	private Node addLiteralChild(Node node, String segment) {
+		// le premier segment n'est jamais variable : une webapp peut avoir beaucoup de pages
+		// et de ressources à la racine (/index.html, /css, /api, ...)
+		if (node != root && node.literalChildren.size() >= MAX_LITERAL_CHILDREN) {
+			// trop de valeurs différentes pour ce segment : il est variable
+			setVariable(node);
+			return null;
+		}
+		if (nodesCount.get() >= MAX_NODES_COUNT) {
+			// arbre plein : les nouveaux segments sont variables
+			return null;
+		}
+		return putLiteralChild(node, segment);
+	}
+
+	private Node putLiteralChild(Node node, String segment) {
+		final Node child = node.literalChildren.get(segment);
+		if (child != null) {
+			return child;
+		}
+		final Node newChild = new Node();
+		final Node previous = node.literalChildren.putIfAbsent(segment, newChild);
+		if (previous != null) {
+			return previous;
+		}
+		nodesCount.incrementAndGet();
+		return newChild;
+	}
+
+	private void setVariable(Node node) {
+		if (node.variable) {
+			return;
+		}
+		node.variable = true;
+		// les segments appris sont oubliés, sauf ceux des templates enregistrés
+		for (final Map.Entry<String, Node> entry : node.literalChildren.entrySet()) {
+			final Node child = entry.getValue();
+			if (!child.registered && node.literalChildren.remove(entry.getKey(), child)) {
+				nodesCount.addAndGet(-countNodes(child));
+			}
+		}
+		// les urls déjà normalisées avec ces segments ne sont plus à jour
+		cache.clear();
+	}
+
+	private static int countNodes(Node node) {
+		int result = 1;
+		for (final Node child : node.literalChildren.values()) {
+			result += countNodes(child);
+		}
+		return result;
+	}
+
+	static boolean looksLikeIdentifier(String segment) {
+		final int length = segment.length();
+		int digits = 0;
+		int hexLetters = 0;
+		int otherLetters = 0;
+		int separators = 0;
+		for (int i = 0; i < length; i++) {
+			final char c = segment.charAt(i);
+			if (c >= '0' && c <= '9') {
+				digits++;
+			} else if (c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F') {
+				hexLetters++;
+			} else if (Character.isLetter(c)) {
+				otherLetters++;
+			} else if (c == '-' || c == '_' || c == '.') {
+				separators++;
+			} else {
+				return false;
+			}
+		}
+		if (digits == 0) {
+			return false;
+		}
+		// nombre, ou uuid, hexadécimal, date
+		// ou jeton opaque long mélangeant chiffres et lettres
+		return digits == length || length >= 8 && otherLetters == 0
+				|| length >= 16 && hexLetters + otherLetters > 0 && separators < length / 4;
+	}
+
+	int getNodesCount() {
+		return nodesCount.get();
+	}
+}
@@ -28,6 +28,7 @@ import java.net.URLClassLoader;
 import javax.management.JMException;
 import javax.management.ObjectName;
 
+import net.bull.javamelody.Parameter;
 import net.bull.javamelody.internal.common.I18N;
 
 /**
@@ -206,12 +207,26 @@ public final class VirtualMachine {
 	public static HeapHistogram createHeapHistogram() throws Exception { // NOPMD
 		final InputStream input = heapHisto();
 		try {
-			return new HeapHistogram(input, isJRockit());
+			return new HeapHistogram(input, isJRockit(), getHeapHistoMaxClasses());
 		} finally {
 			input.close();
 		}
 	}
 
+	private static int getHeapHistoMaxClasses() {
+		final String param = Parameter.HEAP_HISTO_MAX_CLASSES.getValue();
+		if (param != null) {
+			// lance une NumberFormatException si ce n'est pas un nombre
+			final int result = Integer.parseInt(param);
+			if (result <= 0) {
+				throw new IllegalStateException(
+						"The parameter heap-histo-max-classes should be > 0 (1000 recommended)");
+			}
+			return result;
+		}
+		return -1;
+	}
+
 	private static Object invoke(Method method, Object object, Object... args) throws Exception { // NOPMD
 		try {
 			return method.invoke(object, args);
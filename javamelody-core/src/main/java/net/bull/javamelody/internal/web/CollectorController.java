@@ -21,11 +21,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serializable;
-import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -79,6 +79,12 @@ public class CollectorController { // NOPMD
 
 	private static final String COOKIE_NAME = "javamelody.application";
 
+	/**
+	 * En-tête http des requêtes transmises par un serveur de collecte à un autre (collector-shards-file),
+	 * pour ne pas les transmettre à nouveau si les deux n'ont pas encore la même liste de serveurs de collecte.
+	 */
+	public static final String SHARD_PROXY_HEADER = "X-JavaMelody-Shard-Proxy";
+
 	private static final boolean CSRF_PROTECTION_ENABLED = Parameter.CSRF_PROTECTION_ENABLED
 			.getValueAsBoolean();
 
@@ -121,6 +127,39 @@ public class CollectorController { // NOPMD
 		collectorServer.removeCollectorApplicationNodes(appName, urls);
 	}
 
+	/**
+	 * Transmet la requête GET au serveur de collecte qui collecte l'application, avec ses cookies
+	 * et son authentification, et recopie sa réponse avec son statut et ses cookies.
+	 * Une requête avec une autre méthode (POST par exemple) est redirigée vers ce serveur
+	 * de collecte, avec la même méthode et le même corps.
+	 * @param req HttpServletRequest
+	 * @param resp HttpServletResponse
+	 * @param application Code de l'application
+	 * @param shardUrl Url du serveur de collecte de l'application
+	 * @throws IOException e
+	 */
+	public void doProxyToShard(HttpServletRequest req, HttpServletResponse resp,
+			String application, URL shardUrl) throws IOException {
+		final StringBuilder sb = new StringBuilder(shardUrl.toString());
+		sb.append(shardUrl.getQuery() == null ? '?' : '&');
+		// l'application peut venir d'un cookie de ce serveur de collecte, et non de la requête
+		sb.append("application=").append(URLEncoder.encode(application, "UTF-8"));
+		final String queryString = req.getQueryString();
+		if (queryString != null) {
+			sb.append('&').append(queryString);
+		}
+		if (!"GET".equals(req.getMethod())) {
+			// le corps de la requête a pu être déjà lu par getParameter, donc le navigateur
+			// renvoie la requête avec une redirection qui conserve la méthode et le corps
+			resp.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+			resp.setHeader("Location", sb.toString());
+			return;
+		}
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put(SHARD_PROXY_HEADER, "true");
+		new LabradorRetriever(new URL(sb.toString()), headers).forwardTo(req, resp);
+	}
+
 	public void doMonitoring(HttpServletRequest req, HttpServletResponse resp, String application)
 			throws IOException {
 		try {
@@ -250,13 +289,15 @@ public class CollectorController { // NOPMD
 			// note: cache keys may not be serializable, so we do not try to serialize them
 			final String cacheId = HttpParameter.CACHE_ID.getParameterFrom(req);
 			doMultiHtmlProxy(req, resp, application,
-					HttpPart.CACHE_KEYS.toString() + '&' + HttpParameter.CACHE_ID + '=' + cacheId,
+					HttpPart.CACHE_KEYS.toString() + '&' + HttpParameter.CACHE_ID + '=' + cacheId
+							+ getCacheKeysPageParameters(req),
 					I18N.getFormattedString("Keys_cache", cacheId), null, "caches.png");
 		} else if (HttpPart.JCACHE_KEYS.isPart(req)) {
 			// note: cache keys may not be serializable, so we do not try to serialize them
 			final String cacheId = HttpParameter.CACHE_ID.getParameterFrom(req);
 			doMultiHtmlProxy(req, resp, application,
-					HttpPart.JCACHE_KEYS.toString() + '&' + HttpParameter.CACHE_ID + '=' + cacheId,
+					HttpPart.JCACHE_KEYS.toString() + '&' + HttpParameter.CACHE_ID + '=' + cacheId
+							+ getCacheKeysPageParameters(req),
 					I18N.getFormattedString("Keys_cache", cacheId), null, "caches.png");
 		} else {
 			final List<JavaInformations> javaInformationsList = getJavaInformationsByApplication(
@@ -265,6 +306,19 @@ public class CollectorController { // NOPMD
 		}
 	}
 
+	private static String getCacheKeysPageParameters(HttpServletRequest req) {
+		// une seule page de clés est demandée à chaque webapp monitorée
+		final StringBuilder sb = new StringBuilder();
+		for (final HttpParameter parameter : Arrays.asList(HttpParameter.PREFIX,
+				HttpParameter.CURSOR, HttpParameter.PAGE_SIZE)) {
+			final String value = parameter.getParameterFrom(req);
+			if (value != null && !value.isEmpty()) {
+				sb.append('&').append(parameter).append('=').append(I18N.urlEncode(value));
+			}
+		}
+		return sb.toString();
+	}
+
 	private void doCrashDownload(HttpServletRequest req, HttpServletResponse resp,
 			String application) throws IOException {
 		final String partParameter = HttpPart.CRASHES.getName() + '&' + HttpParameter.PATH + '='
@@ -452,7 +506,12 @@ public class CollectorController { // NOPMD
 			Action.checkSystemActionsEnabled();
 			final int requestIndex = DatabaseInformations
 					.parseRequestIndex(HttpParameter.REQUEST.getParameterFrom(httpRequest));
-			return collectorServer.collectDatabaseInformations(application, requestIndex);
+			final int page = DatabaseInformations
+					.parsePage(HttpParameter.PAGE.getParameterFrom(httpRequest));
+			final int sortColumn = DatabaseInformations
+					.parseSortColumn(HttpParameter.SORT.getParameterFrom(httpRequest));
+			return collectorServer.collectDatabaseInformations(application, requestIndex, page,
+					sortColumn);
 		} else if (HttpPart.CONNECTIONS.isPart(httpRequest)) {
 			// par sécurité
 			Action.checkSystemActionsEnabled();
@@ -599,7 +658,7 @@ public class CollectorController { // NOPMD
 	}
 
 	public String getApplication(HttpServletRequest req, HttpServletResponse resp)
-			throws UnsupportedEncodingException {
+			throws IOException {
 		// on utilise un cookie client pour stocker l'application
 		// car la page html est faite pour une seule application sans passer son nom en paramètre des requêtes
 		// et pour ne pas perdre l'application choisie entre les reconnexions
@@ -609,7 +668,7 @@ public class CollectorController { // NOPMD
 			final Cookie cookie = httpCookieManager.getCookieByName(req, COOKIE_NAME);
 			if (cookie != null) {
 				application = URLDecoder.decode(cookie.getValue(), "UTF-8");
-				if (!collectorServer.isApplicationDataAvailable(application)) {
+				if (!isApplicationAvailable(application)) {
 					cookie.setMaxAge(-1);
 					resp.addCookie(cookie);
 					application = null;
@@ -619,7 +678,7 @@ public class CollectorController { // NOPMD
 				// pas de cookie, on prend la première application si elle existe
 				application = collectorServer.getFirstApplication();
 			}
-		} else if (collectorServer.isApplicationDataAvailable(application)) {
+		} else if (isApplicationAvailable(application)) {
 			// un paramètre application est présent dans la requête: l'utilisateur a choisi une application,
 			// donc on fixe le cookie.
 			// En Tomcat, le cookie doit être conforme à la RFC 6265 (pas d'espace, ...)
@@ -630,6 +689,12 @@ public class CollectorController { // NOPMD
 		return application;
 	}
 
+	private boolean isApplicationAvailable(String application) throws IOException {
+		// l'application peut être collectée par un autre serveur de collecte (collector-shards-file)
+		return collectorServer.isApplicationDataAvailable(application)
+				|| collectorServer.getShardUrl(application) != null;
+	}
+
 	private Collector getCollectorByApplication(String application) {
 		return collectorServer.getCollectorByApplication(application);
 	}
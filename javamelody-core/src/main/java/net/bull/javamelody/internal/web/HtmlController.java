@@ -39,10 +39,13 @@ import net.bull.javamelody.internal.common.LOG;
 import net.bull.javamelody.internal.common.Parameters;
 import net.bull.javamelody.internal.model.Action;
 import net.bull.javamelody.internal.model.CacheInformations;
+import net.bull.javamelody.internal.model.CacheKeysPage;
 import net.bull.javamelody.internal.model.Collector;
 import net.bull.javamelody.internal.model.CollectorServer;
 import net.bull.javamelody.internal.model.DatabaseInformations;
 import net.bull.javamelody.internal.model.HeapHistogram;
+import net.bull.javamelody.internal.model.HeapHistogramHistory;
+import net.bull.javamelody.internal.model.HeapHistogramHistory.Snapshot;
 import net.bull.javamelody.internal.model.JCacheInformations;
 import net.bull.javamelody.internal.model.JavaInformations;
 import net.bull.javamelody.internal.model.JndiBinding;
@@ -155,8 +158,20 @@ public class HtmlController {
 	}
 
 	@RequestPart(HttpPart.THREADS)
-	void doAllThreadsAsPart() throws IOException {
-		htmlReport.writeAllThreadsAsPart();
+	void doAllThreadsAsPart(@RequestParameter(HttpParameter.FORMAT) String format,
+			@RequestParameter(HttpParameter.INDEX) String index) throws IOException {
+		if (HTML_BODY_FORMAT.equalsIgnoreCase(format) && index != null) {
+			// liste des threads d'une instance, chargée à la demande dans la page principale
+			htmlReport.writeThreadsDetails(Integer.parseInt(index));
+		} else {
+			htmlReport.writeAllThreadsAsPart();
+		}
+	}
+
+	@RequestPart(HttpPart.COUNTER_DETAILS)
+	void doCounterDetails(@RequestParameter(HttpParameter.COUNTER) String counterName)
+			throws IOException {
+		htmlReport.writeCounterDetails(counterName);
 	}
 
 	@RequestPart(HttpPart.COUNTER_SUMMARY_PER_CLASS)
@@ -214,6 +229,14 @@ public class HtmlController {
 		}
 	}
 
+	@RequestPart(HttpPart.JVM_EVENTS)
+	void doJvmEvents() throws IOException {
+		// par sécurité
+		Action.checkSystemActionsEnabled();
+		// événements lus dans cette JVM seulement, y compris sur le serveur de collecte
+		htmlReport.writeJvmEvents();
+	}
+
 	@RequestPart(HttpPart.HEAP_HISTO)
 	void doHeapHisto() throws IOException {
 		// par sécurité
@@ -230,10 +253,26 @@ public class HtmlController {
 			htmlReport.writeMessageIfNotNull(String.valueOf(e.getMessage()), null);
 			return;
 		}
-		htmlReport.writeHeapHistogram(heapHistogram, messageForReport,
+		final List<Snapshot> snapshots = addHeapHistogramSnapshot(heapHistogram);
+		htmlReport.writeHeapHistogram(heapHistogram, snapshots, messageForReport,
 				HttpPart.HEAP_HISTO.getName());
 	}
 
+	private List<Snapshot> addHeapHistogramSnapshot(HeapHistogram heapHistogram) {
+		// instantanés précédents pour afficher les classes dont la taille augmente,
+		// puis enregistrement de l'instantané courant pour les prochaines fois
+		// (au plus un par heure, pour que l'historique ne couvre pas que quelques secondes)
+		final HeapHistogramHistory heapHistogramHistory = new HeapHistogramHistory(
+				getApplication());
+		final List<Snapshot> snapshots = heapHistogramHistory.getSnapshots();
+		try {
+			heapHistogramHistory.addSnapshot(heapHistogram);
+		} catch (final IOException e) {
+			LOG.warn("exception while writing heap histogram snapshot", e);
+		}
+		return snapshots;
+	}
+
 	@RequestPart(HttpPart.PROCESSES)
 	void doProcesses() throws IOException {
 		// par sécurité
@@ -255,18 +294,21 @@ public class HtmlController {
 	}
 
 	@RequestPart(HttpPart.DATABASE)
-	void doDatabase(@RequestParameter(HttpParameter.REQUEST) String requestIndex)
-			throws IOException {
+	void doDatabase(@RequestParameter(HttpParameter.REQUEST) String requestIndex,
+			@RequestParameter(HttpParameter.PAGE) String page,
+			@RequestParameter(HttpParameter.SORT) String sortColumn) throws IOException {
 		// par sécurité
 		Action.checkSystemActionsEnabled();
 		try {
 			final int index = DatabaseInformations.parseRequestIndex(requestIndex);
+			final int pageIndex = DatabaseInformations.parsePage(page);
+			final int sort = DatabaseInformations.parseSortColumn(sortColumn);
 			final DatabaseInformations databaseInformations;
 			if (!isFromCollectorServer()) {
-				databaseInformations = new DatabaseInformations(index);
+				databaseInformations = new DatabaseInformations(index, pageIndex, sort);
 			} else {
 				databaseInformations = collectorServer.collectDatabaseInformations(getApplication(),
-						index);
+						index, pageIndex, sort);
 			}
 			htmlReport.writeDatabase(databaseInformations);
 		} catch (final Exception e) {
@@ -303,12 +345,17 @@ public class HtmlController {
 	}
 
 	@RequestPart(HttpPart.MBEANS)
-	void doMBeans() throws IOException {
+	void doMBeans(@RequestParameter(HttpParameter.MBEAN) String mbeanName,
+			@RequestParameter(HttpParameter.FORMAT) String format) throws IOException {
 		// par sécurité
 		Action.checkSystemActionsEnabled();
 		try {
-			if (!isFromCollectorServer()) {
-				final List<MBeanNode> nodes = MBeans.getAllMBeanNodes();
+			if (HTML_BODY_FORMAT.equalsIgnoreCase(format) && mbeanName != null) {
+				// attributs d'un MBean, chargés à la demande dans l'arbre des MBeans
+				htmlReport.writeMBeanAttributes(MBeans.getMBeanNode(mbeanName));
+			} else if (!isFromCollectorServer()) {
+				// l'arbre est construit sans lire les valeurs des attributs
+				final List<MBeanNode> nodes = MBeans.getAllMBeanNodesWithoutAttributes();
 				htmlReport.writeMBeans(nodes);
 			} else {
 				final Map<String, List<MBeanNode>> allMBeans = collectorServer
@@ -334,28 +381,39 @@ public class HtmlController {
 
 	@RequestPart(HttpPart.CACHE_KEYS)
 	void doCacheKeys(@RequestParameter(HttpParameter.CACHE_ID) String cacheId,
+			@RequestParameter(HttpParameter.PREFIX) String prefix,
+			@RequestParameter(HttpParameter.CURSOR) String cursor,
+			@RequestParameter(HttpParameter.PAGE_SIZE) String pageSize,
 			@RequestParameter(HttpParameter.FORMAT) String format) throws IOException {
 		assert !isFromCollectorServer();
-		final CacheInformations cacheInfo = CacheInformations
-				.buildCacheInformationsWithKeys(cacheId);
+		final CacheInformations cacheInfo = CacheInformations.buildCacheInformations(cacheId);
+		// seulement une page de clés est affichée, même avec des millions de clés dans le cache
+		final CacheKeysPage cacheKeysPage = CacheInformations.buildCacheKeysPage(cacheId,
+				CacheKeysPage.parsePrefix(prefix), CacheKeysPage.parseCursor(cursor),
+				CacheKeysPage.parsePageSize(pageSize));
 		final boolean withoutHeaders = HTML_BODY_FORMAT.equalsIgnoreCase(format);
 		final String cacheKeysPart = HttpPart.CACHE_KEYS.toString() + '&' + HttpParameter.CACHE_ID
 				+ '=' + I18N.urlEncode(cacheId);
-		htmlReport.writeCacheWithKeys(cacheId, cacheInfo, messageForReport, cacheKeysPart,
-				withoutHeaders);
+		htmlReport.writeCacheWithKeys(cacheId, cacheInfo, cacheKeysPage, messageForReport,
+				cacheKeysPart, withoutHeaders);
 	}
 
 	@RequestPart(HttpPart.JCACHE_KEYS)
 	void doJCacheKeys(@RequestParameter(HttpParameter.CACHE_ID) String cacheId,
+			@RequestParameter(HttpParameter.PREFIX) String prefix,
+			@RequestParameter(HttpParameter.CURSOR) String cursor,
+			@RequestParameter(HttpParameter.PAGE_SIZE) String pageSize,
 			@RequestParameter(HttpParameter.FORMAT) String format) throws IOException {
 		assert !isFromCollectorServer();
-		final JCacheInformations cacheInfo = JCacheInformations
-				.buildJCacheInformationsWithKeys(cacheId);
+		final JCacheInformations cacheInfo = JCacheInformations.buildJCacheInformations(cacheId);
+		final CacheKeysPage cacheKeysPage = JCacheInformations.buildJCacheKeysPage(cacheId,
+				CacheKeysPage.parsePrefix(prefix), CacheKeysPage.parseCursor(cursor),
+				CacheKeysPage.parsePageSize(pageSize));
 		final boolean withoutHeaders = HTML_BODY_FORMAT.equalsIgnoreCase(format);
 		final String jcacheKeysPart = HttpPart.JCACHE_KEYS.toString() + '&' + HttpParameter.CACHE_ID
 				+ '=' + I18N.urlEncode(cacheId);
-		htmlReport.writeJCacheWithKeys(cacheId, cacheInfo, messageForReport, jcacheKeysPart,
-				withoutHeaders);
+		htmlReport.writeJCacheWithKeys(cacheId, cacheInfo, cacheKeysPage, messageForReport,
+				jcacheKeysPart, withoutHeaders);
 	}
 
 	@RequestPart(HttpPart.HASH_PASSWORD)
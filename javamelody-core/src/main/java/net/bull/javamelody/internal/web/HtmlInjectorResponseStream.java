@@ -26,10 +26,22 @@ import javax.servlet.http.HttpServletResponse;
  * @author Emeric Vernat
  */
 class HtmlInjectorResponseStream extends FilterServletOutputStream {
+	private static final String CONTENT_ENCODING = "Content-Encoding";
+
 	private final HttpServletResponse response;
 	private final HtmlToInject htmlToInject;
 	private final byte[] beforeTag;
+	// table de décalage de Boyer-Moore-Horspool pour beforeTag
+	private final int[] shiftTable;
+	// fin du flux écrit, qui est un début de beforeTag, retenue jusqu'à l'écriture suivante
+	// pour trouver beforeTag même s'il est coupé entre deux écritures
+	private final byte[] pending;
+	private int pendingLength;
+	// fin retenue suivie d'un octet écrit par write(int), sans allocation à chaque octet
+	private final byte[] byteWindow;
+	private boolean firstWrite = true;
 	private boolean injectionCanceled;
+	private boolean injected;
 
 	interface HtmlToInject {
 		/**
@@ -58,18 +70,48 @@ class HtmlInjectorResponseStream extends FilterServletOutputStream {
 		// And response.getCharacterEncoding() may not be explicit yet,
 		// but we suppose that it does not make any difference on the beforeTag.
 		this.beforeTag = htmlToInject.getBeforeTag().getBytes(response.getCharacterEncoding());
+		assert beforeTag.length > 0;
+		this.shiftTable = createShiftTable(beforeTag);
+		this.pending = new byte[beforeTag.length - 1];
+		this.byteWindow = new byte[beforeTag.length];
 	}
 
 	void cancelInjection() {
 		injectionCanceled = true;
 	}
 
-	// not worth it
-	//	/** {@inheritDoc} */
-	//	@Override
-	//	public void write(int i) throws IOException {
-	//		super.write(i);
-	//	}
+	private boolean isScanning() {
+		if (firstWrite) {
+			firstWrite = false;
+			// fast path: juste avant l'écriture des en-têtes, si le contenu n'est pas du html
+			// (par exemple un téléchargement json ou binaire) ou s'il est déjà compressé,
+			// alors il n'y aura rien à injecter et aucune recherche à faire
+			final String contentType = response.getContentType();
+			if (contentType != null && !contentType.contains("text/html")
+					|| response.containsHeader(CONTENT_ENCODING)) {
+				cancelInjection();
+			}
+		}
+		return !injectionCanceled && !injected;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void write(int i) throws IOException {
+		if (!isScanning()) {
+			writePending();
+			super.write(i);
+		} else if (pendingLength == 0 && (byte) i != beforeTag[0]) {
+			// cas le plus fréquent : cet octet ne peut pas être le début de beforeTag
+			super.write(i);
+		} else {
+			System.arraycopy(pending, 0, byteWindow, 0, pendingLength);
+			byteWindow[pendingLength] = (byte) i;
+			final int length = pendingLength + 1;
+			pendingLength = 0;
+			scanAndWrite(byteWindow, 0, length);
+		}
+	}
 
 	/** {@inheritDoc} */
 	@Override
@@ -81,50 +123,145 @@ class HtmlInjectorResponseStream extends FilterServletOutputStream {
 	@Override
 	public void write(byte[] bytes, int off, int len) throws IOException {
 		// if httpResponse.setContentType(x) has been called with !x.contains("text/html"),
+		// or if the beforeTag has already been found,
 		// then no need to continue scanning for the beforeTag
-		if (injectionCanceled) {
+		if (!isScanning()) {
+			writePending();
 			super.write(bytes, off, len);
+		} else if (pendingLength > 0 && len < beforeTag.length) {
+			// petite écriture à la suite d'un début de beforeTag : on les concatène,
+			// ce qui ne copie pas plus de 2 fois la taille de beforeTag
+			final byte[] buffer = new byte[pendingLength + len];
+			System.arraycopy(pending, 0, buffer, 0, pendingLength);
+			System.arraycopy(bytes, off, buffer, pendingLength, len);
+			pendingLength = 0;
+			scanAndWrite(buffer, 0, buffer.length);
 		} else {
-			final int index = indexOf(bytes, beforeTag, off, len);
-			if (index == -1) {
-				// beforeTag not found yet
-				super.write(bytes, off, len);
-			} else {
-				// beforeTag found: inject content.
-				super.write(bytes, off, index);
-				final String content = htmlToInject.getContent();
-				// HttpServletResponse.getCharacterEncoding() shouldn't return null according the spec
-				super.write(content.getBytes(response.getCharacterEncoding()));
-				super.write(bytes, off + index, len - index);
+			if (pendingLength > 0) {
+				// beforeTag peut être coupé entre l'écriture précédente et celle-ci :
+				// on le cherche seulement dans la fin retenue suivie du début de bytes
+				final int headLength = beforeTag.length - 1;
+				final byte[] window = new byte[pendingLength + headLength];
+				System.arraycopy(pending, 0, window, 0, pendingLength);
+				System.arraycopy(bytes, off, window, pendingLength, headLength);
+				final int index = indexOf(window, 0, window.length);
+				if (index != -1) {
+					// la fenêtre étant plus courte que 2 beforeTag, index < pendingLength
+					final int length = pendingLength;
+					pendingLength = 0;
+					super.write(pending, 0, index);
+					inject();
+					super.write(pending, index, length - index);
+					super.write(bytes, off, len);
+					return;
+				}
+				writePending();
 			}
+			scanAndWrite(bytes, off, len);
 		}
 	}
 
-	private static int indexOf(byte[] sourceBytes, byte[] targetBytes, int sourceOffset,
-			int sourceLength) {
-		final byte first = targetBytes[0];
-		final int max = sourceOffset + sourceLength - targetBytes.length;
+	private void scanAndWrite(byte[] bytes, int off, int len) throws IOException {
+		final int index = indexOf(bytes, off, len);
+		if (index != -1) {
+			// beforeTag found: inject content.
+			super.write(bytes, off, index);
+			inject();
+			super.write(bytes, off + index, len - index);
+		} else {
+			// beforeTag not found yet: on retient la fin si c'est un début de beforeTag
+			final int suffixLength = getTagPrefixSuffixLength(bytes, off, len);
+			super.write(bytes, off, len - suffixLength);
+			System.arraycopy(bytes, off + len - suffixLength, pending, 0, suffixLength);
+			pendingLength = suffixLength;
+		}
+	}
 
-		for (int i = sourceOffset; i <= max; i++) {
-			// Look for first byte
-			while (i <= max && sourceBytes[i] != first) {
-				i++;
-			}
+	private void inject() throws IOException {
+		injected = true;
+		final String content = htmlToInject.getContent();
+		// HttpServletResponse.getCharacterEncoding() shouldn't return null according the spec
+		super.write(content.getBytes(response.getCharacterEncoding()));
+	}
 
-			if (i <= max) {
-				// Found first byte, now look at the rest of sourceBytes
-				int j = i + 1;
-				final int end = j + targetBytes.length - 1;
-				for (int k = 1; j < end && sourceBytes[j] == targetBytes[k]; k++) {
-					j++;
-				}
+	private void writePending() throws IOException {
+		if (pendingLength > 0) {
+			final int length = pendingLength;
+			pendingLength = 0;
+			super.write(pending, 0, length);
+		}
+	}
 
-				if (j == end) {
-					// Found whole bytes
-					return i - sourceOffset;
+	/** {@inheritDoc} */
+	@Override
+	public void flush() throws IOException {
+		// le contenu retenu doit être écrit avant flush ou close (tant pis pour un beforeTag
+		// qui serait coupé par un flush)
+		writePending();
+		super.flush();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() throws IOException {
+		writePending();
+		super.close();
+	}
+
+	private static int[] createShiftTable(byte[] pattern) {
+		final int[] result = new int[256];
+		final int last = pattern.length - 1;
+		for (int i = 0; i < result.length; i++) {
+			result[i] = pattern.length;
+		}
+		for (int i = 0; i < last; i++) {
+			result[pattern[i] & 0xFF] = last - i;
+		}
+		return result;
+	}
+
+	/**
+	 * Recherche de Boyer-Moore-Horspool de beforeTag, en sautant jusqu'à la taille
+	 * de beforeTag à chaque comparaison au lieu d'avancer octet par octet.
+	 * @param bytes Tableau d'octets
+	 * @param off Début
+	 * @param len Longueur
+	 * @return Position relative à off, ou -1 si non trouvé
+	 */
+	int indexOf(byte[] bytes, int off, int len) {
+		final byte[] pattern = beforeTag;
+		final int last = pattern.length - 1;
+		final byte lastByte = pattern[last];
+		final int max = off + len - pattern.length;
+		int i = off;
+		while (i <= max) {
+			final byte b = bytes[i + last];
+			if (b == lastByte) {
+				int j = last - 1;
+				while (j >= 0 && bytes[i + j] == pattern[j]) {
+					j--;
+				}
+				if (j < 0) {
+					return i - off;
 				}
 			}
+			i += shiftTable[b & 0xFF];
 		}
 		return -1;
 	}
+
+	private int getTagPrefixSuffixLength(byte[] bytes, int off, int len) {
+		// plus longue fin de bytes qui soit un début de beforeTag
+		for (int length = Math.min(len, pending.length); length > 0; length--) {
+			final int start = off + len - length;
+			int j = 0;
+			while (j < length && bytes[start + j] == beforeTag[j]) {
+				j++;
+			}
+			if (j == length) {
+				return length;
+			}
+		}
+		return 0;
+	}
 }
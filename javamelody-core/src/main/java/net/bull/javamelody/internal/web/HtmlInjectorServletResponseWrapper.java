@@ -62,7 +62,8 @@ class HtmlInjectorServletResponseWrapper extends FilterServletResponseWrapper {
 	/** {@inheritDoc} */
 	@Override
 	public ServletOutputStream createOutputStream() throws IOException {
-		if (!isContentTypeHtml()) {
+		if (!isContentTypeHtml() || containsHeader("Content-Encoding")) {
+			// pas de flux intermédiaire s'il n'y aura rien à injecter
 			return getHttpServletResponse().getOutputStream();
 		}
 		return new HtmlInjectorResponseStream(getHttpServletResponse(), htmlToInject);
@@ -201,16 +201,20 @@ class PdfController {
 	}
 
 	@RequestPart(HttpPart.DATABASE)
-	void doDatabase(@RequestParameter(HttpParameter.REQUEST) String requestIndex) throws Exception { // NOPMD
+	void doDatabase(@RequestParameter(HttpParameter.REQUEST) String requestIndex,
+			@RequestParameter(HttpParameter.PAGE) String page,
+			@RequestParameter(HttpParameter.SORT) String sortColumn) throws Exception { // NOPMD
 		// par sécurité
 		Action.checkSystemActionsEnabled();
 		final int index = DatabaseInformations.parseRequestIndex(requestIndex);
+		final int pageIndex = DatabaseInformations.parsePage(page);
+		final int sort = DatabaseInformations.parseSortColumn(sortColumn);
 		final DatabaseInformations databaseInformations;
 		if (!isFromCollectorServer()) {
-			databaseInformations = new DatabaseInformations(index);
+			databaseInformations = new DatabaseInformations(index, pageIndex, sort);
 		} else {
 			databaseInformations = collectorServer.collectDatabaseInformations(getApplication(),
-					index);
+					index, pageIndex, sort);
 		}
 		pdfOtherReport.writeDatabaseInformations(databaseInformations);
 	}
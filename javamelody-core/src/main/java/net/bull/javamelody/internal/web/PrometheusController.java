@@ -37,6 +37,9 @@ import net.bull.javamelody.internal.model.JCacheInformations;
 import net.bull.javamelody.internal.model.JRobin;
 import net.bull.javamelody.internal.model.JavaInformations;
 import net.bull.javamelody.internal.model.MemoryInformations;
+import net.bull.javamelody.internal.model.RequestsBudget;
+import net.bull.javamelody.internal.model.RrdNioBackend;
+import net.bull.javamelody.internal.model.SelfMonitoring;
 import net.bull.javamelody.internal.model.TomcatInformations;
 
 /**
@@ -234,6 +237,8 @@ class PrometheusController {
 
 		reportOnCollector();
 
+		reportOnSelfMonitoring();
+
 		if (includeLastValue) {
 			reportOnLastValues();
 		}
@@ -383,6 +388,7 @@ class PrometheusController {
 	 * improving performance from bypassing JRobin reads in the getLastValue() method.
 	 */
 	private void reportOnCollector() {
+		final RequestsBudget requestsBudget = collector.getRequestsBudget();
 		for (final Counter counter : collector.getCounters()) {
 			if (!counter.isDisplayed()) {
 				continue;
@@ -410,7 +416,58 @@ class PrometheusController {
 				printLong(MetricType.COUNTER, sanitizedName + "_duration_millis",
 						"javamelody counter", duration);
 			}
+			if (requestsBudget != null) {
+				printLong(MetricType.COUNTER, sanitizedName + "_evicted_requests_count",
+						"javamelody counter", requestsBudget.getEvictionsCount(counter.getName()));
+				printLong(MetricType.COUNTER, sanitizedName + "_rejected_requests_count",
+						"javamelody counter", requestsBudget.getRejectionsCount(counter.getName()));
+			}
 		}
+		if (requestsBudget != null) {
+			printLong(MetricType.GAUGE, "requests_memory_used_bytes",
+					"estimated memory of the requests of all counters",
+					requestsBudget.getUsedBytes());
+		}
+	}
+
+	/**
+	 * Reports on the overhead of javamelody itself: durations of the parts of the last collect,
+	 * bytes written by the last collect, instrumentation calls and sampling pauses.
+	 */
+	private void reportOnSelfMonitoring() {
+		printLong(MetricType.GAUGE, "collect_duration_millis", "last collect duration",
+				collector.getLastCollectDuration());
+		for (final Map.Entry<String, Double> entry : collector.getLastCollectDurationsByPart()
+				.entrySet()) {
+			printDouble(MetricType.GAUGE, "collect_" + entry.getKey() + "_duration_millis",
+					"last collect duration of " + entry.getKey(), entry.getValue());
+		}
+		printLong(MetricType.GAUGE, "collect_written_bytes", "bytes written by last collect",
+				collector.getLastCollectWrittenBytes());
+		printLong(MetricType.COUNTER, "instrumentation_bind_context_count",
+				"javamelody bindContext calls", SelfMonitoring.getBindContextCount());
+		printLong(MetricType.COUNTER, "instrumentation_add_request_count",
+				"javamelody addRequest calls", SelfMonitoring.getAddRequestCount());
+		printLong(MetricType.COUNTER, "sampling_pauses_count", "javamelody sampling pauses",
+				SelfMonitoring.getSamplingPausesCount());
+		printLong(MetricType.COUNTER, "sampling_pauses_millis",
+				"javamelody sampling pauses duration", SelfMonitoring.getSamplingPausesMillis());
+		printLong(MetricType.GAUGE, "rrd_dirty_files_count", "rrd files not yet synced to disk",
+				RrdNioBackend.getDirtyFilesCount());
+		printLong(MetricType.COUNTER, "rrd_synced_files_count", "rrd files synced to disk",
+				RrdNioBackend.getSyncedFilesCount());
+		printLong(MetricType.COUNTER, "rrd_sync_millis", "rrd files sync duration",
+				RrdNioBackend.getSyncMillis());
+		printLong(MetricType.GAUGE, "rrd_open_files_count", "rrd files kept open in pool",
+				JRobin.getOpenFilesCount());
+		printLong(MetricType.GAUGE, "rrd_mapped_bytes", "rrd files mapped in pool",
+				JRobin.getMappedBytes());
+		printLong(MetricType.COUNTER, "rrd_pool_hits_count", "rrd files found open in pool",
+				JRobin.getPoolHitsCount());
+		printLong(MetricType.COUNTER, "rrd_pool_misses_count", "rrd files opened in pool",
+				JRobin.getPoolMissesCount());
+		printLong(MetricType.COUNTER, "rrd_pool_evictions_count", "rrd files closed by full pool",
+				JRobin.getPoolEvictionsCount());
 	}
 
 	/**
@@ -52,6 +52,7 @@ import net.bull.javamelody.internal.model.CounterRequestContext;
 import net.bull.javamelody.internal.model.DatabaseInformations;
 import net.bull.javamelody.internal.model.HsErrPid;
 import net.bull.javamelody.internal.model.JRobin;
+import net.bull.javamelody.internal.model.JRobinGraphRenderer;
 import net.bull.javamelody.internal.model.JavaInformations;
 import net.bull.javamelody.internal.model.JndiBinding;
 import net.bull.javamelody.internal.model.MBeanNode;
@@ -256,12 +257,16 @@ public class SerializableController {
 
 	@RequestPart(HttpPart.DATABASE)
 	Serializable createDatabaseSerializable(
-			@RequestParameter(HttpParameter.REQUEST) String requestIndex)
+			@RequestParameter(HttpParameter.REQUEST) String requestIndex,
+			@RequestParameter(HttpParameter.PAGE) String page,
+			@RequestParameter(HttpParameter.SORT) String sortColumn)
 			throws SQLException, NamingException {
 		// par sécurité
 		Action.checkSystemActionsEnabled();
 		final int index = DatabaseInformations.parseRequestIndex(requestIndex);
-		return new DatabaseInformations(index);
+		// seulement une page de résultats est sérialisée vers le serveur de collecte
+		return new DatabaseInformations(index, DatabaseInformations.parsePage(page),
+				DatabaseInformations.parseSortColumn(sortColumn));
 	}
 
 	@RequestPart(HttpPart.CONNECTIONS)
@@ -356,12 +361,8 @@ public class SerializableController {
 
 	private Map<String, byte[]> convertJRobinsToImages(Collection<JRobin> jrobins, Range range,
 			int width, int height) throws IOException {
-		final Map<String, byte[]> images = new LinkedHashMap<String, byte[]>(jrobins.size());
-		for (final JRobin jrobin : jrobins) {
-			final byte[] image = jrobin.graph(range, width, height);
-			images.put(jrobin.getName(), image);
-		}
-		return images;
+		// courbes générées en parallèle, par exemple pour l'ihm Swing ou pour un serveur de collecte
+		return new JRobinGraphRenderer().graphs(jrobins, range, width, height);
 	}
 
 	public Serializable createDefaultSerializable(List<JavaInformations> javaInformationsList,
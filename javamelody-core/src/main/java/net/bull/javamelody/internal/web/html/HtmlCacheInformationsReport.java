@@ -25,6 +25,7 @@ import java.util.List;
 import net.bull.javamelody.internal.common.I18N;
 import net.bull.javamelody.internal.common.Parameters;
 import net.bull.javamelody.internal.model.CacheInformations;
+import net.bull.javamelody.internal.model.CacheKeysPage;
 
 /**
  * Partie du rapport html pour les caches de données.
@@ -163,10 +164,14 @@ public class HtmlCacheInformationsReport extends HtmlAbstractReport {
 		return false;
 	}
 
-	void writeCacheWithKeys(String cacheId, boolean withoutHeaders) throws IOException {
+	void writeCacheWithKeys(CacheKeysPage cacheKeysPage, boolean withoutHeaders)
+			throws IOException {
 		assert cacheInformationsList.size() == 1;
+		final String cacheId = cacheKeysPage.getCacheId();
+		final HtmlCacheKeysReport htmlCacheKeysReport = new HtmlCacheKeysReport(cacheKeysPage,
+				cacheInformationsList.get(0).getName(), "cacheKeys", "clear_cache_key", getWriter());
 		if (!withoutHeaders) {
-			writeBackAndRefreshLinksForCache(cacheId);
+			htmlCacheKeysReport.writeBackAndRefreshLinks();
 			writeln("<br/>");
 
 			writeTitle("caches.png",
@@ -175,70 +180,6 @@ public class HtmlCacheInformationsReport extends HtmlAbstractReport {
 		writeCaches(cacheInformationsList);
 
 		writeln("<br/><b>#Keys#</b>");
-		writeCacheKeys(cacheInformationsList.get(0));
-	}
-
-	private void writeBackAndRefreshLinksForCache(String cacheId) throws IOException {
-		writeln("<div class='noPrint'>");
-		writeln("<a href='javascript:history.back()'><img src='?resource=action_back.png' alt='#Retour#'/> #Retour#</a>&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;");
-		writeDirectly("<a href='?part=cacheKeys&amp;cacheId=" + urlEncode(cacheId) + "'>");
-		writeln("<img src='?resource=action_refresh.png' alt='#Actualiser#'/> #Actualiser#</a>");
-		writeln("</div>");
-	}
-
-	private void writeCacheKeys(CacheInformations cacheInformations) throws IOException {
-		final List<?> cacheKeys = cacheInformations.getCacheKeys();
-		assert cacheKeys != null;
-		if (cacheKeys.isEmpty()) {
-			write("<br/>#No_keys#");
-			return;
-		}
-		if (cacheKeys.size() > 20) {
-			writeln("<div align='right'>" + cacheKeys.size() + " #Keys#</div>");
-			writeln("<br/>");
-		}
-		final HtmlTable table = new HtmlTable();
-		table.beginTable(getString("Keys"));
-		write("<th>#Keys#</th>");
-		if (systemActionsEnabled) {
-			write("<th class='noPrint'>#Purger#</th>");
-		}
-		final String cacheNameEncoded = urlEncode(cacheInformations.getName());
-		final String csrfTokenUrlPart = getCsrfTokenUrlPart();
-		final String confirmClearCache = javascriptEncode(
-				getFormattedString("confirm_purge_cache", cacheInformations.getName()));
-		final String title = htmlEncode(
-				getFormattedString("Purge_cache", cacheInformations.getName()));
-		for (final Object key : cacheKeys) {
-			if (key != null) {
-				final String myKey = key.toString();
-				table.nextRow();
-				writeDirectly("<td>");
-				writeDirectly(htmlEncodeButNotSpace(myKey));
-				writeDirectly("</td>");
-				if (systemActionsEnabled) {
-					writeDirectly("<td class='noPrint' style='text-align: center;'>");
-					writeDirectly(
-							"<a href='?part=cacheKeys&amp;action=clear_cache_key&amp;cacheId=");
-					writeDirectly(cacheNameEncoded);
-					writeDirectly("&amp;cacheKey=");
-					writeDirectly(urlEncode(myKey));
-					writeDirectly(csrfTokenUrlPart);
-					writeDirectly("' onclick=\"javascript:return confirm('");
-					writeDirectly(confirmClearCache);
-					writeDirectly("');\">");
-					writeDirectly(
-							"<img src='?resource=user-trash.png' width='16' height='16' alt='");
-					writeDirectly(title);
-					writeDirectly("' title='");
-					writeDirectly(title);
-					writeDirectly("' /></a>");
-					writeDirectly("</td>");
-				}
-			}
-		}
-		table.endTable();
-		writeln("<br/>");
-		writeln("<div align='right'>" + cacheKeys.size() + " #Keys#</div>");
+		htmlCacheKeysReport.toHtml();
 	}
 }
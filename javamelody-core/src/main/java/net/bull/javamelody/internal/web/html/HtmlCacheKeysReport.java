@@ -0,0 +1,165 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.web.html;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import net.bull.javamelody.internal.common.Parameters;
+import net.bull.javamelody.internal.model.CacheKeysPage;
+
+/**
+ * Partie du rapport html pour une page de clés d'un cache (ehcache ou jcache),
+ * avec le filtre par préfixe et les liens vers les autres pages.
+ * @author Emeric Vernat
+ */
+class HtmlCacheKeysReport extends HtmlAbstractReport {
+	private final CacheKeysPage cacheKeysPage;
+	private final String cacheName;
+	private final String part;
+	private final String clearKeyAction;
+	private final boolean systemActionsEnabled = Parameters.isSystemActionsEnabled();
+
+	/**
+	 * Constructeur.
+	 * @param cacheKeysPage Page de clés
+	 * @param cacheName Nom du cache
+	 * @param part "cacheKeys" ou "jcacheKeys"
+	 * @param clearKeyAction "clear_cache_key" ou "clear_jcache_key"
+	 * @param writer Writer
+	 */
+	HtmlCacheKeysReport(CacheKeysPage cacheKeysPage, String cacheName, String part,
+			String clearKeyAction, Writer writer) {
+		super(writer);
+		assert cacheKeysPage != null;
+		assert cacheName != null;
+		assert part != null;
+		assert clearKeyAction != null;
+		this.cacheKeysPage = cacheKeysPage;
+		this.cacheName = cacheName;
+		this.part = part;
+		this.clearKeyAction = clearKeyAction;
+	}
+
+	@Override
+	void toHtml() throws IOException {
+		writePrefixForm();
+		writeKeys();
+	}
+
+	void writeBackAndRefreshLinks() throws IOException {
+		writeln("<div class='noPrint'>");
+		writeln("<a href='javascript:history.back()'><img src='?resource=action_back.png' alt='#Retour#'/> #Retour#</a>&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;");
+		writeDirectly("<a href='" + getPageUrl(cacheKeysPage.getCursor()) + "'>");
+		writeln("<img src='?resource=action_refresh.png' alt='#Actualiser#'/> #Actualiser#</a>");
+		writeln("</div>");
+	}
+
+	private void writePrefixForm() throws IOException {
+		writeln("<form name='cacheKeysForm' method='get' action='' class='noPrint'>");
+		writeln("<input type='hidden' name='part' value='" + part + "'/>");
+		writeDirectly("<input type='hidden' name='cacheId' value='"
+				+ htmlEncodeButNotSpace(cacheKeysPage.getCacheId()) + "'/>");
+		writeln("<label for='cacheKeysPrefix'>#Keys_prefix#</label>&nbsp;");
+		writeDirectly("<input type='text' size='30' id='cacheKeysPrefix' name='prefix' value='");
+		if (cacheKeysPage.getPrefix() != null) {
+			writeDirectly(htmlEncodeButNotSpace(cacheKeysPage.getPrefix()));
+		}
+		writeln("'/>&nbsp;<input type='submit' value='#ok#'/>");
+		writeln("</form>");
+	}
+
+	private void writeKeys() throws IOException {
+		final List<String> cacheKeys = cacheKeysPage.getKeys();
+		if (cacheKeys.isEmpty()) {
+			write("<br/>#No_keys#");
+			writePageLinks();
+			return;
+		}
+		if (cacheKeys.size() > 20) {
+			writePageLinks();
+			writeln("<br/>");
+		}
+		final HtmlTable table = new HtmlTable();
+		table.beginTable(getString("Keys"));
+		write("<th>#Keys#</th>");
+		if (systemActionsEnabled) {
+			write("<th class='noPrint'>#Purger#</th>");
+		}
+		final String clearKeyUrl = "?part=" + part + "&amp;action=" + clearKeyAction
+				+ "&amp;cacheId=" + urlEncode(cacheName) + "&amp;cacheKey=";
+		final String csrfTokenUrlPart = getCsrfTokenUrlPart();
+		final String confirmClearCache = javascriptEncode(
+				getFormattedString("confirm_purge_cache", cacheName));
+		final String title = htmlEncode(getFormattedString("Purge_cache", cacheName));
+		for (final String myKey : cacheKeys) {
+			table.nextRow();
+			writeDirectly("<td>");
+			writeDirectly(htmlEncodeButNotSpace(myKey));
+			writeDirectly("</td>");
+			if (systemActionsEnabled) {
+				writeDirectly("<td class='noPrint' style='text-align: center;'>");
+				writeDirectly("<a href='");
+				writeDirectly(clearKeyUrl);
+				writeDirectly(urlEncode(myKey));
+				writeDirectly(csrfTokenUrlPart);
+				writeDirectly("' onclick=\"javascript:return confirm('");
+				writeDirectly(confirmClearCache);
+				writeDirectly("');\">");
+				writeDirectly(
+						"<img src='?resource=user-trash.png' width='16' height='16' alt='");
+				writeDirectly(title);
+				writeDirectly("' title='");
+				writeDirectly(title);
+				writeDirectly("' /></a>");
+				writeDirectly("</td>");
+			}
+		}
+		table.endTable();
+		writeln("<br/>");
+		writePageLinks();
+	}
+
+	private void writePageLinks() throws IOException {
+		writeln("<div align='right' class='noPrint'>");
+		if (cacheKeysPage.getKeysCount() >= 0) {
+			// nombre total de clés seulement si le cache le fournit sans parcourir les clés
+			writeln(cacheKeysPage.getKeysCount() + " #Keys#&nbsp;&nbsp;&nbsp;");
+		}
+		if (cacheKeysPage.getCursor() > 0) {
+			writeln("<a href='" + getPageUrl(0) + "'>#Premiere_page#</a>");
+		}
+		if (cacheKeysPage.hasNextPage()) {
+			writeln("&nbsp;&nbsp;&nbsp;<a href='" + getPageUrl(cacheKeysPage.getNextCursor())
+					+ "'>#Page_suivante#</a>");
+		}
+		writeln("</div>");
+	}
+
+	private String getPageUrl(int cursor) {
+		String url = "?part=" + part + "&amp;cacheId=" + urlEncode(cacheKeysPage.getCacheId());
+		if (cacheKeysPage.getPrefix() != null) {
+			url += "&amp;prefix=" + urlEncode(cacheKeysPage.getPrefix());
+		}
+		if (cursor > 0) {
+			url += "&amp;cursor=" + cursor;
+		}
+		return url;
+	}
+}
@@ -42,10 +42,12 @@ import net.bull.javamelody.internal.model.Collector;
 import net.bull.javamelody.internal.model.CollectorServer;
 import net.bull.javamelody.internal.model.Counter;
 import net.bull.javamelody.internal.model.CounterRequestContext;
+import net.bull.javamelody.internal.model.HeapDumpCompressor;
 import net.bull.javamelody.internal.model.HsErrPid;
 import net.bull.javamelody.internal.model.JCacheInformations;
 import net.bull.javamelody.internal.model.JRobin;
 import net.bull.javamelody.internal.model.JavaInformations;
+import net.bull.javamelody.internal.model.JfrEvents;
 import net.bull.javamelody.internal.model.JobInformations;
 import net.bull.javamelody.internal.model.Period;
 import net.bull.javamelody.internal.model.Range;
@@ -68,6 +70,8 @@ class HtmlCoreReport extends HtmlAbstractReport {
 	private final CollectorServer collectorServer;
 	private final long start = System.currentTimeMillis();
 	private final Map<String, String> menuTextsByAnchorName = new LinkedHashMap<String, String>();
+	private final Map<String, Long> fragmentDurationsByLabel = new LinkedHashMap<String, Long>();
+	private boolean fragmentsOnDemand;
 
 	HtmlCoreReport(Collector collector, CollectorServer collectorServer,
 			List<JavaInformations> javaInformationsList, Range range, Writer writer) {
@@ -88,6 +92,23 @@ class HtmlCoreReport extends HtmlAbstractReport {
 	}
 
 	void toHtml(String message, String anchorNameForRedirect) throws IOException {
+		toHtml(message, anchorNameForRedirect, true);
+	}
+
+	/**
+	 * Écrit le rapport principal, partie par partie, en envoyant chaque partie au navigateur
+	 * dès qu'elle est prête.
+	 * @param message Message éventuel à afficher
+	 * @param anchorNameForRedirect Ancre éventuelle vers laquelle rediriger
+	 * @param onDemand true si les parties non visibles par défaut (détails des compteurs, threads)
+	 * sont chargées à la demande par des requêtes à part, false pour une page autonome
+	 * (par exemple pour le rapport enregistré à l'arrêt de l'application)
+	 * @throws IOException e
+	 */
+	void toHtml(String message, String anchorNameForRedirect, boolean onDemand)
+			throws IOException {
+		this.fragmentsOnDemand = onDemand;
+		long fragmentStart = start;
 		writeAlerts();
 		if (collectorServer != null) {
 			writeApplicationsLinks();
@@ -103,9 +124,11 @@ class HtmlCoreReport extends HtmlAbstractReport {
 		writeRefreshAndPeriodLinks(null, null);
 		writeGraphs();
 		writeln(END_DIV);
+		fragmentStart = endFragment(getString("Stats"), fragmentStart);
 
 		final List<Counter> counters = collector.getRangeCountersToBeDisplayed(range);
 		final Map<String, HtmlCounterReport> counterReportsByCounterName = writeCounters(counters);
+		fragmentStart = System.currentTimeMillis();
 
 		if (collectorServer == null) {
 			writeln("<h3 class='chapterTitle'><img src='?resource=hourglass.png' alt='#Requetes_en_cours#'/>");
@@ -114,6 +137,7 @@ class HtmlCoreReport extends HtmlAbstractReport {
 			// si on n'est pas sur le serveur de collecte il n'y a qu'un javaInformations
 			writeCurrentRequests(javaInformationsList.get(0), counters,
 					counterReportsByCounterName);
+			fragmentStart = endFragment(getString("Requetes_en_cours"), fragmentStart);
 		}
 
 		writeln("<h3 class='chapterTitle'><img src='?resource=systeminfo.png' alt='#Informations_systemes#'/>");
@@ -127,20 +151,26 @@ class HtmlCoreReport extends HtmlAbstractReport {
 		}
 		if (Parameters.isSystemActionsEnabled()) {
 			writeSystemActionsLinks();
+			if (collectorServer == null) {
+				writeHeapDumpCompression();
+			}
 		}
 
 		new HtmlJavaInformationsReport(javaInformationsList, getWriter()).toHtml();
+		fragmentStart = endFragment(getString("Informations_systemes"), fragmentStart);
 
 		writeln("<h3 class='chapterTitle' style='clear:both;'><img src='?resource=threads.png' alt='#Threads#'/>");
 		writeAnchor("threads", I18N.getString("Threads"));
 		writeln("#Threads#</h3>");
 		writeThreads();
+		fragmentStart = endFragment(getString("Threads"), fragmentStart);
 
 		if (isJobEnabled()) {
 			writeln("<h3 class='chapterTitle'><img src='?resource=jobs.png' alt='#Jobs#'/>");
 			writeAnchor("jobs", I18N.getString("Jobs"));
 			writeln("#Jobs#</h3>");
 			writeJobs(collector.getRangeCounter(range, Counter.JOB_COUNTER_NAME));
+			fragmentStart = endFragment(getString("Jobs"), fragmentStart);
 		}
 
 		if (isCacheEnabled()) {
@@ -155,6 +185,9 @@ class HtmlCoreReport extends HtmlAbstractReport {
 			writeln("#Caches#</h3>");
 			writeJCaches();
 		}
+		if (isCacheEnabled() || isJCacheEnabled()) {
+			endFragment(getString("Caches"), fragmentStart);
+		}
 		//		else if (JavaInformations.STACK_TRACES_ENABLED) {
 		//			// pour que les tooltips des stack traces s'affichent dans le scroll
 		//			writeln("<br/><br/><br/><br/>");
@@ -290,8 +323,10 @@ class HtmlCoreReport extends HtmlAbstractReport {
 			throws IOException {
 		final Map<String, HtmlCounterReport> counterReportsByCounterName = new HashMap<String, HtmlCounterReport>();
 		for (final Counter counter : counters) {
+			final long fragmentStart = System.currentTimeMillis();
 			final HtmlCounterReport htmlCounterReport = writeCounter(counter);
 			counterReportsByCounterName.put(counter.getName(), htmlCounterReport);
+			endFragment(getString(counter.getName() + "Label"), fragmentStart);
 		}
 
 		if (range.getPeriod() == Period.TOUT && counterReportsByCounterName.size() > 1) {
@@ -310,11 +345,31 @@ class HtmlCoreReport extends HtmlAbstractReport {
 	private HtmlCounterReport writeCounter(Counter counter) throws IOException {
 		writeCounterTitle(counter);
 		final HtmlCounterReport htmlCounterReport = new HtmlCounterReport(counter, range,
-				getWriter());
+				getWriter(), fragmentsOnDemand);
 		htmlCounterReport.toHtml();
 		return htmlCounterReport;
 	}
 
+	void writeCounterDetails(String counterName) throws IOException {
+		final Counter counter = collector.getRangeCounter(range, counterName);
+		new HtmlCounterReport(counter, range, getWriter()).writeDetails();
+	}
+
+	/**
+	 * Mémorise la durée d'écriture d'une partie du rapport et envoie au navigateur ce qui
+	 * est déjà écrit, pour qu'il commence l'affichage sans attendre la suite de la page.
+	 * @param label Libellé de la partie
+	 * @param fragmentStart Début de l'écriture de la partie en millisecondes
+	 * @return Fin de l'écriture de la partie, qui est le début de la suivante
+	 * @throws IOException e
+	 */
+	private long endFragment(String label, long fragmentStart) throws IOException {
+		final long end = System.currentTimeMillis();
+		fragmentDurationsByLabel.put(label, end - fragmentStart);
+		getWriter().flush();
+		return end;
+	}
+
 	private void writeCounterTitle(Counter counter) throws IOException {
 		writeln("<h3 class='chapterTitle'><img src='?resource=" + counter.getIconName() + "' alt='"
 				+ counter.getName() + "'/>");
@@ -544,17 +599,15 @@ class HtmlCoreReport extends HtmlAbstractReport {
 				final String id = "threads_" + i;
 				writeShowHideLink(id, "#Details#");
 				htmlThreadInformationsReport.writeDeadlocks();
-				writeln("<br/><br/><div id='" + id + "' style='display: none;'>");
-				htmlThreadInformationsReport.toHtml();
-
-				writeln("<div align='right' class='noPrint'><br/>");
-				if (javaInformations.isStackTraceEnabled()) {
-					writeln("<a href='?part=threadsDump'><img src='?resource=text.png' alt='#Dump_threads_en_texte#'/>&nbsp;#Dump_threads_en_texte#</a>");
+				if (fragmentsOnDemand) {
+					// la liste des threads sera chargée seulement si l'utilisateur l'affiche
+					writeln("<br/><br/><div id='" + id
+							+ "' style='display: none;' data-lazy-url='?part=threads&amp;format=htmlbody&amp;index="
+							+ i + "'>");
+				} else {
+					writeln("<br/><br/><div id='" + id + "' style='display: none;'>");
+					writeThreadsDetails(javaInformations, htmlThreadInformationsReport);
 				}
-				writeln(SEPARATOR);
-				writeln("<a href='?part=threads'><img src='?resource=threads.png' alt='#Threads#' width='16' height='16'/>&nbsp;#Voir_dans_une_nouvelle_page#</a>");
-				writeln("</div>");
-
 				writeln("</div><br/>");
 			} else {
 				// le nombre de threads dépasse le maximum pour être affiché dans le rapport
@@ -565,6 +618,31 @@ class HtmlCoreReport extends HtmlAbstractReport {
 		}
 	}
 
+	void writeThreadsDetails(int javaInformationsIndex) throws IOException {
+		if (javaInformationsIndex < 0 || javaInformationsIndex >= javaInformationsList.size()) {
+			// par exemple, une instance de l'application a été arrêtée depuis l'affichage de la page
+			return;
+		}
+		final JavaInformations javaInformations = javaInformationsList.get(javaInformationsIndex);
+		final HtmlThreadInformationsReport htmlThreadInformationsReport = new HtmlThreadInformationsReport(
+				javaInformations.getThreadInformationsList(),
+				javaInformations.isStackTraceEnabled(), getWriter());
+		writeThreadsDetails(javaInformations, htmlThreadInformationsReport);
+	}
+
+	private void writeThreadsDetails(JavaInformations javaInformations,
+			HtmlThreadInformationsReport htmlThreadInformationsReport) throws IOException {
+		htmlThreadInformationsReport.toHtml();
+
+		writeln("<div align='right' class='noPrint'><br/>");
+		if (javaInformations.isStackTraceEnabled()) {
+			writeln("<a href='?part=threadsDump'><img src='?resource=text.png' alt='#Dump_threads_en_texte#'/>&nbsp;#Dump_threads_en_texte#</a>");
+		}
+		writeln(SEPARATOR);
+		writeln("<a href='?part=threads'><img src='?resource=threads.png' alt='#Threads#' width='16' height='16'/>&nbsp;#Voir_dans_une_nouvelle_page#</a>");
+		writeln("</div>");
+	}
+
 	void writeCounterSummaryPerClass(String counterName, String requestId) throws IOException {
 		final Counter counter = collector.getRangeCounter(range, counterName);
 		writeln("<div class='noPrint'>");
@@ -720,6 +798,30 @@ class HtmlCoreReport extends HtmlAbstractReport {
 		writeCounter(rangeJobCounter);
 	}
 
+	private void writeHeapDumpCompression() throws IOException {
+		// avancement de la compression (et de l'upload S3) du dernier heap dump, en arrière-plan
+		final HeapDumpCompressor heapDumpCompressor = HeapDumpCompressor
+				.getLastHeapDumpCompressor();
+		if (heapDumpCompressor == null) {
+			return;
+		}
+		final String message;
+		if (heapDumpCompressor.getErrorMessage() != null) {
+			message = getFormattedString("heap_dump_compression_erreur",
+					heapDumpCompressor.getErrorMessage());
+		} else if (heapDumpCompressor.isDone()) {
+			message = getFormattedString("heap_dump_compression_terminee",
+					heapDumpCompressor.getGzipFile().getPath().replace('\\', '/'));
+		} else {
+			message = getFormattedString("heap_dump_compression_en_cours",
+					heapDumpCompressor.getPercentDone(),
+					heapDumpCompressor.getCompressedBytes() / 1024 / 1024);
+		}
+		writeln("<div align='center' class='noPrint'>");
+		writeDirectly(htmlEncodeButNotSpace(message));
+		writeln("</div>");
+	}
+
 	// CHECKSTYLE:OFF
 	private void writeSystemActionsLinks() throws IOException { // NOPMD
 		// CHECKSTYLE:ON
@@ -760,6 +862,11 @@ class HtmlCoreReport extends HtmlAbstractReport {
 			write("<a href='?part=hotspots'>");
 			writeln("<img src='?resource=clock.png' width='20' height='20' alt=\"#hotspots#\" /> #hotspots#</a>");
 		}
+		if (collectorServer == null && JfrEvents.isStarted()) {
+			writeln(separator);
+			write("<a href='?part=jvmEvents'>");
+			writeln("<img src='?resource=systemmonitor.png' width='20' height='20' alt=\"#jvm_events#\" /> #jvm_events#</a>");
+		}
 
 		writeln("<br />");
 		if (doesWebXmlExists()) {
@@ -957,7 +1064,20 @@ class HtmlCoreReport extends HtmlAbstractReport {
 		writeln("<a name='bottom'></a>");
 		writeln("<br/><div style='font-size: 11px;'>");
 		writeln("#temps_derniere_collecte#: " + collector.getLastCollectDuration() + " #ms#<br/>");
-		writeln("#temps_affichage#: " + displayDuration + " #ms#<br/>");
+		write("#temps_affichage#: " + displayDuration + " #ms#");
+		if (!fragmentDurationsByLabel.isEmpty()) {
+			writeln("&nbsp;&nbsp;&nbsp;");
+			writeShowHideLink("fragmentDurations", "#Details#");
+			writeln("<div id='fragmentDurations' style='display: none;'><div>");
+			for (final Map.Entry<String, Long> entry : fragmentDurationsByLabel.entrySet()) {
+				// writeDirectly pour ne pas gérer de traductions si le libellé contient '#'
+				writeDirectly("&nbsp;&nbsp;&nbsp;" + htmlEncodeButNotSpace(entry.getKey()));
+				writeln(": " + entry.getValue() + " #ms#<br/>");
+			}
+			writeln("</div></div>");
+		} else {
+			writeln("<br/>");
+		}
 		writeln("#Estimation_overhead_memoire#: < "
 				+ (collector.getEstimatedMemorySize() / 1024 / 1024 + 1) + " #Mo#");
 		writeln("<br/>#Usage_disque#: " + (collector.getDiskUsage() / 1024 / 1024 + 1) + " #Mo#");
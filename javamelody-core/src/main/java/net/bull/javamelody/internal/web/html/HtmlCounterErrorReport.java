@@ -20,11 +20,13 @@ package net.bull.javamelody.internal.web.html;
 import java.io.IOException;
 import java.io.Writer;
 import java.text.DateFormat;
+import java.text.DecimalFormat;
 import java.util.List;
 
 import net.bull.javamelody.internal.common.I18N;
 import net.bull.javamelody.internal.model.Counter;
 import net.bull.javamelody.internal.model.CounterError;
+import net.bull.javamelody.internal.model.CounterErrorGroup;
 
 /**
  * Partie du rapport html pour les erreurs http et dans les logs.
@@ -34,6 +36,7 @@ public class HtmlCounterErrorReport extends HtmlAbstractReport {
 	private final Counter counter;
 	private final DateFormat dateTimeFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT,
 			DateFormat.MEDIUM, I18N.getCurrentLocale());
+	private final DecimalFormat integerFormat = I18N.createIntegerFormat();
 
 	HtmlCounterErrorReport(Counter counter, Writer writer) {
 		super(writer);
@@ -49,10 +52,48 @@ public class HtmlCounterErrorReport extends HtmlAbstractReport {
 		if (errors.isEmpty()) {
 			writeln("#Aucune_erreur#");
 		} else {
+			writeErrorGroups(counter.getErrorGroups());
 			writeErrors(errors);
 		}
 	}
 
+	private void writeErrorGroups(List<CounterErrorGroup> errorGroups) throws IOException {
+		// vue groupée seulement s'il y a des erreurs répétées
+		boolean repeatedErrors = false;
+		long occurrences = 0;
+		for (final CounterErrorGroup errorGroup : errorGroups) {
+			repeatedErrors = repeatedErrors || errorGroup.getCount() > 1;
+			occurrences += errorGroup.getCount();
+		}
+		if (!repeatedErrors) {
+			return;
+		}
+		writeln("<div align='left'>");
+		writeDirectly(htmlEncodeButNotSpace(getFormattedString("erreurs_groupees", occurrences,
+				errorGroups.size())));
+		writeln("</div>");
+		final HtmlTable table = new HtmlTable();
+		table.beginTable(counter.getName() + "Groups");
+		write("<th class='sorttable_numeric'>#Occurrences#</th>");
+		write("<th class='sorttable_date'>#Premiere_occurrence#</th>");
+		write("<th class='sorttable_date'>#Derniere_occurrence#</th>");
+		write("<th>#Erreur#</th>");
+		final String nextColumnAlignRight = "</td><td align='right'>";
+		for (final CounterErrorGroup errorGroup : errorGroups) {
+			table.nextRow();
+			write("<td align='right'>");
+			write(integerFormat.format(errorGroup.getCount()));
+			write(nextColumnAlignRight);
+			write(dateTimeFormat.format(errorGroup.getFirstDate()));
+			write(nextColumnAlignRight);
+			write(dateTimeFormat.format(errorGroup.getLastDate()));
+			writeMessageAndStackTrace(errorGroup.getMessage(), errorGroup.getStackTrace());
+			write("</td>");
+		}
+		table.endTable();
+		writeln("<br/>");
+	}
+
 	private void writeErrors(List<CounterError> errors) throws IOException {
 		assert errors != null;
 		final boolean displayUser = shouldDisplayUser(errors);
@@ -100,25 +141,29 @@ public class HtmlCounterErrorReport extends HtmlAbstractReport {
 				writeDirectly(htmlEncode(error.getRemoteUser()));
 			}
 		}
-		if (error.getStackTrace() != null) {
+		writeMessageAndStackTrace(error.getMessage(), error.getStackTrace());
+		write("</td>");
+	}
+
+	private void writeMessageAndStackTrace(String message, String stackTrace) throws IOException {
+		if (stackTrace != null) {
 			write("</td><td>"); // pas wrappedText ici, sinon bug de largeur du tooltip sous IE11 en résolution réduite
 			writeln("<div class='tooltip'>");
 			writeln("<em>");
-			writeStackTrace(error);
+			writeStackTrace(stackTrace);
 			writeln("</em>");
 			// writeDirectly pour ne pas gérer de traductions si le message contient '#'
-			writeDirectly(htmlEncode(error.getMessage()));
+			writeDirectly(htmlEncode(message));
 			writeln("</div>");
 		} else {
 			write("</td><td class='wrappedText'>");
 			// writeDirectly pour ne pas gérer de traductions si le message contient '#'
-			writeDirectly(htmlEncode(error.getMessage()));
+			writeDirectly(htmlEncode(message));
 		}
-		write("</td>");
 	}
 
-	private void writeStackTrace(CounterError error) throws IOException {
-		for (final String element : error.getStackTrace().split("[\n\r]")) {
+	private void writeStackTrace(String stackTrace) throws IOException {
+		for (final String element : stackTrace.split("[\n\r]")) {
 			if (!element.isEmpty()) {
 				// writeDirectly pour ne pas gérer de traductions car les liens contiennent '#'
 				writeDirectly(HtmlSourceReport.htmlEncodeStackTraceElementAndTabs(element));
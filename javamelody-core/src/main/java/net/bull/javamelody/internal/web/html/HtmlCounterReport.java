@@ -44,10 +44,23 @@ public class HtmlCounterReport extends HtmlAbstractReport {
 	private final Range range;
 	private final CounterRequestAggregation counterRequestAggregation;
 	private final HtmlCounterRequestGraphReport htmlCounterRequestGraphReport;
+	private final boolean detailsOnDemand;
 	private final DecimalFormat systemErrorFormat = I18N.createPercentFormat();
 	private final DecimalFormat integerFormat = I18N.createIntegerFormat();
 
 	HtmlCounterReport(Counter counter, Range range, Writer writer) {
+		this(counter, range, writer, false);
+	}
+
+	/**
+	 * Constructeur.
+	 * @param counter Counter
+	 * @param range Range
+	 * @param writer Writer
+	 * @param detailsOnDemand true si le détail par requêtes, non visible par défaut, est chargé
+	 * à la demande par une requête à part (cf showHide et writeDetails) au lieu d'être inclus dans la page
+	 */
+	HtmlCounterReport(Counter counter, Range range, Writer writer, boolean detailsOnDemand) {
 		super(writer);
 		assert counter != null;
 		assert range != null;
@@ -55,6 +68,7 @@ public class HtmlCounterReport extends HtmlAbstractReport {
 		this.range = range;
 		this.counterRequestAggregation = new CounterRequestAggregation(counter);
 		this.htmlCounterRequestGraphReport = new HtmlCounterRequestGraphReport(range, writer);
+		this.detailsOnDemand = detailsOnDemand;
 	}
 
 	@Override
@@ -85,9 +99,16 @@ public class HtmlCounterReport extends HtmlAbstractReport {
 		writeSizeAndLinks(requests, globalRequest);
 
 		// 3. détails par requêtes (non visible par défaut)
-		writeln("<div id='details" + counterName + "' style='display: none;'>");
-		writeRequests(counterName, counter.getChildCounterName(), requests,
-				isRequestGraphDisplayed(counter), true, false);
+		if (detailsOnDemand) {
+			// le tableau de détails, qui peut contenir des milliers de requêtes,
+			// sera chargé seulement si l'utilisateur l'affiche (cf showHide)
+			writeln("<div id='details" + counterName
+					+ "' style='display: none;' data-lazy-url='?part=counterDetails&amp;counter="
+					+ counterName + "'>");
+		} else {
+			writeln("<div id='details" + counterName + "' style='display: none;'>");
+			writeDetails(requests);
+		}
 		writeln("</div>");
 
 		// 4. logs (non visible par défaut)
@@ -98,6 +119,20 @@ public class HtmlCounterReport extends HtmlAbstractReport {
 		}
 	}
 
+	void writeDetails() throws IOException {
+		final List<CounterRequest> requests = counterRequestAggregation.getRequests();
+		if (requests.isEmpty()) {
+			writeNoRequests();
+		} else {
+			writeDetails(requests);
+		}
+	}
+
+	private void writeDetails(List<CounterRequest> requests) throws IOException {
+		writeRequests(counter.getName(), counter.getChildCounterName(), requests,
+				isRequestGraphDisplayed(counter), true, false);
+	}
+
 	private void writeSizeAndLinks(List<CounterRequest> requests, CounterRequest globalRequest)
 			throws IOException {
 		final long end;
@@ -227,6 +262,14 @@ public class HtmlCounterReport extends HtmlAbstractReport {
 		if (counterRequestAggregation.isAllocatedKBytesDisplayed()) {
 			write("<th class='sorttable_numeric'>#Ko_alloues_moyens#</th>");
 		}
+		if (counterRequestAggregation.isContentionTimesDisplayed()) {
+			write("<th class='sorttable_numeric'>#Temps_bloque_moyen#</th>");
+			write("<th class='sorttable_numeric'>#Temps_attente_moyen#</th>");
+		}
+		if (counterRequestAggregation.isResultSetRowsDisplayed()) {
+			write("<th class='sorttable_numeric'>#Lignes_lues_moyennes#</th>");
+			write("<th class='sorttable_numeric'>#Temps_lecture_moyen#</th>");
+		}
 		if (!isErrorAndNotJobCounter()) {
 			write("<th class='sorttable_numeric'>#erreur_systeme#</th>");
 		}
@@ -284,6 +327,18 @@ public class HtmlCounterReport extends HtmlAbstractReport {
 			final int allocatedKBytesMean = request.getAllocatedKBytesMean();
 			write(integerFormat.format(allocatedKBytesMean));
 		}
+		if (counterRequestAggregation.isContentionTimesDisplayed()) {
+			write(nextColumn);
+			write(integerFormat.format(request.getBlockedTimeMean()));
+			write(nextColumn);
+			write(integerFormat.format(request.getWaitedTimeMean()));
+		}
+		if (counterRequestAggregation.isResultSetRowsDisplayed()) {
+			write(nextColumn);
+			write(integerFormat.format(request.getResultSetRowsMean()));
+			write(nextColumn);
+			write(integerFormat.format(request.getFetchDurationMean()));
+		}
 		if (!isErrorAndNotJobCounter()) {
 			write(nextColumn);
 			write(systemErrorFormat.format(request.getSystemErrorPercentage()));
@@ -32,11 +32,28 @@ class HtmlDatabaseInformationsReport extends HtmlAbstractReport {
 	static class TableReport extends HtmlAbstractReport {
 		private final String[][] values;
 		private final int nbColumns;
+		private final String sortUrl;
+		private final int sortColumn;
 
 		TableReport(String[][] values, int nbColumns, Writer writer) {
+			this(values, nbColumns, null, 0, writer);
+		}
+
+		/**
+		 * Constructeur.
+		 * @param values Valeurs avec les en-têtes en première ligne
+		 * @param nbColumns Nombre de tableaux côte à côte
+		 * @param sortUrl Url pour un tri de tout le résultat en cliquant sur les en-têtes (null si aucun)
+		 * @param sortColumn Colonne de tri courante (négatif si tri décroissant, 0 si aucun)
+		 * @param writer Writer
+		 */
+		TableReport(String[][] values, int nbColumns, String sortUrl, int sortColumn,
+				Writer writer) {
 			super(writer);
 			this.values = values.clone();
 			this.nbColumns = nbColumns;
+			this.sortUrl = sortUrl;
+			this.sortColumn = sortColumn;
 		}
 
 		@Override
@@ -79,10 +96,23 @@ class HtmlDatabaseInformationsReport extends HtmlAbstractReport {
 		}
 
 		private void writeTableHeaders(String[] headerValues) throws IOException {
+			int column = 1;
 			for (final String value : headerValues) {
 				write("<th>");
-				writeDirectly(value.replace("\n", "<br/>"));
+				if (sortUrl == null) {
+					writeDirectly(value.replace("\n", "<br/>"));
+				} else {
+					// tri par javamelody de toutes les lignes lues et non seulement de celles
+					// de la page affichée (pas par la base de données, car les requêtes
+					// ne sont pas toutes des select),
+					// croissant puis décroissant en cliquant une 2ème fois
+					final int newSortColumn = sortColumn == column ? -column : column;
+					writeDirectly("<a href='" + sortUrl + "&amp;sort=" + newSortColumn + "'>");
+					writeDirectly(value.replace("\n", "<br/>"));
+					writeDirectly("</a>");
+				}
 				write("</th>");
+				column++;
 			}
 		}
 
@@ -132,7 +162,41 @@ class HtmlDatabaseInformationsReport extends HtmlAbstractReport {
 
 		final String[][] values = databaseInformations.getResult();
 		final int nbColumns = databaseInformations.getNbColumns();
-		new TableReport(values, nbColumns, getWriter()).toHtml();
+		final String sortUrl;
+		if (nbColumns == 1) {
+			sortUrl = getDatabaseUrl() + "&amp;page=0";
+		} else {
+			sortUrl = null;
+		}
+		new TableReport(values, nbColumns, sortUrl, databaseInformations.getSortColumn(),
+				getWriter()).toHtml();
+		writePageLinks();
+	}
+
+	private String getDatabaseUrl() {
+		return "?part=database&amp;request=" + databaseInformations.getSelectedRequestIndex();
+	}
+
+	private String getPageUrl(int page) {
+		return getDatabaseUrl() + "&amp;page=" + page + "&amp;sort="
+				+ databaseInformations.getSortColumn();
+	}
+
+	private void writePageLinks() throws IOException {
+		final int page = databaseInformations.getPage();
+		if (page == 0 && !databaseInformations.hasNextPage()) {
+			return;
+		}
+		writeln("<div align='center' class='noPrint'>");
+		if (page > 0) {
+			writeln("<a href='" + getPageUrl(page - 1) + "'>#Page_precedente#</a>");
+		}
+		writeDirectly(
+				"&nbsp;&nbsp;" + getFormattedString("page_numero", page + 1) + "&nbsp;&nbsp;");
+		if (databaseInformations.hasNextPage()) {
+			writeln("<a href='" + getPageUrl(page + 1) + "'>#Page_suivante#</a>");
+		}
+		writeln("</div>");
 	}
 
 	private void writeLinks() throws IOException {
@@ -140,14 +204,12 @@ class HtmlDatabaseInformationsReport extends HtmlAbstractReport {
 		writeln("<a href='javascript:history.back()'><img src='?resource=action_back.png' alt='#Retour#'/> #Retour#</a>");
 		final String separator = "&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;";
 		writeln(separator);
-		writeln("<a href='?part=database&amp;request="
-				+ databaseInformations.getSelectedRequestIndex()
+		final String pageUrl = getPageUrl(databaseInformations.getPage());
+		writeln("<a href='" + pageUrl
 				+ "'><img src='?resource=action_refresh.png' alt='#Actualiser#'/> #Actualiser#</a>");
 		if (isPdfEnabled()) {
 			writeln(separator);
-			write("<a href='?part=database&amp;request="
-					+ databaseInformations.getSelectedRequestIndex()
-					+ "&amp;format=pdf' title='#afficher_PDF#'>");
+			write("<a href='" + pageUrl + "&amp;format=pdf' title='#afficher_PDF#'>");
 			write("<img src='?resource=pdf.png' alt='#PDF#'/> #PDF#</a>");
 		}
 		writeln(separator);
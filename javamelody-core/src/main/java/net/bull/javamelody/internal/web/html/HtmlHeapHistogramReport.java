@@ -21,25 +21,39 @@ import java.io.IOException;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import net.bull.javamelody.internal.common.I18N;
 import net.bull.javamelody.internal.model.Action;
 import net.bull.javamelody.internal.model.HeapHistogram;
 import net.bull.javamelody.internal.model.HeapHistogram.ClassInfo;
+import net.bull.javamelody.internal.model.HeapHistogramHistory;
+import net.bull.javamelody.internal.model.HeapHistogramHistory.ClassGrowth;
+import net.bull.javamelody.internal.model.HeapHistogramHistory.Snapshot;
 
 /**
  * Partie du rapport html pour l'histogramme mémoire.
  * @author Emeric Vernat
  */
 class HtmlHeapHistogramReport extends HtmlAbstractReport {
+	// nombre max de classes affichées dans les croissances
+	private static final int MAX_DISPLAYED_GROWTHS = 100;
 	private final HeapHistogram heapHistogram;
+	private final List<Snapshot> snapshots;
 	private final DecimalFormat integerFormat = I18N.createIntegerFormat();
 
 	HtmlHeapHistogramReport(HeapHistogram heapHistogram, Writer writer) {
+		this(heapHistogram, Collections.<Snapshot> emptyList(), writer);
+	}
+
+	HtmlHeapHistogramReport(HeapHistogram heapHistogram, List<Snapshot> snapshots,
+			Writer writer) {
 		super(writer);
 		assert heapHistogram != null;
+		assert snapshots != null;
 		this.heapHistogram = heapHistogram;
+		this.snapshots = snapshots;
 	}
 
 	@Override
@@ -56,13 +70,16 @@ class HtmlHeapHistogramReport extends HtmlAbstractReport {
 		final List<ClassInfo> heap = heapHistogram.getHeapHistogram();
 		final long totalHeapInstances = heapHistogram.getTotalHeapInstances();
 		final long totalHeapBytes = heapHistogram.getTotalHeapBytes();
-		writeln("#Classes#: " + integerFormat.format(heap.size()) + ',');
+		writeln("#Classes#: "
+				+ integerFormat.format(heap.size() + heapHistogram.getOtherHeapClassesCount())
+				+ ',');
 		writeln(separator);
 		writeln("#Instances#: " + integerFormat.format(totalHeapInstances) + ',');
 		writeln(separator);
 		writeln("#Kilo-Octets#: " + integerFormat.format(totalHeapBytes / 1024));
 		writeClassInfoSummaryAndDetails(heap, totalHeapInstances, totalHeapBytes, true,
 				heapHistogram.isSourceDisplayed());
+		writeGrowths();
 		final List<ClassInfo> permGen = heapHistogram.getPermGenHistogram();
 		if (!permGen.isEmpty()) {
 			// avec jrockit ou java 8, permGen est vide
@@ -108,12 +125,19 @@ class HtmlHeapHistogramReport extends HtmlAbstractReport {
 				detailsClassHistogram.add(classInfo);
 			}
 		}
-		writeClassInfo(detailsClassHistogram, totalInstances, totalBytes, heap, sourceDisplayed);
+		writeClassInfo(detailsClassHistogram, totalInstances, totalBytes, heap, sourceDisplayed,
+				heap && heapHistogram.getOtherHeapClassesCount() > 0);
 		writeln("</div>");
 	}
 
 	private void writeClassInfo(List<ClassInfo> classHistogram, long totalInstances,
 			long totalBytes, boolean heap, boolean sourceDisplayed) throws IOException {
+		writeClassInfo(classHistogram, totalInstances, totalBytes, heap, sourceDisplayed, false);
+	}
+
+	private void writeClassInfo(List<ClassInfo> classHistogram, long totalInstances,
+			long totalBytes, boolean heap, boolean sourceDisplayed, boolean otherClassesDisplayed)
+			throws IOException {
 		final HtmlTable table = new HtmlTable();
 		table.beginTable(getString("histogramme"));
 		write("<th>#Classe#</th><th>#Taille#</th><th>#pct_taille#</th>"
@@ -123,9 +147,83 @@ class HtmlHeapHistogramReport extends HtmlAbstractReport {
 			table.nextRow();
 			writeClassInfoRow(classInfo, totalInstances, totalBytes, heap, sourceDisplayed);
 		}
+		if (otherClassesDisplayed) {
+			table.nextRow();
+			writeOtherClassesRow(totalInstances, totalBytes, sourceDisplayed);
+		}
 		table.endTable();
 	}
 
+	private void writeOtherClassesRow(long totalInstances, long totalBytes,
+			boolean sourceDisplayed) throws IOException {
+		// classes agrégées au-delà du paramètre heap-histo-max-classes
+		write("<td><i>" + getFormattedString("heap_histo_autres_classes",
+				integerFormat.format(heapHistogram.getOtherHeapClassesCount())) + "</i>");
+		final String nextColumnAlignRight = "</td><td align='right'>";
+		writeDirectly(nextColumnAlignRight);
+		final long bytes = heapHistogram.getOtherHeapBytes();
+		final long instancesCount = heapHistogram.getOtherHeapInstances();
+		writeDirectly(integerFormat.format(bytes / 1024));
+		writeDirectly(nextColumnAlignRight);
+		writeDirectly(integerFormat.format(bytes * 100 / totalBytes));
+		writeDirectly(nextColumnAlignRight);
+		writeDirectly(integerFormat.format(instancesCount));
+		writeDirectly(nextColumnAlignRight);
+		writeDirectly(integerFormat.format(instancesCount * 100 / totalInstances));
+		writeDirectly("</td>");
+		if (sourceDisplayed) {
+			writeDirectly("<td>&nbsp;</td>");
+		}
+	}
+
+	private void writeGrowths() throws IOException {
+		if (snapshots.isEmpty()) {
+			return;
+		}
+		// classes du heap dont la taille augmente depuis le plus ancien instantané :
+		// en gras celles qui augmentent à chaque instantané (fuite mémoire probable)
+		final List<ClassGrowth> growths = HeapHistogramHistory.computeGrowths(heapHistogram,
+				snapshots);
+		final String oldestSnapshotTime = I18N.createDateAndTimeFormat()
+				.format(snapshots.get(0).getTime());
+		writeln("<br/><br/><b>" + getFormattedString("heap_histo_croissance",
+				oldestSnapshotTime, integerFormat.format(snapshots.size())) + "</b>");
+		if (growths.isEmpty()) {
+			writeln("<br/>#heap_histo_aucune_croissance#");
+			return;
+		}
+		writeln("<div align='right'>");
+		writeShowHideLink("detailsGrowths", "#Details#");
+		writeln("&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;");
+		writeln("</div><div id='detailsGrowths' style='display:none;'>");
+		final HtmlTable table = new HtmlTable();
+		table.beginTable(getString("heap_histo_croissances"));
+		write("<th>#Classe#</th><th>#Taille#</th><th>#Croissance#</th>"
+				+ "<th>#Croissances_successives#</th>");
+		final String nextColumnAlignRight = "</td><td align='right'>";
+		final int count = Math.min(growths.size(), MAX_DISPLAYED_GROWTHS);
+		for (final ClassGrowth growth : growths.subList(0, count)) {
+			table.nextRow();
+			final boolean steadilyGrowing = growth.isSteadilyGrowing();
+			if (steadilyGrowing) {
+				writeDirectly("<td class='severe'>");
+			} else {
+				writeDirectly("<td>");
+			}
+			writeDirectly(HtmlSourceReport.addLinkToClassName(growth.getName()));
+			writeDirectly(nextColumnAlignRight);
+			writeDirectly(integerFormat.format(growth.getBytes() / 1024));
+			writeDirectly(nextColumnAlignRight);
+			writeDirectly('+' + integerFormat.format(growth.getDeltaBytes() / 1024));
+			writeDirectly(nextColumnAlignRight);
+			writeDirectly(integerFormat.format(growth.getGrowthsCount()) + " / "
+					+ integerFormat.format(growth.getIntervalsCount()));
+			writeDirectly("</td>");
+		}
+		table.endTable();
+		writeln("</div>");
+	}
+
 	private void writeClassInfoRow(ClassInfo classInfo, long totalInstances, long totalBytes,
 			boolean heap, boolean sourceDisplayed) throws IOException {
 		writeDirectly("<td>");
@@ -24,6 +24,7 @@ import java.util.List;
 
 import net.bull.javamelody.internal.common.I18N;
 import net.bull.javamelody.internal.common.Parameters;
+import net.bull.javamelody.internal.model.CacheKeysPage;
 import net.bull.javamelody.internal.model.JCacheInformations;
 
 /**
@@ -143,10 +144,15 @@ public class HtmlJCacheInformationsReport extends HtmlAbstractReport {
 		return false;
 	}
 
-	void writeJCacheWithKeys(String cacheId, boolean withoutHeaders) throws IOException {
+	void writeJCacheWithKeys(CacheKeysPage cacheKeysPage, boolean withoutHeaders)
+			throws IOException {
 		assert jcacheInformationsList.size() == 1;
+		final String cacheId = cacheKeysPage.getCacheId();
+		final HtmlCacheKeysReport htmlCacheKeysReport = new HtmlCacheKeysReport(cacheKeysPage,
+				jcacheInformationsList.get(0).getName(), "jcacheKeys", "clear_jcache_key",
+				getWriter());
 		if (!withoutHeaders) {
-			writeBackAndRefreshLinksForCache(cacheId);
+			htmlCacheKeysReport.writeBackAndRefreshLinks();
 			writeln("<br/>");
 
 			writeTitle("caches.png",
@@ -155,70 +161,6 @@ public class HtmlJCacheInformationsReport extends HtmlAbstractReport {
 		writeJCaches(jcacheInformationsList);
 
 		writeln("<br/><b>#Keys#</b>");
-		writeJCacheKeys(jcacheInformationsList.get(0));
-	}
-
-	private void writeBackAndRefreshLinksForCache(String cacheId) throws IOException {
-		writeln("<div class='noPrint'>");
-		writeln("<a href='javascript:history.back()'><img src='?resource=action_back.png' alt='#Retour#'/> #Retour#</a>&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;");
-		writeDirectly("<a href='?part=jcacheKeys&amp;cacheId=" + urlEncode(cacheId) + "'>");
-		writeln("<img src='?resource=action_refresh.png' alt='#Actualiser#'/> #Actualiser#</a>");
-		writeln("</div>");
-	}
-
-	private void writeJCacheKeys(JCacheInformations jcacheInformations) throws IOException {
-		final List<?> cacheKeys = jcacheInformations.getCacheKeys();
-		assert cacheKeys != null;
-		if (cacheKeys.isEmpty()) {
-			write("<br/>#No_keys#");
-			return;
-		}
-		if (cacheKeys.size() > 20) {
-			writeln("<div align='right'>" + cacheKeys.size() + " #Keys#</div>");
-			writeln("<br/>");
-		}
-		final HtmlTable table = new HtmlTable();
-		table.beginTable(getString("Keys"));
-		write("<th>#Keys#</th>");
-		if (systemActionsEnabled) {
-			write("<th class='noPrint'>#Purger#</th>");
-		}
-		final String cacheNameEncoded = urlEncode(jcacheInformations.getName());
-		final String csrfTokenUrlPart = getCsrfTokenUrlPart();
-		final String confirmClearCache = javascriptEncode(
-				getFormattedString("confirm_purge_cache", jcacheInformations.getName()));
-		final String title = htmlEncode(
-				getFormattedString("Purge_cache", jcacheInformations.getName()));
-		for (final Object key : cacheKeys) {
-			if (key != null) {
-				final String myKey = key.toString();
-				table.nextRow();
-				writeDirectly("<td>");
-				writeDirectly(htmlEncodeButNotSpace(myKey));
-				writeDirectly("</td>");
-				if (systemActionsEnabled) {
-					writeDirectly("<td class='noPrint' style='text-align: center;'>");
-					writeDirectly(
-							"<a href='?part=jcacheKeys&amp;action=clear_jcache_key&amp;cacheId=");
-					writeDirectly(cacheNameEncoded);
-					writeDirectly("&amp;cacheKey=");
-					writeDirectly(urlEncode(myKey));
-					writeDirectly(csrfTokenUrlPart);
-					writeDirectly("' onclick=\"javascript:return confirm('");
-					writeDirectly(confirmClearCache);
-					writeDirectly("');\">");
-					writeDirectly(
-							"<img src='?resource=user-trash.png' width='16' height='16' alt='");
-					writeDirectly(title);
-					writeDirectly("' title='");
-					writeDirectly(title);
-					writeDirectly("' /></a>");
-					writeDirectly("</td>");
-				}
-			}
-		}
-		table.endTable();
-		writeln("<br/>");
-		writeln("<div align='right'>" + cacheKeys.size() + " #Keys#</div>");
+		htmlCacheKeysReport.toHtml();
 	}
 }
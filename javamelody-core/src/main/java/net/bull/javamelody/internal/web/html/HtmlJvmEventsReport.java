@@ -0,0 +1,124 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.web.html;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.util.Map;
+
+import net.bull.javamelody.internal.common.I18N;
+import net.bull.javamelody.internal.model.JfrEvents;
+
+/**
+ * Partie du rapport html pour les événements de la JVM lus par le JDK Flight Recorder.
+ * @author Emeric Vernat
+ */
+class HtmlJvmEventsReport extends HtmlAbstractReport {
+	private final DecimalFormat integerFormat = I18N.createIntegerFormat();
+
+	HtmlJvmEventsReport(Writer writer) {
+		super(writer);
+	}
+
+	@Override
+	void toHtml() throws IOException {
+		writeLinks();
+		writeln("<br/>");
+
+		writeTitle("systemmonitor.png", getString("jvm_events"));
+		if (!JfrEvents.isStarted()) {
+			writeln("#Aucun_evenement#");
+			return;
+		}
+		writeGcPauses();
+		writeSafepoints();
+		writeValuesByClass(getString("monitor_blocked"), "#Temps_cumule#",
+				JfrEvents.getMonitorBlockedMillisByClass(), 1);
+		writeValuesByClass(getString("allocations_by_class"), "#Kilo-Octets#",
+				JfrEvents.getAllocatedBytesByClass(), 1024);
+	}
+
+	private void writeGcPauses() throws IOException {
+		writeln("<br/><b>#gc_pauses#</b>&nbsp;&nbsp;&nbsp;");
+		writeln("#Temps_cumule#: " + integerFormat.format(JfrEvents.getGcPausesMillis()));
+		final long[] counts = JfrEvents.getGcPausesCounts();
+		final long[] buckets = JfrEvents.GC_PAUSES_BUCKETS_MILLIS;
+		final HtmlTable table = new HtmlTable();
+		table.beginTable(getString("gc_pauses"));
+		write("<th>#Duree_pause#</th><th class='sorttable_numeric'>#Nombre#</th>");
+		for (int i = 0; i < counts.length; i++) {
+			table.nextRow();
+			final String duration;
+			if (i < buckets.length) {
+				duration = "&lt; " + integerFormat.format(buckets[i]) + " ms";
+			} else {
+				duration = "&gt;= " + integerFormat.format(buckets[buckets.length - 1]) + " ms";
+			}
+			write("<td>");
+			writeDirectly(duration);
+			write("</td><td align='right'>");
+			write(integerFormat.format(counts[i]));
+			write("</td>");
+		}
+		table.endTable();
+	}
+
+	private void writeSafepoints() throws IOException {
+		writeln("<br/><b>#safepoints#</b>&nbsp;&nbsp;&nbsp;");
+		writeln("#Nombre#: " + integerFormat.format(JfrEvents.getSafepointsCount()) + ',');
+		writeln("&nbsp;&nbsp;&nbsp;");
+		writeln("#Temps_cumule#: " + integerFormat.format(JfrEvents.getSafepointsMillis())
+				+ ',');
+		writeln("&nbsp;&nbsp;&nbsp;");
+		writeln("#Temps_max#: " + integerFormat.format(JfrEvents.getMaxSafepointMillis()));
+		writeln("<br/>");
+	}
+
+	private void writeValuesByClass(String title, String valueHeader,
+			Map<String, long[]> valuesByClass, long divisor) throws IOException {
+		writeln("<br/><b>" + htmlEncodeButNotSpace(title) + "</b>");
+		if (valuesByClass.isEmpty()) {
+			writeln("<br/>#Aucun_evenement#<br/>");
+			return;
+		}
+		final HtmlTable table = new HtmlTable();
+		table.beginTable(title);
+		write("<th>#Classe#</th><th class='sorttable_numeric'>#Echantillons#</th>");
+		write("<th class='sorttable_numeric'>" + valueHeader + "</th>");
+		for (final Map.Entry<String, long[]> entry : valuesByClass.entrySet()) {
+			table.nextRow();
+			write("<td>");
+			writeDirectly(htmlEncodeButNotSpace(entry.getKey()));
+			write("</td><td align='right'>");
+			write(integerFormat.format(entry.getValue()[0]));
+			write("</td><td align='right'>");
+			write(integerFormat.format(entry.getValue()[1] / divisor));
+			write("</td>");
+		}
+		table.endTable();
+	}
+
+	void writeLinks() throws IOException {
+		writeln("<div class='noPrint'>");
+		writeln("<a href='javascript:history.back()'><img src='?resource=action_back.png' alt='#Retour#'/> #Retour#</a>");
+		writeln("&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;");
+		writeln("<a href='?part=jvmEvents'><img src='?resource=action_refresh.png' alt='#Actualiser#'/> #Actualiser#</a>");
+		writeln("</div>");
+	}
+}
@@ -100,7 +100,17 @@ class HtmlMBeansReport extends HtmlAbstractReport {
 		String mbeanName = mbean.getName();
 		final String mbeanId = getNextId();
 		final int indexOfComma = mbeanName.indexOf(',');
-		if (indexOfComma != -1) {
+		if (mbean.getAttributes() == null) {
+			// description et attributs chargés à la demande si l'utilisateur affiche le MBean
+			// (cf showHide), pour ne pas lire les attributs de milliers de MBeans
+			final int indexOfLabel = indexOfComma != -1 ? indexOfComma : mbeanName.indexOf(':');
+			writePrintedShowHideLink(mbeanId,
+					htmlEncodeButNotSpace(mbeanName.substring(indexOfLabel + 1)));
+			writeln("<div id='" + mbeanId
+					+ "' style='display: none; margin-left: 20px;' data-lazy-url='?part=mbeans&amp;format=htmlbody&amp;mbean="
+					+ urlEncode(mbeanName) + "'>");
+			writeln("</div>");
+		} else if (indexOfComma != -1) {
 			mbeanName = mbeanName.substring(indexOfComma + 1);
 			writePrintedShowHideLink(mbeanId, htmlEncodeButNotSpace(mbeanName));
 			writeln("<div id='" + mbeanId + "' style='display: none; margin-left: 20px;'>");
@@ -113,7 +123,7 @@ class HtmlMBeansReport extends HtmlAbstractReport {
 		}
 	}
 
-	private void writeAttributes(MBeanNode mbean) throws IOException {
+	void writeAttributes(MBeanNode mbean) throws IOException {
 		final String description = mbean.getDescription();
 		final List<MBeanAttribute> attributes = mbean.getAttributes();
 		if (description != null || !attributes.isEmpty()) {
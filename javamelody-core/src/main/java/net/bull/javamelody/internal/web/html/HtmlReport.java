@@ -34,6 +34,7 @@ import net.bull.javamelody.internal.common.I18N;
 import net.bull.javamelody.internal.common.InputOutput;
 import net.bull.javamelody.internal.common.Parameters;
 import net.bull.javamelody.internal.model.CacheInformations;
+import net.bull.javamelody.internal.model.CacheKeysPage;
 import net.bull.javamelody.internal.model.Collector;
 import net.bull.javamelody.internal.model.CollectorServer;
 import net.bull.javamelody.internal.model.ConnectionInformations;
@@ -41,6 +42,7 @@ import net.bull.javamelody.internal.model.Counter;
 import net.bull.javamelody.internal.model.CounterRequestContext;
 import net.bull.javamelody.internal.model.DatabaseInformations;
 import net.bull.javamelody.internal.model.HeapHistogram;
+import net.bull.javamelody.internal.model.HeapHistogramHistory.Snapshot;
 import net.bull.javamelody.internal.model.HsErrPid;
 import net.bull.javamelody.internal.model.JCacheInformations;
 import net.bull.javamelody.internal.model.JavaInformations;
@@ -106,7 +108,8 @@ public class HtmlReport extends HtmlAbstractReport {
 
 	public void writeLastShutdown() throws IOException {
 		writeHtmlHeader(false, true);
-		htmlCoreReport.toHtml(null, null);
+		// page autonome sans parties chargées à la demande, puisque l'application sera arrêtée
+		htmlCoreReport.toHtml(null, null, false);
 		writeHtmlFooter();
 	}
 
@@ -143,6 +146,16 @@ public class HtmlReport extends HtmlAbstractReport {
 		writeHtmlFooter();
 	}
 
+	public void writeThreadsDetails(int javaInformationsIndex) throws IOException {
+		// pas de header ni de footer, cette partie est chargée à la demande dans la page principale
+		htmlCoreReport.writeThreadsDetails(javaInformationsIndex);
+	}
+
+	public void writeCounterDetails(String counterName) throws IOException {
+		// pas de header ni de footer, cette partie est chargée à la demande dans la page principale
+		htmlCoreReport.writeCounterDetails(counterName);
+	}
+
 	public void writeThreadsDump() throws IOException {
 		htmlCoreReport.writeThreadsDump();
 	}
@@ -246,6 +259,21 @@ public class HtmlReport extends HtmlAbstractReport {
 	private void writeJavaScript() throws IOException {
 		writeln(SCRIPT_BEGIN);
 		writeln("function showHide(id){");
+		writeln("  var lazyUrl = document.getElementById(id).getAttribute('data-lazy-url');");
+		writeln("  if (lazyUrl != null && typeof Ajax != 'undefined') {");
+		// partie chargée à la demande la première fois qu'elle est affichée, puis gardée dans la page
+		writeln("    document.getElementById(id).removeAttribute('data-lazy-url');");
+		writeln("    new Ajax.Updater(id, lazyUrl, { method: 'get', onComplete: function() {");
+		writeln("      var tables = document.getElementById(id).getElementsByTagName('table');");
+		writeln("      for (var i = 0; i < tables.length; i++) {");
+		writeln("        if (/\\bsortable\\b/.test(tables[i].className)) {");
+		writeln("          sorttable.makeSortable(tables[i]);");
+		writeln("        }");
+		writeln("      }");
+		writeln("      showHide(id);");
+		writeln("    } });");
+		writeln("    return;");
+		writeln("  }");
 		writeln("  if (document.getElementById(id).style.display=='none') {");
 		writeln("    if (document.getElementById(id + 'Img') != null) {");
 		writeln("      document.getElementById(id + 'Img').src='?resource=bullets/minus.png';");
@@ -325,12 +353,24 @@ public class HtmlReport extends HtmlAbstractReport {
 		writeHtmlFooter();
 	}
 
+	public void writeJvmEvents() throws IOException {
+		writeHtmlHeader();
+		new HtmlJvmEventsReport(getWriter()).toHtml();
+		writeHtmlFooter();
+	}
+
 	public void writeHeapHistogram(HeapHistogram heapHistogram, String message,
 			String heapHistoPart) throws IOException {
+		writeHeapHistogram(heapHistogram, Collections.<Snapshot> emptyList(), message,
+				heapHistoPart);
+	}
+
+	public void writeHeapHistogram(HeapHistogram heapHistogram, List<Snapshot> snapshots,
+			String message, String heapHistoPart) throws IOException {
 		assert heapHistogram != null;
 		writeHtmlHeader();
 		writeMessageIfNotNull(message, heapHistoPart);
-		new HtmlHeapHistogramReport(heapHistogram, getWriter()).toHtml();
+		new HtmlHeapHistogramReport(heapHistogram, snapshots, getWriter()).toHtml();
 		writeHtmlFooter();
 	}
 
@@ -396,6 +436,11 @@ public class HtmlReport extends HtmlAbstractReport {
 		writeHtmlFooter();
 	}
 
+	public void writeMBeanAttributes(MBeanNode mbean) throws IOException {
+		// pas de header ni de footer, cette partie est chargée à la demande dans l'arbre des MBeans
+		new HtmlMBeansReport(Collections.singletonList(mbean), getWriter()).writeAttributes(mbean);
+	}
+
 	public void writeMBeans(Map<String, List<MBeanNode>> mbeansByTitle) throws IOException {
 		assert mbeansByTitle != null;
 		writeHtmlHeader();
@@ -412,32 +457,36 @@ public class HtmlReport extends HtmlAbstractReport {
 	}
 
 	public void writeCacheWithKeys(String cacheId, CacheInformations cacheInformations,
-			String message, String cacheKeyPart, boolean withoutHeaders) throws IOException {
+			CacheKeysPage cacheKeysPage, String message, String cacheKeyPart,
+			boolean withoutHeaders) throws IOException {
 		assert cacheId != null;
 		assert cacheInformations != null;
+		assert cacheKeysPage != null;
 		final HtmlCacheInformationsReport htmlCacheInformationsReport = new HtmlCacheInformationsReport(
 				Collections.singletonList(cacheInformations), getWriter());
 		if (withoutHeaders) {
-			htmlCacheInformationsReport.writeCacheWithKeys(cacheId, withoutHeaders);
+			htmlCacheInformationsReport.writeCacheWithKeys(cacheKeysPage, withoutHeaders);
 		} else {
 			writeHtmlHeader();
-			htmlCacheInformationsReport.writeCacheWithKeys(cacheId, withoutHeaders);
+			htmlCacheInformationsReport.writeCacheWithKeys(cacheKeysPage, withoutHeaders);
 			writeHtmlFooter();
 			writeMessageIfNotNull(message, cacheKeyPart);
 		}
 	}
 
 	public void writeJCacheWithKeys(String cacheId, JCacheInformations jcacheInformations,
-			String message, String cacheKeyPart, boolean withoutHeaders) throws IOException {
+			CacheKeysPage cacheKeysPage, String message, String cacheKeyPart,
+			boolean withoutHeaders) throws IOException {
 		assert cacheId != null;
 		assert jcacheInformations != null;
+		assert cacheKeysPage != null;
 		final HtmlJCacheInformationsReport htmlJCacheInformationsReport = new HtmlJCacheInformationsReport(
 				Collections.singletonList(jcacheInformations), getWriter());
 		if (withoutHeaders) {
-			htmlJCacheInformationsReport.writeJCacheWithKeys(cacheId, withoutHeaders);
+			htmlJCacheInformationsReport.writeJCacheWithKeys(cacheKeysPage, withoutHeaders);
 		} else {
 			writeHtmlHeader();
-			htmlJCacheInformationsReport.writeJCacheWithKeys(cacheId, withoutHeaders);
+			htmlJCacheInformationsReport.writeJCacheWithKeys(cacheKeysPage, withoutHeaders);
 			writeHtmlFooter();
 			writeMessageIfNotNull(message, cacheKeyPart);
 		}
@@ -42,6 +42,7 @@ import net.bull.javamelody.internal.model.Counter;
 import net.bull.javamelody.internal.model.CounterRequestContext;
 import net.bull.javamelody.internal.model.JCacheInformations;
 import net.bull.javamelody.internal.model.JRobin;
+import net.bull.javamelody.internal.model.JRobinGraphRenderer;
 import net.bull.javamelody.internal.model.JavaInformations;
 import net.bull.javamelody.internal.model.JobInformations;
 import net.bull.javamelody.internal.model.Period;
@@ -67,6 +68,8 @@ public class PdfCoreReport extends PdfAbstractReport {
 	private final Font cellFont = PdfFonts.TABLE_CELL.getFont();
 	private final Font boldFont = PdfFonts.BOLD.getFont();
 	private final long start = System.currentTimeMillis();
+	// courbes générées en parallèle, avec un délai maximum pour tout le rapport à partir de maintenant
+	private final JRobinGraphRenderer graphRenderer = new JRobinGraphRenderer();
 	private Map<String, byte[]> smallGraphs;
 	private Map<String, byte[]> smallOtherGraphs;
 	private Map<String, byte[]> largeGraphs;
@@ -222,17 +225,18 @@ public class PdfCoreReport extends PdfAbstractReport {
 		jrobinParagraph.setAlignment(Element.ALIGN_CENTER);
 		jrobinParagraph.add(new Phrase("\n\n\n\n"));
 		final Collection<byte[]> graphs;
+		final int omittedGraphsCount;
 		if (mySmallGraphs != null) {
 			// si les graphiques ont été préinitialisés (en Swing) alors on les utilise
 			graphs = mySmallGraphs.values();
+			omittedGraphsCount = 0;
 		} else {
 			if (jrobins.isEmpty()) {
 				return;
 			}
-			graphs = new ArrayList<byte[]>(jrobins.size());
-			for (final JRobin jrobin : jrobins) {
-				graphs.add(jrobin.graph(range, SMALL_GRAPH_WIDTH, SMALL_GRAPH_HEIGHT));
-			}
+			graphs = graphRenderer.graphs(jrobins, range, SMALL_GRAPH_WIDTH, SMALL_GRAPH_HEIGHT)
+					.values();
+			omittedGraphsCount = jrobins.size() - graphs.size();
 		}
 		int i = 0;
 		for (final byte[] graph : graphs) {
@@ -247,6 +251,11 @@ public class PdfCoreReport extends PdfAbstractReport {
 			i++;
 		}
 		jrobinParagraph.add(new Phrase("\n"));
+		if (omittedGraphsCount > 0) {
+			jrobinParagraph.add(new Phrase(
+					getFormattedString("courbes_omises_delai", omittedGraphsCount) + '\n',
+					boldFont));
+		}
 		addToDocument(jrobinParagraph);
 	}
 
@@ -269,12 +278,19 @@ public class PdfCoreReport extends PdfAbstractReport {
 			if (counterJRobins.isEmpty()) {
 				return;
 			}
-			for (final JRobin jrobin : counterJRobins) {
-				// la hauteur de l'image est prévue pour qu'il n'y ait pas de graph seul sur une page
-				final Image image = Image
-						.getInstance(jrobin.graph(range, LARGE_GRAPH_WIDTH, LARGE_GRAPH_HEIGHT));
+			// la hauteur de l'image est prévue pour qu'il n'y ait pas de graph seul sur une page
+			final Collection<byte[]> graphs = graphRenderer
+					.graphs(counterJRobins, range, LARGE_GRAPH_WIDTH, LARGE_GRAPH_HEIGHT).values();
+			for (final byte[] imageData : graphs) {
+				final Image image = Image.getInstance(imageData);
 				jrobinTable.addCell(image);
 			}
+			final int omittedGraphsCount = counterJRobins.size() - graphs.size();
+			if (omittedGraphsCount > 0) {
+				// délai dépassé : les courbes manquantes sont signalées plutôt qu'absentes sans rien dire
+				jrobinTable.addCell(new Phrase(
+						getFormattedString("courbes_omises_delai", omittedGraphsCount), boldFont));
+			}
 		}
 		newPage();
 		addToDocument(jrobinTable);
@@ -26,6 +26,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
@@ -33,6 +34,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
@@ -40,6 +42,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Timer;
 import java.util.logging.Logger;
 
 import javax.naming.Context;
@@ -52,7 +55,12 @@ import org.apache.tomcat.dbcp.dbcp.BasicDataSource;
 import org.junit.Before;
 import org.junit.Test;
 
+import net.bull.javamelody.internal.common.Parameters;
+import net.bull.javamelody.internal.model.Collector;
 import net.bull.javamelody.internal.model.ConnectionInformations;
+import net.bull.javamelody.internal.model.Counter;
+import net.bull.javamelody.internal.model.CounterRequest;
+import net.bull.javamelody.internal.model.JRobin;
 
 /**
  * Test unitaire de la classe JdbcWrapper.
@@ -420,6 +428,102 @@ public class TestJdbcWrapper {
 		}
 	}
 
+	/** Test.
+	 * @throws SQLException e */
+	@Test
+	public void testResultSetProxy() throws SQLException {
+		final ServletContext servletContext = createNiceMock(ServletContext.class);
+		expect(servletContext.getServerInfo()).andReturn("Tomcat").anyTimes();
+		replay(servletContext);
+		Utils.setProperty(Parameter.SQL_RESULT_SETS_ENABLED, "true");
+		jdbcWrapper.initServletContext(servletContext);
+		final Counter sqlCounter = jdbcWrapper.getSqlCounter();
+		final Counter httpCounter = new Counter(Counter.HTTP_COUNTER_NAME, null, sqlCounter);
+		final String query = "select x from system_range(1, 10) where 1 = 1";
+		DriverManager.registerDriver(driver);
+		// nécessite la dépendance vers la base de données H2
+		Connection connection = DriverManager.getConnection(H2_DATABASE_URL);
+		try {
+			connection = jdbcWrapper.createConnectionProxy(connection);
+			httpCounter.bindContextIncludingCpu("test result sets");
+			final Statement statement = connection.createStatement();
+			try {
+				final ResultSet resultSet = statement.executeQuery(query);
+				assertTrue("proxy", JdbcWrapper.isProxyAlready(resultSet));
+				while (resultSet.next()) {
+					resultSet.getLong(1);
+				}
+				resultSet.close();
+				assertTrue("execute", statement.execute(query));
+				final ResultSet resultSet2 = statement.getResultSet();
+				// seulement 2 lignes lues, comptées à la fermeture du Statement
+				// même sans fermeture du ResultSet
+				resultSet2.next();
+				resultSet2.next();
+			} finally {
+				statement.close();
+			}
+			httpCounter.addRequestForCurrentContext(false);
+		} finally {
+			connection.close();
+			httpCounter.unbindContext();
+			Utils.setProperty(Parameter.SQL_RESULT_SETS_ENABLED, "false");
+			jdbcWrapper.initServletContext(servletContext);
+		}
+		final CounterRequest sqlRequest = sqlCounter.getCounterRequestByName(query, false);
+		assertEquals("sql hits", 2, sqlRequest.getHits());
+		assertTrue("sql rows", sqlRequest.hasResultSetRows());
+		assertEquals("sql rows mean", 6, sqlRequest.getResultSetRowsMean());
+		final CounterRequest httpRequest = httpCounter
+				.getCounterRequestByName("test result sets", false);
+		assertEquals("http rows mean", 12, httpRequest.getResultSetRowsMean());
+		assertTrue("http fetch mean", httpRequest.getFetchDurationMean() >= 0);
+	}
+
+	/** Test.
+	 * @throws SQLException e */
+	@Test
+	public void testDataSourceLatencies() throws SQLException, IOException {
+		final BasicDataSource tomcatDataSource = new BasicDataSource();
+		tomcatDataSource.setUrl(H2_DATABASE_URL);
+		// MyDataSource pour ne pas enregistrer les propriétés de la BasicDataSource
+		final DataSource dataSource = jdbcWrapper.createDataSourceProxy("test-latencies",
+				new MyDataSource(tomcatDataSource));
+		final Counter dataSourceCounter = jdbcWrapper.getDataSourceCounter();
+		assertTrue("used", dataSourceCounter.isUsed());
+		final Connection connection = dataSource.getConnection();
+		try {
+			connection.prepareStatement("select 1").close();
+			connection.prepareCall("call 1").close();
+			// pas de temps de préparation pour createStatement
+			connection.createStatement().close();
+		} finally {
+			connection.close();
+		}
+		// les temps sont reportés dans le compteur à chaque collecte
+		final ServletContext servletContext = createNiceMock(ServletContext.class);
+		expect(servletContext.getMajorVersion()).andReturn(2).anyTimes();
+		expect(servletContext.getMinorVersion()).andReturn(5).anyTimes();
+		expect(servletContext.getServerInfo()).andReturn("Tomcat").anyTimes();
+		expect(servletContext.getContextPath()).andReturn("/test").anyTimes();
+		replay(servletContext);
+		Parameters.initialize(servletContext);
+		JRobin.initBackendFactory(new Timer(getClass().getSimpleName(), true));
+		try {
+			new Collector("test datasource", Collections.singletonList(dataSourceCounter))
+					.collectLocalContextWithoutErrors();
+		} finally {
+			JRobin.stop();
+		}
+		assertEquals("getConnection", 1, dataSourceCounter
+				.getCounterRequestByName("test-latencies getConnection", false).getHits());
+		assertEquals("connection held", 1, dataSourceCounter
+				.getCounterRequestByName("test-latencies connection held", false).getHits());
+		assertEquals("prepareStatement", 2, dataSourceCounter
+				.getCounterRequestByName("test-latencies prepareStatement", false).getHits());
+		tomcatDataSource.close();
+	}
+
 	/** Test. */
 	@Test
 	public void testGetSqlCounter() {
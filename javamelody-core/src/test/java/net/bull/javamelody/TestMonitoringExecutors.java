@@ -0,0 +1,170 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bull.javamelody.internal.model.Counter;
+import net.bull.javamelody.internal.model.CounterRequest;
+import net.bull.javamelody.internal.model.ThreadInformations;
+
+/**
+ * Test unitaire de la classe MonitoringExecutors.
+ * @author Emeric Vernat
+ */
+public class TestMonitoringExecutors {
+	private static final String PARENT_REQUEST = "parent";
+	private static final String SQL_REQUEST = "select 1";
+	private static final int TASKS_COUNT = 10;
+
+	private Counter sqlCounter;
+	private Counter servicesCounter;
+
+	/** Check. */
+	@Before
+	public void setUp() {
+		Utils.initialize();
+		sqlCounter = JdbcWrapper.SINGLETON.getSqlCounter();
+		sqlCounter.clear();
+		sqlCounter.setDisplayed(true);
+		servicesCounter = MonitoringProxy.getServicesCounter();
+		servicesCounter.clear();
+		servicesCounter.setDisplayed(true);
+	}
+
+	private Callable<Void> createSqlTask() {
+		return new Callable<Void>() {
+			@Override
+			public Void call() {
+				// comme dans JdbcWrapper
+				sqlCounter.bindContext(SQL_REQUEST, SQL_REQUEST, null, -1, -1);
+				sqlCounter.addRequest(SQL_REQUEST, 5, -1, -1, false, -1);
+				return null;
+			}
+		};
+	}
+
+	/** Test.
+	 * @throws InterruptedException e
+	 * @throws ExecutionException e */
+	@Test
+	public void testExecutorService() throws InterruptedException, ExecutionException {
+		final ExecutorService executorService = MonitoringExecutors
+				.wrap(Executors.newFixedThreadPool(3));
+		try {
+			assertSame("wrap twice", executorService, MonitoringExecutors.wrap(executorService));
+			servicesCounter.bindContextIncludingCpu(PARENT_REQUEST);
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int i = 0; i < TASKS_COUNT; i++) {
+				futures.add(executorService.submit(createSqlTask()));
+			}
+			for (final Future<Void> future : futures) {
+				future.get();
+			}
+			servicesCounter.addRequestForCurrentContext(false);
+			assertNull("context unbound", servicesCounter.getCurrentContextToPropagate());
+			// et plus aucun contexte dans les threads du pool après les tâches
+			final List<Future<Boolean>> contextFutures = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < TASKS_COUNT; i++) {
+				contextFutures.add(executorService.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws InterruptedException {
+						// pour que chacun des threads du pool exécute une de ces tâches
+						Thread.sleep(10);
+						return sqlCounter.getCurrentContextToPropagate() == null
+								&& servicesCounter.getCurrentContextToPropagate() == null;
+					}
+				}));
+			}
+			for (final Future<Boolean> future : contextFutures) {
+				assertTrue("context unbound in pool thread", future.get());
+			}
+		} finally {
+			executorService.shutdown();
+		}
+		checkChildRequests();
+	}
+
+	/** Test.
+	 * @throws InterruptedException e
+	 * @throws ExecutionException e */
+	@Test
+	public void testSpringTaskDecorator() throws InterruptedException, ExecutionException {
+		final ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			servicesCounter.bindContextIncludingCpu(PARENT_REQUEST);
+			final MonitoringSpringTaskDecorator taskDecorator = new MonitoringSpringTaskDecorator();
+			for (int i = 0; i < TASKS_COUNT; i++) {
+				final Callable<Void> sqlTask = createSqlTask();
+				executorService.submit(taskDecorator.decorate(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							sqlTask.call();
+						} catch (final Exception e) {
+							throw new IllegalStateException(e);
+						}
+					}
+				})).get();
+			}
+			servicesCounter.addRequestForCurrentContext(false);
+		} finally {
+			executorService.shutdown();
+		}
+		checkChildRequests();
+	}
+
+	/** Test. */
+	@Test
+	public void testWithoutContext() {
+		final Runnable runnable = new Runnable() {
+			@Override
+			public void run() {
+				// rien
+			}
+		};
+		assertSame("no context", runnable, MonitoringExecutors.wrap(runnable));
+		assertFalse("virtual thread", ThreadInformations.isVirtualThread(Thread.currentThread()));
+	}
+
+	private void checkChildRequests() {
+		final CounterRequest parentRequest = servicesCounter.getCounterRequestByName(PARENT_REQUEST,
+				false);
+		final CounterRequest sqlRequest = sqlCounter.getCounterRequestByName(SQL_REQUEST, false);
+		assertEquals("sql hits", TASKS_COUNT, sqlRequest.getHits());
+		assertEquals("parent hits", 1, parentRequest.getHits());
+		assertEquals("parent child hits", TASKS_COUNT, parentRequest.getChildHitsMean());
+		assertEquals("parent child requests", Long.valueOf(TASKS_COUNT),
+				parentRequest.getChildRequestsExecutionsByRequestId().get(sqlRequest.getId()));
+	}
+}
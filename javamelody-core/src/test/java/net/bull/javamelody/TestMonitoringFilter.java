@@ -288,6 +288,23 @@ public class TestMonitoringFilter {// NOPMD
 						.andReturn("/testspringmvc").anyTimes();
 		doFilter(request);
 
+		// normalisation des urls
+		setProperty(Parameter.HTTP_NORMALIZATION_ENABLED, TRUE);
+		setProperty(Parameter.HTTP_ROUTE_TEMPLATES, "/users/{id}");
+		try {
+			setUp();
+			request = createNiceMock(HttpServletRequest.class);
+			doFilter(request);
+			request = createNiceMock(HttpServletRequest.class);
+			expect(request
+					.getAttribute("org.springframework.web.servlet.HandlerMapping.bestMatchingPattern"))
+							.andReturn("/testspringmvc/{id}").anyTimes();
+			doFilter(request);
+		} finally {
+			setProperty(Parameter.HTTP_NORMALIZATION_ENABLED, null);
+			setProperty(Parameter.HTTP_ROUTE_TEMPLATES, null);
+		}
+
 		// erreur système http, avec log
 		setProperty(Parameter.LOG, TRUE);
 		try {
@@ -681,6 +698,15 @@ public class TestMonitoringFilter {// NOPMD
 		monitoring(parameters);
 		parameters.put(HttpParameter.PART, HttpPart.THREADS.getName());
 		monitoring(parameters);
+		parameters.put(HttpParameter.FORMAT, "htmlbody");
+		parameters.put(HttpParameter.INDEX, "0");
+		monitoring(parameters);
+		parameters.remove(HttpParameter.FORMAT);
+		parameters.remove(HttpParameter.INDEX);
+		parameters.put(HttpParameter.PART, HttpPart.COUNTER_DETAILS.getName());
+		parameters.put(HttpParameter.COUNTER, "http");
+		monitoring(parameters);
+		parameters.remove(HttpParameter.COUNTER);
 		parameters.put(HttpParameter.PART, HttpPart.THREADS_DUMP.getName());
 		monitoring(parameters);
 		final File hsErrPidFile = new File("./hs_err_pid12345.log");
@@ -703,6 +729,13 @@ public class TestMonitoringFilter {// NOPMD
 		monitoring(parameters);
 		CacheManager.getInstance().getCache(cacheName).put(new Element("1", "value"));
 		monitoring(parameters);
+		parameters.put(HttpParameter.PREFIX, "1");
+		parameters.put(HttpParameter.CURSOR, "0");
+		parameters.put(HttpParameter.PAGE_SIZE, "1");
+		monitoring(parameters);
+		parameters.remove(HttpParameter.PREFIX);
+		parameters.remove(HttpParameter.CURSOR);
+		parameters.remove(HttpParameter.PAGE_SIZE);
 		parameters.put(HttpParameter.FORMAT, "htmlbody");
 		monitoring(parameters);
 		setProperty(Parameter.SYSTEM_ACTIONS_ENABLED, "false");
@@ -722,6 +755,11 @@ public class TestMonitoringFilter {// NOPMD
 		monitoring(parameters);
 		Caching.getCachingProvider().getCacheManager().getCache(cacheName).put("1", "value");
 		monitoring(parameters);
+		parameters.put(HttpParameter.PREFIX, "1");
+		parameters.put(HttpParameter.CURSOR, "1");
+		monitoring(parameters);
+		parameters.remove(HttpParameter.PREFIX);
+		parameters.remove(HttpParameter.CURSOR);
 		parameters.put(HttpParameter.FORMAT, "htmlbody");
 		monitoring(parameters);
 		setProperty(Parameter.SYSTEM_ACTIONS_ENABLED, "false");
@@ -773,6 +811,11 @@ public class TestMonitoringFilter {// NOPMD
 		monitoring(parameters);
 		parameters.put(HttpParameter.PART, HttpPart.MBEANS.getName());
 		monitoring(parameters);
+		parameters.put(HttpParameter.MBEAN, "java.lang:type=Memory");
+		parameters.put(HttpParameter.FORMAT, "htmlbody");
+		monitoring(parameters);
+		parameters.remove(HttpParameter.MBEAN);
+		parameters.remove(HttpParameter.FORMAT);
 		final ConfigurableApplicationContext context = new ClassPathXmlApplicationContext(
 				new String[] { "net/bull/javamelody/monitoring-spring.xml", });
 		try {
@@ -783,6 +826,8 @@ public class TestMonitoringFilter {// NOPMD
 			setUp();
 			parameters.put(HttpParameter.PART, HttpPart.HOTSPOTS.getName());
 			monitoring(parameters);
+			parameters.put(HttpParameter.PART, HttpPart.JVM_EVENTS.getName());
+			monitoring(parameters);
 			parameters.remove(HttpParameter.PART);
 			parameters.put(HttpParameter.JMX_VALUE,
 					"java.lang:type=OperatingSystem.ProcessCpuTime");
@@ -28,10 +28,18 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.Properties;
 
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletContext;
@@ -209,6 +217,59 @@ public class TestParameters {
 		}
 	}
 
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testAddCollectorApplicationWithShards() throws IOException {
+		final File shardsDirectory = File.createTempFile("javamelody", "shards");
+		assertTrue("delete", shardsDirectory.delete());
+		assertTrue("mkdir", shardsDirectory.mkdir());
+		setProperty(Parameter.COLLECTOR_SHARDS_FILE,
+				new File(shardsDirectory, "shards.txt").getPath());
+		try {
+			final File file = Parameters.getCollectorApplicationsFile();
+			assertEquals("getCollectorApplicationsFile", shardsDirectory, file.getParentFile());
+			Parameters.addCollectorApplication("testapp1",
+					Parameters.parseUrls("http://localhost:8091/test"));
+
+			// un autre serveur de collecte ajoute une application dans le fichier partagé,
+			// sans que la date de modification du fichier change
+			final long lastModified = file.lastModified();
+			final Properties properties = new Properties();
+			final InputStream input = new FileInputStream(file);
+			try {
+				properties.load(input);
+			} finally {
+				input.close();
+			}
+			properties.put("testapp2", "http://localhost:8092/test");
+			final OutputStream output = new FileOutputStream(file);
+			try {
+				properties.store(output, null);
+			} finally {
+				output.close();
+			}
+			assertTrue("setLastModified", file.setLastModified(lastModified));
+
+			// le fichier est relu avant d'être écrit, l'ajout de l'autre serveur n'est pas perdu
+			Parameters.addCollectorApplication("testapp3",
+					Parameters.parseUrls("http://localhost:8093/test"));
+			assertEquals("getCollectorUrlsByApplications",
+					Arrays.asList("testapp1", "testapp2", "testapp3"), new ArrayList<String>(
+							Parameters.getCollectorUrlsByApplications().keySet()));
+		} finally {
+			setProperty(Parameter.COLLECTOR_SHARDS_FILE, null);
+			for (final File file : shardsDirectory.listFiles()) {
+				if (!file.delete()) {
+					file.deleteOnExit();
+				}
+			}
+			if (!shardsDirectory.delete()) {
+				shardsDirectory.deleteOnExit();
+			}
+		}
+	}
+
 	/** Test.
 	 * @throws MalformedURLException e */
 	@Test
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Timer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bull.javamelody.SelfMonitoringMXBean.SelfMonitoringMXBeanImpl;
+import net.bull.javamelody.internal.model.Collector;
+import net.bull.javamelody.internal.model.Counter;
+import net.bull.javamelody.internal.model.JRobin;
+import net.bull.javamelody.internal.model.JavaInformations;
+
+/**
+ * Test unitaire de SelfMonitoringMXBean.
+ * @author Emeric Vernat
+ */
+public class TestSelfMonitoringMXBean {
+
+	/** Before.
+	 * @throws IOException e */
+	@Before
+	public void setUp() throws IOException {
+		Utils.initialize();
+		JRobin.initBackendFactory(new Timer(getClass().getSimpleName(), true));
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void test() throws IOException {
+		final Counter counter = new Counter("http", "db.png");
+		final Collector collector = new Collector("test selfmonitoring",
+				Collections.singletonList(counter));
+		final SelfMonitoringMXBeanImpl selfMonitoringMXBeanImpl = new SelfMonitoringMXBeanImpl(
+				collector);
+		assertEquals("getLastCollectCountersDuration", 0,
+				selfMonitoringMXBeanImpl.getLastCollectCountersDuration(), 0);
+		final long addRequestCount = selfMonitoringMXBeanImpl.getAddRequestCount();
+		final long bindContextCount = selfMonitoringMXBeanImpl.getBindContextCount();
+		counter.bindContext("test 1", "test 1", null, -1, -1);
+		counter.addRequest("test 1", 10, 10, 10, false, 100);
+		assertTrue("getAddRequestCount",
+				selfMonitoringMXBeanImpl.getAddRequestCount() > addRequestCount);
+		assertTrue("getBindContextCount",
+				selfMonitoringMXBeanImpl.getBindContextCount() > bindContextCount);
+
+		collector.collectWithoutErrors(Collections.singletonList(new JavaInformations(null, true)));
+		try {
+			assertTrue("getLastCollectDuration",
+					selfMonitoringMXBeanImpl.getLastCollectDuration() >= 0);
+			assertTrue("getLastCollectCountersDuration",
+					selfMonitoringMXBeanImpl.getLastCollectCountersDuration() >= 0);
+			assertTrue("getLastCollectJRobinDuration",
+					selfMonitoringMXBeanImpl.getLastCollectJRobinDuration() > 0);
+			assertTrue("getLastCollectStorageDuration",
+					selfMonitoringMXBeanImpl.getLastCollectStorageDuration() > 0);
+			assertTrue("getLastCollectPublishersDuration",
+					selfMonitoringMXBeanImpl.getLastCollectPublishersDuration() >= 0);
+			assertTrue("getLastCollectWrittenBytes",
+					selfMonitoringMXBeanImpl.getLastCollectWrittenBytes() >= 0);
+			assertEquals("getEstimatedMemorySize", collector.getEstimatedMemorySize(),
+					selfMonitoringMXBeanImpl.getEstimatedMemorySize());
+			assertTrue("getSamplingPausesCount",
+					selfMonitoringMXBeanImpl.getSamplingPausesCount() >= 0);
+			assertTrue("getSamplingPausesMillis",
+					selfMonitoringMXBeanImpl.getSamplingPausesMillis() >= 0);
+		} finally {
+			collector.stop();
+		}
+	}
+}
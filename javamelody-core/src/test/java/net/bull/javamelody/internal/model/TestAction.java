@@ -88,9 +88,10 @@ public class TestAction {
 
 	/** Test.
 	 * @throws IOException e
-	 * @throws SchedulerException e */
+	 * @throws SchedulerException e
+	 * @throws InterruptedException e */
 	@Test
-	public void testExecute() throws IOException, SchedulerException {
+	public void testExecute() throws IOException, SchedulerException, InterruptedException {
 		final Counter counter = new Counter(Counter.HTTP_COUNTER_NAME, null);
 		counter.addRequest("test1", 0, 1, 1, false, 1000);
 		counter.addRequest("test2", 1000, 900, 900, false, 1000);
@@ -131,6 +132,14 @@ public class TestAction {
 					threadId, jobId, cacheId);
 			assertNotNull("message HEAP_DUMP", heapDump2);
 		} while (heapDump1.equals(heapDump2));
+		// la compression se fait en arrière-plan, on attend qu'elle soit terminée
+		final HeapDumpCompressor heapDumpCompressor = HeapDumpCompressor
+				.getLastHeapDumpCompressor();
+		assertNotNull("heapDumpCompressor", heapDumpCompressor);
+		while (!heapDumpCompressor.isDone()) {
+			Thread.sleep(100);
+		}
+		assertNull("heapDumpCompressor error", heapDumpCompressor.getErrorMessage());
 		final File[] files = Parameters.TEMPORARY_DIRECTORY.listFiles();
 		if (files != null) {
 			for (final File file : files) {
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bull.javamelody.Utils;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+
+/**
+ * Test unitaire de la classe CacheKeysPage.
+ * @author Emeric Vernat
+ */
+public class TestCacheKeysPage {
+	/** Initialisation. */
+	@Before
+	public void setUp() {
+		Utils.initialize();
+	}
+
+	private static List<Integer> createKeys(int count) {
+		final List<Integer> keys = new ArrayList<Integer>(count);
+		for (int i = 0; i < count; i++) {
+			keys.add(i);
+		}
+		return keys;
+	}
+
+	/** Test. */
+	@Test
+	public void testBuild() {
+		final List<Integer> keys = createKeys(250);
+		final CacheKeysPage page1 = CacheKeysPage.build("test", keys.iterator(), null, 0, 100);
+		assertEquals("keys", 100, page1.getKeys().size());
+		assertEquals("first key", "0", page1.getKeys().get(0));
+		assertTrue("hasNextPage", page1.hasNextPage());
+		assertEquals("nextCursor", 100, page1.getNextCursor());
+		final CacheKeysPage page3 = CacheKeysPage.build("test", keys.iterator(), null, 200, 100);
+		assertEquals("keys", 50, page3.getKeys().size());
+		assertEquals("first key", "200", page3.getKeys().get(0));
+		assertFalse("hasNextPage", page3.hasNextPage());
+		final CacheKeysPage empty = CacheKeysPage.build("test", keys.iterator(), null, 1000, 100);
+		assertTrue("keys", empty.getKeys().isEmpty());
+		assertFalse("hasNextPage", empty.hasNextPage());
+		assertTrue("toString", empty.toString().length() > 0);
+	}
+
+	/** Test. */
+	@Test
+	public void testBuildWithPrefix() {
+		final List<Integer> keys = createKeys(250);
+		final CacheKeysPage page = CacheKeysPage.build("test", keys.iterator(), "2", 0, 5);
+		assertEquals("keys", Arrays.asList("2", "20", "21", "22", "23"), page.getKeys());
+		assertEquals("prefix", "2", page.getPrefix());
+		final CacheKeysPage nextPage = CacheKeysPage.build("test", keys.iterator(), "2",
+				page.getNextCursor(), 5);
+		assertEquals("keys", Arrays.asList("24", "25", "26", "27", "28"), nextPage.getKeys());
+	}
+
+	/** Test. */
+	@Test
+	public void testMaxScannedKeys() {
+		// itérateur sans fin : la page s'arrête après MAX_SCANNED_KEYS clés parcourues
+		final Iterator<Object> keys = new Iterator<Object>() {
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public Object next() {
+				return "key";
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		final CacheKeysPage page = CacheKeysPage.build("test", keys, "other", 0, 10);
+		assertTrue("keys", page.getKeys().isEmpty());
+		assertEquals("nextCursor", CacheKeysPage.MAX_SCANNED_KEYS, page.getNextCursor());
+	}
+
+	/** Test. */
+	@Test
+	public void testParse() {
+		assertEquals("parseCursor", 0, CacheKeysPage.parseCursor(null));
+		assertEquals("parseCursor", 0, CacheKeysPage.parseCursor("-1"));
+		assertEquals("parseCursor", 10, CacheKeysPage.parseCursor("10"));
+		assertEquals("parsePageSize", CacheKeysPage.DEFAULT_PAGE_SIZE,
+				CacheKeysPage.parsePageSize(null));
+		assertEquals("parsePageSize", CacheKeysPage.MAX_PAGE_SIZE,
+				CacheKeysPage.parsePageSize("1000000"));
+		assertEquals("parsePageSize", 1, CacheKeysPage.parsePageSize("0"));
+		assertNull("parsePrefix", CacheKeysPage.parsePrefix(""));
+		assertEquals("parsePrefix", "a", CacheKeysPage.parsePrefix("a"));
+	}
+
+	/** Test. */
+	@Test
+	public void testCaches() {
+		final String cacheName = getClass().getName();
+		CacheManager.getInstance().addCache(cacheName);
+		try {
+			for (int i = 0; i < 15; i++) {
+				CacheManager.getInstance().getCache(cacheName)
+						.put(new Element("key" + i, "value"));
+			}
+			final CacheKeysPage page = CacheInformations.buildCacheKeysPage(cacheName, "key1", 0,
+					10);
+			assertEquals("keys", 6, page.getKeys().size());
+			assertEquals("keysCount", 15, page.getKeysCount());
+			assertEquals("buildCacheInformations", cacheName,
+					CacheInformations.buildCacheInformations(cacheName).getName());
+		} finally {
+			CacheManager.getInstance().removeCache(cacheName);
+		}
+
+		final MutableConfiguration<Object, Object> conf = new MutableConfiguration<Object, Object>();
+		Caching.getCachingProvider().getCacheManager().createCache(cacheName, conf);
+		try {
+			for (int i = 0; i < 15; i++) {
+				Caching.getCachingProvider().getCacheManager().getCache(cacheName).put("key" + i,
+						"value");
+			}
+			final CacheKeysPage page1 = JCacheInformations.buildJCacheKeysPage(cacheName, null, 0,
+					10);
+			assertEquals("keys", 10, page1.getKeys().size());
+			assertTrue("hasNextPage", page1.hasNextPage());
+			assertEquals("keysCount", -1, page1.getKeysCount());
+			final CacheKeysPage page2 = JCacheInformations.buildJCacheKeysPage(cacheName, null,
+					page1.getNextCursor(), 10);
+			assertEquals("keys", 5, page2.getKeys().size());
+			assertFalse("hasNextPage", page2.hasNextPage());
+		} finally {
+			Caching.getCachingProvider().getCacheManager().destroyCache(cacheName);
+		}
+	}
+}
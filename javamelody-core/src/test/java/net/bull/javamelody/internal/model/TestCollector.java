@@ -118,7 +118,7 @@ public class TestCollector {
 		CacheManager.getInstance().addCache("testToString");
 		try {
 			assertToStringNotEmpty("cache", new CacheInformations(
-					CacheManager.getInstance().getEhcache("testToString"), false));
+					CacheManager.getInstance().getEhcache("testToString")));
 		} finally {
 			CacheManager.getInstance().shutdown();
 		}
@@ -208,6 +208,14 @@ public class TestCollector {
 		if (collector.getLastCollectDuration() == 0) {
 			fail("getLastCollectDuration");
 		}
+		assertEquals("getLastCollectDurationsByPart",
+				Arrays.asList("counters", "jrobin", "storage", "publishers"),
+				new ArrayList<String>(collector.getLastCollectDurationsByPart().keySet()));
+		if (collector.getLastCollectWrittenBytes() == 0) {
+			fail("getLastCollectWrittenBytes");
+		}
+		assertNotNull("collectStorageDuration",
+				collector.getJRobin("collectStorageDuration"));
 
 		if (collector.getCounterJRobins().size() == 0) {
 			fail("getCounterJRobins");
@@ -473,7 +481,7 @@ public class TestCollector {
 			collectorServer.collectSessionInformations(application, "sessionId");
 			final Connection connection = TestDatabaseInformations.initH2();
 			try {
-				collectorServer.collectDatabaseInformations(application, 0);
+				collectorServer.collectDatabaseInformations(application, 0, 0, 0);
 			} finally {
 				connection.close();
 			}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+
+import org.jrobin.core.ConsolFuns;
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.jrobin.core.RrdException;
+import org.jrobin.core.Util;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bull.javamelody.Utils;
+import net.bull.javamelody.internal.common.InputOutput;
+
+/**
+ * Test unitaire de la classe CollectorDataMerge.
+ * @author Emeric Vernat
+ */
+public class TestCollectorDataMerge {
+	private static final int DIRECTORIES_COUNT = 3;
+
+	private File rootDirectory;
+	private final List<String> logs = new ArrayList<String>();
+
+	/** Initialisation.
+	 * @throws IOException e */
+	@Before
+	public void setUp() throws IOException {
+		Utils.initialize();
+		JRobin.initBackendFactory(new Timer(getClass().getSimpleName(), true));
+		rootDirectory = new File(System.getProperty("java.io.tmpdir"),
+				"javamelody-test-merge-" + System.nanoTime());
+	}
+
+	/** Finalisation. */
+	@After
+	public void tearDown() {
+		JRobin.stop();
+		deleteRecursively(rootDirectory);
+	}
+
+	private static void deleteRecursively(File file) {
+		final File[] files = file.listFiles();
+		if (files != null) {
+			for (final File child : files) {
+				deleteRecursively(child);
+			}
+		}
+		InputOutput.deleteFile(file);
+	}
+
+	/** Test.
+	 * @throws IOException e
+	 * @throws RrdException e */
+	@Test
+	public void testMergeDirectories() throws IOException, RrdException {
+		final List<File> sourceDirectories = new ArrayList<File>();
+		for (int i = 0; i < DIRECTORIES_COUNT; i++) {
+			final File directory = new File(rootDirectory, "source" + i);
+			assertTrue("mkdirs", directory.mkdirs());
+			sourceDirectories.add(directory);
+			final Counter counter = new Counter(Counter.HTTP_COUNTER_NAME, null);
+			counter.addRequest("request", 100, 10, 10, false, 1000);
+			counter.addRequest("request" + i, 100, 10, 10, false, 1000);
+			CounterStorage.writeToFile(counter, new File(directory, "http_test.ser.gz"));
+			createRrdFile(new File(directory, "usedMemory.rrd"));
+			assertTrue("createNewFile", new File(directory, "ignored.txt").createNewFile());
+			assertTrue("createNewFile",
+					new File(directory, "httpf4562103f5fef56778018769947b2e02609bc1db.rrd")
+							.createNewFile());
+		}
+		createRrdFile(new File(sourceDirectories.get(0), "only0.rrd"));
+		final File targetDirectory = new File(rootDirectory, "target");
+		assertTrue("mkdirs", targetDirectory.mkdirs());
+
+		final CollectorDataMerge collectorDataMerge = new CollectorDataMerge(sourceDirectories,
+				targetDirectory, 2) {
+			@Override
+			protected void log(String msg) {
+				synchronized (logs) {
+					logs.add(msg);
+				}
+			}
+		};
+		assertEquals("mergeDirectories", 4, collectorDataMerge.mergeDirectories());
+
+		final Counter mergedCounter = CounterStorage
+				.readFromFile(new File(targetDirectory, "http_test.ser.gz"));
+		assertEquals("requests", DIRECTORIES_COUNT + 1, mergedCounter.getRequestsCount());
+		assertEquals("hits", DIRECTORIES_COUNT,
+				mergedCounter.getCounterRequestByName("request", false).getHits());
+		assertTrue("merged rrd", new File(targetDirectory, "usedMemory.rrd").exists());
+		final RrdDb rrdDb = new RrdDb(new File(targetDirectory, "usedMemory.rrd").getPath());
+		try {
+			double maxValue = Double.NaN;
+			for (final double value : rrdDb.getArchive(0).getRobin(0).getValues()) {
+				if (!Double.isNaN(value) && (Double.isNaN(maxValue) || value > maxValue)) {
+					maxValue = value;
+				}
+			}
+			assertEquals("merged values", DIRECTORIES_COUNT * 1000d, maxValue, 0.1d);
+		} finally {
+			rrdDb.close();
+		}
+		assertTrue("copied rrd", new File(targetDirectory, "only0.rrd").exists());
+		assertFalse("ignored", new File(targetDirectory, "ignored.txt").exists());
+		assertFalse("excluded", new File(targetDirectory,
+				"httpf4562103f5fef56778018769947b2e02609bc1db.rrd").exists());
+		assertTrue("excluded log",
+				logs.contains("Excluding httpf4562103f5fef56778018769947b2e02609bc1db.rrd"));
+		// les logs d'avancement sont écrits par les threads de fusion, dans un ordre quelconque
+		boolean progressLogged = false;
+		for (final String log : logs) {
+			progressLogged = progressLogged || log.startsWith("Progress: 100%");
+		}
+		assertTrue("progress log", progressLogged);
+	}
+
+	private static void createRrdFile(File file) throws IOException, RrdException {
+		final long step = 60;
+		final long time = Util.normalize(Util.getTime(), step) - 10 * step;
+		final RrdDef rrdDef = new RrdDef(file.getPath(), step);
+		rrdDef.setStartTime(time - step);
+		rrdDef.addDatasource("usedMemory", "GAUGE", step * 2, 0, Double.NaN);
+		rrdDef.addArchive(ConsolFuns.CF_AVERAGE, 0.25, 1, 100);
+		final RrdDb rrdDb = new RrdDb(rrdDef);
+		try {
+			rrdDb.createSample(time).setValues(new double[] { 1000d }).update();
+			rrdDb.createSample(time + step).setValues(new double[] { 1000d }).update();
+		} finally {
+			rrdDb.close();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bull.javamelody.Utils;
+
+/**
+ * Test unitaire de la classe CollectorShards.
+ * @author Emeric Vernat
+ */
+public class TestCollectorShards {
+	private static final String URL1 = "http://localhost:8081/monitoring";
+	private static final String URL2 = "http://localhost:8082/monitoring";
+	private static final String URL3 = "http://localhost:8083/monitoring";
+	private static final String URL4 = "http://localhost:8084/monitoring";
+	private static final int NB_APPLICATIONS = 400;
+
+	private File file;
+
+	/** Before.
+	 * @throws IOException e */
+	@Before
+	public void setUp() throws IOException {
+		Utils.initialize();
+		file = File.createTempFile("javamelody", ".shards");
+	}
+
+	/** After. */
+	@After
+	public void tearDown() {
+		if (!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testWithoutShards() throws IOException {
+		assertTrue("delete", file.delete());
+		final CollectorShards shards = new CollectorShards(file, URL1);
+		assertTrue("isLocal", shards.isLocal("test"));
+		assertTrue("getShardUrls", shards.getShardUrls().isEmpty());
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testGetOwner() throws IOException {
+		writeShards(Arrays.asList("# collector servers", URL1, "", " " + URL2 + " ", URL3, URL1));
+		final CollectorShards shards1 = new CollectorShards(file, URL1);
+		final CollectorShards shards2 = new CollectorShards(file, URL2);
+		assertEquals("getShardUrls", Arrays.asList(URL1, URL2, URL3), shards1.getShardUrls());
+		final Map<String, Integer> countsByOwner = new HashMap<String, Integer>();
+		for (int i = 0; i < NB_APPLICATIONS; i++) {
+			final String application = "application" + i;
+			final String owner = shards1.getOwner(application);
+			// tous les serveurs de collecte sont d'accord sur le serveur de collecte de chaque application
+			assertEquals("getOwner", owner, shards2.getOwner(application));
+			assertEquals("isLocal", URL1.equals(owner), shards1.isLocal(application));
+			final Integer count = countsByOwner.get(owner);
+			countsByOwner.put(owner, count == null ? 1 : count + 1);
+		}
+		assertEquals("owners", 3, countsByOwner.size());
+		for (final Integer count : countsByOwner.values()) {
+			// répartition à peu près homogène, 133 par serveur de collecte en moyenne
+			assertTrue("distribution " + countsByOwner, count > 80 && count < 190);
+		}
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testAddShard() throws IOException {
+		writeShards(Arrays.asList(URL1, URL2, URL3));
+		final CollectorShards shards = new CollectorShards(file, URL1);
+		final Map<String, String> ownersByApplication = new HashMap<String, String>();
+		for (int i = 0; i < NB_APPLICATIONS; i++) {
+			final String application = "application" + i;
+			ownersByApplication.put(application, shards.getOwner(application));
+		}
+
+		final long lastModified = file.lastModified();
+		writeShards(Arrays.asList(URL1, URL2, URL3, URL4));
+		// le fichier est relu lorsqu'il est modifié
+		assertTrue("setLastModified", file.setLastModified(lastModified + 1000));
+		int moved = 0;
+		for (final Map.Entry<String, String> entry : ownersByApplication.entrySet()) {
+			final String owner = shards.getOwner(entry.getKey());
+			if (!owner.equals(entry.getValue())) {
+				// une application ne peut être déplacée que vers le nouveau serveur de collecte
+				assertEquals("owner", URL4, owner);
+				moved++;
+			}
+		}
+		// environ 1/4 des applications est déplacé, et non la plupart comme avec un modulo
+		assertTrue("moved " + moved, moved > 50 && moved < 160);
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testLocalUrlNotInFile() throws IOException {
+		writeShards(Arrays.asList(URL2, URL3));
+		final CollectorShards shards = new CollectorShards(file, URL1);
+		for (int i = 0; i < NB_APPLICATIONS; i++) {
+			assertFalse("isLocal", shards.isLocal("application" + i));
+		}
+	}
+
+	private void writeShards(List<String> lines) throws IOException {
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			for (final String line : lines) {
+				writer.write(line);
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -30,10 +30,12 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
@@ -104,6 +106,23 @@ public class TestCounter {
 		httpCounter.addRequest("http request", 10, 2, 2, false, 100);
 	}
 
+	/** Test. */
+	@Test
+	public void testRootCurrentContexts() {
+		final Counter sqlCounter = new Counter("sql", null);
+		final Counter httpCounter = new Counter("http", null, sqlCounter);
+		httpCounter.bindContext("http request", "http request", null, -1, -1);
+		sqlCounter.bindContext("sql request", "sql request", null, -1, -1);
+		assertEquals("current contexts", 1, httpCounter.getOrderedRootCurrentContexts().size());
+		// le contexte fils n'a pas été terminé (OutOfMemoryError par exemple) :
+		// le contexte root est quand même retiré des requêtes en cours
+		httpCounter.unbindContext();
+		assertEquals("current contexts", 0, httpCounter.getOrderedRootCurrentContexts().size());
+		// un deuxième unbind comme dans MonitoringFilter
+		httpCounter.unbindContext();
+		assertEquals("current contexts", 0, httpCounter.getOrderedRootCurrentContexts().size());
+	}
+
 	/** Test. */
 	@Test
 	public void testAddRequestForSystemError() {
@@ -139,6 +158,82 @@ public class TestCounter {
 		errorCounter.addRequestForCurrentContext(true);
 	}
 
+	/** Test. */
+	@Test
+	public void testErrorGroups() {
+		final Counter errorCounter = new Counter(Counter.ERROR_COUNTER_NAME, null);
+		assertTrue("getErrorGroups", errorCounter.getErrorGroups().isEmpty());
+		String stackTrace = null;
+		for (int i = 0; i < 100; i++) {
+			final String newStackTrace = CounterError
+					.getStackTrace(new IllegalStateException("test error groups"));
+			if (stackTrace != null) {
+				// même instance pour la même exception lancée au même endroit
+				assertSame("getStackTrace", stackTrace, newStackTrace);
+			}
+			stackTrace = newStackTrace;
+			errorCounter.addRequestForSystemError("error 1", -1, -1, -1, stackTrace);
+		}
+		errorCounter.addRequestForSystemError("error 2", -1, -1, -1, null);
+		// une seule occurrence de chaque groupe avec stack-trace dans la liste des dernières erreurs
+		assertEquals("errors", 2, errorCounter.getErrorsCount());
+		// mais avec le nombre d'occurrences, conservé dans les clones sérialisés
+		assertEquals("occurrences", 100,
+				errorCounter.clone().getErrors().get(0).getOccurrencesCount());
+		// même ligne mais message différent : stack-trace différente
+		final List<String> stackTraces = new ArrayList<String>();
+		for (int i = 0; i < 2; i++) {
+			stackTraces.add(CounterError.getStackTrace(new IllegalStateException("message " + i)));
+		}
+		assertTrue("message in stack-trace", stackTraces.get(1).contains("message 1"));
+		final List<CounterErrorGroup> errorGroups = errorCounter.getErrorGroups();
+		assertEquals("errorGroups", 2, errorGroups.size());
+		assertEquals("message", "error 1", errorGroups.get(0).getMessage());
+		assertEquals("stackTrace", stackTrace, errorGroups.get(0).getStackTrace());
+		assertEquals("count", 100, errorGroups.get(0).getCount());
+		assertEquals("count", 1, errorGroups.get(1).getCount());
+		assertNotNull("toString", errorGroups.get(0).toString());
+		assertFalse("dates",
+				errorGroups.get(0).getFirstDate().after(errorGroups.get(0).getLastDate()));
+
+		// groupes calculés depuis la liste des erreurs, par exemple pour un serveur distant
+		final Counter remoteErrorCounter = new Counter(Counter.ERROR_COUNTER_NAME, null);
+		final List<CounterError> errors = new ArrayList<CounterError>();
+		errors.add(new CounterError("error 1", null));
+		errors.add(new CounterError("error 2", null));
+		errors.add(new CounterError("error 2", null));
+		remoteErrorCounter.addErrors(errors);
+		final List<CounterErrorGroup> remoteErrorGroups = remoteErrorCounter.getErrorGroups();
+		assertEquals("errorGroups", 2, remoteErrorGroups.size());
+		assertEquals("message", "error 2", remoteErrorGroups.get(0).getMessage());
+		assertEquals("count", 2, remoteErrorGroups.get(0).getCount());
+		// avec les occurrences comptées dans une erreur
+		errors.get(0).addOccurrence();
+		errors.get(0).addOccurrence();
+		assertEquals("count", 3, remoteErrorCounter.getErrorGroups().get(0).getCount());
+
+		// plusieurs groupes sans perte des nombres d'occurrences
+		final Counter manyErrorsCounter = new Counter(Counter.ERROR_COUNTER_NAME, null);
+		for (int j = 0; j < 3; j++) {
+			for (int i = 0; i < 50; i++) {
+				manyErrorsCounter.addRequestForSystemError("error " + i, -1, -1, -1, null);
+			}
+		}
+		final List<CounterErrorGroup> manyErrorGroups = manyErrorsCounter.getErrorGroups();
+		assertEquals("errorGroups", 50, manyErrorGroups.size());
+		for (final CounterErrorGroup errorGroup : manyErrorGroups) {
+			assertEquals("count", 3, errorGroup.getCount());
+		}
+		// mais chaque erreur sans stack-trace est conservée, avec son url et son utilisateur,
+		// dans la limite de la liste des dernières erreurs
+		assertEquals("errors without stack-trace", Counter.MAX_ERRORS_COUNT,
+				manyErrorsCounter.getErrorsCount());
+
+		errorCounter.clear();
+		assertTrue("clear", errorCounter.getErrorGroups().isEmpty());
+		assertTrue("getErrorGroups", counter.getErrorGroups().isEmpty());
+	}
+
 	/** Test. */
 	@Test
 	public void testAddHits() {
@@ -183,6 +278,55 @@ public class TestCounter {
 		counterRequest.removeHits(counterRequest2);
 	}
 
+	/** Test.
+	 * @throws InterruptedException e */
+	@Test
+	public void testContentionTimes() throws InterruptedException {
+		final Counter contentionCounter = new Counter("contention", null);
+		final boolean previouslyEnabled = ManagementFactory.getThreadMXBean()
+				.isThreadContentionMonitoringEnabled();
+		ThreadInformations.initThreadContentionMonitoring();
+		final Object lock = new Object();
+		final CountDownLatch lockAcquired = new CountDownLatch(1);
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (lock) {
+					lockAcquired.countDown();
+					try {
+						Thread.sleep(100);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		});
+		try {
+			contentionCounter.bindContextIncludingCpu("request with contention");
+			thread.start();
+			lockAcquired.await();
+			synchronized (lock) {
+				Thread.sleep(50);
+			}
+			contentionCounter.addRequestForCurrentContext(false);
+			thread.join();
+			final CounterRequest request = contentionCounter
+					.getCounterRequestByName("request with contention", false);
+			// bloqué environ 100 ms en attente du lock, puis en attente 50 ms dans sleep
+			assertTrue("blockedTimeMean", request.getBlockedTimeMean() > 0);
+			assertTrue("waitedTimeMean", request.getWaitedTimeMean() > 0);
+			final CounterRequest clone = request.clone();
+			clone.removeHits(request);
+			assertEquals("blockedTimeMean", -1, clone.getBlockedTimeMean());
+			contentionCounter.unbindContext();
+		} finally {
+			ThreadInformations.stopThreadContentionMonitoring();
+		}
+		// état précédent de la mesure restauré
+		assertEquals("isThreadContentionMonitoringEnabled", previouslyEnabled,
+				ManagementFactory.getThreadMXBean().isThreadContentionMonitoringEnabled());
+	}
+
 	/** Test. */
 	@Test
 	public void testRemoveRequest() {
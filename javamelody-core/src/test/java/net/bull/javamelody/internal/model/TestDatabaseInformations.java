@@ -17,12 +17,16 @@
  */
 package net.bull.javamelody.internal.model;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 
@@ -33,6 +37,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import net.bull.javamelody.JdbcDriver;
+import net.bull.javamelody.Parameter;
 import net.bull.javamelody.TestJdbcWrapper;
 import net.bull.javamelody.Utils;
 import net.bull.javamelody.internal.common.Parameters;
@@ -95,6 +100,94 @@ public class TestDatabaseInformations {
 		assertNotNull("toString", databaseInformations.toString());
 	}
 
+	/** Test.
+	 * @throws NamingException e
+	 * @throws SQLException e */
+	@Test
+	public void testPagesAndSort() throws SQLException, NamingException {
+		// h2.settings
+		final int requestIndex = 3;
+		final int maxRows = 5;
+		Utils.setProperty(Parameter.DATABASE_MAX_ROWS, String.valueOf(maxRows));
+		final DatabaseInformations page0 = new DatabaseInformations(requestIndex, 0, 0);
+		assertEquals("getMaxRows", maxRows, page0.getMaxRows());
+		assertEquals("rows", maxRows + 1, page0.getResult().length);
+		assertTrue("hasNextPage", page0.hasNextPage());
+		final DatabaseInformations page1 = new DatabaseInformations(requestIndex, 1, 0);
+		assertEquals("getPage", 1, page1.getPage());
+		assertFalse("other rows", page0.getResult()[1][0].equals(page1.getResult()[1][0]));
+		final DatabaseInformations lastPage = new DatabaseInformations(requestIndex, 1000, 0);
+		assertEquals("no rows", 1, lastPage.getResult().length);
+		assertFalse("hasNextPage", lastPage.hasNextPage());
+
+		final DatabaseInformations all = new DatabaseInformations(requestIndex, 0, 0);
+		Utils.setProperty(Parameter.DATABASE_MAX_ROWS, "1000");
+		final String[][] allRows = new DatabaseInformations(requestIndex, 0, 1).getResult();
+		Utils.setProperty(Parameter.DATABASE_MAX_ROWS, String.valueOf(maxRows));
+		final DatabaseInformations sorted = new DatabaseInformations(requestIndex, 1, 1);
+		assertEquals("getSortColumn", 1, sorted.getSortColumn());
+		for (int i = 1; i <= maxRows; i++) {
+			assertEquals("sorted", allRows[maxRows + i][0], sorted.getResult()[i][0]);
+		}
+		final DatabaseInformations sortedDescending = new DatabaseInformations(requestIndex, 0,
+				-1);
+		assertEquals("sorted descending", allRows[allRows.length - 1][0],
+				sortedDescending.getResult()[1][0]);
+		assertTrue("hasNextPage", all.hasNextPage() && sortedDescending.hasNextPage());
+
+		assertEquals("parsePage", 0, DatabaseInformations.parsePage(null));
+		assertEquals("parsePage", 0, DatabaseInformations.parsePage("-1"));
+		assertEquals("parsePage", 2, DatabaseInformations.parsePage("2"));
+		assertEquals("parseSortColumn", 0, DatabaseInformations.parseSortColumn(null));
+		assertEquals("parseSortColumn", -2, DatabaseInformations.parseSortColumn("-2"));
+	}
+
+	/** Test. */
+	@Test
+	public void testRowComparatorWithMixedValues() {
+		final List<String[]> rows = new ArrayList<String[]>();
+		for (final String value : new String[] { "b", "10", null, "1e1x", "9", "a", "-1" }) {
+			rows.add(new String[] { value });
+		}
+		Collections.sort(rows, new DatabaseInformations.RowComparator(0, false));
+		final String[] expected = { null, "-1", "9", "10", "1e1x", "a", "b" };
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals("sorted", expected[i], rows.get(i)[0]);
+		}
+		Collections.sort(rows, new DatabaseInformations.RowComparator(0, true));
+		assertEquals("sorted descending", "b", rows.get(0)[0]);
+		assertEquals("sorted descending", null, rows.get(expected.length - 1)[0]);
+	}
+
+	/** Test.
+	 * @throws SQLException e
+	 * @throws NamingException e */
+	@Test
+	public void testInvalidPagesAndSort() throws SQLException, NamingException {
+		Exception ex = null;
+		try {
+			DatabaseInformations.parseSortColumn(String.valueOf(Integer.MIN_VALUE));
+		} catch (final IllegalArgumentException e) {
+			ex = e;
+		}
+		assertNotNull("parseSortColumn", ex);
+		ex = null;
+		try {
+			new DatabaseInformations(3, Integer.MAX_VALUE, 0);
+		} catch (final IllegalArgumentException e) {
+			ex = e;
+		}
+		assertNotNull("page overflow", ex);
+		ex = null;
+		Utils.setProperty(Parameter.DATABASE_MAX_ROWS, "0");
+		try {
+			new DatabaseInformations(3, 0, 0);
+		} catch (final IllegalStateException e) {
+			ex = e;
+		}
+		assertNotNull("database-max-rows", ex);
+	}
+
 	/** Test. */
 	@Test
 	public void testDatabase() {
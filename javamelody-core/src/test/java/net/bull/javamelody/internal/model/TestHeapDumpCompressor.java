@@ -0,0 +1,371 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+import net.bull.javamelody.Utils;
+import net.bull.javamelody.internal.common.InputOutput;
+import net.bull.javamelody.internal.model.HeapDumpCompressor.PartSink;
+
+/**
+ * Test unitaire de la classe HeapDumpCompressor.
+ * @author Emeric Vernat
+ */
+public class TestHeapDumpCompressor {
+	private static final int BLOCK_SIZE = 1000;
+	private static final int PART_SIZE = 3000;
+
+	/**
+	 * Destination en mémoire des parties compressées.
+	 */
+	private static class MemoryPartSink implements PartSink {
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		private final List<Integer> partNumbers = new ArrayList<Integer>();
+		private boolean started;
+		private boolean completed;
+		private boolean aborted;
+
+		MemoryPartSink() {
+			super();
+		}
+
+		@Override
+		public void start() {
+			started = true;
+		}
+
+		@Override
+		public void addPart(int partNumber, byte[] data, int length) throws IOException {
+			partNumbers.add(partNumber);
+			output.write(data, 0, length);
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+		@Override
+		public void abort() {
+			aborted = true;
+		}
+	}
+
+	/** Initialisation. */
+	@Before
+	public void setUp() {
+		Utils.initialize();
+	}
+
+	private static File createHeapDump(byte[] content) throws IOException {
+		final File file = File.createTempFile("heapdump", ".hprof");
+		final FileOutputStream output = new FileOutputStream(file);
+		try {
+			output.write(content);
+		} finally {
+			output.close();
+		}
+		return file;
+	}
+
+	private static byte[] createContent(int length) {
+		// contenu en partie compressible et en partie aléatoire
+		final byte[] content = new byte[length];
+		new Random(length).nextBytes(content);
+		Arrays.fill(content, 0, length / 2, (byte) 'a');
+		return content;
+	}
+
+	private static byte[] gunzip(byte[] compressed) throws IOException {
+		final InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed));
+		try {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			InputOutput.pump(input, output);
+			return output.toByteArray();
+		} finally {
+			input.close();
+		}
+	}
+
+	/** Test.
+	 * @throws Exception e */
+	@Test
+	public void testCompress() throws Exception {
+		for (final int length : new int[] { 0, 1, BLOCK_SIZE, 10 * BLOCK_SIZE + 7,
+				100 * BLOCK_SIZE }) {
+			final byte[] content = createContent(length);
+			final File heapDump = createHeapDump(content);
+			final MemoryPartSink sink = new MemoryPartSink();
+			final HeapDumpCompressor heapDumpCompressor = new HeapDumpCompressor(heapDump, null,
+					Collections.<PartSink> singletonList(sink), BLOCK_SIZE, PART_SIZE, 3);
+			assertEquals("totalBytes", length, heapDumpCompressor.getTotalBytes());
+			heapDumpCompressor.run();
+			assertTrue("done", heapDumpCompressor.isDone());
+			assertEquals("errorMessage", null, heapDumpCompressor.getErrorMessage());
+			assertEquals("percentDone", 100, heapDumpCompressor.getPercentDone());
+			assertEquals("readBytes", length, heapDumpCompressor.getReadBytes());
+			assertEquals("compressedBytes", sink.output.size(),
+					heapDumpCompressor.getCompressedBytes());
+			assertFalse("heap dump deleted", heapDump.exists());
+			assertTrue("started", sink.started);
+			assertTrue("completed", sink.completed);
+			assertFalse("aborted", sink.aborted);
+			for (int i = 0; i < sink.partNumbers.size(); i++) {
+				assertEquals("partNumber", Integer.valueOf(i + 1), sink.partNumbers.get(i));
+			}
+			// les membres gzip concaténés forment un fichier gzip valide
+			assertArrayEquals("content", content, gunzip(sink.output.toByteArray()));
+		}
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testCompressToFile() throws IOException {
+		final byte[] content = createContent(20 * BLOCK_SIZE);
+		final File heapDump = createHeapDump(content);
+		final File gzipFile = new File(heapDump.getPath() + ".gz");
+		final HeapDumpCompressor heapDumpCompressor = new HeapDumpCompressor(heapDump, gzipFile,
+				Collections.<PartSink> singletonList(
+						new HeapDumpCompressor.FilePartSink(gzipFile)),
+				BLOCK_SIZE, PART_SIZE, 2);
+		heapDumpCompressor.run();
+		try {
+			assertEquals("errorMessage", null, heapDumpCompressor.getErrorMessage());
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			InputOutput.pumpFromFile(gzipFile, output);
+			assertArrayEquals("content", content, gunzip(output.toByteArray()));
+		} finally {
+			InputOutput.deleteFile(gzipFile);
+		}
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testAbort() throws IOException {
+		final File heapDump = createHeapDump(createContent(10 * BLOCK_SIZE));
+		final MemoryPartSink sink = new MemoryPartSink() {
+			@Override
+			public void addPart(int partNumber, byte[] data, int length) throws IOException {
+				throw new IOException("test");
+			}
+		};
+		final HeapDumpCompressor heapDumpCompressor = new HeapDumpCompressor(heapDump, null,
+				Collections.<PartSink> singletonList(sink), BLOCK_SIZE, PART_SIZE, 2);
+		heapDumpCompressor.run();
+		try {
+			assertTrue("done", heapDumpCompressor.isDone());
+			assertNotNull("errorMessage", heapDumpCompressor.getErrorMessage());
+			assertTrue("aborted", sink.aborted);
+			assertFalse("completed", sink.completed);
+		} finally {
+			InputOutput.deleteFile(heapDump);
+		}
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testRemoteSinkFailure() throws IOException {
+		final byte[] content = createContent(20 * BLOCK_SIZE);
+		final File heapDump = createHeapDump(content);
+		final File gzipFile = new File(heapDump.getPath() + ".gz");
+		final MemoryPartSink failingSink = new MemoryPartSink() {
+			@Override
+			public void addPart(int partNumber, byte[] data, int length) throws IOException {
+				throw new IOException("test");
+			}
+		};
+		final HeapDumpCompressor heapDumpCompressor = new HeapDumpCompressor(heapDump, gzipFile,
+				Arrays.<PartSink> asList(new HeapDumpCompressor.FilePartSink(gzipFile),
+						failingSink),
+				BLOCK_SIZE, PART_SIZE, 2);
+		heapDumpCompressor.run();
+		try {
+			// l'échec de l'upload est signalé, mais le fichier local et le heap dump sont conservés
+			assertNotNull("errorMessage", heapDumpCompressor.getErrorMessage());
+			assertTrue("aborted", failingSink.aborted);
+			assertFalse("completed", failingSink.completed);
+			assertTrue("heap dump kept", heapDump.exists());
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			InputOutput.pumpFromFile(gzipFile, output);
+			assertArrayEquals("content", content, gunzip(output.toByteArray()));
+		} finally {
+			InputOutput.deleteFile(gzipFile);
+			InputOutput.deleteFile(heapDump);
+		}
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testFilePartSinkAbortWithoutStart() throws IOException {
+		final File gzipFile = File.createTempFile("heapdump", ".hprof.gz");
+		// pas de NullPointerException qui masquerait l'erreur d'origine
+		new HeapDumpCompressor.FilePartSink(gzipFile).abort();
+		assertFalse("deleted", gzipFile.exists());
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testPercentDone() throws IOException {
+		final File heapDump = createHeapDump(createContent(10 * BLOCK_SIZE));
+		final List<Integer> percents = new ArrayList<Integer>();
+		final HeapDumpCompressor[] compressor = new HeapDumpCompressor[1];
+		final HeapDumpCompressor heapDumpCompressor = new HeapDumpCompressor(heapDump, null,
+				Collections.<PartSink> singletonList(new MemoryPartSink() {
+					@Override
+					public void addPart(int partNumber, byte[] data, int length)
+							throws IOException {
+						super.addPart(partNumber, data, length);
+						percents.add(compressor[0].getPercentDone());
+					}
+				}), BLOCK_SIZE, PART_SIZE, 2);
+		compressor[0] = heapDumpCompressor;
+		heapDumpCompressor.run();
+		// pendant l'écriture des parties, l'avancement n'est pas encore à 100%
+		assertFalse("percents", percents.isEmpty());
+		for (final Integer percent : percents) {
+			assertTrue("percent " + percent, percent < 100);
+		}
+		assertEquals("percentDone", 100, heapDumpCompressor.getPercentDone());
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testS3MultipartUpload() throws IOException {
+		final byte[] content = createContent(30 * BLOCK_SIZE);
+		final File heapDump = createHeapDump(content);
+		// bouchon local de S3 qui conserve les parties reçues
+		final ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+		final AmazonS3 s3Client = createMock(AmazonS3.class);
+		final InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+		initiateResult.setUploadId("uploadId");
+		expect(s3Client.initiateMultipartUpload(anyObject(InitiateMultipartUploadRequest.class)))
+				.andReturn(initiateResult);
+		expect(s3Client.uploadPart(anyObject(UploadPartRequest.class)))
+				.andAnswer(new IAnswer<UploadPartResult>() {
+					@Override
+					public UploadPartResult answer() throws Throwable {
+						final UploadPartRequest request = (UploadPartRequest) EasyMock
+								.getCurrentArguments()[0];
+						assertEquals("uploadId", "uploadId", request.getUploadId());
+						final byte[] part = InputOutput.pumpToByteArray(request.getInputStream());
+						assertEquals("partSize", request.getPartSize(), part.length);
+						uploaded.write(part);
+						final UploadPartResult result = new UploadPartResult();
+						result.setPartNumber(request.getPartNumber());
+						result.setETag("etag" + request.getPartNumber());
+						return result;
+					}
+				}).atLeastOnce();
+		expect(s3Client.completeMultipartUpload(anyObject(CompleteMultipartUploadRequest.class)))
+				.andAnswer(new IAnswer<CompleteMultipartUploadResult>() {
+					@Override
+					public CompleteMultipartUploadResult answer() throws Throwable {
+						final CompleteMultipartUploadRequest request = (CompleteMultipartUploadRequest) EasyMock
+								.getCurrentArguments()[0];
+						final List<PartETag> partETags = request.getPartETags();
+						assertTrue("parts", partETags.size() > 1);
+						for (int i = 0; i < partETags.size(); i++) {
+							assertEquals("partNumber", i + 1, partETags.get(i).getPartNumber());
+						}
+						return new CompleteMultipartUploadResult();
+					}
+				});
+		replay(s3Client);
+		final HeapDumpCompressor heapDumpCompressor = new HeapDumpCompressor(heapDump, null,
+				Collections.<PartSink> singletonList(
+						new S3.MultipartUpload(s3Client, "bucket", "heapdump.hprof.gz")),
+				BLOCK_SIZE, PART_SIZE, 2);
+		heapDumpCompressor.run();
+		assertEquals("errorMessage", null, heapDumpCompressor.getErrorMessage());
+		assertArrayEquals("content", content, gunzip(uploaded.toByteArray()));
+		verify(s3Client);
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testS3MultipartUploadAbort() throws IOException {
+		final File heapDump = createHeapDump(createContent(10 * BLOCK_SIZE));
+		final AmazonS3 s3Client = createMock(AmazonS3.class);
+		final InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+		initiateResult.setUploadId("uploadId");
+		expect(s3Client.initiateMultipartUpload(anyObject(InitiateMultipartUploadRequest.class)))
+				.andReturn(initiateResult);
+		expect(s3Client.uploadPart(anyObject(UploadPartRequest.class)))
+				.andThrow(new IllegalStateException("test"));
+		s3Client.abortMultipartUpload(anyObject(AbortMultipartUploadRequest.class));
+		expectLastCall();
+		replay(s3Client);
+		final HeapDumpCompressor heapDumpCompressor = new HeapDumpCompressor(heapDump, null,
+				Collections.<PartSink> singletonList(
+						new S3.MultipartUpload(s3Client, "bucket", "heapdump.hprof.gz")),
+				BLOCK_SIZE, PART_SIZE, 2);
+		heapDumpCompressor.run();
+		try {
+			assertNotNull("errorMessage", heapDumpCompressor.getErrorMessage());
+			verify(s3Client);
+		} finally {
+			InputOutput.deleteFile(heapDump);
+		}
+	}
+}
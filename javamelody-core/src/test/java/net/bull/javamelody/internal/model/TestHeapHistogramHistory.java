@@ -0,0 +1,112 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bull.javamelody.Utils;
+import net.bull.javamelody.internal.model.HeapHistogramHistory.Snapshot;
+
+/**
+ * Test unitaire de la classe HeapHistogramHistory.
+ * @author Emeric Vernat
+ */
+public class TestHeapHistogramHistory {
+	private File directory;
+
+	/** Before.
+	 * @throws IOException e */
+	@Before
+	public void setUp() throws IOException {
+		Utils.initialize();
+		directory = File.createTempFile("javamelody", "heaphisto");
+		assertTrue("delete", directory.delete());
+	}
+
+	/** After. */
+	@After
+	public void tearDown() {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				if (!file.delete()) {
+					file.deleteOnExit();
+				}
+			}
+		}
+		if (!directory.delete()) {
+			directory.deleteOnExit();
+		}
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testAddSnapshot() throws IOException {
+		final HeapHistogramHistory heapHistogramHistory = new HeapHistogramHistory(directory);
+		final HeapHistogram heapHistogram = createHeapHistogram();
+		assertTrue("addSnapshot", heapHistogramHistory.addSnapshot(heapHistogram));
+		// pas d'autre instantané avant une heure, même si l'histogramme est affiché à nouveau
+		assertFalse("addSnapshot", heapHistogramHistory.addSnapshot(createHeapHistogram()));
+		final List<Snapshot> snapshots = heapHistogramHistory.getSnapshots();
+		assertEquals("snapshots", 1, snapshots.size());
+		assertEquals("totalHeapBytes", heapHistogram.getTotalHeapBytes(),
+				snapshots.get(0).getTotalHeapBytes());
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testComputeGrowthsWithTopClasses() throws IOException {
+		final HeapHistogram heapHistogram = createHeapHistogram();
+		// instantané des 10 plus grosses classes seulement, sans croissance depuis
+		final Map<String, Long> bytesByClassName = new HashMap<String, Long>();
+		for (final HeapHistogram.ClassInfo classInfo : heapHistogram.getHeapHistogram()
+				.subList(0, 10)) {
+			bytesByClassName.put(classInfo.getName(), classInfo.getBytes());
+		}
+		final Snapshot snapshot = new Snapshot(heapHistogram.getTime(),
+				heapHistogram.getTotalHeapBytes(), bytesByClassName);
+		// les classes qui n'étaient pas parmi les plus grosses n'ont pas une fausse croissance
+		assertTrue("growths", HeapHistogramHistory
+				.computeGrowths(heapHistogram, Collections.singletonList(snapshot)).isEmpty());
+	}
+
+	private HeapHistogram createHeapHistogram() throws IOException {
+		final InputStream input = getClass().getResourceAsStream("/heaphisto.txt");
+		try {
+			return new HeapHistogram(input, false);
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -20,6 +20,7 @@ package net.bull.javamelody.internal.model;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -72,6 +73,12 @@ public class TestJRobin {
 
 		jrobin.getLastValue();
 		jrobin.getMeanValue(customRange);
+		// dumps avec un fichier en lecture seule
+		assertTrue("dumpTxt", jrobin.dumpTxt(range).length() > 0);
+		assertTrue("dumpTxt", jrobin.dumpTxt(Period.TOUT.getRange()).length() > 0);
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		jrobin.dumpXml(output, customRange);
+		assertTrue("dumpXml", output.size() > 0);
 		jrobin.deleteFile();
 		jrobin.toString();
 	}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bull.javamelody.Utils;
+
+/**
+ * Test unitaire de la classe JRobinGraphRenderer.
+ * @author Emeric Vernat
+ */
+public class TestJRobinGraphRenderer {
+	private static final String TEST_APPLICATION = "test-graph-renderer";
+	// nombre de courbes d'un rapport pdf sur un serveur de collecte, à peu près
+	private static final int GRAPHS_COUNT = 32;
+	private static final long TIMEOUT_MILLIS = 60 * 1000;
+
+	private List<JRobin> jrobins;
+	private ExecutorService executorService;
+
+	/** Before.
+	 * @throws IOException e */
+	@Before
+	public void setUp() throws IOException {
+		Utils.initialize();
+		JRobin.initBackendFactory(new Timer(getClass().getSimpleName(), true));
+		jrobins = new ArrayList<JRobin>();
+		for (int i = 0; i < GRAPHS_COUNT; i++) {
+			final JRobin jrobin = JRobin.createInstance(TEST_APPLICATION, "graph" + i,
+					"request " + i);
+			jrobin.addValue(i);
+			jrobins.add(jrobin);
+		}
+		executorService = Executors.newFixedThreadPool(4);
+	}
+
+	/** After. */
+	@After
+	public void tearDown() {
+		executorService.shutdown();
+		for (final JRobin jrobin : jrobins) {
+			jrobin.deleteFile();
+		}
+		JRobin.stop();
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testGraphs() throws IOException {
+		final Range range = Period.JOUR.getRange();
+		final Map<String, byte[]> sequentialImages = new JRobinGraphRenderer(null, TIMEOUT_MILLIS)
+				.graphs(jrobins, range, 200, 50);
+		final Map<String, byte[]> parallelImages = new JRobinGraphRenderer(executorService,
+				TIMEOUT_MILLIS).graphs(jrobins, range, 200, 50);
+		assertEquals("sequential", GRAPHS_COUNT, sequentialImages.size());
+		assertEquals("same graphs in the same order",
+				new ArrayList<String>(sequentialImages.keySet()),
+				new ArrayList<String>(parallelImages.keySet()));
+		for (final byte[] image : parallelImages.values()) {
+			assertTrue("image", image.length > 0);
+		}
+		assertTrue("empty", new JRobinGraphRenderer()
+				.graphs(new ArrayList<JRobin>(), range, 200, 50).isEmpty());
+	}
+
+	/** Test.
+	 * @throws IOException e
+	 * @throws InterruptedException e */
+	@Test
+	public void testDeadline() throws IOException, InterruptedException {
+		final Range range = Period.JOUR.getRange();
+		final JRobinGraphRenderer graphRenderer = new JRobinGraphRenderer(executorService, 1);
+		Thread.sleep(10);
+		assertTrue("deadline exceeded", graphRenderer.isDeadlineExceeded());
+		assertTrue("no graphs", graphRenderer.graphs(jrobins, range, 200, 50).isEmpty());
+		assertFalse("deadline not exceeded",
+				new JRobinGraphRenderer(executorService, TIMEOUT_MILLIS).isDeadlineExceeded());
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testSharedExecutorService() throws IOException {
+		final Range range = Period.JOUR.getRange();
+		for (int i = 0; i < 3; i++) {
+			assertEquals("graphs", GRAPHS_COUNT,
+					new JRobinGraphRenderer().graphs(jrobins, range, 200, 50).size());
+		}
+		// les rapports successifs réutilisent les mêmes threads, 4 au plus
+		int workersCount = 0;
+		for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+			if ("javamelody graph rendering worker".equals(thread.getName())) {
+				workersCount++;
+			}
+		}
+		assertTrue("workers " + workersCount, workersCount > 0 && workersCount <= 4);
+	}
+}
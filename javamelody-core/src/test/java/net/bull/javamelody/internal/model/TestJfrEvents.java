@@ -0,0 +1,146 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bull.javamelody.Utils;
+
+/**
+ * Test unitaire de la classe JfrEvents.
+ * @author Emeric Vernat
+ */
+public class TestJfrEvents {
+	/** Initialisation. */
+	@Before
+	public void setUp() {
+		Utils.initialize();
+		JfrEvents.clear();
+	}
+
+	/** Finalisation. */
+	@After
+	public void tearDown() {
+		JfrEvents.stop();
+		JfrEvents.clear();
+	}
+
+	/** Test. */
+	@Test
+	public void testStartStop() {
+		final boolean started = JfrEvents.start();
+		assertEquals("isStarted", started, JfrEvents.isStarted());
+		if (started) {
+			// démarré une deuxième fois sans erreur
+			assertTrue("start", JfrEvents.start());
+		}
+		JfrEvents.stop();
+		assertFalse("isStarted", JfrEvents.isStarted());
+		JfrEvents.stop();
+	}
+
+	/** Test. */
+	@Test
+	public void testGcPauses() {
+		JfrEvents.addGcPause(500000);
+		JfrEvents.addGcPause(1000000);
+		JfrEvents.addGcPause(20000000);
+		JfrEvents.addGcPause(5000000000L);
+		assertArrayEquals("getGcPausesCounts", new long[] { 1, 1, 0, 1, 0, 0, 0, 1 },
+				JfrEvents.getGcPausesCounts());
+		assertEquals("getGcPausesMillis", 5021, JfrEvents.getGcPausesMillis());
+		final Map<String, Double> periodValues = JfrEvents.getAndResetPeriodValues(60000);
+		assertEquals("jfrGcPausesTime", 5021.5, periodValues.get("jfrGcPausesTime"), 0.01);
+		assertEquals("jfrMaxGcPause", 5000, periodValues.get("jfrMaxGcPause"), 0.01);
+		assertEquals("jfrGcPausesTime", 0,
+				JfrEvents.getAndResetPeriodValues(60000).get("jfrGcPausesTime"), 0.01);
+		// les totaux ne sont pas remis à zéro par la collecte
+		assertEquals("getGcPausesMillis", 5021, JfrEvents.getGcPausesMillis());
+	}
+
+	/** Test. */
+	@Test
+	public void testSafepoints() {
+		JfrEvents.addSafepoint(2000000);
+		JfrEvents.addSafepoint(8000000);
+		assertEquals("getSafepointsCount", 2, JfrEvents.getSafepointsCount());
+		assertEquals("getSafepointsMillis", 10, JfrEvents.getSafepointsMillis());
+		assertEquals("getMaxSafepointMillis", 8, JfrEvents.getMaxSafepointMillis());
+		// 10 ms en 2 minutes
+		assertEquals("jfrSafepointsTime", 5,
+				JfrEvents.getAndResetPeriodValues(120000).get("jfrSafepointsTime"), 0.01);
+
+		// durée d'un safepoint du début de SafepointBegin à la fin de SafepointEnd, par safepointId
+		JfrEvents.addSafepointBegin(1, 1000000000L);
+		JfrEvents.addSafepointBegin(2, 1001000000L);
+		JfrEvents.addSafepointEnd(1, 1004000000L);
+		JfrEvents.addSafepointEnd(2, 1003000000L);
+		// SafepointEnd sans SafepointBegin ignoré
+		JfrEvents.addSafepointEnd(3, 1005000000L);
+		assertEquals("getSafepointsCount", 4, JfrEvents.getSafepointsCount());
+		assertEquals("getSafepointsMillis", 16, JfrEvents.getSafepointsMillis());
+	}
+
+	/** Test. */
+	@Test
+	public void testValuesByClass() {
+		JfrEvents.addMonitorBlocked("a.A", 20000000);
+		JfrEvents.addMonitorBlocked("b.B", 50000000);
+		JfrEvents.addMonitorBlocked("a.A", 40000000);
+		JfrEvents.addMonitorBlocked(JfrEvents.UNKNOWN_CLASS, 10000000);
+		final Map<String, long[]> monitorBlocked = JfrEvents.getMonitorBlockedMillisByClass();
+		final Iterator<Map.Entry<String, long[]>> iterator = monitorBlocked.entrySet()
+				.iterator();
+		Map.Entry<String, long[]> entry = iterator.next();
+		assertEquals("monitorBlocked", "a.A", entry.getKey());
+		assertArrayEquals("monitorBlocked", new long[] { 2, 60 }, entry.getValue());
+		entry = iterator.next();
+		assertEquals("monitorBlocked", "b.B", entry.getKey());
+		assertArrayEquals("monitorBlocked", new long[] { 1, 50 }, entry.getValue());
+		entry = iterator.next();
+		// classe absente de l'événement, distincte des classes agrégées
+		assertEquals("monitorBlocked", JfrEvents.UNKNOWN_CLASS, entry.getKey());
+		assertFalse("monitorBlocked", iterator.hasNext());
+
+		for (int i = 0; i < JfrEvents.MAX_CLASSES + 10; i++) {
+			JfrEvents.addAllocation("c.C" + i, 1024 * 1024);
+		}
+		final Map<String, long[]> allocations = JfrEvents.getAllocatedBytesByClass();
+		// nombre de classes borné, les suivantes étant agrégées
+		assertEquals("allocations", JfrEvents.MAX_CLASSES + 1, allocations.size());
+		assertEquals("allocations", JfrEvents.OTHER_CLASSES,
+				allocations.keySet().iterator().next());
+		assertArrayEquals("allocations", new long[] { 10, 10 * 1024 * 1024 },
+				allocations.get(JfrEvents.OTHER_CLASSES));
+		final Map<String, Double> periodValues = JfrEvents.getAndResetPeriodValues(60000);
+		assertEquals("jfrMonitorBlockedTime", 120, periodValues.get("jfrMonitorBlockedTime"),
+				0.01);
+		assertEquals("jfrAllocationRate", JfrEvents.MAX_CLASSES + 10,
+				periodValues.get("jfrAllocationRate"), 0.01);
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bull.javamelody.Utils;
+
+/**
+ * Test unitaire de la classe LatencyRecorder.
+ * @author Emeric Vernat
+ */
+public class TestLatencyRecorder {
+	private static final String REQUEST_NAME = "jdbc/test getConnection";
+
+	/** Before. */
+	@Before
+	public void setUp() {
+		Utils.initialize();
+		LatencyRecorder.clear();
+	}
+
+	/** After. */
+	@After
+	public void tearDown() {
+		LatencyRecorder.clear();
+	}
+
+	/** Test. */
+	@Test
+	public void testGetInstance() {
+		final LatencyRecorder recorder = LatencyRecorder.getInstance(REQUEST_NAME);
+		assertSame("getInstance", recorder, LatencyRecorder.getInstance(REQUEST_NAME));
+		assertEquals("getRequestName", REQUEST_NAME, recorder.getRequestName());
+	}
+
+	/** Test. */
+	@Test
+	public void testDrainAllTo() {
+		final Counter counter = new Counter(Counter.DATASOURCE_COUNTER_NAME, "db.png");
+		final LatencyRecorder recorder = LatencyRecorder.getInstance(REQUEST_NAME);
+		recorder.record(10, false);
+		recorder.record(30, false);
+		recorder.record(500, true);
+		LatencyRecorder.getInstance("jdbc/test prepareStatement");
+		LatencyRecorder.drainAllTo(counter);
+		assertEquals("requests", 1, counter.getRequestsCount());
+		final CounterRequest request = counter.getCounterRequestByName(REQUEST_NAME, false);
+		assertEquals("hits", 3, request.getHits());
+		assertEquals("mean", 180, request.getMean());
+		assertEquals("maximum", 500, request.getMaximum());
+		assertEquals("systemErrors", 1, request.getSystemErrors());
+		assertEquals("cpuTimeMean", -1, request.getCpuTimeMean());
+		assertEquals("standardDeviation", 277, request.getStandardDeviation());
+
+		// les cumuls sont remis à zéro après chaque report dans le compteur
+		LatencyRecorder.drainAllTo(counter);
+		recorder.record(20, false);
+		LatencyRecorder.drainAllTo(counter);
+		final CounterRequest request2 = counter.getCounterRequestByName(REQUEST_NAME, false);
+		assertEquals("hits2", 4, request2.getHits());
+		assertEquals("mean2", 140, request2.getMean());
+		assertEquals("maximum2", 500, request2.getMaximum());
+	}
+
+	/** Test.
+	 * @throws InterruptedException e */
+	@Test
+	public void testDrainAllToWhileRecording() throws InterruptedException {
+		final Counter counter = new Counter(Counter.DATASOURCE_COUNTER_NAME, "db.png");
+		final LatencyRecorder recorder = LatencyRecorder.getInstance(REQUEST_NAME);
+		final int nbThreads = 4;
+		final int nbRecords = 20000;
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < nbThreads; i++) {
+			final Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < nbRecords; j++) {
+						recorder.record(10, false);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (final Thread thread : threads) {
+			while (thread.isAlive()) {
+				// chaque report pendant les enregistrements doit être cohérent
+				LatencyRecorder.drainAllTo(counter);
+				thread.join(1);
+			}
+		}
+		LatencyRecorder.drainAllTo(counter);
+		final CounterRequest request = counter.getCounterRequestByName(REQUEST_NAME, false);
+		// aucune durée perdue ou comptée deux fois
+		assertEquals("hits", nbThreads * nbRecords, request.getHits());
+		assertEquals("durationsSum", 10L * nbThreads * nbRecords, request.getDurationsSum());
+		assertEquals("maximum", 10, request.getMaximum());
+		assertEquals("standardDeviation", 0, request.getStandardDeviation());
+	}
+}
@@ -18,13 +18,24 @@
 package net.bull.javamelody.internal.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.DynamicMBean;
+import javax.management.InstanceNotFoundException;
 import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
 import javax.management.MBeanServer;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
@@ -114,6 +125,119 @@ public class TestMBeans {
 		}
 	}
 
+	/** Test.
+	 * @throws JMException e */
+	@Test
+	public void testGetAllMBeanNodesWithoutAttributes() throws JMException {
+		final List<MBeanNode> allMBeanNodes = MBeans.getAllMBeanNodesWithoutAttributes();
+		final MBeanNode catalinaNode = getChild(allMBeanNodes.get(0), "Catalina");
+		assertNotNull("Catalina", catalinaNode);
+		final MBeanNode threadPoolNode = getChild(catalinaNode, "ThreadPool");
+		assertNotNull("ThreadPool", threadPoolNode);
+		final MBeanNode threadPoolMBean = threadPoolNode.getChildren().get(0);
+		assertNull("getAttributes", threadPoolMBean.getAttributes());
+		assertNull("jboss.deployment", getChild(allMBeanNodes.get(0), "jboss.deployment"));
+
+		final MBeanNode mbeanNode = MBeans.getMBeanNode(threadPoolMBean.getName());
+		assertEquals("getName", threadPoolMBean.getName(), mbeanNode.getName());
+		assertFalse("getAttributes", mbeanNode.getAttributes().isEmpty());
+		try {
+			MBeans.getMBeanNode("Catalina:type=instanceNotFound");
+		} catch (final InstanceNotFoundException e) {
+			assertNotNull("e", e);
+		}
+	}
+
+	private static MBeanNode getChild(MBeanNode node, String name) {
+		for (final MBeanNode child : node.getChildren()) {
+			if (name.equals(child.getName())) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	/** Test.
+	 * @throws JMException e */
+	@Test
+	public void testMBeansCache() throws JMException {
+		final MBeansCache mbeansCache = MBeansCache.getInstance(mBeanServer);
+		final ObjectName name = new ObjectName("Catalina:type=ThreadPool,name=testMBeansCache");
+		assertFalse("isRegistered", mbeansCache.isRegistered(name));
+		mBeanServer.registerMBean(new ThreadPool(), name);
+		try {
+			// nom ajouté par la notification d'enregistrement
+			assertTrue("isRegistered", mbeansCache.isRegistered(name));
+			assertTrue("getNames", mbeansCache.getNames().contains(name));
+			assertSame("getMBeanInfo", mbeansCache.getMBeanInfo(name),
+					mbeansCache.getMBeanInfo(name));
+		} finally {
+			mBeanServer.unregisterMBean(name);
+		}
+		// nom et MBeanInfo retirés par la notification de désenregistrement
+		assertFalse("isRegistered", mbeansCache.isRegistered(name));
+		assertSame("getObjectName", MBeansCache.getObjectName(name.toString()),
+				MBeansCache.getObjectName(name.toString()));
+
+		// MBeanInfo non déclaré immuable : relu à chaque demande
+		final ObjectName dynamicName = new ObjectName("Catalina:type=Dynamic,name=testMBeansCache");
+		mBeanServer.registerMBean(new Dynamic(), dynamicName);
+		try {
+			assertNotSame("getMBeanInfo", mbeansCache.getMBeanInfo(dynamicName),
+					mbeansCache.getMBeanInfo(dynamicName));
+			assertEquals("attributes", "value", MBeans.getMBeanNode(dynamicName.toString())
+					.getAttributes().get(0).getFormattedValue());
+		} finally {
+			mBeanServer.unregisterMBean(dynamicName);
+		}
+
+		MBeansCache.stop();
+		assertNotSame("stop", mbeansCache, MBeansCache.getInstance(mBeanServer));
+		assertEquals("stop", 0, mbeansCache.getMBeanInfosCount());
+	}
+
+	/**
+	 * MBean dynamique dont le MBeanInfo n'est pas déclaré immuable.
+	 */
+	public static class Dynamic implements DynamicMBean {
+		@Override
+		public Object getAttribute(String attribute) {
+			return "value";
+		}
+
+		@Override
+		public void setAttribute(Attribute attribute) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public AttributeList getAttributes(String[] attributes) {
+			final AttributeList list = new AttributeList();
+			for (final String attribute : attributes) {
+				list.add(new Attribute(attribute, getAttribute(attribute)));
+			}
+			return list;
+		}
+
+		@Override
+		public AttributeList setAttributes(AttributeList attributes) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Object invoke(String actionName, Object[] params, String[] signature) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo() {
+			final MBeanAttributeInfo attributeInfo = new MBeanAttributeInfo("attribute",
+					String.class.getName(), null, true, false, false);
+			return new MBeanInfo(getClass().getName(), null,
+					new MBeanAttributeInfo[] { attributeInfo }, null, null, null);
+		}
+	}
+
 	@Test
 	public void testToString() {
 		final MBeanNode mBeanNode = new MBeanNode("name", "description",
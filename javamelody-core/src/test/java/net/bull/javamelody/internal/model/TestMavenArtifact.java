@@ -21,8 +21,10 @@ import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -119,8 +121,22 @@ public class TestMavenArtifact {
 		expect(context.getMinorVersion()).andReturn(5).anyTimes();
 		replay(context);
 		Parameters.initialize(context);
+		final File resolvedArtifactsFile = new File(
+				Parameters.getStorageDirectory(Parameters.getCurrentApplication()),
+				"poms/resolvedArtifacts.ser.gz");
+		resolvedArtifactsFile.delete();
 		final Map<String, MavenArtifact> webappDependencies = MavenArtifact.getWebappDependencies();
 		assertFalse("getWebappDependencies", webappDependencies.isEmpty());
+		assertTrue("resolved artifacts file", resolvedArtifactsFile.exists());
+		// deuxième appel avec le cache des artifacts résolus
+		final Map<String, MavenArtifact> cachedWebappDependencies = MavenArtifact
+				.getWebappDependencies();
+		assertEquals("getWebappDependencies", webappDependencies.keySet(),
+				cachedWebappDependencies.keySet());
+		final MavenArtifact jrobin = cachedWebappDependencies.get("jrobin-1.5.9.jar");
+		assertEquals("name", webappDependencies.get("jrobin-1.5.9.jar").getName(),
+				jrobin.getName());
+		assertFalse("licenseUrlsByName", jrobin.getLicenseUrlsByName().isEmpty());
 		verify(context);
 		for (final MavenArtifact dependency : webappDependencies.values()) {
 			if (dependency != null) {
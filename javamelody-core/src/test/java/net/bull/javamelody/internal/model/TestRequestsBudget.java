@@ -0,0 +1,162 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bull.javamelody.Parameter;
+import net.bull.javamelody.Utils;
+
+/**
+ * Test unitaire de la classe RequestsBudget.
+ * @author Emeric Vernat
+ */
+public class TestRequestsBudget {
+	/** Test. */
+	@Before
+	public void setUp() {
+		Utils.initialize();
+	}
+
+	/** Test. */
+	@Test
+	public void testBurst() {
+		Utils.setProperty(Parameter.MAX_REQUESTS_MEMORY_MB, "1");
+		final Counter httpCounter = new Counter(Counter.HTTP_COUNTER_NAME, null);
+		final Counter sqlCounter = new Counter(Counter.SQL_COUNTER_NAME, null);
+		final Collector collector = new Collector("test budget",
+				Arrays.asList(httpCounter, sqlCounter));
+		try {
+			final RequestsBudget requestsBudget = collector.getRequestsBudget();
+			assertNotNull("getRequestsBudget", requestsBudget);
+			assertEquals("getMaxBytes", 1024 * 1024, requestsBudget.getMaxBytes());
+			// compteurs éventuellement relus des fichiers d'un test précédent
+			httpCounter.clear();
+			sqlCounter.clear();
+			// requêtes utiles conservées depuis longtemps
+			for (int i = 0; i < 100; i++) {
+				for (int j = 0; j < 20; j++) {
+					httpCounter.addRequest("/useful/" + i, 10, 0, 0, false, 100);
+				}
+			}
+			// rafale de requêtes sql non bindées
+			for (int i = 0; i < 10000; i++) {
+				sqlCounter.addRequest("select * from t where id = " + i, 1, -1, -1, false, -1);
+			}
+			assertTrue("getUsedBytes",
+					requestsBudget.getUsedBytes() <= requestsBudget.getMaxBytes());
+			assertTrue("getRejectionsCount",
+					requestsBudget.getRejectionsCount(Counter.SQL_COUNTER_NAME) > 0);
+			assertEquals("useful requests", 100, httpCounter.getRequestsCount());
+			assertEquals("getEvictionsCount", 0,
+					requestsBudget.getEvictionsCount(Counter.HTTP_COUNTER_NAME));
+
+			// une nouvelle requête fréquente finit par être admise à la place d'une requête rare
+			for (int i = 0; i < 30; i++) {
+				sqlCounter.addRequest("select frequent", 1, -1, -1, false, -1);
+			}
+			assertTrue("frequent request",
+					sqlCounter.getCounterRequestByName("select frequent", false).getHits() > 0);
+			assertTrue("getEvictionsCount",
+					requestsBudget.getEvictionsCount(Counter.SQL_COUNTER_NAME) > 0);
+
+			requestsBudget.resync();
+			assertTrue("getUsedBytes",
+					requestsBudget.getUsedBytes() <= requestsBudget.getMaxBytes());
+			assertNotNull("toString", requestsBudget.toString());
+
+			sqlCounter.clear();
+			assertEquals("getUsedBytes after clear", httpCounter.getRequestsEstimatedMemorySize(),
+					requestsBudget.getUsedBytes());
+		} finally {
+			collector.stop();
+		}
+	}
+
+	/** Test. */
+	@Test
+	public void testNewWorkingSet() {
+		Utils.setProperty(Parameter.MAX_REQUESTS_MEMORY_MB, "1");
+		final Counter httpCounter = new Counter(Counter.HTTP_COUNTER_NAME, null);
+		final Collector collector = new Collector("test budget",
+				Collections.singletonList(httpCounter));
+		try {
+			final RequestsBudget requestsBudget = collector.getRequestsBudget();
+			httpCounter.clear();
+			// le budget est rempli par des requêtes de plus de 15 hits, fréquence max du sketch
+			for (int i = 0; i < 4000; i++) {
+				for (int j = 0; j < 20; j++) {
+					httpCounter.addRequest("/old/" + i, 10, 0, 0, false, 100);
+				}
+			}
+			assertTrue("getRejectionsCount",
+					requestsBudget.getRejectionsCount(Counter.HTTP_COUNTER_NAME) > 0);
+			// puis ces requêtes ne sont plus appelées et d'autres le sont aussi souvent :
+			// avec le vieillissement du sketch, les nouvelles requêtes finissent par être admises
+			for (int j = 0; j < 20; j++) {
+				for (int i = 0; i < 4000; i++) {
+					httpCounter.addRequest("/new/" + i, 10, 0, 0, false, 100);
+				}
+			}
+			assertTrue("getEvictionsCount",
+					requestsBudget.getEvictionsCount(Counter.HTTP_COUNTER_NAME) > 0);
+			int newRequests = 0;
+			for (final CounterRequest request : httpCounter.getRequests()) {
+				if (request.getName().startsWith("/new/")) {
+					newRequests++;
+				}
+			}
+			assertTrue("new requests " + newRequests, newRequests > 1000);
+			assertTrue("getUsedBytes",
+					requestsBudget.getUsedBytes() <= requestsBudget.getMaxBytes());
+		} finally {
+			collector.stop();
+		}
+	}
+
+	/** Test. */
+	@Test
+	public void testDisabled() {
+		final Counter counter = new Counter(Counter.HTTP_COUNTER_NAME, null);
+		// désactivé par défaut
+		final Collector defaultCollector = new Collector("test budget",
+				Collections.singletonList(counter));
+		try {
+			assertNull("getRequestsBudget", defaultCollector.getRequestsBudget());
+		} finally {
+			defaultCollector.stop();
+		}
+		Utils.setProperty(Parameter.MAX_REQUESTS_MEMORY_MB, "0");
+		final Collector collector = new Collector("test budget",
+				Collections.singletonList(counter));
+		try {
+			assertNull("getRequestsBudget", collector.getRequestsBudget());
+		} finally {
+			collector.stop();
+		}
+	}
+}
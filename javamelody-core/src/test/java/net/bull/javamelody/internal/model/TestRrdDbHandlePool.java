@@ -0,0 +1,192 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.jrobin.core.RrdException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.bull.javamelody.Utils;
+
+/**
+ * Test unitaire de la classe RrdDbHandlePool.
+ * @author Emeric Vernat
+ */
+public class TestRrdDbHandlePool {
+	private final List<File> files = new ArrayList<File>();
+
+	/** Before.
+	 * @throws IOException e */
+	@Before
+	public void setUp() throws IOException {
+		Utils.initialize();
+		JRobin.initBackendFactory(new Timer(getClass().getSimpleName(), true));
+	}
+
+	/** After. */
+	@After
+	public void tearDown() {
+		JRobin.stop();
+		RrdDbHandlePool.getInstance().setCapacity(RrdDbHandlePool.DEFAULT_MAX_OPEN_FILES,
+				RrdDbHandlePool.DEFAULT_MAX_MAPPED_MB * 1024L * 1024L);
+		for (final File file : files) {
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	private String createRrdFile() throws IOException, RrdException {
+		final File file = File.createTempFile("javamelody", ".rrd");
+		files.add(file);
+		return createRrdFile(file.getPath());
+	}
+
+	private String createRrdFile(String path) throws IOException, RrdException {
+		final RrdDef rrdDef = new RrdDef(path, 60);
+		rrdDef.addDatasource("test", "GAUGE", 120, 0, Double.NaN);
+		rrdDef.addArchive("AVERAGE", 0.25, 1, 10);
+		final RrdDbHandlePool pool = RrdDbHandlePool.getInstance();
+		pool.release(pool.requestRrdDb(rrdDef));
+		return path;
+	}
+
+	/** Test.
+	 * @throws IOException e
+	 * @throws RrdException e */
+	@Test
+	public void testEviction() throws IOException, RrdException {
+		final RrdDbHandlePool pool = RrdDbHandlePool.getInstance();
+		pool.closeAll();
+		pool.setCapacity(2, 1024L * 1024L);
+		final String path1 = createRrdFile();
+		final String path2 = createRrdFile();
+		assertEquals("getOpenFilesCount", 2, pool.getOpenFilesCount());
+		assertTrue("getMappedBytes", pool.getMappedBytes() > 0);
+
+		// fichier gardé ouvert entre deux utilisations
+		final long hitsCount = pool.getHitsCount();
+		final RrdDb rrdDb1 = pool.requestRrdDb(path1);
+		assertSame("requestRrdDb", rrdDb1, pool.requestRrdDb(path1));
+		assertEquals("getHitsCount", hitsCount + 2, pool.getHitsCount());
+		pool.release(rrdDb1);
+
+		// le moins récemment utilisé est fermé
+		final long evictionsCount = pool.getEvictionsCount();
+		final String path3 = createRrdFile();
+		assertEquals("getOpenFilesCount", 2, pool.getOpenFilesCount());
+		assertEquals("getEvictionsCount", evictionsCount + 1, pool.getEvictionsCount());
+		assertFalse("closed", rrdDb1.isClosed());
+
+		// sauf s'il est en cours d'utilisation
+		final RrdDb rrdDb2 = pool.requestRrdDb(path2);
+		final RrdDb rrdDb3 = pool.requestRrdDb(path3);
+		final RrdDb rrdDb1Bis = pool.requestRrdDb(path1);
+		assertEquals("getOpenFilesCount", 3, pool.getOpenFilesCount());
+		pool.release(rrdDb2);
+		assertTrue("closed", rrdDb2.isClosed());
+		assertFalse("closed", rrdDb3.isClosed());
+		assertEquals("getOpenFilesCount", 2, pool.getOpenFilesCount());
+		pool.release(rrdDb1Bis);
+		assertNotSame("requestRrdDb", rrdDb2, pool.requestRrdDb(path2));
+
+		// fermeture avant suppression
+		pool.closeRrdDb(path3);
+		assertFalse("closed", rrdDb3.isClosed());
+		pool.release(rrdDb3);
+		assertTrue("closed", rrdDb3.isClosed());
+
+		pool.closeAll();
+		assertEquals("getOpenFilesCount", 0, pool.getOpenFilesCount());
+		assertEquals("getMappedBytes", 0, pool.getMappedBytes());
+	}
+
+	/** Test.
+	 * @throws IOException e
+	 * @throws RrdException e */
+	@Test
+	public void testDeletedFile() throws IOException, RrdException {
+		final RrdDbHandlePool pool = RrdDbHandlePool.getInstance();
+		pool.closeAll();
+		final String path1 = createRrdFile();
+		final String path2 = createRrdFile();
+		final RrdDb rrdDb2 = pool.requestRrdDb(path2);
+		assertEquals("getOpenFilesCount", 2, pool.getOpenFilesCount());
+
+		// fichier supprimé hors de JRobin : il n'est plus gardé ouvert
+		final RrdDb rrdDb1 = pool.requestRrdDb(path1);
+		pool.release(rrdDb1);
+		assertTrue("delete", new File(path1).delete());
+		FileNotFoundException notFound = null;
+		try {
+			pool.requestRrdDb(path1);
+		} catch (final FileNotFoundException e) {
+			// comme dans JRobin.addValue, le fichier sera recréé
+			notFound = e;
+		}
+		assertNotNull("FileNotFoundException", notFound);
+		assertTrue("closed", rrdDb1.isClosed());
+		assertEquals("getOpenFilesCount", 1, pool.getOpenFilesCount());
+
+		// fichier supprimé pendant son utilisation : il est fermé quand il n'est plus utilisé
+		assertTrue("delete", new File(path2).delete());
+		final String path2Bis = createRrdFile(path2);
+		final RrdDb rrdDb2Bis = pool.requestRrdDb(path2Bis);
+		assertNotSame("requestRrdDb", rrdDb2, rrdDb2Bis);
+		assertFalse("closed", rrdDb2.isClosed());
+		pool.release(rrdDb2);
+		assertTrue("closed", rrdDb2.isClosed());
+		pool.release(rrdDb2Bis);
+		assertFalse("closed", rrdDb2Bis.isClosed());
+		assertEquals("getOpenFilesCount", 1, pool.getOpenFilesCount());
+	}
+
+	/** Test.
+	 * @throws IOException e
+	 * @throws RrdException e */
+	@Test
+	public void testWithoutCapacity() throws IOException, RrdException {
+		final RrdDbHandlePool pool = RrdDbHandlePool.getInstance();
+		pool.closeAll();
+		pool.setCapacity(0, 0);
+		final String path = createRrdFile();
+		assertEquals("getOpenFilesCount", 0, pool.getOpenFilesCount());
+		final RrdDb rrdDb = pool.requestRrdDb(path);
+		assertEquals("getOpenFilesCount", 1, pool.getOpenFilesCount());
+		pool.release(rrdDb);
+		assertTrue("closed", rrdDb.isClosed());
+		assertEquals("getOpenFilesCount", 0, pool.getOpenFilesCount());
+	}
+}
@@ -17,7 +17,15 @@
  */
 package net.bull.javamelody.internal.model;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Timer;
 
 import org.junit.Test;
 
@@ -33,4 +41,55 @@ public class TestRrdNioBackendFactory {
 		RrdNioBackendFactory.setSyncPeriod(60);
 		assertSame("getSyncPeriod", 60, RrdNioBackendFactory.getSyncPeriod());
 	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testSyncDirtyBackends() throws IOException {
+		final Timer timer = new Timer("test timer", true);
+		final File file = File.createTempFile("javamelody", ".rrd");
+		try {
+			RrdNioBackend.setFileSyncTimer(timer);
+			// les fichiers gardés ouverts dans le pool par les autres tests sont fermés,
+			// pour que seul le fichier de ce test soit synchronisé ci-dessous
+			RrdDbHandlePool.getInstance().closeAll();
+			final RrdNioBackend backend = new RrdNioBackend(file.getPath(), false, 300);
+			final byte[] bytes = { 1, 2, 3 };
+			try {
+				backend.setLength(100);
+				final long syncedFilesCount = RrdNioBackend.getSyncedFilesCount();
+				backend.write(10, bytes);
+				assertTrue("isDirty", backend.isDirty());
+				assertTrue("getDirtyFilesCount", RrdNioBackend.getDirtyFilesCount() >= 1);
+				for (int batch = 0; batch < 10; batch++) {
+					RrdNioBackend.syncDirtyBackends(batch);
+				}
+				assertFalse("isDirty", backend.isDirty());
+				assertEquals("getSyncedFilesCount", syncedFilesCount + 1,
+						RrdNioBackend.getSyncedFilesCount());
+				// pas de nouvelle synchronisation sans écriture
+				backend.close();
+				assertEquals("getSyncedFilesCount", syncedFilesCount + 1,
+						RrdNioBackend.getSyncedFilesCount());
+				assertTrue("getSyncMillis", RrdNioBackend.getSyncMillis() >= 0);
+			} finally {
+				backend.close();
+			}
+
+			// fichier mappé en lecture seule
+			final RrdNioBackend readOnlyBackend = new RrdNioBackend(file.getPath(), true, 300);
+			try {
+				final byte[] readBytes = new byte[bytes.length];
+				readOnlyBackend.read(10, readBytes);
+				assertArrayEquals("read", bytes, readBytes);
+			} finally {
+				readOnlyBackend.close();
+			}
+		} finally {
+			timer.cancel();
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Test unitaire de la classe SqlNormalizer.
+ * @author Emeric Vernat
+ */
+public class TestSqlNormalizer {
+	private static void assertNormalized(String expected, String sql) {
+		assertEquals(sql, expected, SqlNormalizer.normalizeWithoutCache(sql));
+	}
+
+	/** Test. */
+	@Test
+	public void testLiterals() {
+		assertNormalized("select * from t where id = ? and name = ?",
+				"select * from t where id = 12 and name = 'it''s'");
+		assertNormalized("select * from t1 where col2 = ? and x = ? and y = ?",
+				"select * from t1 where col2 = -1.5e-3 and x = 0x1F and y = N'abc'");
+		assertNormalized("select a - ?, a-? from t", "select a - 1, a-2 from t");
+		assertNormalized("select \"Col 1\", `col 2` from t where c = ?",
+				"select \"Col 1\", `col 2` from t where c = '1'");
+		assertNormalized("select * from t where id = ?", "select * from t where id = ?");
+	}
+
+	/** Test. */
+	@Test
+	public void testLists() {
+		assertNormalized("select * from t where id in (?)",
+				"select * from t where id in (1, 2, 3)");
+		assertNormalized("select * from t where id in (?)",
+				"select * from t where id in ( ?,?, ? )");
+		assertNormalized("insert into t (a, b) values (?)",
+				"insert into t (a, b) values (1, 'x'), (2, 'y'), (3, 'z')");
+		assertNormalized("select count(*), now() from t where a in (b, ?)",
+				"select count(*), now() from t where a in (b, 1)");
+		assertNormalized("select substr(name, ?, ?) from t", "select substr(name, 1, 3) from t");
+	}
+
+	/** Test. */
+	@Test
+	public void testWhitespacesAndComments() {
+		assertNormalized("/* BATCH */ select a from t where b = ?",
+				"/* BATCH */   select a\n\tfrom t -- comment\r\n  where b = 5  ");
+		assertNormalized("select /* '1' */ a from t", "select /* '1' */ a from t");
+	}
+
+	/** Test. */
+	@Test
+	public void testCache() {
+		final String sql = "select * from t where id = 1";
+		final String normalizedSql = SqlNormalizer.normalize(sql);
+		assertEquals("normalize", "select * from t where id = ?", normalizedSql);
+		assertSame("cache", normalizedSql, SqlNormalizer.normalize(sql));
+	}
+
+	/** Test. */
+	@Test
+	public void testCounter() {
+		final Counter counter = new Counter(Counter.SQL_COUNTER_NAME, null);
+		counter.setSqlNormalizationEnabled(true);
+		for (int i = 0; i < 100; i++) {
+			counter.addRequest("select * from t where id = " + i, 1, -1, -1, false, -1);
+		}
+		assertEquals("getRequestsCount", 1, counter.getRequestsCount());
+		assertEquals("clone", true, counter.clone().isSqlNormalizationEnabled());
+	}
+}
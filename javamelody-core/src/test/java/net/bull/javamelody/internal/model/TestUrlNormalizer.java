@@ -0,0 +1,102 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test unitaire de la classe UrlNormalizer.
+ * @author Emeric Vernat
+ */
+public class TestUrlNormalizer {
+	/** Test. */
+	@Test
+	public void testIdentifiers() {
+		final UrlNormalizer urlNormalizer = new UrlNormalizer();
+		assertEquals("/users/{id}/orders", urlNormalizer.normalize("/users/123/orders"));
+		assertEquals("/users/{id}/orders/{id}",
+				urlNormalizer.normalize("/users/456/orders/3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+		assertEquals("/users/search", urlNormalizer.normalize("/users/search"));
+		assertEquals("/api/v1/items/", urlNormalizer.normalize("/api/v1/items/"));
+		assertEquals("/", urlNormalizer.normalize("/"));
+		assertEquals("/users/{id}/orders GET",
+				urlNormalizer.normalizeRequestName("/users/789/orders GET"));
+		assertEquals("/users/search ajax POST",
+				urlNormalizer.normalizeRequestName("/users/search ajax POST"));
+
+		assertTrue(UrlNormalizer.looksLikeIdentifier("123"));
+		assertTrue(UrlNormalizer.looksLikeIdentifier("2019-03-14"));
+		assertTrue(UrlNormalizer.looksLikeIdentifier("5d41402abc4b2a76b9719d911017c592"));
+		assertTrue(UrlNormalizer.looksLikeIdentifier("aZ3kP9qL2mX8vB7nC"));
+		assertFalse(UrlNormalizer.looksLikeIdentifier("v1"));
+		assertFalse(UrlNormalizer.looksLikeIdentifier("orders"));
+		assertFalse(UrlNormalizer.looksLikeIdentifier("index.html"));
+		assertFalse(UrlNormalizer.looksLikeIdentifier("page%201"));
+	}
+
+	/** Test. */
+	@Test
+	public void testCardinality() {
+		final UrlNormalizer urlNormalizer = new UrlNormalizer();
+		urlNormalizer.addTemplate("/users/me");
+		// 49 segments appris en plus du template enregistré
+		for (int i = 0; i < 49; i++) {
+			assertEquals("/users/user" + (char) ('a' + i % 26) + i / 26 + "x",
+					urlNormalizer.normalize("/users/user" + (char) ('a' + i % 26) + i / 26 + "x"));
+		}
+		// trop de valeurs différentes pour ce segment : il devient variable
+		assertEquals("/users/{id}", urlNormalizer.normalize("/users/otheruser"));
+		assertEquals("/users/{id}", urlNormalizer.normalize("/users/usera0x"));
+		assertEquals("/users/{id}/profile", urlNormalizer.normalize("/users/john/profile"));
+		// sauf pour les templates enregistrés
+		assertEquals("/users/me", urlNormalizer.normalize("/users/me"));
+		// les segments appris sont oubliés
+		assertTrue(urlNormalizer.getNodesCount() < 10);
+
+		// le premier segment n'est pas limité
+		for (int i = 0; i < 100; i++) {
+			assertEquals("/page" + (char) ('a' + i % 26) + i / 26 + ".html", urlNormalizer
+					.normalize("/page" + (char) ('a' + i % 26) + i / 26 + ".html"));
+		}
+	}
+
+	/** Test. */
+	@Test
+	public void testTemplates() {
+		final UrlNormalizer urlNormalizer = new UrlNormalizer();
+		urlNormalizer.addTemplates("/products/{sku}/reviews, /files/**");
+		urlNormalizer.addTemplate("/products/{sku}/reviews");
+		assertEquals("/products/{sku}/reviews", urlNormalizer.normalize("/products/abc/reviews"));
+		assertEquals("/files/**", urlNormalizer.normalize("/files/readme"));
+		assertEquals("/other/path", urlNormalizer.normalize("/other/path"));
+		// résultat en cache
+		assertEquals("/products/{sku}/reviews", urlNormalizer.normalize("/products/abc/reviews"));
+
+		// patterns de Spring MVC, relatifs à la DispatcherServlet
+		urlNormalizer.addSpringTemplate("/orders/{orderId}", "/api", "/orders/abc");
+		assertEquals("/api/orders/{orderId}", urlNormalizer.normalize("/api/orders/xyz"));
+		urlNormalizer.addSpringTemplate("/rest/carts/{cartId}", "/rest", "/carts/abc");
+		assertEquals("/rest/carts/{cartId}", urlNormalizer.normalize("/rest/carts/xyz"));
+		urlNormalizer.addSpringTemplate("/customers/{customerId}", "/customers/abc", null);
+		assertEquals("/customers/{customerId}", urlNormalizer.normalize("/customers/xyz"));
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2008-2019 by Emeric Vernat
+ *
+ *     This file is part of Java Melody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bull.javamelody.internal.web;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+import net.bull.javamelody.internal.web.HtmlInjectorResponseStream.HtmlToInject;
+
+/**
+ * Test unitaire de la classe HtmlInjectorResponseStream.
+ * @author Emeric Vernat
+ */
+public class TestHtmlInjectorResponseStream {
+	private static final String CONTENT = "<script>rum</script>";
+	private static final String HTML = "<html><body><p>a < b </bod </p></body></html>";
+	private static final String EXPECTED = HTML.replace("</body>", CONTENT + "</body>");
+
+	private static class ByteArrayServletOutputStream extends ServletOutputStream {
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		ByteArrayServletOutputStream() {
+			super();
+		}
+
+		@Override
+		public void write(int b) {
+			output.write(b);
+		}
+
+		@Override
+		public void write(byte[] bytes, int off, int len) {
+			output.write(bytes, off, len);
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			// nothing
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		String getContent() throws IOException {
+			return output.toString("UTF-8");
+		}
+	}
+
+	private static HtmlInjectorResponseStream createStream(ServletOutputStream output,
+			String contentType, boolean contentEncoding) throws IOException {
+		final HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+		expect(response.getOutputStream()).andReturn(output).anyTimes();
+		expect(response.getCharacterEncoding()).andReturn("UTF-8").anyTimes();
+		expect(response.getContentType()).andReturn(contentType).anyTimes();
+		expect(response.containsHeader("Content-Encoding")).andReturn(contentEncoding)
+				.anyTimes();
+		replay(response);
+		return new HtmlInjectorResponseStream(response, new HtmlToInject() {
+			@Override
+			public String getContent() {
+				return CONTENT;
+			}
+
+			@Override
+			public String getBeforeTag() {
+				return "</body>";
+			}
+		});
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testTagSplitAcrossWrites() throws IOException {
+		final byte[] html = HTML.getBytes("UTF-8");
+		// toutes les coupures en 2 écritures, et en 3 écritures autour de </body>
+		for (int i = 0; i <= html.length; i++) {
+			for (int j = i; j <= html.length; j++) {
+				final ByteArrayServletOutputStream output = new ByteArrayServletOutputStream();
+				final HtmlInjectorResponseStream stream = createStream(output, "text/html",
+						false);
+				stream.write(html, 0, i);
+				stream.write(html, i, j - i);
+				stream.write(html, j, html.length - j);
+				stream.flush();
+				assertEquals("split at " + i + ", " + j, EXPECTED, output.getContent());
+			}
+		}
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testByteByByte() throws IOException {
+		final ByteArrayServletOutputStream output = new ByteArrayServletOutputStream();
+		final HtmlInjectorResponseStream stream = createStream(output, null, false);
+		for (final byte b : HTML.getBytes("UTF-8")) {
+			stream.write(b);
+		}
+		stream.close();
+		assertEquals("byte by byte", EXPECTED, output.getContent());
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testNotHtml() throws IOException {
+		final ByteArrayServletOutputStream output = new ByteArrayServletOutputStream();
+		final HtmlInjectorResponseStream stream = createStream(output, "application/json",
+				false);
+		stream.write(HTML.getBytes("UTF-8"));
+		stream.flush();
+		assertEquals("json", HTML, output.getContent());
+
+		final ByteArrayServletOutputStream output2 = new ByteArrayServletOutputStream();
+		final HtmlInjectorResponseStream stream2 = createStream(output2, "text/html", true);
+		stream2.write(HTML.getBytes("UTF-8"));
+		stream2.flush();
+		assertEquals("gzip", HTML, output2.getContent());
+
+		// cancelInjection après le début d'un beforeTag
+		final ByteArrayServletOutputStream output3 = new ByteArrayServletOutputStream();
+		final HtmlInjectorResponseStream stream3 = createStream(output3, "text/html", false);
+		stream3.write("test </bo".getBytes("UTF-8"));
+		stream3.cancelInjection();
+		stream3.write("dy>".getBytes("UTF-8"));
+		stream3.flush();
+		assertEquals("cancelInjection", "test </body>", output3.getContent());
+
+		// idem octet par octet
+		final ByteArrayServletOutputStream output4 = new ByteArrayServletOutputStream();
+		final HtmlInjectorResponseStream stream4 = createStream(output4, "text/html", false);
+		for (final byte b : "test </bo".getBytes("UTF-8")) {
+			stream4.write(b);
+		}
+		stream4.cancelInjection();
+		for (final byte b : "dy>".getBytes("UTF-8")) {
+			stream4.write(b);
+		}
+		stream4.flush();
+		assertEquals("cancelInjection byte by byte", "test </body>", output4.getContent());
+	}
+}
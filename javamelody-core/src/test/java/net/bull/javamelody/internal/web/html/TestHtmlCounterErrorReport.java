@@ -66,6 +66,7 @@ public class TestHtmlCounterErrorReport {
 			errorCounter.addErrors(Collections.singletonList(new CounterError("erreur", null)));
 		}
 		report.toHtml();
+		assertTrue("groupes d'erreurs", writer.toString().contains("Groups"));
 		assertNotEmptyAndClear(writer);
 
 		final HttpServletRequest httpRequest = createNiceMock(HttpServletRequest.class);
@@ -18,6 +18,7 @@
 package net.bull.javamelody.internal.web.html;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -38,6 +39,9 @@ import net.bull.javamelody.internal.model.Collector;
 import net.bull.javamelody.internal.model.Counter;
 import net.bull.javamelody.internal.model.HeapHistogram;
 import net.bull.javamelody.internal.model.HeapHistogram.ClassInfo;
+import net.bull.javamelody.internal.model.HeapHistogramHistory;
+import net.bull.javamelody.internal.model.HeapHistogramHistory.ClassGrowth;
+import net.bull.javamelody.internal.model.HeapHistogramHistory.Snapshot;
 import net.bull.javamelody.internal.model.JavaInformations;
 import net.bull.javamelody.internal.model.Period;
 import net.bull.javamelody.internal.model.VirtualMachine;
@@ -110,6 +114,74 @@ public class TestHtmlHeapHistogramReport {
 		}
 	}
 
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testHeapHistoMaxClasses() throws IOException {
+		final HeapHistogram allClasses = createHeapHistogram("/heaphisto.txt", -1);
+		final HeapHistogram heapHistogram = createHeapHistogram("/heaphisto.txt", 100);
+		assertEquals("classes", 100, heapHistogram.getHeapHistogram().size());
+		assertEquals("other classes", allClasses.getHeapHistogram().size() - 100,
+				heapHistogram.getOtherHeapClassesCount());
+		assertEquals("totalHeapBytes", allClasses.getTotalHeapBytes(),
+				heapHistogram.getTotalHeapBytes());
+		assertEquals("totalHeapInstances", allClasses.getTotalHeapInstances(),
+				heapHistogram.getTotalHeapInstances());
+		assertEquals("biggest class", allClasses.getHeapHistogram().get(99).getBytes(),
+				heapHistogram.getHeapHistogram().get(99).getBytes());
+		report(heapHistogram);
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testHeapHistoJRockitTotal() throws IOException {
+		final HeapHistogram heapHistogram = createHeapHistogram("/heaphisto_jrockit.txt", -1);
+		assertEquals("first class", "char[]", heapHistogram.getHeapHistogram().get(0).getName());
+		// les classes ne sont pas arrêtées à la colonne de delta "+2134k"
+		assertTrue("classes", heapHistogram.getHeapHistogram().size() > 1000);
+	}
+
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testHeapHistoGrowths() throws IOException {
+		final HeapHistogramHistory heapHistogramHistory = new HeapHistogramHistory(
+				"test heaphisto history");
+		final HeapHistogram previousHeapHistogram = createHeapHistogram("/heaphisto_jdk9.txt",
+				-1);
+		heapHistogramHistory.addSnapshot(previousHeapHistogram);
+		final List<Snapshot> snapshots = heapHistogramHistory.getSnapshots();
+		assertFalse("snapshots", snapshots.isEmpty());
+		assertEquals("snapshot totalHeapBytes", previousHeapHistogram.getTotalHeapBytes(),
+				snapshots.get(snapshots.size() - 1).getTotalHeapBytes());
+
+		assertTrue("no growth", HeapHistogramHistory
+				.computeGrowths(previousHeapHistogram, snapshots).isEmpty());
+		final HeapHistogram heapHistogram = createHeapHistogram("/heaphisto.txt", -1);
+		final List<ClassGrowth> growths = HeapHistogramHistory.computeGrowths(heapHistogram,
+				snapshots);
+		assertFalse("growths", growths.isEmpty());
+		assertTrue("sorted growths",
+				growths.get(0).getDeltaBytes() >= growths.get(growths.size() - 1).getDeltaBytes());
+
+		final StringWriter writer = new StringWriter();
+		new HtmlHeapHistogramReport(heapHistogram, snapshots, writer).toHtml();
+		assertNotEmptyAndClear(writer);
+		new HtmlHeapHistogramReport(previousHeapHistogram, snapshots, writer).toHtml();
+		assertNotEmptyAndClear(writer);
+	}
+
+	private HeapHistogram createHeapHistogram(String resource, int maxClasses)
+			throws IOException {
+		final InputStream input = getClass().getResourceAsStream(resource);
+		try {
+			return new HeapHistogram(input, resource.contains("jrockit"), maxClasses);
+		} finally {
+			input.close();
+		}
+	}
+
 	/** Test. */
 	@Test
 	public void testHeapHistoClassInfoParseLong() {
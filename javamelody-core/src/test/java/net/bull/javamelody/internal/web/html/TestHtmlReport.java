@@ -21,6 +21,7 @@ import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -237,6 +238,40 @@ public class TestHtmlReport {
 		htmlReport2.toHtml(null, null);
 	}
 
+	/** Test.
+	 * @throws IOException e */
+	@Test
+	public void testFragmentsOnDemand() throws IOException {
+		counter.addRequest("test1", 0, 0, 0, false, 1000);
+		collector.collectWithoutErrors(javaInformationsList);
+
+		final HtmlReport htmlReport = new HtmlReport(collector, null, javaInformationsList,
+				Period.TOUT, writer);
+		htmlReport.toHtml(null, null);
+		String html = writer.getBuffer().toString();
+		assertTrue("counter details on demand",
+				html.contains("data-lazy-url='?part=counterDetails&amp;counter=http'"));
+		assertTrue("threads on demand", html.contains(
+				"data-lazy-url='?part=threads&amp;format=htmlbody&amp;index=0'"));
+		assertTrue("fragment durations", html.contains("fragmentDurations"));
+		assertFalse("details not in page", html.contains("test1"));
+		assertNotEmptyAndClear(writer);
+
+		htmlReport.writeCounterDetails(counter.getName());
+		assertTrue("counter details", writer.getBuffer().toString().contains("test1"));
+		assertNotEmptyAndClear(writer);
+		htmlReport.writeThreadsDetails(0);
+		assertNotEmptyAndClear(writer);
+		htmlReport.writeThreadsDetails(1);
+		assertEquals("unknown index", "", writer.getBuffer().toString());
+
+		htmlReport.writeLastShutdown();
+		html = writer.getBuffer().toString();
+		assertFalse("no fragment on demand in last shutdown", html.contains("data-lazy-url='"));
+		assertTrue("details in last shutdown", html.contains("test1"));
+		assertNotEmptyAndClear(writer);
+	}
+
 	/** Test.
 	 * @throws IOException e */
 	@Test
@@ -368,6 +403,11 @@ public class TestHtmlReport {
 			assertNotEmptyAndClear(writer);
 			htmlReport.writeDatabase(new DatabaseInformations(3)); // h2.settings avec nbColumns==2
 			assertNotEmptyAndClear(writer);
+			setProperty(Parameter.DATABASE_MAX_ROWS, "5");
+			htmlReport.writeDatabase(new DatabaseInformations(1, 0, 0)); // h2.sessions
+			assertNotEmptyAndClear(writer);
+			htmlReport.writeDatabase(new DatabaseInformations(3, 1, -1)); // pages et tri
+			assertNotEmptyAndClear(writer);
 			JavaInformations.setWebXmlExistsAndPomXmlExists(true, true);
 			htmlReport.toHtml(null, null); // pom.xml dans HtmlJavaInformationsReport.writeDependencies
 			assertNotEmptyAndClear(writer);
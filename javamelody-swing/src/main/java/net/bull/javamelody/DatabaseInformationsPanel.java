@@ -59,13 +59,16 @@ class DatabaseInformationsPanel extends MelodyPanel {
 	DatabaseInformationsPanel(RemoteCollector remoteCollector) throws IOException {
 		super(remoteCollector);
 
-		refresh(0);
+		refresh(0, 0);
 	}
 
-	final void refresh(int requestIndex) throws IOException {
+	final void refresh(int requestIndex, int page) throws IOException {
 		removeAll();
 
-		this.databaseInformations = getRemoteCollector().collectDatabaseInformations(requestIndex);
+		// une seule page de résultat est envoyée par le serveur, les autres étant demandées
+		// avec les boutons page précédente et page suivante ; le tri est fait par la table
+		this.databaseInformations = getRemoteCollector().collectDatabaseInformations(requestIndex,
+				page, 0);
 
 		setName(getString("database"));
 		final String selectedRequestName = databaseInformations.getSelectedRequestName();
@@ -165,7 +168,7 @@ class DatabaseInformationsPanel extends MelodyPanel {
 				if (e.getStateChange() == ItemEvent.SELECTED) {
 					final int requestIndex = requestComboBox.getSelectedIndex();
 					try {
-						refresh(requestIndex);
+						refresh(requestIndex, 0);
 					} catch (final IOException ex) {
 						showException(ex);
 					}
@@ -178,7 +181,8 @@ class DatabaseInformationsPanel extends MelodyPanel {
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				try {
-					refresh(getDatabaseInformations().getSelectedRequestIndex());
+					refresh(getDatabaseInformations().getSelectedRequestIndex(),
+							getDatabaseInformations().getPage());
 				} catch (final IOException ex) {
 					showException(ex);
 				}
@@ -197,10 +201,38 @@ class DatabaseInformationsPanel extends MelodyPanel {
 		});
 		final MButton xmlJsonButton = createXmlJsonButton(databaseInformations);
 
+		final int page = databaseInformations.getPage();
+		final MButton previousPageButton = new MButton(getString("Page_precedente"));
+		previousPageButton.setEnabled(page > 0);
+		previousPageButton.addActionListener(new PageActionListener(page - 1));
+		final MButton nextPageButton = new MButton(getString("Page_suivante"));
+		nextPageButton.setEnabled(databaseInformations.hasNextPage());
+		nextPageButton.addActionListener(new PageActionListener(page + 1));
+		final JLabel pageLabel = new JLabel(getFormattedString("page_numero", page + 1));
+
 		return Utilities.createButtonsPanel(requestComboBox, new JLabel("             "),
+				previousPageButton, pageLabel, nextPageButton, new JLabel("             "),
 				refreshButton, pdfButton, xmlJsonButton);
 	}
 
+	private class PageActionListener implements ActionListener {
+		private final int page;
+
+		PageActionListener(int page) {
+			super();
+			this.page = page;
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			try {
+				refresh(getDatabaseInformations().getSelectedRequestIndex(), page);
+			} catch (final IOException ex) {
+				showException(ex);
+			}
+		}
+	}
+
 	final void actionPdf() throws IOException {
 		final File tempFile = createTempFileForPdf();
 		final PdfOtherReport pdfOtherReport = createPdfOtherReport(tempFile);